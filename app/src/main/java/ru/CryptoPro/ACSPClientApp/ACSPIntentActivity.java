@@ -36,6 +36,7 @@ import ru.CryptoPro.ACSPClientApp.R;
 import ru.CryptoPro.CAdES.CAdESType;
 import ru.CryptoPro.JCP.tools.Array;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IACSPIntent;
+import ru.CryptoPro.ACSPClientApp.util.ContainerCatalog;
 
 /**
  * Вкладка для вызова различных интентов из Android
@@ -539,6 +540,10 @@ public class ACSPIntentActivity extends Fragment implements IACSPIntent {
                 MainActivity.getLogCallback().log("Copying of container " +
                     (success ? "completed." : "failed!"));
 
+                if (success) {
+                    ContainerCatalog.invalidate();
+                } // if
+
             }
             break;
 
@@ -732,4 +737,4 @@ public class ACSPIntentActivity extends Fragment implements IACSPIntent {
 
     }
     */
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -23,16 +23,21 @@ import android.widget.RadioGroup;
 
 import java.security.KeyStore;
 import java.util.Enumeration;
+import java.util.concurrent.RejectedExecutionException;
 
 import ru.CryptoPro.ACSPClientApp.R;
 import ru.CryptoPro.JCSP.JCSP;
 import ru.CryptoPro.ACSPClientApp.client.example.ChangePasswordExample;
 import ru.CryptoPro.ACSPClientApp.client.example.GenKeyPairExample;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.RemoveContainersExample;
+import ru.CryptoPro.ACSPClientApp.client.example.TaskRuntime;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IEncryptDecryptData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IGenKeyPairData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IHashData;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ISignData;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.ACSPClientApp.util.ProviderServiceInfo;
 import ru.CryptoPro.ACSPClientApp.util.ProviderType;
@@ -110,21 +115,12 @@ public class ContainerActivity extends Fragment {
                 ContainerAdapter adapter = new ContainerAdapter(alias, false);
                 adapter.setProviderType(ProviderType.currentProviderType());
 
-                try {
-                    ISignData genKeyPairExample = new GenKeyPairExample(adapter);
-                    genKeyPairExample.getResult(MainActivity.getLogCallback());
-                } catch (Exception e) {
-                    MainActivity.getLogCallback().setStatusFailed();
-                    Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
-                }
+                ISignData genKeyPairExample = new GenKeyPairExample(adapter);
+                runAndLogContainers(genKeyPairExample);
 
                 // Анализ ДСЧ.
                 // processorLoader.cancel(true);
 
-                // Выводим список контейнеров.
-                ProviderServiceInfo.logKeyStoreInfo(
-                    MainActivity.getLogCallback());
-
             }
 
         });
@@ -169,22 +165,11 @@ public class ContainerActivity extends Fragment {
                     */
                 } // if
 
-                try {
-
-                    IGenKeyPairData genKeyPairDhExample = new GenKeyPairExample(
-                        adapter, caType, ContainerActivity.this.getActivity());
-
-                    genKeyPairDhExample.setDefaultPassword("123".toCharArray()); // Для УЦ 2.0
-                    genKeyPairDhExample.getResult(MainActivity.getLogCallback());
-
-                } catch (Exception e) {
-                    MainActivity.getLogCallback().setStatusFailed();
-                    Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
-                }
+                IGenKeyPairData genKeyPairDhExample = new GenKeyPairExample(
+                    adapter, caType, ContainerActivity.this.getActivity());
 
-                // Выводим список контейнеров.
-                ProviderServiceInfo.logKeyStoreInfo(
-                    MainActivity.getLogCallback());
+                genKeyPairDhExample.setDefaultPassword("123".toCharArray()); // Для УЦ 2.0
+                runAndLogContainers(genKeyPairDhExample);
 
             }
 
@@ -219,17 +204,8 @@ public class ContainerActivity extends Fragment {
                 ContainerAdapter adapter = new ContainerAdapter(alias, true);
                 adapter.setProviderType(ProviderType.currentProviderType());
 
-                try {
-                    IHashData changePasswordExample = new ChangePasswordExample(adapter);
-                    changePasswordExample.getResult(MainActivity.getLogCallback());
-                } catch (Exception e) {
-                    MainActivity.getLogCallback().setStatusFailed();
-                    Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
-                }
-
-                // Выводим список контейнеров.
-                ProviderServiceInfo.logKeyStoreInfo(
-                    MainActivity.getLogCallback());
+                IHashData changePasswordExample = new ChangePasswordExample(adapter);
+                runAndLogContainers(changePasswordExample);
             }
 
         });
@@ -257,6 +233,10 @@ public class ContainerActivity extends Fragment {
                     return;
                 } // if
 
+                if (!MainActivity.checkStarted()) {
+                    return;
+                } // if
+
                 MainActivity.getLogCallback().clear();
                 MainActivity.getLogCallback().log("*** Removing one container '" +
                     alias + "' ***");
@@ -301,6 +281,10 @@ public class ContainerActivity extends Fragment {
             @Override
             public void onClick(View v) {
 
+                if (!MainActivity.checkStarted()) {
+                    return;
+                } // if
+
                 MainActivity.getLogCallback().clear();
                 MainActivity.getLogCallback().log("*** Removing all containers ***");
 
@@ -379,4 +363,49 @@ public class ContainerActivity extends Fragment {
 
     }
 
+    /**
+     * Выполнение примера в пуле задач {@link TaskRuntime} с
+     * последующим выводом списка контейнеров. Поток
+     * интерфейса не блокируется.
+     *
+     * @param example Пример.
+     */
+    private static void runAndLogContainers(final IHashData example) {
+
+        if (!MainActivity.checkStarted()) {
+            return;
+        } // if
+
+        try {
+
+            TaskRuntime.getInstance().submit(MainActivity.getLogCallback(),
+                new IThreadExecuted() {
+
+                    @Override
+                    public void execute(LogCallback callback) {
+
+                        // Вложенная задача примера выполняется в
+                        // этом же потоке.
+                        try {
+                            example.getResult(callback);
+                        } catch (Exception e) {
+                            callback.setStatusFailed();
+                            Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
+                        }
+
+                        // Выводим список контейнеров.
+                        ProviderServiceInfo.logKeyStoreInfo(callback);
+
+                    }
+
+                }, IHashData.MAX_THREAD_TIMEOUT);
+
+        } catch (RejectedExecutionException e) {
+            MainActivity.getLogCallback().log("Task queue is full, try again later.");
+            MainActivity.getLogCallback().setStatusFailed();
+            Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
+        }
+
+    }
+
 }
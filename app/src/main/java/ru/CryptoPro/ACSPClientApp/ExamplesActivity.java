@@ -33,25 +33,20 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import java.io.File;
 import java.io.FileInputStream;
 import java.lang.reflect.Constructor;
-import java.security.KeyStore;
-import java.security.PrivateKey;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 
 import ru.CryptoPro.ACSPClientApp.R;
-import ru.CryptoPro.JCP.JCP;
-import ru.CryptoPro.JCSP.JCSP;
 import ru.CryptoPro.JCSP.support.BKSTrustStore;
 import ru.CryptoPro.ACSPClientApp.client.example.InstallCAdESTestTrustCertExample;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ICAdESData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IHashData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.RemoteConnectionInfo;
-import ru.CryptoPro.ACSPClientApp.util.AlgorithmSelector;
+import ru.CryptoPro.ACSPClientApp.util.ContainerCatalog;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.ACSPClientApp.util.ProviderType;
 
@@ -151,8 +146,13 @@ public class ExamplesActivity extends Fragment implements
         // Создаем ArrayAdapter для использования строкового массива
         // и способа отображения объекта.
 
-        aliasesList = aliases(KeyStoreType.currentType(),
-            ProviderType.currentProviderType());
+        // Пока идет инициализация, список пуст, он обновится
+        // по ее завершении.
+
+        if (MainActivity.isStarted()) {
+            aliasesList = ContainerCatalog.aliases(KeyStoreType.currentType(),
+                ProviderType.currentProviderType());
+        } // if
 
         containerAliasAdapter = new ArrayAdapter<String>(
             page.getContext(), android.R.layout.simple_spinner_item, aliasesList);
@@ -314,6 +314,10 @@ public class ExamplesActivity extends Fragment implements
      */
     private void executeExample(int i) {
 
+        if (!MainActivity.checkStarted()) {
+            return;
+        } // if
+
         String exampleDescription = (String) spExamplesList.getItemAtPosition(i);
         String exampleClassName = exampleClassesToBeExecuted[i];
 
@@ -429,60 +433,6 @@ public class ExamplesActivity extends Fragment implements
 
     }
 
-    /**
-     * Загрузка тех алиасов, которые находятся в хранилище storeType
-     * с алгоритмом, сооветствующим типу providerType.
-     *
-     * @param storeType Тип контейнера.
-     * @param providerType Тип провайдера.
-     */
-    private static List<String> aliases(String storeType,
-        AlgorithmSelector.DefaultProviderType providerType) {
-
-        List<String> aliasesList = new ArrayList<String>();
-
-        try {
-
-            KeyStore keyStore = KeyStore.getInstance(storeType, JCSP.PROVIDER_NAME);
-            keyStore.load(null, null);
-
-            Enumeration<String> aliases = keyStore.aliases();
-
-            // Подбор алиасов.
-            while (aliases.hasMoreElements()) {
-
-                String alias = aliases.nextElement();
-                PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, null);
-
-                String privateKeyAlgorithm = privateKey.getAlgorithm();
-
-                if (providerType.equals(AlgorithmSelector.DefaultProviderType.pt2001) &&
-                    (privateKeyAlgorithm.equalsIgnoreCase(JCP.GOST_EL_DEGREE_NAME) ||
-                    privateKeyAlgorithm.equalsIgnoreCase(JCP.GOST_EL_DH_NAME))) {
-                    aliasesList.add(alias);
-                } // if
-                else if (providerType.equals(AlgorithmSelector.DefaultProviderType.pt2012Short) &&
-                    (privateKeyAlgorithm.equalsIgnoreCase(JCP.GOST_EL_2012_256_NAME) ||
-                    privateKeyAlgorithm.equalsIgnoreCase(JCP.GOST_DH_2012_256_NAME))) {
-                    aliasesList.add(alias);
-                } // else
-                else if (providerType.equals(AlgorithmSelector.DefaultProviderType.pt2012Long) &&
-                    (privateKeyAlgorithm.equalsIgnoreCase(JCP.GOST_EL_2012_512_NAME) ||
-                    privateKeyAlgorithm.equalsIgnoreCase(JCP.GOST_DH_2012_512_NAME))) {
-                    aliasesList.add(alias);
-                } // else
-
-            } // while
-
-        }
-        catch (Exception e) {
-            Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
-        }
-
-        return aliasesList;
-
-    }
-
     /**
      * Обновление списков контейнеров.
      *
@@ -492,9 +442,14 @@ public class ExamplesActivity extends Fragment implements
     @Override
     public void update(Observable observable, Object data) {
 
+        // Вкладка еще не создана или идет инициализация.
+        if (containerAliasAdapter == null || !MainActivity.isStarted()) {
+            return;
+        } // if
+
         // Обновляем список контейнеров.
 
-        aliasesList = aliases(KeyStoreType.currentType(),
+        aliasesList = ContainerCatalog.aliases(KeyStoreType.currentType(),
             ProviderType.currentProviderType());
 
         containerAliasAdapter.clear();
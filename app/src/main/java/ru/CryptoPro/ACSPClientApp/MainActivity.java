@@ -36,7 +36,6 @@ import java.security.Provider;
 import java.security.Security;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Observer;
@@ -44,9 +43,11 @@ import java.util.Set;
 
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IEncryptDecryptData;
+import ru.CryptoPro.ACSPClientApp.util.ContainerInstaller;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.ACSPClientApp.util.ProviderServiceInfo;
 import ru.CryptoPro.ACSPClientApp.util.ProviderType;
+import ru.CryptoPro.ACSPClientApp.util.StartupPipeline;
 import ru.CryptoPro.CAdES.CAdESConfig;
 import ru.CryptoPro.JCPxml.XmlInit;
 import ru.CryptoPro.JCSP.CSPConfig;
@@ -54,9 +55,7 @@ import ru.CryptoPro.JCSP.JCSP;
 import ru.CryptoPro.JCSP.support.BKSTrustStore;
 import ru.CryptoPro.reprov.RevCheck;
 import ru.CryptoPro.ssl.util.cpSSLConfig;
-import ru.cprocsp.ACSP.tools.common.CSPTool;
 import ru.cprocsp.ACSP.tools.common.Constants;
-import ru.cprocsp.ACSP.tools.common.RawResource;
 
 /**
  * Главная activity приложения. Выполнение инициализации CSP,
@@ -75,7 +74,13 @@ public class MainActivity extends FragmentActivity implements
     /**
      * Java-провайдер Java CSP.
      */
-    private static Provider defaultKeyStoreProvider = null;
+    private static volatile Provider defaultKeyStoreProvider = null;
+
+    /**
+     * Этапы запуска, выполняемые в фоне. Создаются один раз
+     * для процесса приложения.
+     */
+    private static StartupPipeline startup = null;
 
     /**
      * Элемент для отображения вкладки.
@@ -103,44 +108,45 @@ public class MainActivity extends FragmentActivity implements
 
         initNavigation();
 
-        // 2. Инициализация провайдеров: CSP и java-провайдеров
-        // (Обязательная часть).
+        // 2. Инициализация CSP (Обязательная часть). Выполняется
+        // в главном потоке.
 
         if (!initCSPProviders()) {
             Log.i(Constants.APP_LOGGER_TAG, "Couldn't initialize CSP.");
             return;
         } // if
 
-        initJavaProviders();
-
-        // 3. Копирование тестовых контейнеров для подписи,
-        // проверки подписи, шифрования и TLS (Примеры и вывод
-        // в лог).
-
         initLogger();
-        installContainers();
 
-        // 4. Инициируем объект для управления выбором типа
+        // 3. Инициируем объект для управления выбором типа
         // контейнера (Настройки).
 
         KeyStoreType.init(this);
 
-        // 5. Инициируем объект для управления выбором типа
+        // 4. Инициируем объект для управления выбором типа
         // провайдера (Настройки).
 
         ProviderType.init(this);
 
-        // 6. Вывод информации о тестовых контейнерах.
+        // 5. Загрузка java-провайдеров, копирование тестовых
+        // контейнеров и вывод информации о них выполняются в
+        // фоне, интерфейс в это время уже отображается.
 
-        logTestContainers();
+        startup();
 
-        // 7. Вывод информации о провайдере и контейнерах
-        // (Пример).
+        // Для логирования: CSPConfig.setNeedLogBioStatistics(true);
 
-        logJCspServices(defaultKeyStoreProvider = new JCSP());
+    }
 
-        // Для логирования: CSPConfig.setNeedLogBioStatistics(true);
+    @Override
+    public void onDestroy() {
 
+        // Activity больше не получает результат запуска.
+        if (startup != null) {
+            startup.setListener(null);
+        } // if
+
+        super.onDestroy();
     }
 
     @Override
@@ -212,6 +218,120 @@ public class MainActivity extends FragmentActivity implements
 
     }
 
+    /************************** Фоновый запуск ******************************/
+
+    /**
+     * Запуск фоновых этапов инициализации (если они еще не
+     * запущены) и подписка на их завершение.
+     *
+     */
+    private void startup() {
+
+        if (startup == null) {
+
+            final Context appContext = getApplicationContext();
+            startup = new StartupPipeline();
+
+            // 1. Загрузка java-провайдеров.
+            startup.addStage("providers", new StartupPipeline.Stage() {
+
+                @Override
+                public void run() throws Exception {
+                    initJavaProviders(appContext);
+                }
+
+            });
+
+            // 2. Копирование тестовых контейнеров для подписи,
+            // проверки подписи, шифрования и TLS.
+            startup.addStage("containers", new StartupPipeline.Stage() {
+
+                @Override
+                public void run() throws Exception {
+                    installContainers(appContext);
+                }
+
+            });
+
+            // 3. Вывод информации о тестовых контейнерах,
+            // провайдере и контейнерах (Пример).
+            startup.addStage("info", new StartupPipeline.Stage() {
+
+                @Override
+                public void run() throws Exception {
+                    logTestContainers(appContext);
+                    logJCspServices(defaultKeyStoreProvider = new JCSP());
+                }
+
+            });
+
+            startup.start();
+
+        } // if
+
+        startup.setListener(new StartupPipeline.Listener() {
+
+            @Override
+            public void onFinished(Map<String, Long> timings, Throwable error) {
+
+                logCallback.log("$$$ Startup $$$");
+
+                long total = 0;
+                for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                    logCallback.log("** " + timing.getKey() + ": " + timing.getValue() + " ms");
+                    total += timing.getValue();
+                } // for
+
+                logCallback.log("** total: " + total + " ms");
+
+                if (error != null) {
+                    logCallback.setStatusFailed();
+                    errorMessage(MainActivity.this, "Couldn't initialize application: " +
+                        error.getMessage());
+                    return;
+                } // if
+
+                // Обновляем вкладки, которые загружают контейнеры.
+                for (Fragment fragment : fragments.keySet()) {
+                    if (fragment instanceof Observer) {
+                        ((Observer) fragment).update(null, null);
+                    } // if
+                } // for
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Проверка успешного завершения фоновой инициализации.
+     *
+     * @return true, если инициализация успешно завершена.
+     */
+    public static boolean isStarted() {
+        return startup != null && startup.isSucceeded();
+    }
+
+    /**
+     * Проверка завершения фоновой инициализации. Если она
+     * еще выполняется, в лог выводится сообщение.
+     *
+     * @return true, если инициализация успешно завершена.
+     */
+    public static boolean checkStarted() {
+
+        if (isStarted()) {
+            return true;
+        } // if
+
+        if (logCallback != null) {
+            logCallback.log("Application is being initialized, please wait.");
+        } // if
+
+        return false;
+    }
+
     /************************ Инициализация провайдера ************************/
 
     /**
@@ -311,8 +431,9 @@ public class MainActivity extends FragmentActivity implements
      * Происходит один раз при инициализации.
      * Возможно только после инициализации в CSPConfig!
      *
+     * @param context Контекст приложения.
      */
-    private void initJavaProviders() {
+    private static void initJavaProviders(Context context) {
 
         // Загрузка Java CSP (хеш, подпись, шифрование, генерация контейнеров).
 
@@ -366,7 +487,7 @@ public class MainActivity extends FragmentActivity implements
         // HTTPS и потребуется авторизация по сертификату. Указываем тип
         // хранилища с доверенным корневым сертификатом, путь к нему и пароль.
 
-        final String trustStorePath = getApplicationInfo().dataDir + File.separator +
+        final String trustStorePath = context.getApplicationInfo().dataDir + File.separator +
             BKSTrustStore.STORAGE_DIRECTORY + File.separator + BKSTrustStore.STORAGE_FILE_TRUST;
 
         final String trustStorePassword = String.valueOf(BKSTrustStore.STORAGE_PASSWORD);
@@ -395,6 +516,13 @@ public class MainActivity extends FragmentActivity implements
         TextView tvOpStatus = (TextView) findViewById(R.id.tvOpStatus);
 
         logCallback = new LogCallback(getResources(), etLog, tvOpStatus);
+        logCallback.setPayloadDirectory(getCacheDir());
+
+        // В release сборке отладочные сообщения не формируются.
+        if (!BuildConfig.DEBUG) {
+            logCallback.setLevel(LogCallback.Level.INFO);
+        } // if
+
         logCallback.clear();
 
     }
@@ -519,7 +647,7 @@ public class MainActivity extends FragmentActivity implements
      *
      * @param provider Провайдер.
      */
-    private void logJCspServices(Provider provider) {
+    private static void logJCspServices(Provider provider) {
         ProviderServiceInfo.logKeyStoreInfo(logCallback, provider);
         ProviderServiceInfo.logServiceInfo(logCallback, provider);
     }
@@ -546,8 +674,9 @@ public class MainActivity extends FragmentActivity implements
     /**
      * Информация о тестовых контейнерах.
      *
+     * @param context Контекст приложения.
      */
-    private void logTestContainers() {
+    private static void logTestContainers(Context context) {
 
         // Список алиасов контейнеров.
         final String[] aliases = {
@@ -569,7 +698,7 @@ public class MainActivity extends FragmentActivity implements
             IEncryptDecryptData.CLIENT_KEY_2012_512_PASSWORD
         };
 
-        final String format = getString(R.string.ContainerAboutTestContainer);
+        final String format = context.getString(R.string.ContainerAboutTestContainer);
         logCallback.log("$$$ About test containers $$$");
 
         for (int i = 0; i < aliases.length; i++) {
@@ -581,10 +710,12 @@ public class MainActivity extends FragmentActivity implements
 
     /**
      * Копирование тестовых контейнеров для подписи, шифрования,
-     * обмена по TLS в папку keys.
+     * обмена по TLS в папку keys. Контейнеры копируются
+     * параллельно, уже установленные контейнеры пропускаются.
      *
+     * @param context Контекст приложения.
      */
-    private void installContainers() {
+    private static void installContainers(Context context) {
 
         // Имена файлов в контейнере.
         final String[] pseudos = {
@@ -618,57 +749,38 @@ public class MainActivity extends FragmentActivity implements
 
         // Копирование контейнеров.
 
-        try {
+        final Map<String, Map<Integer, String>> containerList =
+            new LinkedHashMap<String, Map<Integer, String>>();
 
-            for (int i = 0; i < containers.length; i++) {
+        for (int i = 0; i < containers.length; i++) {
 
-                final Integer[] container = containers[i];
-                final Map<Integer, String> containerFiles = new HashMap<Integer, String>();
-
-                for (int j = 0; j < container.length; j++) {
-                    containerFiles.put(container[j], pseudos[j]);
-                } // for
-
-                installContainer(aliases[i], containerFiles);
+            final Integer[] container = containers[i];
+            final Map<Integer, String> containerFiles = new HashMap<Integer, String>();
 
+            for (int j = 0; j < container.length; j++) {
+                containerFiles.put(container[j], pseudos[j]);
             } // for
 
-        } catch (Exception e) {
-            Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
-        }
+            containerList.put(aliases[i], containerFiles);
 
-    }
+        } // for
 
-    /**
-     * Копирование файлов контейнера в папку согласно названию
-     * контейнера.
-     *
-     * @param containerName Имя папки контейнера.
-     * @param containerFiles Список и ссылки на файлы контейнера.
-     * @throws Exception
-     */
-    private void installContainer(String containerName,
-        Map<Integer, String> containerFiles) throws Exception {
+        try {
 
-        String resourceDirectory = userName2Dir(this) + File.separator + containerName;
-        Log.i(Constants.APP_LOGGER_TAG, "Install container: " +
-            containerName + " to resource directory: " + resourceDirectory);
+            ContainerInstaller installer = new ContainerInstaller(context,
+                userName2Dir(context));
 
-        CSPTool cspTool = new CSPTool(this);
+            installer.install(containerList,
+                Runtime.getRuntime().availableProcessors());
 
-        // Копируем ресурсы  в папку keys.
-        RawResource resource = cspTool.createRawResource(
-            Constants.CSP_SOURCE_TYPE_CONTAINER, resourceDirectory);
+            Log.i(Constants.APP_LOGGER_TAG, "Containers copied: " +
+                installer.getCopiedCount() + ", already installed: " +
+                installer.getSkippedCount());
 
-        Iterator<Integer> iterator = containerFiles.keySet().iterator();
+        } catch (Exception e) {
+            Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
+        }
 
-        while (iterator.hasNext()) {
-            Integer index = iterator.next();
-            String fileName = containerFiles.get(index);
-            if (!resource.copy(index, fileName)) {
-                throw new Exception("Couldn't copy " + fileName);
-            } // if
-        } // while
     }
 
     /**
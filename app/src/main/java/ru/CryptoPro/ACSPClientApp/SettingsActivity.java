@@ -28,6 +28,7 @@ import java.util.List;
 import ru.CryptoPro.ACSPClientApp.R;
 import ru.cprocsp.ACSP.tools.common.CSPTool;
 import ru.cprocsp.ACSP.tools.common.RawResource;
+import ru.CryptoPro.ACSPClientApp.util.ContainerCatalog;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.ACSPClientApp.util.ProviderType;
 
@@ -261,6 +262,10 @@ public class SettingsActivity extends Fragment
 
                     } // for
 
+                    // Список контейнеров сверяется с папкой при
+                    // следующем обращении.
+                    ContainerCatalog.invalidate();
+
                 } catch (Exception e) {
                     Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
                 }
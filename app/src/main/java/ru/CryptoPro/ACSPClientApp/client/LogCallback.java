@@ -20,16 +20,169 @@ import ru.CryptoPro.ACSPClientApp.R;
 import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.JCP.tools.Encoder;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Служебный класс LogCallback предназначен
  * для записи в поле сообщений и установки
  * статуса.
  *
+ * Сообщения не выводятся в поле по одному: они
+ * накапливаются и выводятся пачкой не чаще одного раза
+ * за кадр. Поле хранит не более заданного количества
+ * последних строк. Большие двоичные данные заменяются
+ * кратким описанием, а полностью записываются в файл в
+ * отдельном потоке. Хранятся только последние
+ * MAX_PAYLOAD_FILES файлов, а при очистке поля файлы
+ * удаляются.
+ *
  * 30/05/2013
  *
  */
 public class LogCallback {
 
+    /**
+     * Уровень сообщений. Сообщения уровня ниже заданного
+     * не выводятся и не формируются. Сообщения уровня
+     * ERROR без поля для записи выводятся в системный лог
+     * как ошибки.
+     */
+    public static enum Level {DEBUG, INFO, ERROR}
+
+    /**
+     * Сообщение, формируемое только при выводе.
+     *
+     */
+    public interface LazyMessage {
+
+        /**
+         * Формирование сообщения.
+         *
+         * @return сообщение.
+         */
+        String build();
+
+    }
+
+    /**
+     * Интервал вывода накопленных сообщений (мс).
+     */
+    public static final long FLUSH_INTERVAL = 16;
+
+    /**
+     * Количество последних строк в поле по умолчанию.
+     */
+    public static final int DEFAULT_MAX_LINES = 500;
+
+    /**
+     * Размер данных (байт), начиная с которого они
+     * заменяются кратким описанием.
+     */
+    public static final int MAX_INLINE_PAYLOAD = 1024;
+
+    /**
+     * Количество хранимых файлов с данными. Более старые
+     * файлы удаляются.
+     */
+    public static final int MAX_PAYLOAD_FILES = 16;
+
+    /**
+     * Количество символов данных в кратком описании.
+     */
+    private static final int PAYLOAD_PREVIEW_LENGTH = 64;
+
+    /**
+     * Префикс имени файла с данными.
+     */
+    private static final String PAYLOAD_PREFIX = "payload-";
+
+    /**
+     * Поток записи и удаления файлов с данными. Задачи
+     * выполняются по очереди, поэтому удаление при очистке
+     * поля выполняется после уже начатой записи.
+     */
+    private static final ExecutorService payloadWriter =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "log-payload");
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+
+    /**
+     * Номер очередного файла с данными.
+     */
+    private static final AtomicInteger payloadNumber = new AtomicInteger(0);
+
+    /**
+     * Последние строки лога.
+     */
+    private final ArrayDeque<String> recentLines = new ArrayDeque<String>();
+
+    /**
+     * Сообщения, ожидающие вывода в поле.
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * Длины строк, ожидающих вывода в поле (вместе с
+     * переводом строки перед каждой).
+     */
+    private final ArrayDeque<Integer> pendingLengths = new ArrayDeque<Integer>();
+
+    /**
+     * Длины строк в поле. Используется только в потоке
+     * интерфейса.
+     */
+    private final ArrayDeque<Integer> shownLengths = new ArrayDeque<Integer>();
+
+    /**
+     * Признак запланированного вывода.
+     */
+    private boolean flushScheduled = false;
+
+    /**
+     * Количество последних строк в поле.
+     */
+    private volatile int maxLines = DEFAULT_MAX_LINES;
+
+    /**
+     * Папка для записи больших данных.
+     */
+    private volatile File payloadDirectory = null;
+
+    /**
+     * Минимальный уровень выводимых сообщений. В release
+     * сборке задается INFO, см. MainActivity.
+     */
+    private volatile Level level = Level.DEBUG;
+
+    /**
+     * Вывод накопленных сообщений в поле.
+     */
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            flush();
+        }
+    };
+
     /**
      * Поле для записи.
      */
@@ -81,35 +234,334 @@ public class LogCallback {
         return logger;
     }
 
+    /**
+     * Задание количества последних строк, хранимых в поле.
+     *
+     * @param lines Количество строк.
+     */
+    public void setMaxLines(int lines) {
+
+        if (lines <= 0) {
+            throw new IllegalArgumentException("Invalid line count: " + lines);
+        } // if
+
+        maxLines = lines;
+    }
+
+    /**
+     * Задание папки для записи больших данных. Если папка
+     * не задана, данные только кратко описываются в логе.
+     *
+     * @param directory Папка (обычно кеш приложения).
+     */
+    public void setPayloadDirectory(File directory) {
+        payloadDirectory = directory;
+    }
+
+    /**
+     * Задание минимального уровня выводимых сообщений.
+     *
+     * @param minLevel Уровень.
+     */
+    public void setLevel(Level minLevel) {
+        level = minLevel;
+    }
+
+    /**
+     * Получение минимального уровня выводимых сообщений.
+     *
+     * @return уровень.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Проверка, выводятся ли сообщения заданного уровня.
+     *
+     * @param messageLevel Уровень сообщения.
+     * @return true, если сообщения выводятся.
+     */
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0;
+    }
+
+    /**
+     * Получение последних строк лога.
+     *
+     * @return список строк.
+     */
+    public List<String> getRecentLines() {
+        synchronized (pending) {
+            return new ArrayList<String>(recentLines);
+        }
+    }
+
+    /**
+     * Запись сообщения уровня INFO в поле.
+     *
+     * @param message Сообщение.
+     */
+    public void log(String message) {
+        log(Level.INFO, message);
+    }
+
     /**
      * Запись сообщения в поле.
      *
+     * @param messageLevel Уровень сообщения.
+     * @param message Сообщение.
+     */
+    public void log(Level messageLevel, String message) {
+
+        if (isEnabled(messageLevel)) {
+            write(messageLevel, message);
+        } // if
+
+    }
+
+    /**
+     * Запись сообщения в поле. Сообщение формируется, только
+     * если сообщения этого уровня выводятся.
+     *
+     * @param messageLevel Уровень сообщения.
+     * @param message Формируемое сообщение.
+     */
+    public void log(Level messageLevel, LazyMessage message) {
+
+        if (isEnabled(messageLevel)) {
+            write(messageLevel, message.build());
+        } // if
+
+    }
+
+    /**
+     * Вывод сообщения.
+     *
+     * @param messageLevel Уровень сообщения.
      * @param message Сообщение.
      */
-    public void log(final String message) {
+    private void write(Level messageLevel, String message) {
 
         if (logger != null) {
 
-            logger.post(new Runnable() {
-                public void run() {
-                    logger.append("\n" + message);
-                }
-            });
+            boolean schedule = false;
+
+            synchronized (pending) {
+
+                recentLines.addLast(message);
+                while (recentLines.size() > maxLines) {
+                    recentLines.removeFirst();
+                } // while
+
+                pending.append('\n').append(message);
+                pendingLengths.addLast(message.length() + 1);
+
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    schedule = true;
+                } // if
+
+            }
+
+            if (schedule) {
+                logger.postDelayed(flushTask, FLUSH_INTERVAL);
+            } // if
 
         } // if
+        else if (messageLevel == Level.ERROR) {
+            Log.e(Constants.APP_LOGGER_TAG, message);
+        } // else
         else {
             Log.i(Constants.APP_LOGGER_TAG, message);
         } // else
     }
 
-    /* Запись сообщения в поле.
+    /* Запись сообщения уровня INFO в поле.
      *
      * @param message Сообщение.
      * @param base64 True, если нужно конвертировать
      * в base64.
      */
     public void log(byte[] message, boolean base64) {
-        log(base64 ? toBase64(message) : new String(message));
+        log(Level.INFO, message, base64);
+    }
+
+    /* Запись сообщения в поле. Данные больше
+     * MAX_INLINE_PAYLOAD заменяются кратким описанием
+     * и записываются в файл в папке, заданной с помощью
+     * setPayloadDirectory. Если сообщения этого уровня не
+     * выводятся, данные не конвертируются.
+     *
+     * @param messageLevel Уровень сообщения.
+     * @param message Сообщение.
+     * @param base64 True, если нужно конвертировать
+     * в base64.
+     */
+    public void log(Level messageLevel, byte[] message, boolean base64) {
+
+        if (!isEnabled(messageLevel)) {
+            return;
+        } // if
+
+        if (message.length <= MAX_INLINE_PAYLOAD) {
+            write(messageLevel, base64 ? toBase64(message) : new String(message));
+            return;
+        } // if
+
+        final String text = base64 ? toBase64(message) : null;
+        final String preview = base64
+            ? text.substring(0, Math.min(PAYLOAD_PREVIEW_LENGTH, text.length()))
+            : new String(message, 0, PAYLOAD_PREVIEW_LENGTH);
+
+        final StringBuilder summary = new StringBuilder();
+        summary.append("[").append(message.length).append(" byte(s)")
+            .append(base64 ? ", base64" : "").append("] ")
+            .append(preview).append("...");
+
+        // Исходный массив копируется, так как он может
+        // измениться до записи.
+        final File file = writePayload(base64 ? text.getBytes() : message.clone(),
+            base64 ? "b64" : "bin");
+
+        if (file != null) {
+            summary.append(" (saving to ").append(file.getAbsolutePath()).append(")");
+        } // if
+
+        write(messageLevel, summary.toString());
+    }
+
+    /**
+     * Запись данных в файл в папке для больших данных. Файл
+     * записывается в отдельном потоке, после чего лишние
+     * старые файлы удаляются.
+     *
+     * @param data Данные. Не должны изменяться после вызова.
+     * @param extension Расширение файла.
+     * @return файл или null, если папка не задана.
+     */
+    private File writePayload(final byte[] data, String extension) {
+
+        final File directory = payloadDirectory;
+        if (directory == null) {
+            return null;
+        } // if
+
+        final File file = new File(directory, PAYLOAD_PREFIX +
+            System.currentTimeMillis() + "-" + payloadNumber.incrementAndGet() +
+            "." + extension);
+
+        payloadWriter.execute(new Runnable() {
+            public void run() {
+
+                OutputStream out = null;
+
+                try {
+                    out = new FileOutputStream(file);
+                    out.write(data);
+                } catch (IOException e) {
+                    Log.e(Constants.APP_LOGGER_TAG, "Couldn't write payload", e);
+                    file.delete();
+                } finally {
+
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    } // if
+
+                }
+
+                deletePayloads(directory, MAX_PAYLOAD_FILES);
+            }
+        });
+
+        return file;
+    }
+
+    /**
+     * Удаление старых файлов с данными.
+     *
+     * @param directory Папка для больших данных.
+     * @param keep Количество оставляемых последних файлов.
+     */
+    private static void deletePayloads(File directory, int keep) {
+
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PAYLOAD_PREFIX);
+            }
+        });
+
+        if (files == null || files.length <= keep) {
+            return;
+        } // if
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+
+                final int result = Long.compare(a.lastModified(), b.lastModified());
+                return result != 0 ? result : a.getName().compareTo(b.getName());
+
+            }
+        });
+
+        for (int i = 0; i < files.length - keep; i++) {
+            files[i].delete();
+        } // for
+
+    }
+
+    /**
+     * Вывод накопленных сообщений в поле (в потоке
+     * интерфейса). Пачка добавляется в конец поля, а если
+     * поле превысит заданное количество строк, то лишние
+     * строки удаляются из его начала. Поле целиком не
+     * перезаписывается.
+     *
+     */
+    private void flush() {
+
+        final int limit = maxLines;
+
+        final String batch;
+        int skip = 0;
+
+        synchronized (pending) {
+
+            flushScheduled = false;
+
+            // Строки пачки, которые все равно будут удалены,
+            // в поле не выводятся.
+            while (pendingLengths.size() > limit) {
+                skip += pendingLengths.removeFirst();
+            } // while
+
+            shownLengths.addAll(pendingLengths);
+            batch = pending.substring(skip);
+
+            pending.setLength(0);
+            pendingLengths.clear();
+
+        }
+
+        if (batch.length() == 0) {
+            return;
+        } // if
+
+        logger.append(batch);
+
+        int overflow = 0;
+        while (shownLengths.size() > limit) {
+            overflow += shownLengths.removeFirst();
+        } // while
+
+        if (overflow > 0) {
+            logger.getEditableText().delete(0, overflow);
+        } // if
+
     }
 
     /**
@@ -124,14 +576,31 @@ public class LogCallback {
     }
 
     /**
-     * Очистка поля.
+     * Очистка поля и удаление файлов с данными.
      */
     public void clear() {
 
+        final File directory = payloadDirectory;
+
+        if (directory != null) {
+            payloadWriter.execute(new Runnable() {
+                public void run() {
+                    deletePayloads(directory, 0);
+                }
+            });
+        } // if
+
         if (logger != null) {
 
+            synchronized (pending) {
+                recentLines.clear();
+                pending.setLength(0);
+                pendingLengths.clear();
+            }
+
             logger.post(new Runnable() {
                 public void run() {
+                    shownLengths.clear();
                     logger.setText("");
                 }
             });
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.BatchSigner;
+import ru.CryptoPro.JCSP.JCSP;
+
+import java.security.Signature;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Класс BatchSignExample реализует пример подписи потока
+ * сообщений с помощью {@link BatchSigner} сначала в одном
+ * потоке, затем в пуле потоков. Каждая подпись сразу
+ * проверяется на сертификате подписанта. Пример
+ * выполняется в пуле задач.
+ *
+ * 18/10/2026
+ *
+ */
+public class BatchSignExample extends SignExample {
+
+    /**
+     * Количество подписываемых сообщений.
+     */
+    private static final int MESSAGE_COUNT = 256;
+
+    /**
+     * Конструктор.
+     *
+     * @param adapter Настройки примера.
+     */
+    public BatchSignExample(ContainerAdapter adapter) {
+        super(adapter);
+    }
+
+    @Override
+    public void getResult(LogCallback callback) throws Exception {
+        getResult(callback, new BatchSignThread());
+    }
+
+    /**
+     * Класс BatchSignThread реализует подпись сообщений в
+     * отдельном потоке.
+     *
+     */
+    private class BatchSignThread implements IThreadExecuted {
+
+        @Override
+        public void execute(LogCallback callback) {
+
+            try {
+
+                boolean valid = signAndVerify(callback, BatchSigner.Mode.SEQUENTIAL);
+                valid &= signAndVerify(callback, BatchSigner.Mode.PARALLEL);
+
+                if (valid) {
+                    callback.setStatusOK();
+                } // if
+                else {
+                    callback.setStatusFailed();
+                } // else
+
+            } catch (Exception e) {
+                callback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Operation exception", e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Подпись сообщений в заданном режиме и проверка
+     * полученных подписей.
+     *
+     * @param callback Логгер.
+     * @param mode Режим выполнения.
+     * @return true, если все сообщения подписаны и подписи
+     * верны.
+     * @throws Exception
+     */
+    private boolean signAndVerify(final LogCallback callback,
+        BatchSigner.Mode mode) throws Exception {
+
+        // Объект проверки используется только в вызывающем
+        // потоке, поэтому берется не из пула: в одном потоке
+        // с ним может подписывать BatchSigner.
+
+        final Signature verifier = Signature.getInstance(
+            algorithmSelector.getSignatureAlgorithmName(), JCSP.PROVIDER_NAME);
+
+        final int[] invalid = {0};
+
+        final long count = signBatch(callback, new Iterator<byte[]>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < MESSAGE_COUNT;
+            }
+
+            @Override
+            public byte[] next() {
+
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                } // if
+
+                return message(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        }, mode, new BatchSigner.ResultListener() {
+
+            @Override
+            public void onResult(BatchSigner.Result result) {
+
+                if (!result.isSuccess()) {
+                    invalid[0]++;
+                    Log.e(Constants.APP_LOGGER_TAG, "Signing error",
+                        result.getError());
+                    return;
+                } // if
+
+                try {
+
+                    verifier.initVerify(getCertificate());
+                    verifier.update(message((int) result.getIndex()));
+
+                    if (!verifier.verify(result.getSignature())) {
+                        invalid[0]++;
+                    } // if
+
+                } catch (Exception e) {
+                    invalid[0]++;
+                    Log.e(Constants.APP_LOGGER_TAG, "Verification error", e);
+                }
+
+            }
+
+        });
+
+        if (invalid[0] > 0) {
+            callback.log(LogCallback.Level.ERROR, "Failed or invalid signatures: " +
+                invalid[0] + " (mode: " + mode + ")");
+        } // if
+        else {
+            callback.log("All signatures are valid (mode: " + mode + ").");
+        } // else
+
+        return count == MESSAGE_COUNT && invalid[0] == 0;
+    }
+
+    /**
+     * Формирование сообщения по номеру.
+     *
+     * @param index Номер сообщения.
+     * @return сообщение.
+     */
+    private static byte[] message(int index) {
+        return (Constants.MESSAGE + " #" + index).getBytes();
+    }
+
+}
@@ -16,6 +16,7 @@ import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ISignData;
+import ru.CryptoPro.ACSPClientApp.util.CryptoPrimitivePool;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.JCP.ASN.CertificateExtensions.GeneralName;
 import ru.CryptoPro.JCP.ASN.CertificateExtensions.GeneralNames;
@@ -25,16 +26,25 @@ import ru.CryptoPro.JCP.params.OID;
 import ru.CryptoPro.JCP.tools.Array;
 import ru.CryptoPro.JCSP.JCSP;
 
-import java.io.ByteArrayInputStream;
-import java.security.DigestInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Класс CMSSignatureExample реализует пример
@@ -61,6 +71,50 @@ public class CMSSignExample extends ISignData {
      */
     private int validSignatureCount = 0;
 
+    /**
+     * Количество проверок подписи, пропущенных благодаря
+     * сопоставлению подписантов с сертификатами, при
+     * последней проверке CMS.
+     */
+    private long skippedVerificationCount = 0;
+
+    /**
+     * Количество подписантов, для которых сертификат не
+     * найден по идентификатору, при последней проверке CMS.
+     */
+    private long unmatchedSignerCount = 0;
+
+    /**
+     * Размер блока чтения данных при потоковой подписи.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Заголовок SEQUENCE с неопределенной длиной (BER).
+     */
+    private static final byte[] BER_SEQUENCE_INDEFINITE = {0x30, (byte) 0x80};
+
+    /**
+     * Заголовок составного [0] с неопределенной длиной (BER).
+     */
+    private static final byte[] BER_CONTEXT_0_INDEFINITE = {(byte) 0xA0, (byte) 0x80};
+
+    /**
+     * Заголовок составной OCTET STRING с неопределенной
+     * длиной (BER).
+     */
+    static final byte[] BER_OCTET_STRING_INDEFINITE = {0x24, (byte) 0x80};
+
+    /**
+     * Тег примитивной OCTET STRING.
+     */
+    private static final int BER_OCTET_STRING = 0x04;
+
+    /**
+     * Маркер конца содержимого с неопределенной длиной.
+     */
+    static final byte[] BER_END_OF_CONTENTS = {0x00, 0x00};
+
     /**
      * Конструктор.
      *
@@ -101,13 +155,45 @@ public class CMSSignExample extends ISignData {
             new PrivateKey[] {getPrivateKey()}, new Certificate[] {getCertificate()},
                 false, false);
 
-        callback.log("--- SIGNATURE BEGIN ---");
-        callback.log(signature, true);
-        callback.log("--- SIGNATURE END ---");
+        // Подпись конвертируется в base64 только при выводе
+        // отладочных сообщений.
+        callback.log(LogCallback.Level.DEBUG, "--- SIGNATURE BEGIN ---");
+        callback.log(LogCallback.Level.DEBUG, signature, true);
+        callback.log(LogCallback.Level.DEBUG, "--- SIGNATURE END ---");
 
         // Проверяем подпись.
         verify(callback, signature, new Certificate[]{getCertificate()}, null);
 
+        callback.log("Compute detached signature for message '" +
+            Constants.MESSAGE + "' :");
+
+        // Формируем отсоединенную подпись с двумя подписантами
+        // (на одном ключе), подписи которых вычисляются
+        // параллельно, и проверяем ее на данных из файла.
+        byte[] detachedSignature = create(callback, Constants.MESSAGE.getBytes(),
+            false, new PrivateKey[] {getPrivateKey(), getPrivateKey()},
+            new Certificate[] {getCertificate(), getCertificate()}, true,
+            false, true);
+
+        File content = File.createTempFile("content", ".txt");
+
+        try {
+
+            OutputStream out = new FileOutputStream(content);
+
+            try {
+                out.write(Constants.MESSAGE.getBytes());
+            } finally {
+                out.close();
+            }
+
+            verifyDetached(callback, detachedSignature,
+                new Certificate[]{getCertificate()}, content);
+
+        } finally {
+            content.delete();
+        }
+
         callback.setStatusOK();
     }
 
@@ -129,6 +215,36 @@ public class CMSSignExample extends ISignData {
     byte[] create(LogCallback callback, byte[] data,
         boolean isExternalDigest, PrivateKey[] keys, Certificate[]
         certs, boolean detached, boolean addSignCertV2) throws Exception {
+        return create(callback, data, isExternalDigest, keys, certs,
+            detached, addSignCertV2, false);
+    }
+
+    /**
+     * Создание CMS подписи на хэш данных с возможностью
+     * параллельного формирования подписей подписантов.
+     * В параллельном режиме информация о каждом подписанте
+     * формируется и подписывается в отдельной задаче
+     * ограниченного пула потоков и записывается на свое
+     * место, поэтому порядок подписантов совпадает с
+     * порядком ключей.
+     *
+     * @param data Подписываемые данные.
+     * @param isExternalDigest True, если вместо данных
+     * передается хэш данных.
+     * @param keys Список ключей подписантов.
+     * @param certs Список сертификатов подписи подписантов.
+     * @param detached True, если подпись отсоединенная.
+     * @param addSignCertV2 Добавление аттрибута signingCertificateV2
+     * для получения подписи формата CAdES-BES.
+     * @param parallel True, если подписи подписантов
+     * формируются параллельно.
+     * @return ЭЦП CMS.
+     * @throws Exception
+     */
+    byte[] create(LogCallback callback, byte[] data,
+        boolean isExternalDigest, PrivateKey[] keys, Certificate[]
+        certs, boolean detached, boolean addSignCertV2, boolean parallel)
+        throws Exception {
 
         callback.log("*** Create CMS signature" +
             (needSignAttributes ? " on signed attributes" : "") +
@@ -191,10 +307,20 @@ public class CMSSignExample extends ISignData {
         } // for
 
 
-        final Signature signature = Signature.getInstance(
-            algorithmSelector.getSignatureAlgorithmName());
+        // Хеш данных для аттрибута message-digest одинаков
+        // для всех подписантов, поэтому вычисляется однажды.
+        byte[] messageDigest = null;
 
-        byte[] sign;
+        if (needSignAttributes) {
+
+            callback.log("Signing data is digest: " + isExternalDigest);
+
+            // Если вместо данных у нас хеш, то сразу его передаем,
+            // ничего не вычисляем.
+            messageDigest = isExternalDigest ? data : digest(data,
+                algorithmSelector.getDigestAlgorithmName());
+
+        } // if
 
         // Подписанты (signerInfos).
 
@@ -202,198 +328,481 @@ public class CMSSignExample extends ISignData {
 
         final int nSigners = keys.length;
         cms.signerInfos = new SignerInfos(nSigners);
-        for (int i = 0; i < cms.signerInfos.elements.length; i++) {
 
-            callback.log("** Create signer info $ " + i + " **");
+        if (parallel && nSigners > 1) {
+            signParallel(callback, cms.signerInfos.elements, data,
+                keys, certs, messageDigest, addSignCertV2);
+        } // if
+        else {
+
+            for (int i = 0; i < cms.signerInfos.elements.length; i++) {
 
-            cms.signerInfos.elements[i] = new SignerInfo();
-            cms.signerInfos.elements[i].version = new CMSVersion(1);
-            cms.signerInfos.elements[i].sid = new SignerIdentifier();
+                callback.log(LogCallback.Level.DEBUG, "** Create signer info $ " + i + " **");
 
-            callback.log("Add certificate info.");
+                cms.signerInfos.elements[i] = signSignerInfo(callback,
+                    keys[i], (X509Certificate) certs[i], data,
+                    messageDigest, addSignCertV2);
 
-            final byte[] encodedName = ((X509Certificate) certs[i])
-                .getIssuerX500Principal().getEncoded();
+            } // for
 
-            final Asn1BerDecodeBuffer nameBuf =
-                new Asn1BerDecodeBuffer(encodedName);
+        } // else
 
-            final Name name = new Name();
-            name.decode(nameBuf);
+        // CMS подпись.
 
-            final CertificateSerialNumber num = new CertificateSerialNumber(
-                ((X509Certificate) certs[i]).getSerialNumber());
-            cms.signerInfos.elements[i].sid.set_issuerAndSerialNumber(
-                new IssuerAndSerialNumber(name, num));
+        callback.log("Produce CMS signature.");
 
-            cms.signerInfos.elements[i].digestAlgorithm =
-                new DigestAlgorithmIdentifier(
-                    new OID(algorithmSelector.getDigestAlgorithmOid()).value);
+        final Asn1BerEncodeBuffer asnBuf = new Asn1BerEncodeBuffer();
+        all.encode(asnBuf, true);
+        return asnBuf.getMsgCopy();
+
+    }
+
+    /**
+     * Потоковое создание CMS подписи. Данные читаются из
+     * входного потока блоками и хешируются по мере чтения,
+     * подпись записывается в выходной поток в кодировке BER
+     * с неопределенной длиной, поэтому расход памяти не
+     * зависит от размера данных. В совмещенной подписи
+     * данные записываются в виде составной octet string.
+     * Потоки не закрываются.
+     *
+     * @param callback Логгер.
+     * @param data Поток подписываемых данных.
+     * @param out Поток для записи подписи.
+     * @param keys Список ключей подписантов.
+     * @param certs Список сертификатов подписи подписантов.
+     * @param detached True, если подпись отсоединенная.
+     * @param addSignCertV2 Добавление аттрибута signingCertificateV2
+     * для получения подписи формата CAdES-BES.
+     * @return количество подписанных байт.
+     * @throws Exception
+     */
+    long createStream(LogCallback callback, InputStream data,
+        OutputStream out, PrivateKey[] keys, Certificate[] certs,
+        boolean detached, boolean addSignCertV2) throws Exception {
 
-            cms.signerInfos.elements[i].digestAlgorithm.parameters = new Asn1Null();
+        callback.log("*** Create streaming CMS signature" +
+            (needSignAttributes ? " on signed attributes" : "") +
+            " ***");
 
-            cms.signerInfos.elements[i].signatureAlgorithm =
-                new SignatureAlgorithmIdentifier(new OID(
-                    getKeySignatureOidByPrivateKeyAlgorithm(getPrivateKey().getAlgorithm())).value);
+        final DigestAlgorithmIdentifiers digestAlgorithms =
+            new DigestAlgorithmIdentifiers(1);
+        final DigestAlgorithmIdentifier a = new DigestAlgorithmIdentifier(
+            new OID(algorithmSelector.getDigestAlgorithmOid()).value);
+        a.parameters = new Asn1Null();
+        digestAlgorithms.elements[0] = a;
 
-            cms.signerInfos.elements[i].signatureAlgorithm.parameters = new Asn1Null();
+        // Хешируем данные для аттрибута message-digest или,
+        // если подпись без аттрибутов, передаем данные сразу
+        // объектам подписи всех подписантов.
 
-            byte[] data2hash;
+        MessageDigest messageDigest = null;
+        Signature[] signatures = null;
+
+        if (needSignAttributes) {
+            messageDigest = CryptoPrimitivePool.getMessageDigest(
+                algorithmSelector.getDigestAlgorithmName(), null);
+        } // if
+        else {
+
+            signatures = new Signature[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                signatures[i] = Signature.getInstance(
+                    algorithmSelector.getSignatureAlgorithmName());
+                signatures[i].initSign(keys[i]);
+            } // for
+
+        } // else
+
+        callback.log("Write CMS header.");
+
+        // ContentInfo ::= SEQUENCE { contentType, [0] EXPLICIT content }
+        out.write(BER_SEQUENCE_INDEFINITE);
+        out.write(encode(new Asn1ObjectIdentifier(
+            new OID(STR_CMS_OID_SIGNED).value)));
+        out.write(BER_CONTEXT_0_INDEFINITE);
+
+        // SignedData ::= SEQUENCE { version, digestAlgorithms,
+        // encapContentInfo, [0] certificates, signerInfos }
+        out.write(BER_SEQUENCE_INDEFINITE);
+        out.write(encode(new CMSVersion(1)));
+        out.write(encode(digestAlgorithms));
+
+        // EncapsulatedContentInfo ::= SEQUENCE { eContentType,
+        // [0] EXPLICIT eContent OCTET STRING OPTIONAL }
+        out.write(BER_SEQUENCE_INDEFINITE);
+        out.write(encode(new Asn1ObjectIdentifier(
+            new OID(STR_CMS_OID_DATA).value)));
+
+        if (!detached) {
+            out.write(BER_CONTEXT_0_INDEFINITE);
+            out.write(BER_OCTET_STRING_INDEFINITE);
+        } // if
+
+        callback.log("Process content.");
+
+        final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        long processed = 0;
+        int read;
+
+        while ((read = data.read(buffer)) != -1) {
+
+            if (read == 0) {
+                continue;
+            } // if
+
+            if (messageDigest != null) {
+                messageDigest.update(buffer, 0, read);
+            } // if
+            else {
+                for (Signature signature : signatures) {
+                    signature.update(buffer, 0, read);
+                } // for
+            } // else
+
+            if (!detached) {
+                writeOctetString(out, buffer, read);
+            } // if
+
+            processed += read;
+
+        } // while
+
+        if (!detached) {
+            out.write(BER_END_OF_CONTENTS); // octet string
+            out.write(BER_END_OF_CONTENTS); // [0] eContent
+        } // if
+
+        out.write(BER_END_OF_CONTENTS); // encapContentInfo
+
+        callback.log("Content processed: " + processed + " byte(s).");
+
+        // Сертификаты ([0] IMPLICIT CertificateSet).
+
+        callback.log("Enumerate certificates.");
+
+        out.write(BER_CONTEXT_0_INDEFINITE);
+        for (Certificate cert : certs) {
+            out.write(cert.getEncoded());
+        } // for
+        out.write(BER_END_OF_CONTENTS);
+
+        // Подписанты (signerInfos).
+
+        callback.log("Prepare signature infos.");
+
+        final byte[] digestValue = messageDigest != null
+            ? messageDigest.digest() : null;
+
+        final Signature signature = needSignAttributes
+            ? CryptoPrimitivePool.getSignature(
+                algorithmSelector.getSignatureAlgorithmName(), null)
+            : null;
+
+        final SignerInfos signerInfos = new SignerInfos(keys.length);
+        for (int i = 0; i < signerInfos.elements.length; i++) {
+
+            callback.log(LogCallback.Level.DEBUG, "** Create signer info $ " + i + " **");
+
+            signerInfos.elements[i] = buildSignerInfo(callback, keys[i],
+                (X509Certificate) certs[i], digestValue, addSignCertV2);
+
+            final byte[] sign;
 
             if (needSignAttributes) {
+                signature.initSign(keys[i]);
+                signature.update(encode(signerInfos.elements[i].signedAttrs));
+                sign = signature.sign();
+            } // if
+            else {
+                sign = signatures[i].sign();
+            } // else
+
+            signerInfos.elements[i].signature = new SignatureValue(sign);
 
-                callback.log("Need to calculate digest on signed attributes.");
+        } // for
 
-                final int kMax = addSignCertV2 ? 4 : 3;
-                cms.signerInfos.elements[i].signedAttrs = new SignedAttributes(kMax);
+        out.write(encode(signerInfos));
 
-                callback.log("Count of signed attributes: " + kMax);
+        out.write(BER_END_OF_CONTENTS); // SignedData
+        out.write(BER_END_OF_CONTENTS); // [0] content
+        out.write(BER_END_OF_CONTENTS); // ContentInfo
 
-                // content-type
+        out.flush();
 
-                callback.log("Add content-type.");
+        callback.log("Streaming CMS signature produced.");
+        return processed;
 
-                int k = 0;
-                cms.signerInfos.elements[i].signedAttrs.elements[k] =
-                    new Attribute(new OID(STR_CMS_OID_CONT_TYP_ATTR).value,
-                        new Attribute_values(1));
+    }
 
-                final Asn1Type cont_type = new Asn1ObjectIdentifier(
-                    new OID(STR_CMS_OID_DATA).value);
+    /**
+     * Параллельное формирование подписей подписантов. Размер
+     * пула ограничен количеством подписантов и процессоров.
+     * Результат i-го подписанта записывается в i-й элемент
+     * массива.
+     *
+     * @param callback Логгер.
+     * @param infos Массив для записи информации о подписантах.
+     * @param data Подписываемые данные.
+     * @param keys Список ключей подписантов.
+     * @param certs Список сертификатов подписи подписантов.
+     * @param messageDigest Хеш данных для аттрибута
+     * message-digest.
+     * @param addSignCertV2 Добавление аттрибута signingCertificateV2.
+     * @throws Exception
+     */
+    private void signParallel(final LogCallback callback,
+        final SignerInfo[] infos, final byte[] data, final PrivateKey[] keys,
+        final Certificate[] certs, final byte[] messageDigest,
+        final boolean addSignCertV2) throws Exception {
 
-                cms.signerInfos.elements[i].signedAttrs
-                    .elements[k].values.elements[0] = cont_type;
+        final int threads = Math.min(infos.length,
+            Runtime.getRuntime().availableProcessors());
 
-                // signing-time
+        callback.log("Sign " + infos.length + " signer infos in " +
+            threads + " thread(s).");
 
-                callback.log("Add signing-time.");
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-                k += 1;
-                cms.signerInfos.elements[i].signedAttrs.elements[k] =
-                    new Attribute(new OID(STR_CMS_OID_SIGN_TYM_ATTR).value,
-                        new Attribute_values(1));
+        try {
 
-                final Time time = new Time();
-                final Asn1UTCTime UTCTime = new Asn1UTCTime();
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(infos.length);
 
-                // Текущая дата календаря.
-                UTCTime.setTime(Calendar.getInstance());
-                time.set_utcTime(UTCTime);
+            for (int i = 0; i < infos.length; i++) {
 
-                cms.signerInfos.elements[i].signedAttrs
-                    .elements[k].values.elements[0] = time.getElement();
+                final int index = i;
+                tasks.add(new Callable<Void>() {
 
-                // message-digest
+                    @Override
+                    public Void call() throws Exception {
 
-                callback.log("Add message-digest.");
+                        callback.log(LogCallback.Level.DEBUG,
+                            "** Create signer info $ " + index + " **");
 
-                k += 1;
-                cms.signerInfos.elements[i].signedAttrs.elements[k] =
-                    new Attribute(new OID(STR_CMS_OID_DIGEST_ATTR).value,
-                        new Attribute_values(1));
-                final byte[] message_digest_b;
+                        infos[index] = signSignerInfo(callback, keys[index],
+                            (X509Certificate) certs[index], data,
+                            messageDigest, addSignCertV2);
 
-                callback.log("Signing data is digest: " + isExternalDigest);
+                        return null;
+                    }
 
-                // Если вместо данных у нас хеш, то сразу его передаем,
-                // ничего не вычисляем.
-                if (isExternalDigest) {
-                    message_digest_b = data;
-                } // if
-                else {
+                });
+
+            } // for
 
-                    if (detached) {
-                        message_digest_b = digest(data,
-                            algorithmSelector.getDigestAlgorithmName());
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
                     } // if
-                    else {
-                        message_digest_b = digest(cms.encapContentInfo.eContent.value,
-                            algorithmSelector.getDigestAlgorithmName());
-                    } // else
 
-                } // else
+                    throw e;
+                }
 
-                final Asn1Type message_digest = new Asn1OctetString(message_digest_b);
+            } // for
 
-                cms.signerInfos.elements[i].signedAttrs
-                    .elements[k].values.elements[0] = message_digest;
+        } finally {
+            executor.shutdown();
+        }
 
-                // Добавление signingCertificateV2 в подписанные аттрибуты,
-                // чтобы подпись стала похожа на CAdES-BES.
-                if (addSignCertV2) {
+    }
 
-                    callback.log("Add signing-certificateV2.");
+    /**
+     * Формирование и подпись информации о подписанте.
+     * Объект подписи берется из пула текущего потока.
+     *
+     * @param callback Логгер.
+     * @param key Ключ подписанта.
+     * @param cert Сертификат подписанта.
+     * @param data Подписываемые данные. Используются, если
+     * подпись без атрибутов.
+     * @param messageDigest Хеш данных для аттрибута
+     * message-digest.
+     * @param addSignCertV2 Добавление аттрибута signingCertificateV2.
+     * @return информация о подписанте.
+     * @throws Exception
+     */
+    private SignerInfo signSignerInfo(LogCallback callback, PrivateKey key,
+        X509Certificate cert, byte[] data, byte[] messageDigest,
+        boolean addSignCertV2) throws Exception {
 
-                    // Аттрибут с OID'ом id_aa_signingCertificateV2.
-                    k += 1;
-                    cms.signerInfos.elements[i].signedAttrs.elements[k] =
-                        new Attribute(new OID(ALL_PKIX1Explicit88Values
-                            .id_aa_signingCertificateV2).value,
-                                new Attribute_values(1));
+        final SignerInfo info = buildSignerInfo(callback, key, cert,
+            messageDigest, addSignCertV2);
 
-                    // Идентификатор алгоритма, который использовался
-                    // для хеширования контекста сертификата ключа подписи.
-                    final DigestAlgorithmIdentifier digestAlgorithmIdentifier =
-                        new DigestAlgorithmIdentifier(
-                            new OID(algorithmSelector.getDigestAlgorithmOid()).value);
+        final byte[] data2hash = needSignAttributes
+            ? encode(info.signedAttrs) : data;
 
-                    // Хеш сертификата ключа подписи.
-                    final CertHash certHash = new CertHash(digest(certs[i].getEncoded(),
-                        algorithmSelector.getDigestAlgorithmName()));
+        final Signature signature = CryptoPrimitivePool.getSignature(
+            algorithmSelector.getSignatureAlgorithmName(), null);
 
-                    // Issuer name из сертификата ключа подписи.
-                    GeneralName generalName = new GeneralName();
-                    generalName.set_directoryName(name);
+        signature.initSign(key);
+        signature.update(data2hash);
 
-                    GeneralNames generalNames = new GeneralNames();
-                    generalNames.elements = new GeneralName[1];
-                    generalNames.elements[0] = generalName;
+        info.signature = new SignatureValue(signature.sign());
+        return info;
+    }
 
-                    // Комбинируем издателя и серийный номер.
-                    IssuerSerial issuerSerial = new IssuerSerial(generalNames, num);
+    /**
+     * Формирование информации о подписанте без значения
+     * подписи. Если требуется подпись по атрибутам, то
+     * заполняются подписанные атрибуты.
+     *
+     * @param callback Логгер.
+     * @param key Ключ подписанта.
+     * @param cert Сертификат подписанта.
+     * @param messageDigest Хеш данных для аттрибута
+     * message-digest. Не используется, если подпись
+     * без атрибутов.
+     * @param addSignCertV2 Добавление аттрибута signingCertificateV2
+     * для получения подписи формата CAdES-BES.
+     * @return информация о подписанте.
+     * @throws Exception
+     */
+    private SignerInfo buildSignerInfo(LogCallback callback,
+        PrivateKey key, X509Certificate cert, byte[] messageDigest,
+        boolean addSignCertV2) throws Exception {
 
-                    ESSCertIDv2 essCertIDv2 = new ESSCertIDv2(digestAlgorithmIdentifier,
-                        certHash, issuerSerial);
+        final SignerInfo info = new SignerInfo();
+        info.version = new CMSVersion(1);
+        info.sid = new SignerIdentifier();
 
-                    _SeqOfESSCertIDv2 essCertIDv2s = new _SeqOfESSCertIDv2(1);
-                    essCertIDv2s.elements = new ESSCertIDv2[1];
-                    essCertIDv2s.elements[0] = essCertIDv2;
+        callback.log(LogCallback.Level.DEBUG, "Add certificate info.");
 
-                    // Добавляем сам аттрибут.
-                    SigningCertificateV2 signingCertificateV2 =
-                        new SigningCertificateV2(essCertIDv2s);
+        final byte[] encodedName = cert.getIssuerX500Principal().getEncoded();
 
-                    cms.signerInfos.elements[i].signedAttrs
-                        .elements[k].values.elements[0] = signingCertificateV2;
+        final Asn1BerDecodeBuffer nameBuf =
+            new Asn1BerDecodeBuffer(encodedName);
 
-                } // if
+        final Name name = new Name();
+        name.decode(nameBuf);
 
-                // Данные для хэширования.
-                Asn1BerEncodeBuffer encBufSignedAttr = new Asn1BerEncodeBuffer();
-                cms.signerInfos.elements[i].signedAttrs.encode(encBufSignedAttr);
-                data2hash = encBufSignedAttr.getMsgCopy();
+        final CertificateSerialNumber num = new CertificateSerialNumber(
+            cert.getSerialNumber());
+        info.sid.set_issuerAndSerialNumber(
+            new IssuerAndSerialNumber(name, num));
 
-            } // if
-            else {
-                data2hash = data;
-            } // else
+        info.digestAlgorithm = new DigestAlgorithmIdentifier(
+            new OID(algorithmSelector.getDigestAlgorithmOid()).value);
 
-            signature.initSign(keys[i]);
-            signature.update(data2hash);
-            sign = signature.sign();
+        info.digestAlgorithm.parameters = new Asn1Null();
 
-            cms.signerInfos.elements[i].signature = new SignatureValue(sign);
+        info.signatureAlgorithm = new SignatureAlgorithmIdentifier(new OID(
+            getKeySignatureOidByPrivateKeyAlgorithm(key.getAlgorithm())).value);
 
-        } // for
+        info.signatureAlgorithm.parameters = new Asn1Null();
 
-        // CMS подпись.
+        if (!needSignAttributes) {
+            return info;
+        } // if
 
-        callback.log("Produce CMS signature.");
+        callback.log(LogCallback.Level.DEBUG,
+            "Need to calculate digest on signed attributes.");
 
-        final Asn1BerEncodeBuffer asnBuf = new Asn1BerEncodeBuffer();
-        all.encode(asnBuf, true);
-        return asnBuf.getMsgCopy();
+        final int kMax = addSignCertV2 ? 4 : 3;
+        info.signedAttrs = new SignedAttributes(kMax);
+
+        callback.log(LogCallback.Level.DEBUG, "Count of signed attributes: " + kMax);
 
+        // content-type
+
+        callback.log(LogCallback.Level.DEBUG, "Add content-type.");
+
+        int k = 0;
+        info.signedAttrs.elements[k] =
+            new Attribute(new OID(STR_CMS_OID_CONT_TYP_ATTR).value,
+                new Attribute_values(1));
+
+        final Asn1Type cont_type = new Asn1ObjectIdentifier(
+            new OID(STR_CMS_OID_DATA).value);
+
+        info.signedAttrs.elements[k].values.elements[0] = cont_type;
+
+        // signing-time
+
+        callback.log(LogCallback.Level.DEBUG, "Add signing-time.");
+
+        k += 1;
+        info.signedAttrs.elements[k] =
+            new Attribute(new OID(STR_CMS_OID_SIGN_TYM_ATTR).value,
+                new Attribute_values(1));
+
+        final Time time = new Time();
+        final Asn1UTCTime UTCTime = new Asn1UTCTime();
+
+        // Текущая дата календаря.
+        UTCTime.setTime(Calendar.getInstance());
+        time.set_utcTime(UTCTime);
+
+        info.signedAttrs.elements[k].values.elements[0] = time.getElement();
+
+        // message-digest
+
+        callback.log(LogCallback.Level.DEBUG, "Add message-digest.");
+
+        k += 1;
+        info.signedAttrs.elements[k] =
+            new Attribute(new OID(STR_CMS_OID_DIGEST_ATTR).value,
+                new Attribute_values(1));
+
+        final Asn1Type message_digest = new Asn1OctetString(messageDigest);
+
+        info.signedAttrs.elements[k].values.elements[0] = message_digest;
+
+        // Добавление signingCertificateV2 в подписанные аттрибуты,
+        // чтобы подпись стала похожа на CAdES-BES.
+        if (addSignCertV2) {
+
+            callback.log(LogCallback.Level.DEBUG, "Add signing-certificateV2.");
+
+            // Аттрибут с OID'ом id_aa_signingCertificateV2.
+            k += 1;
+            info.signedAttrs.elements[k] =
+                new Attribute(new OID(ALL_PKIX1Explicit88Values
+                    .id_aa_signingCertificateV2).value,
+                        new Attribute_values(1));
+
+            // Идентификатор алгоритма, который использовался
+            // для хеширования контекста сертификата ключа подписи.
+            final DigestAlgorithmIdentifier digestAlgorithmIdentifier =
+                new DigestAlgorithmIdentifier(
+                    new OID(algorithmSelector.getDigestAlgorithmOid()).value);
+
+            // Хеш сертификата ключа подписи.
+            final CertHash certHash = new CertHash(digest(cert.getEncoded(),
+                algorithmSelector.getDigestAlgorithmName()));
+
+            // Issuer name из сертификата ключа подписи.
+            GeneralName generalName = new GeneralName();
+            generalName.set_directoryName(name);
+
+            GeneralNames generalNames = new GeneralNames();
+            generalNames.elements = new GeneralName[1];
+            generalNames.elements[0] = generalName;
+
+            // Комбинируем издателя и серийный номер.
+            IssuerSerial issuerSerial = new IssuerSerial(generalNames, num);
+
+            ESSCertIDv2 essCertIDv2 = new ESSCertIDv2(digestAlgorithmIdentifier,
+                certHash, issuerSerial);
+
+            _SeqOfESSCertIDv2 essCertIDv2s = new _SeqOfESSCertIDv2(1);
+            essCertIDv2s.elements = new ESSCertIDv2[1];
+            essCertIDv2s.elements[0] = essCertIDv2;
+
+            // Добавляем сам аттрибут.
+            SigningCertificateV2 signingCertificateV2 =
+                new SigningCertificateV2(essCertIDv2s);
+
+            info.signedAttrs.elements[k].values.elements[0] = signingCertificateV2;
+
+        } // if
+
+        return info;
     }
 
     /**
@@ -412,20 +821,11 @@ public class CMSSignExample extends ISignData {
 
         validationResultOk = new StringBuffer("");
         validationResultError = new StringBuffer("");
+        validSignatureCount = 0;
+        skippedVerificationCount = 0;
+        unmatchedSignerCount = 0;
 
-        callback.log("Decode CMS signature.");
-
-        final Asn1BerDecodeBuffer asnBuf = new Asn1BerDecodeBuffer(buffer);
-        final ContentInfo all = new ContentInfo();
-        all.decode(asnBuf);
-
-        if (!new OID(STR_CMS_OID_SIGNED).eq(all.contentType.value)) {
-            throw new Exception("Not supported.");
-        } // if
-
-        callback.log("Extract encapsulated content information.");
-
-        final SignedData cms = (SignedData) all.content;
+        final SignedData cms = decodeSignedData(callback, buffer);
         final byte[] text;
         if (cms.encapContentInfo.eContent != null) {
             text = cms.encapContentInfo.eContent.value;
@@ -438,10 +838,235 @@ public class CMSSignExample extends ISignData {
                 "include a content for verify.");
         } // else
 
-        callback.log("Source data: " + new String(text));
-        callback.log("Extract digest OID.");
+        callback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+            @Override
+            public String build() {
+                return "Source data: " + new String(text);
+            }
+
+        });
+
+        final OID digestOid = extractDigestOid(callback, cms);
+
+        final OID eContTypeOID = new OID(cms.encapContentInfo.eContentType.value);
+        final X509Certificate[] certificates =
+            signatureCertificates(callback, cms, certs);
+
+        if (certificates != null) {
+
+            // Каждый подписант проверяется на сертификате,
+            // найденном по его идентификатору, или, если такого
+            // нет, на всех сертификатах.
+
+            final SignerCertificateIndex index =
+                new SignerCertificateIndex(certificates);
 
-        OID digestOid = null;
+            for (int j = 0; j < cms.signerInfos.elements.length; j++) {
+
+                callback.log(LogCallback.Level.DEBUG, "** Verify signer info $ " + j + " **");
+
+                final SignerInfo info = cms.signerInfos.elements[j];
+                if (!digestOid.equals(new OID(info.digestAlgorithm.algorithm.value))) {
+                    throw new Exception("It isn't signed on certificate.");
+                } // if
+
+                for (int i : signerCertificates(index, info, certificates.length)) {
+
+                    final boolean checkResult = verifyOnCert(callback,
+                        certificates[i], info, text, eContTypeOID, true);
+                    writeLog(callback, checkResult, j, i, certificates[i]);
+
+                } // for
+
+            } // for
+
+            logSkippedVerifications(callback);
+
+        } // if
+
+        logValidationResult(callback, cms.signerInfos.elements.length);
+
+    }
+
+    /**
+     * Проверка отсоединенной CMS подписи на данных из файла.
+     *
+     * @param callback Логгер.
+     * @param buffer CMS подпись.
+     * @param certs Сертификаты для проверки ЭЦП. Может быть null.
+     * @param file Файл с подписанными данными.
+     * @throws Exception
+     */
+    void verifyDetached(LogCallback callback, byte[] buffer,
+        Certificate[] certs, File file) throws Exception {
+
+        final InputStream stream = new FileInputStream(file);
+
+        try {
+            verifyDetached(callback, buffer, certs, stream);
+        } finally {
+            stream.close();
+        }
+
+    }
+
+    /**
+     * Проверка отсоединенной CMS подписи на данных из потока.
+     * Данные читаются один раз: за этот проход вычисляется хеш
+     * для подписантов с подписанными атрибутами и передаются
+     * данные в объекты проверки подписей без подписанных
+     * атрибутов. После этого все подписи проверяются по уже
+     * вычисленным значениям. Как и в {@link #verify}, все
+     * подписанты должны использовать алгоритм хеширования
+     * примера. Поток не закрывается.
+     *
+     * @param callback Логгер.
+     * @param buffer CMS подпись.
+     * @param certs Сертификаты для проверки ЭЦП. Может быть null.
+     * @param data Поток подписанных данных.
+     * @throws Exception
+     */
+    void verifyDetached(LogCallback callback, byte[] buffer,
+        Certificate[] certs, InputStream data) throws Exception {
+
+        callback.log("*** Verify detached CMS signature on stream ***");
+
+        validationResultOk = new StringBuffer("");
+        validationResultError = new StringBuffer("");
+        validSignatureCount = 0;
+        skippedVerificationCount = 0;
+        unmatchedSignerCount = 0;
+
+        final SignedData cms = decodeSignedData(callback, buffer);
+
+        if (cms.encapContentInfo.eContent != null) {
+            throw new Exception("Signature is attached.");
+        } // if
+
+        final OID digestOid = extractDigestOid(callback, cms);
+        final OID eContTypeOID = new OID(cms.encapContentInfo.eContentType.value);
+
+        // Сертификаты для проверки.
+
+        final X509Certificate[] certificates =
+            signatureCertificates(callback, cms, certs);
+
+        if (certificates == null) {
+            logValidationResult(callback, cms.signerInfos.elements.length);
+            return;
+        } // if
+
+        // Сопоставление подписантов с сертификатами до
+        // чтения данных.
+
+        final SignerCertificateIndex index =
+            new SignerCertificateIndex(certificates);
+
+        // Объект хеширования - один на всех подписантов с
+        // подписанными атрибутами, объекты проверки - для каждой
+        // пары подписант/сертификат без подписанных атрибутов.
+
+        final SignerInfo[] infos = cms.signerInfos.elements;
+        final Signature[][] signatures =
+            new Signature[infos.length][certificates.length];
+        final int[][] signerCerts = new int[infos.length][];
+
+        MessageDigest digest = null;
+
+        for (int j = 0; j < infos.length; j++) {
+
+            if (!digestOid.equals(new OID(infos[j].digestAlgorithm.algorithm.value))) {
+                throw new Exception("It isn't signed on certificate.");
+            } // if
+
+            signerCerts[j] = signerCertificates(index, infos[j],
+                certificates.length);
+
+            if (infos[j].signedAttrs != null) {
+
+                if (digest == null) {
+                    digest = CryptoPrimitivePool.getMessageDigest(
+                        algorithmSelector.getDigestAlgorithmName(),
+                        JCSP.PROVIDER_NAME);
+                } // if
+
+            } // if
+            else {
+
+                for (int i : signerCerts[j]) {
+                    signatures[j][i] = Signature.getInstance(
+                        algorithmSelector.getSignatureAlgorithmName(),
+                        JCSP.PROVIDER_NAME);
+                    signatures[j][i].initVerify(certificates[i]);
+                } // for
+
+            } // else
+
+        } // for
+
+        callback.log("Process content.");
+
+        final byte[] chunk = new byte[STREAM_BUFFER_SIZE];
+        long processed = 0;
+        int read;
+
+        while ((read = data.read(chunk)) != -1) {
+
+            if (digest != null) {
+                digest.update(chunk, 0, read);
+            } // if
+
+            for (Signature[] signerSignatures : signatures) {
+                for (Signature signature : signerSignatures) {
+                    if (signature != null) {
+                        signature.update(chunk, 0, read);
+                    } // if
+                } // for
+            } // for
+
+            processed += read;
+
+        } // while
+
+        callback.log("Content processed: " + processed + " byte(s).");
+
+        final byte[] contentDigest = digest != null ? digest.digest() : null;
+
+        // Проверка подписантов по вычисленным значениям.
+
+        for (int j = 0; j < infos.length; j++) {
+
+            callback.log(LogCallback.Level.DEBUG, "** Verify signer info $ " + j + " **");
+
+            for (int i : signerCerts[j]) {
+
+                final boolean checkResult = verifyOnCert(callback,
+                    certificates[i], infos[j], null, contentDigest,
+                    signatures[j][i], eContTypeOID, true);
+                writeLog(callback, checkResult, j, i, certificates[i]);
+
+            } // for
+
+        } // for
+
+        logSkippedVerifications(callback);
+        logValidationResult(callback, infos.length);
+
+    }
+
+    /**
+     * Поиск в подписи алгоритма хеширования примера.
+     *
+     * @param callback Логгер.
+     * @param cms Подписанные данные.
+     * @return OID алгоритма хеширования.
+     * @throws Exception если алгоритм в подписи не указан.
+     */
+    private OID extractDigestOid(LogCallback callback, SignedData cms)
+        throws Exception {
+
+        callback.log("Extract digest OID.");
 
         final DigestAlgorithmIdentifier digestAlgorithmIdentifier =
             new DigestAlgorithmIdentifier(
@@ -450,46 +1075,44 @@ public class CMSSignExample extends ISignData {
         for (int i = 0; i < cms.digestAlgorithms.elements.length; i++) {
             if (cms.digestAlgorithms.elements[i].algorithm
                     .equals(digestAlgorithmIdentifier.algorithm)) {
-                digestOid = new OID(cms.digestAlgorithms
+                return new OID(cms.digestAlgorithms
                     .elements[i].algorithm.value);
-                break;
             } // if
         } // for
 
-        if (digestOid == null) {
-            throw new Exception("Unknown digest OID.");
-        } // if
+        throw new Exception("Unknown digest OID.");
+    }
+
+    /**
+     * Получение сертификатов для проверки: вложенных в подпись
+     * (каждый декодируется однажды) или переданных явно.
+     *
+     * @param callback Логгер.
+     * @param cms Подписанные данные.
+     * @param certs Сертификаты для проверки ЭЦП. Может быть null.
+     * @return сертификаты или null, если их нет.
+     * @throws Exception
+     */
+    private X509Certificate[] signatureCertificates(LogCallback callback,
+        SignedData cms, Certificate[] certs) throws Exception {
+
+        final X509Certificate[] certificates;
 
-        final OID eContTypeOID = new OID(cms.encapContentInfo.eContentType.value);
         if (cms.certificates != null) {
 
             // Проверка на вложенных сертификатах.
 
             callback.log("Validation on certificates founded in the signature.");
 
-            for (int i = 0; i < cms.certificates.elements.length; i++) {
+            certificates = new X509Certificate[cms.certificates.elements.length];
+            for (int i = 0; i < certificates.length; i++) {
 
                 final Asn1BerEncodeBuffer encBuf = new Asn1BerEncodeBuffer();
                 cms.certificates.elements[i].encode(encBuf);
 
-                final CertificateFactory cf = CertificateFactory.getInstance("X.509");
-                final X509Certificate cert = (X509Certificate) cf
+                certificates[i] = (X509Certificate) CERT_FACTORY
                     .generateCertificate(encBuf.getInputStream());
 
-                for (int j = 0; j < cms.signerInfos.elements.length; j++) {
-
-                    callback.log("** Verify signer info $ " + j + " **");
-
-                    final SignerInfo info = cms.signerInfos.elements[j];
-                    if (!digestOid.equals(new OID(info.digestAlgorithm.algorithm.value))) {
-                        throw new Exception("It isn't signed on certificate.");
-                    } // if
-
-                    final boolean checkResult = verifyOnCert(callback, cert,
-                        cms.signerInfos.elements[j], text, eContTypeOID, true);
-                    writeLog(checkResult, j, i, cert);
-
-                } // for
             } // for
 
         } // if
@@ -500,37 +1123,123 @@ public class CMSSignExample extends ISignData {
             callback.log("Certificates for validation not found in " +
                 "the signature.\nTry verify on specified certificates...");
 
-            for (int i = 0; i < certs.length; i++) {
+            certificates = new X509Certificate[certs.length];
+            for (int i = 0; i < certificates.length; i++) {
+                certificates[i] = (X509Certificate) certs[i];
+            } // for
+
+        } // else
+        else {
+            callback.log("Certificates for validation are not found.");
+            return null;
+        } // else
 
-                final X509Certificate cert = (X509Certificate) certs[i];
+        return certificates;
+    }
 
-                for (int j = 0; j < cms.signerInfos.elements.length; j++) {
+    /**
+     * Выбор сертификатов для проверки подписанта. Если
+     * сертификат найден по идентификатору подписанта, то
+     * проверка выполняется только на нем, иначе - на всех.
+     *
+     * @param index Индекс сертификатов.
+     * @param info Подписант.
+     * @param certCount Количество сертификатов.
+     * @return номера сертификатов.
+     * @throws Exception
+     */
+    private int[] signerCertificates(SignerCertificateIndex index,
+        SignerInfo info, int certCount) throws Exception {
 
-                    callback.log("** Verify signer info $ " + j + " **");
+        final int found = index.find(info.sid);
 
-                    final SignerInfo info = cms.signerInfos.elements[j];
-                    if (!digestOid.equals(new OID(info.digestAlgorithm.algorithm.value))) {
-                        throw new Exception("It isn't signed on certificate.");
-                    } // if
+        if (found >= 0) {
+            skippedVerificationCount += certCount - 1;
+            return new int[] {found};
+        } // if
 
-                    final boolean checkResult = verifyOnCert(callback, cert,
-                        cms.signerInfos.elements[j], text, eContTypeOID, true);
-                    writeLog(checkResult, j, i, cert);
+        unmatchedSignerCount++;
 
-                } // for
-            } // for
+        final int[] all = new int[certCount];
+        for (int i = 0; i < certCount; i++) {
+            all[i] = i;
+        } // for
 
-        } // else
-        else {
-            callback.log("Certificates for validation are not found.");
-        } // else
+        return all;
+    }
+
+    /**
+     * Вывод счетчиков сопоставления подписантов с
+     * сертификатами.
+     *
+     * @param callback Логгер.
+     */
+    private void logSkippedVerifications(LogCallback callback) {
+        callback.log("Verifications skipped by certificate index: " +
+            skippedVerificationCount + ", signers without matching " +
+            "certificate: " + unmatchedSignerCount);
+    }
+
+    /**
+     * Получение количества проверок, пропущенных благодаря
+     * сопоставлению подписантов с сертификатами.
+     *
+     * @return количество пропущенных проверок.
+     */
+    public long getSkippedVerificationCount() {
+        return skippedVerificationCount;
+    }
+
+    /**
+     * Получение количества подписантов, для которых
+     * сертификат не найден по идентификатору.
+     *
+     * @return количество подписантов.
+     */
+    public long getUnmatchedSignerCount() {
+        return unmatchedSignerCount;
+    }
+
+    /**
+     * Декодирование CMS подписи.
+     *
+     * @param callback Логгер.
+     * @param buffer CMS подпись.
+     * @return подписанные данные.
+     * @throws Exception
+     */
+    private SignedData decodeSignedData(LogCallback callback,
+        byte[] buffer) throws Exception {
+
+        callback.log("Decode CMS signature.");
+
+        final Asn1BerDecodeBuffer asnBuf = new Asn1BerDecodeBuffer(buffer);
+        final ContentInfo all = new ContentInfo();
+        all.decode(asnBuf);
+
+        if (!new OID(STR_CMS_OID_SIGNED).eq(all.contentType.value)) {
+            throw new Exception("Not supported.");
+        } // if
+
+        callback.log("Extract encapsulated content information.");
+
+        return (SignedData) all.content;
+    }
+
+    /**
+     * Вывод итогов проверки подписей.
+     *
+     * @param callback Логгер.
+     * @param signerCount Количество подписантов.
+     */
+    private void logValidationResult(LogCallback callback, int signerCount) {
 
         if (validSignatureCount == 0) {
             callback.log("Signatures are invalid: " + validationResultError);
             return;
         } // if
 
-        if (cms.signerInfos.elements.length > validSignatureCount) {
+        if (signerCount > validSignatureCount) {
             callback.log("Some signatures are invalid:" +
                 validationResultOk + validationResultError);
             return;
@@ -559,6 +1268,35 @@ public class CMSSignExample extends ISignData {
         X509Certificate cert, SignerInfo info, byte[] text,
         OID eContentTypeOID, boolean needSortSignedAttributes)
         throws Exception {
+        return verifyOnCert(callback, cert, info, text, null, null,
+            eContentTypeOID, needSortSignedAttributes);
+    }
+
+    /**
+     * Попытка проверки подписи на указанном сертификате с
+     * использованием заранее вычисленного хеша данных или
+     * объекта проверки, в который данные уже переданы.
+     *
+     * @param cert Сертификат для проверки.
+     * @param text Данные для проверки. Может быть null, если
+     * переданы хеш или объект проверки.
+     * @param info ЭЦП.
+     * @param contentDigest Хеш данных для проверки аттрибута
+     * message-digest. Если null, то вычисляется по text.
+     * @param preparedSignature Объект проверки подписи без
+     * подписанных атрибутов, инициализированный сертификатом
+     * и получивший данные. Если null, то создается по text.
+     * @param eContentTypeOID Тип подписанного содержимого.
+     * @param needSortSignedAttributes True, если необходимо проверить
+     * подпись по отсортированным подписанным аттрибутам.
+     * @return True, если подпись корректна.
+     * @throws Exception ошибки
+     */
+    private boolean verifyOnCert(LogCallback callback,
+        X509Certificate cert, SignerInfo info, byte[] text,
+        byte[] contentDigest, Signature preparedSignature,
+        OID eContentTypeOID, boolean needSortSignedAttributes)
+        throws Exception {
 
         // Подпись.
         final byte[] sign = info.signature.value;
@@ -688,8 +1426,8 @@ public class CMSSignExample extends ISignData {
             final byte[] md = hash.value;
 
             // Вычисление messageDigest.
-            final byte[] dm = digest(text,
-                algorithmSelector.getDigestAlgorithmName());
+            final byte[] dm = contentDigest != null ? contentDigest
+                : digest(text, algorithmSelector.getDigestAlgorithmName());
 
             if (!Array.toHexString(dm).equals(Array.toHexString(md))) {
                 throw new Exception("Verification of message-digest attribute failed.");
@@ -712,8 +1450,16 @@ public class CMSSignExample extends ISignData {
             if (signTimeAttr != null) {
                 // Проверка (необязательно).
                 Time sigTime = (Time)signTimeAttr.values.elements[0];
-                Asn1UTCTime time = (Asn1UTCTime) sigTime.getElement();
-                callback.log("Signing Time: " + time);
+                final Asn1UTCTime time = (Asn1UTCTime) sigTime.getElement();
+
+                callback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+                    @Override
+                    public String build() {
+                        return "Signing Time: " + time;
+                    }
+
+                });
             }
 
             //данные для проверки подписи
@@ -727,12 +1473,21 @@ public class CMSSignExample extends ISignData {
         callback.log("Verify signature.");
 
         // Проверяем подпись.
-        Signature signature = Signature.getInstance(
-            algorithmSelector.getSignatureAlgorithmName(),
-            JCSP.PROVIDER_NAME);
+        Signature signature;
+
+        if (info.signedAttrs == null && preparedSignature != null) {
+            signature = preparedSignature;
+        } // if
+        else {
 
-        signature.initVerify(cert);
-        signature.update(data);
+            signature = CryptoPrimitivePool.getSignature(
+                algorithmSelector.getSignatureAlgorithmName(),
+                JCSP.PROVIDER_NAME);
+
+            signature.initVerify(cert);
+            signature.update(data);
+
+        } // else
 
         boolean verified = signature.verify(sign);
         callback.log("Signature verified: " + verified);
@@ -742,23 +1497,36 @@ public class CMSSignExample extends ISignData {
         // перед кодированием в байтовый массив.
         if (!verified && info.signedAttrs != null && needSortSignedAttributes) {
             callback.log("Try to disable sort of the signed attributes.");
-            return verifyOnCert(callback, cert, info, text, eContentTypeOID, false);
+            return verifyOnCert(callback, cert, info, text, contentDigest,
+                preparedSignature, eContentTypeOID, false);
         }
 
         return verified;
     }
 
     /**
-     * Составление сообщения о проверке.
+     * Составление сообщения о проверке. Текст сообщения
+     * (с именем владельца сертификата) формируется, только
+     * если выводятся сообщения уровня INFO.
      *
+     * @param callback Логгер.
      * @param checkResult Флаг, прошла ли проверка.
      * @param signNum Номер подписи.
      * @param certNum Номер сертификата.
      * @param cert Сертификат.
      */
-    private void writeLog(boolean checkResult,
+    private void writeLog(LogCallback callback, boolean checkResult,
         int signNum, int certNum, X509Certificate cert) {
 
+        if (!callback.isEnabled(LogCallback.Level.INFO)) {
+
+            if (checkResult) {
+                validSignatureCount += 1;
+            } // if
+
+            return;
+        } // if
+
         if (checkResult) {
             validationResultOk.append("\n");
             validationResultOk.append("sign[");
@@ -791,14 +1559,63 @@ public class CMSSignExample extends ISignData {
     private byte[] digest(byte[] bytes, String digestAlgorithmName)
         throws Exception {
 
-        final ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
-        final MessageDigest digest = MessageDigest.getInstance(digestAlgorithmName);
-        final DigestInputStream digestStream = new DigestInputStream(stream, digest);
+        return CryptoPrimitivePool.getMessageDigest(
+            digestAlgorithmName, null).digest(bytes);
+    }
 
-        while (digestStream.available() != 0) {
-            digestStream.read();
-        } // while
+    /**
+     * Кодирование ASN.1 структуры.
+     *
+     * @param type Структура.
+     * @return закодированная структура.
+     * @throws Exception
+     */
+    private static byte[] encode(Asn1Type type) throws Exception {
+        final Asn1BerEncodeBuffer buffer = new Asn1BerEncodeBuffer();
+        type.encode(buffer, true);
+        return buffer.getMsgCopy();
+    }
+
+    /**
+     * Запись блока данных как примитивной OCTET STRING -
+     * части составной OCTET STRING неопределенной длины.
+     *
+     * @param out Выходной поток.
+     * @param data Данные.
+     * @param length Длина данных.
+     * @throws Exception
+     */
+    static void writeOctetString(OutputStream out, byte[] data, int length)
+        throws Exception {
+        out.write(BER_OCTET_STRING);
+        writeLength(out, length);
+        out.write(data, 0, length);
+    }
+
+    /**
+     * Запись длины в кодировке DER.
+     *
+     * @param out Выходной поток.
+     * @param length Длина.
+     * @throws Exception
+     */
+    static void writeLength(OutputStream out, int length)
+        throws Exception {
+
+        if (length < 0x80) {
+            out.write(length);
+            return;
+        } // if
+
+        int octets = 0;
+        for (int l = length; l != 0; l >>>= 8) {
+            octets++;
+        } // for
+
+        out.write(0x80 | octets);
+        for (int i = octets - 1; i >= 0; i--) {
+            out.write((length >>> (8 * i)) & 0xFF);
+        } // for
 
-        return digest.digest();
     }
 }
@@ -10,11 +10,17 @@
  */
 package ru.CryptoPro.ACSPClientApp.client.example;
 
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IGenKeyPairData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ISignData;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.ContainerKeyCache;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
 import ru.CryptoPro.JCP.KeyStore.JCPPrivateKeyEntry;
 import ru.CryptoPro.JCSP.JCSP;
 
@@ -50,45 +56,76 @@ public class ChangePasswordExample extends ISignData {
 
     @Override
     public void getResult(LogCallback callback) throws Exception {
+        getResult(callback, new ChangePasswordThread());
+    }
+
+    /**
+     * Класс ChangePasswordThread реализует создание
+     * контейнера и смену пароля на него. Создание
+     * контейнера выполняется в том же потоке, до смены
+     * пароля.
+     *
+     */
+    private class ChangePasswordThread implements IThreadExecuted {
+
+        @Override
+        public void execute(LogCallback callback) {
+
+            try {
+
+                // Создаем ключевой контейнер.
+
+                callback.log("Create key container.");
+
+                IGenKeyPairData genKeyPairData = new GenKeyPairExample(
+                    containerAdapter, IGenKeyPairData.CAType.ca14, null);
 
-        // Создаем ключевой контейнер.
+                genKeyPairData.getResult(callback);
 
-        callback.log("Create key container.");
+                // Загружаем ключевой контейнер.
+                callback.log("Load key container.");
 
-        IGenKeyPairData genKeyPairData = new GenKeyPairExample(
-            containerAdapter, IGenKeyPairData.CAType.ca14, null);
+                load(true, KeyStoreType.currentType(),
+                    genKeyPairData.getStoreAlias(), null, callback);
 
-        genKeyPairData.getResult(callback);
+                // Сохраняем ключ так, чтобы не было окон для ввода
+                // пин-кода.
+                callback.log("Prepare protected parameters.");
 
-        // Загружаем ключевой контейнер.
-        callback.log("Load key container.");
+                KeyStore dstKeyStore = KeyStore.getInstance(
+                    KeyStoreType.currentType(), JCSP.PROVIDER_NAME);
+                dstKeyStore.load(null, null);
 
-        load(true, KeyStoreType.currentType(),
-            genKeyPairData.getStoreAlias(), null, callback);
+                KeyStore.ProtectionParameter protectedParamNew =
+                    new KeyStore.PasswordProtection(NEW_PASSWORD);
 
-        // Сохраняем ключ так, чтобы не было окон для ввода
-        // пин-кода.
-        callback.log("Prepare protected parameters.");
+                KeyStore.Entry entry = new JCPPrivateKeyEntry(
+                    getPrivateKey(), new Certificate[] {getCertificate()});
 
-        KeyStore dstKeyStore = KeyStore.getInstance(
-            KeyStoreType.currentType(), JCSP.PROVIDER_NAME);
-        dstKeyStore.load(null, null);
+                callback.log("Change a password of the container: " +
+                    new String(NEW_PASSWORD));
 
-        KeyStore.ProtectionParameter protectedParamNew =
-            new KeyStore.PasswordProtection(NEW_PASSWORD);
+                dstKeyStore.setEntry(genKeyPairData.getStoreAlias(),
+                    entry, protectedParamNew);
+                dstKeyStore.store(null, null);
 
-        KeyStore.Entry entry = new JCPPrivateKeyEntry(
-            getPrivateKey(), new Certificate[] {getCertificate()});
+                // Ключ с прежним паролем больше не должен выдаваться
+                // из кеша, SSL контекстов и HTTP клиентов.
+                ContainerKeyCache.invalidate(KeyStoreType.currentType(),
+                    genKeyPairData.getStoreAlias());
+                SSLContextRegistry.invalidate(KeyStoreType.currentType(),
+                    genKeyPairData.getStoreAlias());
+                HttpClientFactory.invalidate(containerAdapter);
 
-        callback.log("Change a password of the container: " +
-            new String(NEW_PASSWORD));
+                callback.log("Password was changed successfully.");
+                callback.setStatusOK();
 
-        dstKeyStore.setEntry(genKeyPairData.getStoreAlias(),
-            entry, protectedParamNew);
-        dstKeyStore.store(null, null);
+            } catch (Exception e) {
+                callback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Operation exception", e);
+            }
 
-        callback.log("Password was changed successfully.");
-        callback.setStatusOK();
+        }
 
     }
 }
@@ -17,6 +17,7 @@ import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ISignData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.CertPathCache;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.JCSP.JCSP;
 
@@ -38,8 +39,16 @@ public class CheckCertStatusExample extends ISignData {
      * Корневы сертификаты. Формируются по файлу, передаваемому
      * из ресурсов извне. Должен подходить ключам, перечисленным
      * в {@link ru.CryptoPro.ACSPClientApp.util.IContainers}.
+     * Загружаются однажды и используются всеми экземплярами
+     * примера.
      */
-    private List<X509Certificate> rootCertList = new LinkedList<X509Certificate>();
+    private CertPathCache.TrustAnchors rootCerts = null;
+
+    /**
+     * Ключ хранилища корневых сертификатов в
+     * {@link CertPathCache}.
+     */
+    private final String trustStoreKey;
 
     /**
      * Конструктор.
@@ -47,52 +56,71 @@ public class CheckCertStatusExample extends ISignData {
      * @param adapter Настройки примера.
      */
     public CheckCertStatusExample(ContainerAdapter adapter) {
+
         super(adapter, false);
-        readCertStore();
+
+        trustStoreKey = CertPathCache.storeKey(adapter.getTrustStoreType(),
+            adapter.getTrustStoreProvider());
+
+        try {
+
+            rootCerts = CertPathCache.getTrustAnchors(trustStoreKey,
+                new CertPathCache.TrustLoader() {
+
+                    @Override
+                    public List<X509Certificate> load() throws Exception {
+                        return readCertStore();
+                    }
+
+                });
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
     }
 
     /**
      * Загрузка списка сорневых сертификатов из хранилища.
      *
+     * @return корневые сертификаты.
+     * @throws Exception
      */
-    private void readCertStore() {
-
-        try {
+    private List<X509Certificate> readCertStore() throws Exception {
 
-            /**
-             * Для чтения(!) доверенного хранилища доступна
-             * реализация CertStore из Java CSP. В ее случае
-             * можно не использовать пароль.
-             */
+        final List<X509Certificate> rootCertList = new LinkedList<X509Certificate>();
 
-            KeyStore keyStore = KeyStore.getInstance(
-                containerAdapter.getTrustStoreType(),
-                containerAdapter.getTrustStoreProvider());
+        /**
+         * Для чтения(!) доверенного хранилища доступна
+         * реализация CertStore из Java CSP. В ее случае
+         * можно не использовать пароль.
+         */
 
-            keyStore.load(containerAdapter.getTrustStoreStream(),
-                containerAdapter.getTrustStorePassword());
+        KeyStore keyStore = KeyStore.getInstance(
+            containerAdapter.getTrustStoreType(),
+            containerAdapter.getTrustStoreProvider());
 
-            Enumeration<String> aliases = keyStore.aliases();
-            while (aliases.hasMoreElements()) {
+        keyStore.load(containerAdapter.getTrustStoreStream(),
+            containerAdapter.getTrustStorePassword());
 
-                String alias = aliases.nextElement();
-                if (keyStore.isCertificateEntry(alias)) {
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
 
-                    Certificate tmpCert = keyStore.getCertificate(alias);
+            String alias = aliases.nextElement();
+            if (keyStore.isCertificateEntry(alias)) {
 
-                    X509Certificate cert = (X509Certificate) CERT_FACTORY.
-                        generateCertificate(new ByteArrayInputStream(tmpCert.getEncoded()));
+                Certificate tmpCert = keyStore.getCertificate(alias);
 
-                    rootCertList.add(cert);
+                X509Certificate cert = (X509Certificate) CERT_FACTORY.
+                    generateCertificate(new ByteArrayInputStream(tmpCert.getEncoded()));
 
-                } // if
+                rootCertList.add(cert);
 
-            } // while
+            } // if
 
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        } // while
 
+        return rootCertList;
     }
 
     @Override
@@ -125,18 +153,36 @@ public class CheckCertStatusExample extends ISignData {
                 callback.log("Client certificate: " + getCertificate().getSubjectDN() +
                     ", public key: " + getCertificate().getPublicKey());
 
+                // Если цепочка уже была построена и проверена, и
+                // результат еще действителен, повторная проверка
+                // не нужна.
+
+                final CertPathCache.Entry cached =
+                    CertPathCache.get(trustStoreKey, getCertificate());
+
+                if (cached != null) {
+
+                    callback.log("Certificate chain (length: " +
+                        cached.getCertPath().getCertificates().size() +
+                        ") was verified earlier, result is valid until " +
+                        new Date(cached.getExpiryTime()) + " (hits: " +
+                        CertPathCache.getHitCount() + ", misses: " +
+                        CertPathCache.getMissCount() + ")");
+
+                    callback.setStatusOK();
+                    return;
+
+                } // if
+
                 // Сертификаты (в данном случае корневой и пользователя,
                 // выданный УЦ).
 
-                final Set<TrustAnchor> trust = new HashSet<TrustAnchor>(0);
-                for (X509Certificate root : rootCertList) {
-                    trust.add(new TrustAnchor(root, null));
-                } // for
+                final Set<TrustAnchor> trust = rootCerts.getTrustAnchors();
 
                 final List<Certificate> cert = new ArrayList<Certificate>(0);
                 cert.add(getCertificate()); // пользователь
 
-                for (X509Certificate root : rootCertList) {
+                for (X509Certificate root : rootCerts.getCertificates()) {
                     cert.add(root);
                 } // for
 
@@ -191,8 +237,10 @@ public class CheckCertStatusExample extends ISignData {
                     CertPathValidator.getInstance("CPPKIX", "RevCheck");
                 cpp.setRevocationEnabled(true);
 
+                PKIXCertPathValidatorResult validatorResult = null;
+
                 try {
-                    cpv.validate(cp, cpp);
+                    validatorResult = (PKIXCertPathValidatorResult) cpv.validate(cp, cpp);
                 } catch (Exception e) {
                     Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
                     callback.log("Verification failed.");
@@ -200,6 +248,15 @@ public class CheckCertStatusExample extends ISignData {
                     return;
                 }
 
+                // Запоминаем проверенную цепочку. Статус отзыва
+                // перепроверяется по истечении срока жизни записи.
+
+                final CertPathCache.Entry entry = CertPathCache.put(trustStoreKey,
+                    cp, validatorResult.getTrustAnchor());
+
+                callback.log("Certificate chain is cached until " +
+                    new Date(entry.getExpiryTime()));
+
                 callback.setStatusOK();
 
             } catch (Exception e) {
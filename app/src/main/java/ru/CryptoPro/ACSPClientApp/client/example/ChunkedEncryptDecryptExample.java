@@ -0,0 +1,461 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IEncryptDecryptData;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.AgreementKeyCache;
+import ru.CryptoPro.ACSPClientApp.util.ChunkedEnvelope;
+import ru.CryptoPro.ACSPClientApp.util.CryptoPrimitivePool;
+import ru.CryptoPro.ACSPClientApp.util.FileCipher;
+import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
+import ru.CryptoPro.JCP.JCP;
+import ru.CryptoPro.JCP.params.CryptParamsSpec;
+import ru.CryptoPro.JCSP.JCSP;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.SignatureException;
+import java.util.Arrays;
+
+/**
+ * Класс ChunkedEncryptDecryptExample реализует пример
+ * зашифрования файла блоками с помощью {@link ChunkedEnvelope}.
+ * Ключи шифрования и имитовставки зашифровываются на
+ * ключе согласования клиента и расшифровываются на ключе
+ * согласования сервера. Сервер расшифровывает и
+ * проверяет отдельный диапазон, затем весь файл, а после
+ * изменения последнего блока убеждается, что остальные
+ * блоки читаются, а измененный - нет. Файл, усеченный на
+ * последний блок с исправленными заголовком и индексом,
+ * не должен читаться вовсе. Пример выполняется в пуле
+ * задач.
+ *
+ * 18/10/2026
+ *
+ */
+public class ChunkedEncryptDecryptExample extends IEncryptDecryptData {
+
+    /**
+     * Алгоритм шифрования блоков файла.
+     */
+    private static final String CHUNK_TRANSFORMATION =
+        JCSP.GOST_CIPHER_NAME + "/CNT/NoPadding";
+
+    /**
+     * Алгоритм имитовставки блоков файла (ГОСТ 28147-89).
+     */
+    private static final String CHUNK_MAC_NAME = JCSP.GOST_CIPHER_NAME;
+
+    /**
+     * Конструктор.
+     *
+     * @param adapter Настройки примера.
+     */
+    public ChunkedEncryptDecryptExample(ContainerAdapter adapter) {
+        super(adapter);
+    }
+
+    @Override
+    public void getResult(LogCallback callback) throws Exception {
+        getResult(callback, new ChunkedEncryptDecryptThread());
+    }
+
+    /**
+     * Класс ChunkedEncryptDecryptThread реализует
+     * зашифрование и расшифрование файла блоками в
+     * отдельном потоке.
+     *
+     */
+    private class ChunkedEncryptDecryptThread implements IThreadExecuted {
+
+        @Override
+        public void execute(LogCallback callback) {
+
+            try {
+
+                if (encryptDecryptChunks(callback)) {
+                    callback.setStatusOK();
+                } // if
+                else {
+                    callback.setStatusFailed();
+                } // else
+
+            } catch (Exception e) {
+                callback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Operation exception", e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Зашифрование и расшифрование файла блоками.
+     *
+     * @param callback Логгер.
+     * @return true, если расшифрованные данные совпадают с
+     * исходными, а изменение блока и усечение файла
+     * обнаружены.
+     * @throws Exception
+     */
+    private boolean encryptDecryptChunks(LogCallback callback)
+        throws Exception {
+
+        // Тип контейнера по умолчанию.
+        String keyStoreType = KeyStoreType.currentType();
+        callback.log("Default container type: " + keyStoreType);
+
+        // Сторона клиента (алиса).
+
+        callback.log("Load client parameters.");
+
+        ChunkedEncryptDecryptExample client =
+            new ChunkedEncryptDecryptExample(containerAdapter);
+
+        client.load(true, keyStoreType, containerAdapter.getClientAlias(),
+            containerAdapter.getClientPassword(), callback);
+
+        // Сторона сервера (боб).
+
+        callback.log("Load server parameters.");
+
+        ChunkedEncryptDecryptExample server =
+            new ChunkedEncryptDecryptExample(containerAdapter);
+
+        server.load(true, keyStoreType, containerAdapter.getServerAlias(),
+            containerAdapter.getServerPassword(), callback);
+
+        PublicKey clientPublicKey = client.getCertificate().getPublicKey();
+        PublicKey serverPublicKey = server.getCertificate().getPublicKey();
+
+        // Генерация ключей шифрования и имитовставки.
+
+        KeyGenerator keyGen = KeyGenerator.getInstance(
+            JCSP.GOST_CIPHER_NAME, JCSP.PROVIDER_NAME);
+
+        switch (algorithmSelector.getProviderType()) {
+
+            case pt2012Short:
+            case pt2012Long:
+                keyGen.init(CryptParamsSpec.getInstance(CryptParamsSpec.Rosstandart_TC26_Z));
+            break;
+
+        } // switch
+
+        SecretKey encryptionKey = keyGen.generateKey();
+        SecretKey macKey = keyGen.generateKey();
+
+        callback.log("Prepare file: " + ExampleFiles.DEFAULT_SIZE + " bytes.");
+
+        final File source = ExampleFiles.createRandom("plain", ExampleFiles.DEFAULT_SIZE);
+        final File encrypted = File.createTempFile("encrypted", ".bin");
+        final File decrypted = File.createTempFile("decrypted", ".bin");
+        final File truncated = File.createTempFile("truncated", ".bin");
+
+        AgreementKeyCache.Entry clientEntry = null;
+        AgreementKeyCache.Entry serverEntry = null;
+
+        try {
+
+            // Ключи согласования клиента и сервера с общей UKM
+            // из кеша. Записи кеша освобождаются по завершении
+            // примера.
+
+            SecureRandom random =
+                SecureRandom.getInstance(JCP.CP_RANDOM, JCSP.PROVIDER_NAME);
+
+            clientEntry = AgreementKeyCache.getForPeer(keyStoreType,
+                containerAdapter.getClientAlias(), serverPublicKey, random,
+                SessionEncryptDecryptExample.agreement(
+                    client.getPrivateKey(), serverPublicKey));
+
+            SecretKey clientAgree = clientEntry.getKey();
+            byte[] ukm = clientEntry.getUkm();
+
+            serverEntry = AgreementKeyCache.get(keyStoreType,
+                containerAdapter.getServerAlias(), clientPublicKey, ukm,
+                SessionEncryptDecryptExample.agreement(
+                    server.getPrivateKey(), clientPublicKey));
+
+            final SecretKey serverAgree = serverEntry.getKey();
+            callback.log("Key agreement was performed.");
+
+            final int threads = Runtime.getRuntime().availableProcessors();
+            final ChunkedEnvelope envelope = new ChunkedEnvelope(
+                CHUNK_TRANSFORMATION, CHUNK_MAC_NAME, JCSP.PROVIDER_NAME);
+
+            FileCipher.Result result = envelope.encrypt(source, encrypted,
+                encryptionKey, macKey, clientAgree, ukm, threads);
+
+            callback.log("Client's chunked file encrypting (" + threads +
+                " threads) was performed: " + result);
+
+            // Ключи расшифровываются на ключе согласования
+            // сервера, выработанном с тем же SV.
+
+            final FileCipher.KeyResolver resolver = new FileCipher.KeyResolver() {
+
+                @Override
+                public SecretKey resolve(byte[] headerUkm, byte[] wrappedKey)
+                    throws Exception {
+
+                    Cipher cipher = CryptoPrimitivePool.getCipher(
+                        CHUNK_TRANSFORMATION, JCSP.PROVIDER_NAME);
+
+                    cipher.init(Cipher.UNWRAP_MODE, serverAgree);
+                    return (SecretKey) cipher.unwrap(wrappedKey, null,
+                        Cipher.SECRET_KEY);
+
+                }
+
+            };
+
+            // Диапазон не выровнен по границам блоков.
+
+            final long offset = ExampleFiles.DEFAULT_SIZE / 3 + 1;
+            final int count = 3 * ChunkedEnvelope.DEFAULT_CHUNK_SIZE / 2;
+
+            ChunkedEnvelope.Reader reader = envelope.open(encrypted, resolver);
+
+            try {
+
+                final byte[] range = reader.read(offset, count, threads);
+                callback.log("Server's range decrypting was performed: " +
+                    count + " bytes at " + offset + " of " + reader.getLength() +
+                    " (" + reader.getChunkCount() + " chunks).");
+
+                if (!Arrays.equals(range, readRange(source, offset, count))) {
+                    callback.log(LogCallback.Level.ERROR,
+                        "Error in range decrypting. Invalid data.");
+                    return false;
+                } // if
+
+                result = reader.decrypt(decrypted, threads);
+                callback.log("Server's chunked file decrypting (" + threads +
+                    " threads) was performed: " + result);
+
+                final HashExample hash = new HashExample(containerAdapter);
+
+                if (!MessageDigest.isEqual(hash.digest(callback, source, true),
+                    hash.digest(callback, decrypted, false))) {
+                    callback.log(LogCallback.Level.ERROR,
+                        "Error in chunked file encrypting/decrypting. Invalid data.");
+                    return false;
+                } // if
+
+            } finally {
+                reader.close();
+            }
+
+            // Усечение файла на последний блок с исправлением
+            // длины данных, количества блоков и индекса.
+
+            truncate(encrypted, truncated);
+            reader = envelope.open(truncated, resolver);
+
+            try {
+                reader.read(0, 1, 1);
+                callback.log(LogCallback.Level.ERROR,
+                    "Error: truncated file was not detected.");
+                return false;
+            } catch (SignatureException e) {
+                callback.log("Truncated file was detected: " + e.getMessage());
+            } finally {
+                reader.close();
+            }
+
+            // Изменение последнего байта файла (последнего блока).
+
+            RandomAccessFile file = new RandomAccessFile(encrypted, "rw");
+
+            try {
+                file.seek(file.length() - 1);
+                final int last = file.read();
+                file.seek(file.length() - 1);
+                file.write(last ^ 0x01);
+            } finally {
+                file.close();
+            }
+
+            reader = envelope.open(encrypted, resolver);
+
+            try {
+
+                reader.read(0, count, threads);
+                callback.log("Unmodified chunks are still readable.");
+
+                try {
+                    reader.read(reader.getLength() - 1, 1, 1);
+                    callback.log(LogCallback.Level.ERROR,
+                        "Error: modified chunk was not detected.");
+                    return false;
+                } catch (SignatureException e) {
+                    callback.log("Modified chunk was detected: " + e.getMessage());
+                }
+
+            } finally {
+                reader.close();
+            }
+
+            return true;
+
+        } finally {
+
+            if (clientEntry != null) {
+                clientEntry.release();
+            } // if
+
+            if (serverEntry != null) {
+                serverEntry.release();
+            } // if
+
+            source.delete();
+            encrypted.delete();
+            decrypted.delete();
+            truncated.delete();
+        }
+
+    }
+
+    /**
+     * Усечение файла {@link ChunkedEnvelope} на последний
+     * блок. Длина данных, количество блоков и индекс
+     * исправляются, чтобы заголовок оставался корректным.
+     *
+     * @param source Зашифрованный файл.
+     * @param dest Усеченный файл.
+     * @throws IOException
+     */
+    private static void truncate(File source, File dest) throws IOException {
+
+        final DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(source)));
+
+        try {
+
+            final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(dest)));
+
+            try {
+
+                // Магическое число, UKM и зашифрованные ключи
+                // копируются без изменений.
+
+                final byte[] magic = new byte[4];
+                in.readFully(magic);
+                out.write(magic);
+
+                final byte[] ukm = new byte[in.readUnsignedByte()];
+                in.readFully(ukm);
+                out.writeByte(ukm.length);
+                out.write(ukm);
+
+                for (int i = 0; i < 2; i++) {
+                    final byte[] wrappedKey = new byte[in.readUnsignedShort()];
+                    in.readFully(wrappedKey);
+                    out.writeShort(wrappedKey.length);
+                    out.write(wrappedKey);
+                } // for
+
+                final int chunkSize = in.readInt();
+                in.readLong();
+                final int chunkCount = in.readInt();
+
+                if (chunkCount < 2) {
+                    throw new IOException("Too few chunks: " + chunkCount);
+                } // if
+
+                // Без последнего блока остаются только полные
+                // блоки, а индекс становится короче на одну запись.
+
+                out.writeInt(chunkSize);
+                out.writeLong((long) (chunkCount - 1) * chunkSize);
+                out.writeInt(chunkCount - 1);
+
+                long recordsLength = 0;
+
+                for (int i = 0; i < chunkCount; i++) {
+
+                    final long offset = in.readLong();
+                    final int recordLength = in.readInt();
+
+                    if (i < chunkCount - 1) {
+                        out.writeLong(offset - 12);
+                        out.writeInt(recordLength);
+                        recordsLength += recordLength;
+                    } // if
+
+                } // for
+
+                final byte[] buffer = new byte[8192];
+
+                while (recordsLength > 0) {
+                    final int read = (int) Math.min(buffer.length, recordsLength);
+                    in.readFully(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    recordsLength -= read;
+                } // while
+
+            } finally {
+                out.close();
+            }
+
+        } finally {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Чтение диапазона файла.
+     *
+     * @param file Файл.
+     * @param offset Смещение.
+     * @param length Длина диапазона.
+     * @return данные.
+     * @throws IOException
+     */
+    private static byte[] readRange(File file, long offset, int length)
+        throws IOException {
+
+        final byte[] data = new byte[length];
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+
+        try {
+            in.seek(offset);
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+
+        return data;
+    }
+
+}
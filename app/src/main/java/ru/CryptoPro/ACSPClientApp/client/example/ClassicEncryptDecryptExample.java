@@ -188,14 +188,16 @@ public class ClassicEncryptDecryptExample extends IEncryptDecryptData {
         // Проверка результата.
 
         if (decryptedText.length != data.length) {
-            callback.log("Error in encrypting/decrypting. Invalid length.");
+            callback.log(LogCallback.Level.ERROR,
+                "Error in encrypting/decrypting. Invalid length.");
             callback.setStatusFailed();
             return;
         } // if
 
         for (int i = 0; i < decryptedText.length; i++) {
             if (data[i] != decryptedText[i]) {
-                callback.log("Error in encrypting/decrypting. Invalid data.");
+                callback.log(LogCallback.Level.ERROR,
+                    "Error in encrypting/decrypting. Invalid data.");
                 callback.setStatusFailed();
                 return;
             } // if
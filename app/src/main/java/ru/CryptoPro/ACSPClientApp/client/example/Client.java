@@ -17,16 +17,21 @@ package ru.CryptoPro.ACSPClientApp.client.example;
 
 import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.Socket;
 
 /**
@@ -54,6 +59,8 @@ private String host;
 private int port;
  /**/
 private LogCallback logCallback = null;
+ /**/
+private SSLConnectionPool connectionPool = null;
 
 
 /**
@@ -68,6 +75,21 @@ public Client(String hostname, int p, LogCallback callback) {
     logCallback = callback;
 }
 
+/**
+ * Создание клиента, использующего HTTP/1.1 keep-alive и пул
+ * соединений. Соединения создаются контекстом пула, контекст,
+ * переданный в get(), в этом режиме не используется.
+ *
+ * @param hostname хост
+ * @param p порт
+ * @param pool пул соединений
+ */
+public Client(String hostname, int p, LogCallback callback,
+        SSLConnectionPool pool) {
+    this(hostname, p, callback);
+    connectionPool = pool;
+}
+
 /**
  * Функция устанавливает timeout на чтение.
  *
@@ -87,6 +109,29 @@ public void setTimeout(int t) {
  */
 public int get(SSLContext sslContext, String fileName) throws Exception {
 
+    if (connectionPool != null) {
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        final int result = getPooled(fileName, body);
+        if (result == 0) {
+            logCallback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+                @Override
+                public String build() {
+                    try {
+                        return body.toString(Constants.DEFAULT_ENCODING);
+                    } catch (UnsupportedEncodingException e) {
+                        return body.toString();
+                    }
+                }
+
+            });
+        } // if
+
+        return result;
+    } // if
+
     logCallback.log("Client initiates a socket factory.");
 
     SSLSocket soc = null;
@@ -104,6 +149,7 @@ public int get(SSLContext sslContext, String fileName) throws Exception {
         logCallback.log("Client creates a socket.");
         soc = (SSLSocket) sslFact.createSocket(host, port);
         soc.setSoTimeout(timeout);
+        SSLContextRegistry.watch(soc);
 
         logCallback.log("Client sends a request.");
         return proc(soc, fileName);
@@ -114,6 +160,176 @@ public int get(SSLContext sslContext, String fileName) throws Exception {
     }
 }
 
+/**
+ * Получение файла с записью тела ответа в выходной поток.
+ * Тело не накапливается в памяти. Выходной поток не
+ * закрывается.
+ *
+ * @param sslContext Контекст для подключения.
+ * @param fileName имя файла
+ * @param body поток для записи тела ответа
+ * @return код ошибки или 0 в случае успеха
+ * @throws Exception ошибки
+ */
+public int get(SSLContext sslContext, String fileName, OutputStream body)
+        throws Exception {
+
+    if (connectionPool != null) {
+        return getPooled(fileName, body);
+    } // if
+
+    logCallback.log("Client initiates a socket factory.");
+
+    SSLSocket soc = null;
+
+    try {
+
+        final SSLSocketFactory sslFact = sslContext.getSocketFactory();
+
+        logCallback.log("Client creates a socket.");
+        soc = (SSLSocket) sslFact.createSocket(host, port);
+        soc.setSoTimeout(timeout);
+        SSLContextRegistry.watch(soc);
+
+        logCallback.log("Client sends a request.");
+        return proc(soc, fileName, body);
+
+    } finally {
+        if (soc != null)
+            soc.close();
+    }
+}
+
+/**
+ * Получение файла с сохранением тела ответа в файл.
+ *
+ * @param sslContext Контекст для подключения.
+ * @param fileName имя файла
+ * @param destination файл для сохранения
+ * @return код ошибки или 0 в случае успеха
+ * @throws Exception ошибки
+ */
+public int get(SSLContext sslContext, String fileName, File destination)
+        throws Exception {
+
+    final OutputStream out =
+        new BufferedOutputStream(new FileOutputStream(destination));
+
+    try {
+        return get(sslContext, fileName, out);
+    } finally {
+        out.close();
+    }
+}
+
+/**
+ * Получение файла по соединению из пула (HTTP/1.1 keep-alive).
+ * Если повторно использованное соединение оказалось закрыто
+ * сервером до получения ответа, то запрос повторяется один
+ * раз по новому соединению, минуя свободные соединения пула.
+ * Ошибка повторного запроса не перехватывается.
+ *
+ * @param fileName имя файла
+ * @param body поток для записи тела ответа
+ * @return код ошибки или 0 в случае успеха
+ * @throws Exception ошибки
+ */
+private int getPooled(String fileName, OutputStream body) throws Exception {
+
+    Integer result = requestPooled(fileName, body, false);
+
+    if (result == null) {
+        result = requestPooled(fileName, body, true);
+    } // if
+
+    return result;
+}
+
+/**
+ * Однократное выполнение запроса по соединению из пула.
+ *
+ * @param fileName имя файла
+ * @param body поток для записи тела ответа
+ * @param fresh True, если нужно новое соединение.
+ * @return код ошибки, 0 в случае успеха или null, если
+ * повторно использованное соединение оказалось закрыто до
+ * получения ответа.
+ * @throws Exception ошибки
+ */
+private Integer requestPooled(String fileName, OutputStream body,
+        boolean fresh) throws Exception {
+
+    final SSLConnectionPool.Connection connection =
+        connectionPool.acquire(host, port, timeout, fresh);
+
+    logCallback.log("Client " + (connection.isReused()
+        ? "reuses a pooled connection." : "creates a connection."));
+
+    boolean reusable = false;
+    boolean responseStarted = false;
+
+    try {
+
+        final OutputStream out = connection.getSocket().getOutputStream();
+        final HttpResponseReader in = connection.getReader();
+
+        // отправка запроса
+        final String req = "GET /" + fileName + " HTTP/1.1\r\n" +
+            "Host: " + host + "\r\n" +
+            "Connection: keep-alive\r\n\r\n";
+        logCallback.log(LogCallback.Level.DEBUG, "Client's request: " + req);
+        out.write(req.getBytes());
+        out.flush();
+
+        // разбор ответа
+        final String answer =
+            new String(in.readHeader(http_header_separator.getBytes()));
+        responseStarted = true;
+        logCallback.log(LogCallback.Level.DEBUG, answer);
+
+        int fileLength = 0;
+        try {
+            fileLength = parseAnswer(answer);
+        } catch (IOException e) {
+            logCallback.log(e.getMessage());
+            return -1;
+        }
+
+        final boolean chunked = isChunked(answer);
+
+        final long received = in.readBody(body, fileLength, chunked);
+        logCallback.log("Client received " + received + " byte(s).");
+
+        // Соединение можно использовать повторно, только если
+        // конец тела определен не закрытием соединения.
+        reusable = (fileLength >= 0 || chunked) && !isConnectionClose(answer);
+
+        logCallback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+            @Override
+            public String build() {
+                return "Connection pool: " + connectionPool.getStatistics();
+            }
+
+        });
+
+        return 0;
+
+    } catch (IOException e) {
+
+        if (connection.isReused() && !responseStarted) {
+            logCallback.log("Pooled connection is stale, retry on a " +
+                "new connection: " + e.getMessage());
+            return null;
+        } // if
+
+        throw e;
+
+    } finally {
+        connectionPool.release(connection, reusable);
+    }
+}
+
 /**
  * Выполнение обмена данными с сервером.
  *
@@ -125,23 +341,66 @@ public int get(SSLContext sslContext, String fileName) throws Exception {
 public int proc(Socket soc, String file)
         throws IOException {
 
-    final InputStream in = soc.getInputStream();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    final int result = proc(soc, file, body);
+    if (result == 0) {
+        logCallback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+            @Override
+            public String build() {
+                try {
+                    return body.toString(Constants.DEFAULT_ENCODING);
+                } catch (UnsupportedEncodingException e) {
+                    return body.toString();
+                }
+            }
+
+        });
+    } // if
+
+    return result;
+}
+
+/**
+ * Выполнение обмена данными с сервером с записью тела ответа
+ * в выходной поток. Ответ читается блоками через
+ * {@link HttpResponseReader}.
+ *
+ * @param soc сокет
+ * @param file имя файла
+ * @param body поток для записи тела ответа
+ * @return код ошибки или 0 в случае успеха
+ * @throws IOException ошибки ввода-вывода
+ */
+public int proc(Socket soc, String file, OutputStream body)
+        throws IOException {
+
+    final HttpResponseReader in =
+        new HttpResponseReader(soc.getInputStream());
     final OutputStream out = soc.getOutputStream();
 
     // отправка запроса
     final String req = "GET /" + file + " HTTP/1.0\r\n\r\n";
-    logCallback.log("Client's request: " + req);
+    logCallback.log(LogCallback.Level.DEBUG, "Client's request: " + req);
     out.write(req.getBytes());
     out.flush();
 
-    SSLSession session = ((SSLSocket)soc).getSession();
-    logCallback.log("Chosen cipher suite: " + session.getCipherSuite());
+    final SSLSession session = ((SSLSocket)soc).getSession();
+    logCallback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+        @Override
+        public String build() {
+            return "Chosen cipher suite: " + session.getCipherSuite();
+        }
+
+    });
 
     // разбор ответа
     logCallback.log("Client parses answer.");
     final String answer =
-        new String(readHeader(in, http_header_separator.getBytes()));
-    logCallback.log(answer);
+        new String(in.readHeader(http_header_separator.getBytes()));
+    logCallback.log(LogCallback.Level.DEBUG, answer);
 
     int fileLength = 0;
     try {
@@ -151,15 +410,16 @@ public int proc(Socket soc, String file)
         return -1;
     }
 
-    final byte[] body = readBody(in, fileLength);
-    final String bodyStr = new String(body, Constants.DEFAULT_ENCODING);
+    final long received = in.readBody(body, fileLength, isChunked(answer));
+    logCallback.log("Client received " + received + " byte(s).");
 
-    logCallback.log(bodyStr);
     return 0;
 }
 
 /**
  * Чтение потока до конца заголовка.Может быть вызвано с new byte[] {(byte)' '}
+ * Поток читается по одному байту, чтобы не захватить начало
+ * тела; для чтения всего ответа блоками служит {@link HttpResponseReader}.
  *
  * @param in входной поток
  * @param end конец заголовка
@@ -204,13 +464,13 @@ public static byte[] readBody(InputStream in, int len) throws IOException {
 
         while (pos != len) {
 
-            next = in.read();
+            next = in.read(buf, pos, len - pos);
 
             if (next == -1) {
                 throw new IOException(" Error reading HTTP body");
             } // if
 
-            buf[pos++] = (byte) next;
+            pos += next;
         } // while
 
         return buf;
@@ -220,10 +480,11 @@ public static byte[] readBody(InputStream in, int len) throws IOException {
     else {
 
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[HttpResponseReader.DEFAULT_BUFFER_SIZE];
 
         while (true) {
 
-            int next = in.read();
+            int next = in.read(chunk);
 
             if (next == -1) {
 
@@ -235,13 +496,55 @@ public static byte[] readBody(InputStream in, int len) throws IOException {
                 break;
             } // if
 
-            buf.write((byte) next);
+            buf.write(chunk, 0, next);
         } // while
 
         return buf.toByteArray();
     } // else
 }
 
+/**
+ * Проверка, требует ли сервер закрыть соединение после ответа.
+ *
+ * @param str строка ответа
+ * @return true, если задан Connection: close или ответ HTTP/1.0
+ * без Connection: keep-alive
+ */
+public static boolean isConnectionClose(String str) {
+    final String[] split = str.split("\r\n");
+    boolean keepAlive = !split[0].toUpperCase().startsWith("HTTP/1.0");
+    for (int i = 1; i < split.length; i++) {
+        final int colon = split[i].indexOf(':');
+        if (colon > 0 && split[i].substring(0, colon).trim()
+                .equalsIgnoreCase("Connection")) {
+            final String value = split[i].substring(colon + 1).trim();
+            if (value.equalsIgnoreCase("close"))
+                return true;
+            if (value.equalsIgnoreCase("keep-alive"))
+                keepAlive = true;
+        }
+    }
+    return !keepAlive;
+}
+
+/**
+ * Проверка, передается ли тело ответа в кодировке chunked.
+ *
+ * @param str строка ответа
+ * @return true, если задан Transfer-Encoding: chunked
+ */
+public static boolean isChunked(String str) {
+    final String[] split = str.split("\r\n");
+    for (int i = 1; i < split.length; i++) {
+        final int colon = split[i].indexOf(':');
+        if (colon > 0 && split[i].substring(0, colon).trim()
+                .equalsIgnoreCase("Transfer-Encoding") &&
+                split[i].substring(colon + 1).toLowerCase().contains("chunked"))
+            return true;
+    }
+    return false;
+}
+
 /**
  * Разбор ответа сервера и извлечение длины файла
  *
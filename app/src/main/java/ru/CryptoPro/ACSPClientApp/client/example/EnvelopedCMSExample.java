@@ -111,14 +111,7 @@ public class EnvelopedCMSExample extends IEncryptDecryptData {
 
         // Создание Enveloped CMS.
         EnvelopedSignature envelopedSignature = new EnvelopedSignature();
-        if (isUseTransport) {
-            callback.log("Add KeyTransport recipient.");
-            envelopedSignature.addKeyTransRecipient(getCertificate());
-        } // if
-        else {
-            callback.log("Add KeyAgreement recipient.");
-            envelopedSignature.addKeyAgreeRecipient(getCertificate());
-        } // else
+        addRecipient(callback, envelopedSignature);
 
         ByteArrayOutputStream outputSignatureStream = new ByteArrayOutputStream();
 
@@ -167,5 +160,25 @@ public class EnvelopedCMSExample extends IEncryptDecryptData {
 
     }
 
+    /**
+     * Добавление получателя Enveloped CMS.
+     *
+     * @param callback Логгер.
+     * @param envelopedSignature Enveloped CMS.
+     * @throws Exception
+     */
+    protected void addRecipient(LogCallback callback,
+        EnvelopedSignature envelopedSignature) throws Exception {
+
+        if (isUseTransport) {
+            callback.log("Add KeyTransport recipient.");
+            envelopedSignature.addKeyTransRecipient(getCertificate());
+        } // if
+        else {
+            callback.log("Add KeyAgreement recipient.");
+            envelopedSignature.addKeyAgreeRecipient(getCertificate());
+        } // else
+
+    }
 
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import ru.CryptoPro.ACSPClientApp.util.FileCipher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Класс ExampleFiles предназначен для подготовки
+ * временных файлов примеров шифрования файлов.
+ *
+ * 18/10/2026
+ *
+ */
+final class ExampleFiles {
+
+    /**
+     * Размер файла примеров по умолчанию.
+     */
+    static final int DEFAULT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private ExampleFiles() {
+        ;
+    }
+
+    /**
+     * Создание временного файла со случайными данными.
+     *
+     * @param prefix Префикс имени файла.
+     * @param length Длина данных.
+     * @return файл. Должен быть удален после использования.
+     * @throws IOException
+     */
+    static File createRandom(String prefix, int length) throws IOException {
+
+        final File file = File.createTempFile(prefix, ".bin");
+        final byte[] buffer = new byte[FileCipher.DEFAULT_BUFFER_SIZE];
+        final Random random = new Random();
+
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+
+            int left = length;
+            while (left > 0) {
+                random.nextBytes(buffer);
+                int count = Math.min(left, buffer.length);
+                out.write(buffer, 0, count);
+                left -= count;
+            } // while
+
+        } catch (IOException e) {
+            out.close();
+            file.delete();
+            throw e;
+        }
+
+        out.close();
+        return file;
+    }
+
+}
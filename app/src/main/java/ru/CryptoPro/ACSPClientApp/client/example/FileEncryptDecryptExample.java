@@ -0,0 +1,288 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IEncryptDecryptData;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.AgreementKeyCache;
+import ru.CryptoPro.ACSPClientApp.util.CryptoPrimitivePool;
+import ru.CryptoPro.ACSPClientApp.util.FileCipher;
+import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
+import ru.CryptoPro.JCP.JCP;
+import ru.CryptoPro.JCP.params.CryptParamsSpec;
+import ru.CryptoPro.JCSP.JCSP;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+
+/**
+ * Класс FileEncryptDecryptExample реализует пример
+ * зашифрования и расшифрования файла на сессионном ключе
+ * с помощью {@link FileCipher}. Сессионный ключ передается
+ * в заголовке файла, зашифрованный на ключе согласования
+ * клиента, а сервер берет ключ согласования по UKM из
+ * заголовка из кеша ключей согласования. Затем файл
+ * шифруется в сегментированном формате в одном потоке и в
+ * нескольких потоках, и каждый результат расшифровывается
+ * другим способом. Пример выполняется в пуле задач.
+ *
+ * 18/10/2026
+ *
+ */
+public class FileEncryptDecryptExample extends IEncryptDecryptData {
+
+    /**
+     * Алгоритм потокового шифрования файла.
+     */
+    private static final String FILE_TRANSFORMATION =
+        JCSP.GOST_CIPHER_NAME + "/CNT/NoPadding";
+
+    /**
+     * Размер сегмента при многопоточном шифровании файла.
+     */
+    private static final int FILE_SEGMENT_SIZE = 256 * 1024;
+
+    /**
+     * Конструктор.
+     *
+     * @param adapter Настройки примера.
+     */
+    public FileEncryptDecryptExample(ContainerAdapter adapter) {
+        super(adapter);
+    }
+
+    @Override
+    public void getResult(LogCallback callback) throws Exception {
+        getResult(callback, new FileEncryptDecryptThread());
+    }
+
+    /**
+     * Класс FileEncryptDecryptThread реализует зашифрование
+     * и расшифрование файла в отдельном потоке.
+     *
+     */
+    private class FileEncryptDecryptThread implements IThreadExecuted {
+
+        @Override
+        public void execute(LogCallback callback) {
+
+            try {
+
+                if (encryptDecryptFile(callback)) {
+                    callback.setStatusOK();
+                } // if
+                else {
+                    callback.setStatusFailed();
+                } // else
+
+            } catch (Exception e) {
+                callback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Operation exception", e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Зашифрование и расшифрование файла.
+     *
+     * @param callback Логгер.
+     * @return true, если расшифрованные файлы совпадают с
+     * исходным.
+     * @throws Exception
+     */
+    private boolean encryptDecryptFile(LogCallback callback) throws Exception {
+
+        // Тип контейнера по умолчанию.
+        final String keyStoreType = KeyStoreType.currentType();
+        callback.log("Default container type: " + keyStoreType);
+
+        // Сторона клиента (алиса).
+
+        callback.log("Load client parameters.");
+
+        FileEncryptDecryptExample client =
+            new FileEncryptDecryptExample(containerAdapter);
+
+        client.load(true, keyStoreType, containerAdapter.getClientAlias(),
+            containerAdapter.getClientPassword(), callback);
+
+        // Сторона сервера (боб).
+
+        callback.log("Load server parameters.");
+
+        final FileEncryptDecryptExample server =
+            new FileEncryptDecryptExample(containerAdapter);
+
+        server.load(true, keyStoreType, containerAdapter.getServerAlias(),
+            containerAdapter.getServerPassword(), callback);
+
+        final PublicKey clientPublicKey = client.getCertificate().getPublicKey();
+        PublicKey serverPublicKey = server.getCertificate().getPublicKey();
+
+        // Генерация сессионного ключа клиентом.
+
+        KeyGenerator keyGen = KeyGenerator.getInstance(
+            JCSP.GOST_CIPHER_NAME, JCSP.PROVIDER_NAME);
+
+        switch (algorithmSelector.getProviderType()) {
+
+            case pt2012Short:
+            case pt2012Long:
+                keyGen.init(CryptParamsSpec.getInstance(CryptParamsSpec.Rosstandart_TC26_Z));
+            break;
+
+        } // switch
+
+        SecretKey sessionKey = keyGen.generateKey();
+
+        callback.log("Session key was generated by client: " +
+            sessionKey.getAlgorithm());
+
+        callback.log("Prepare file: " + ExampleFiles.DEFAULT_SIZE + " bytes.");
+
+        final File source = ExampleFiles.createRandom("plain", ExampleFiles.DEFAULT_SIZE);
+        final File encrypted = File.createTempFile("encrypted", ".bin");
+        final File decrypted = File.createTempFile("decrypted", ".bin");
+        final File parallel = File.createTempFile("parallel", ".bin");
+
+        AgreementKeyCache.Entry clientEntry = null;
+
+        try {
+
+            // Ключ согласования клиента и UKM для пары
+            // клиент-сервер из кеша. Запись кеша освобождается
+            // по завершении шифрования.
+
+            SecureRandom random =
+                SecureRandom.getInstance(JCP.CP_RANDOM, JCSP.PROVIDER_NAME);
+
+            clientEntry = AgreementKeyCache.getForPeer(keyStoreType,
+                containerAdapter.getClientAlias(), serverPublicKey, random,
+                SessionEncryptDecryptExample.agreement(
+                    client.getPrivateKey(), serverPublicKey));
+
+            SecretKey clientAgree = clientEntry.getKey();
+            byte[] ukm = clientEntry.getUkm();
+
+            final HashExample hash = new HashExample(containerAdapter);
+            final byte[] sourceDigest = hash.digest(callback, source, true);
+
+            final FileCipher fileCipher = new FileCipher(
+                FILE_TRANSFORMATION, JCSP.PROVIDER_NAME);
+
+            FileCipher.Result result = fileCipher.encrypt(source,
+                encrypted, sessionKey, clientAgree, ukm);
+
+            callback.log("Client's file encrypting was performed: " + result);
+
+            final FileCipher.KeyResolver resolver = new FileCipher.KeyResolver() {
+
+                @Override
+                public SecretKey resolve(byte[] headerUkm, byte[] wrappedKey)
+                    throws Exception {
+
+                    // Ключ согласования сервера по UKM из
+                    // заголовка.
+
+                    AgreementKeyCache.Entry serverEntry = AgreementKeyCache.get(
+                        keyStoreType, containerAdapter.getServerAlias(),
+                        clientPublicKey, headerUkm, SessionEncryptDecryptExample
+                            .agreement(server.getPrivateKey(), clientPublicKey));
+
+                    try {
+
+                        Cipher cipher = CryptoPrimitivePool.getCipher(
+                            FILE_TRANSFORMATION, JCSP.PROVIDER_NAME);
+
+                        cipher.init(Cipher.UNWRAP_MODE, serverEntry.getKey());
+                        return (SecretKey) cipher.unwrap(wrappedKey, null,
+                            Cipher.SECRET_KEY);
+
+                    } finally {
+                        serverEntry.release();
+                    }
+
+                }
+
+            };
+
+            result = fileCipher.decrypt(encrypted, decrypted, resolver);
+            callback.log("Server's file decrypting was performed: " + result);
+
+            if (!MessageDigest.isEqual(sourceDigest, hash.digest(callback, decrypted, false))) {
+                callback.log(LogCallback.Level.ERROR,
+                    "Error in file encrypting/decrypting. Invalid data.");
+                return false;
+            } // if
+
+            // Сегментированный формат: сегменты шифруются
+            // независимо, поэтому результат не зависит от
+            // количества потоков.
+
+            final int threads = Runtime.getRuntime().availableProcessors();
+
+            result = fileCipher.encryptSegmented(source, encrypted, sessionKey,
+                clientAgree, ukm, FILE_SEGMENT_SIZE, 1);
+            callback.log("Client's segmented file encrypting (1 thread) was performed: " + result);
+
+            result = fileCipher.encryptSegmented(source, parallel, sessionKey,
+                clientAgree, ukm, FILE_SEGMENT_SIZE, threads);
+            callback.log("Client's segmented file encrypting (" + threads +
+                " threads) was performed: " + result);
+
+            result = fileCipher.decrypt(encrypted, decrypted, resolver, threads);
+            callback.log("Server's segmented file decrypting (" + threads +
+                " threads) was performed: " + result);
+
+            if (!MessageDigest.isEqual(sourceDigest, hash.digest(callback, decrypted, false))) {
+                callback.log(LogCallback.Level.ERROR,
+                    "Error in segmented file encrypting/decrypting. Invalid data.");
+                return false;
+            } // if
+
+            result = fileCipher.decrypt(parallel, decrypted, resolver, 1);
+            callback.log("Server's segmented file decrypting (1 thread) was performed: " + result);
+
+            if (!MessageDigest.isEqual(sourceDigest, hash.digest(callback, decrypted, false))) {
+                callback.log(LogCallback.Level.ERROR,
+                    "Error in segmented file encrypting/decrypting. Invalid data.");
+                return false;
+            } // if
+
+            return true;
+
+        } finally {
+
+            if (clientEntry != null) {
+                clientEntry.release();
+            } // if
+
+            source.delete();
+            encrypted.delete();
+            decrypted.delete();
+            parallel.delete();
+        }
+
+    }
+
+}
@@ -18,6 +18,7 @@ import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IGenKeyPairData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.ContainerCatalog;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 
 import ru.CryptoPro.JCP.KeyStore.JCPPrivateKeyEntry;
@@ -175,6 +176,9 @@ public class GenKeyPairExample extends IGenKeyPairData {
 
                 } // else
 
+                ContainerCatalog.put(keyStoreType, storeAlias,
+                    keypair.getPrivate().getAlgorithm());
+
                 // Получение из УЦ и установка сертификата в контейнер,
                 // если требуется.
 
@@ -15,9 +15,14 @@ import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IHashData;
 import ru.CryptoPro.ACSPClientApp.util.AlgorithmSelector;
+import ru.CryptoPro.ACSPClientApp.util.BatchDigestService;
+import ru.CryptoPro.ACSPClientApp.util.StreamDigestService;
 import ru.CryptoPro.JCSP.JCSP;
 
+import java.io.File;
 import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Класс HashExample реализует пример хеширования
@@ -60,4 +65,76 @@ public class HashExample implements IHashData {
         callback.setStatusOK();
     }
 
+    /**
+     * Потоковое хеширование файла произвольного размера.
+     * Расход памяти не зависит от размера файла.
+     *
+     * @param callback Логгер.
+     * @param file Хешируемый файл.
+     * @param mapped True, если файл следует отображать в
+     * память, иначе - читать через файловый канал.
+     * @return хеш файла.
+     * @throws Exception
+     */
+    public byte[] digest(LogCallback callback, File file, boolean mapped)
+        throws Exception {
+
+        String digestAlgorithm = AlgorithmSelector.getInstance(
+            containerAdapter.getProviderType()).getDigestAlgorithmName();
+
+        callback.log("Init stream digest (" + digestAlgorithm +
+            ") for file '" + file.getPath() + "' :");
+
+        StreamDigestService digestService =
+            new StreamDigestService(digestAlgorithm);
+
+        byte[] digest = mapped ? digestService.digestMapped(file)
+            : digestService.digest(file);
+
+        callback.log("Compute digest:");
+        callback.log(digest, true);
+
+        callback.log("Processed " + digestService.getLastProcessedBytes() +
+            " bytes in " + digestService.getLastElapsedMillis() + " ms, " +
+            "throughput: " + digestService.getLastThroughput() + " MB/s");
+
+        return digest;
+    }
+
+    /**
+     * Параллельное хеширование множества документов.
+     *
+     * @param callback Логгер.
+     * @param documents Документы.
+     * @return хеши документов в порядке входных данных.
+     * @throws Exception
+     */
+    public List<byte[]> digest(LogCallback callback,
+        Collection<byte[]> documents) throws Exception {
+
+        String digestAlgorithm = AlgorithmSelector.getInstance(
+            containerAdapter.getProviderType()).getDigestAlgorithmName();
+
+        callback.log("Init batch digest (" + digestAlgorithm +
+            ") for " + documents.size() + " document(s).");
+
+        BatchDigestService digestService =
+            new BatchDigestService(digestAlgorithm);
+
+        try {
+
+            long start = System.nanoTime();
+            List<byte[]> digests = digestService.digest(documents);
+
+            callback.log("Computed " + digests.size() + " digest(s) in " +
+                ((System.nanoTime() - start) / 1000000L) + " ms.");
+
+            return digests;
+
+        } finally {
+            digestService.shutdown();
+        }
+
+    }
+
 }
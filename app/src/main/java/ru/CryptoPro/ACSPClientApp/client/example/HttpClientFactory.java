@@ -0,0 +1,347 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import org.apache.http.conn.ssl.SSLSocketFactory;
+
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.ConnectionPool;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.RemoteConnectionInfo;
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
+import ru.CryptoPro.ssl.Provider;
+
+/**
+ * Служебный класс HttpClientFactory предназначен для
+ * хранения клиентов OkHttp и Retrofit между запросами.
+ * Клиент создается однажды для настроек подключения
+ * примера, поэтому пул соединений, диспетчер запросов и
+ * кеш TLS сессий используются повторно.
+ *
+ * 18/10/2026
+ *
+ */
+public final class HttpClientFactory {
+
+    /**
+     * Базовый адрес для Retrofit.
+     */
+    public static final String BASE_URL = "https://cpca.cryptopro.ru:443";
+
+    /**
+     * Максимальное количество одновременных запросов к
+     * одному хосту по умолчанию.
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
+    /**
+     * Максимальное количество одновременных запросов по
+     * умолчанию.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+
+    /**
+     * Количество простаивающих соединений в пуле.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * Время жизни простаивающего соединения (мс).
+     */
+    private static final long KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+
+    /**
+     * Клиенты.
+     */
+    private static final Map<String, Entry> clients =
+        new HashMap<String, Entry>();
+
+    /**
+     * Максимальное количество одновременных запросов к
+     * одному хосту.
+     */
+    private static int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+
+    /**
+     * Максимальное количество одновременных запросов.
+     */
+    private static int maxRequests = DEFAULT_MAX_REQUESTS;
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private HttpClientFactory() {
+        ;
+    }
+
+    /**
+     * Получение интерфейса CryptoApi для настроек примера.
+     * При первом обращении загружается хранилище доверенных
+     * сертификатов и создаются клиенты.
+     *
+     * @param adapter Настройки примера.
+     * @param timeout Таймаут подключения и чтения (мс).
+     * @param callback Логгер.
+     * @return интерфейс CryptoApi.
+     * @throws Exception
+     */
+    public static synchronized CryptoApi getApi(ContainerAdapter adapter,
+        long timeout, LogCallback callback) throws Exception {
+
+        final String key = key(adapter);
+        Entry entry = clients.get(key);
+
+        if (entry == null) {
+
+            entry = create(adapter, timeout, callback);
+            clients.put(key, entry);
+
+        } // if
+        else {
+            callback.log("Reuse http client, connections in pool: " +
+                entry.client.connectionPool().connectionCount() +
+                " (idle: " + entry.client.connectionPool().idleConnectionCount() + ")");
+        } // else
+
+        return entry.api;
+    }
+
+    /**
+     * Задание максимального количества одновременных
+     * запросов к одному хосту. Применяется и к уже
+     * созданным клиентам.
+     *
+     * @param count Количество запросов.
+     */
+    public static synchronized void setMaxRequestsPerHost(int count) {
+
+        maxRequestsPerHost = count;
+
+        for (Entry entry : clients.values()) {
+            entry.client.dispatcher().setMaxRequestsPerHost(count);
+        } // for
+
+    }
+
+    /**
+     * Задание максимального количества одновременных
+     * запросов. Применяется и к уже созданным клиентам.
+     *
+     * @param count Количество запросов.
+     */
+    public static synchronized void setMaxRequests(int count) {
+
+        maxRequests = count;
+
+        for (Entry entry : clients.values()) {
+            entry.client.dispatcher().setMaxRequests(count);
+        } // for
+
+    }
+
+    /**
+     * Удаление клиента для настроек примера, например,
+     * после смены ключа или пароля. Простаивающие соединения
+     * клиента закрываются, выполняемые запросы завершаются
+     * обычным образом, а при следующем обращении клиент
+     * создается заново с новым SSL контекстом.
+     *
+     * @param adapter Настройки примера.
+     */
+    public static synchronized void invalidate(ContainerAdapter adapter) {
+
+        final Entry entry = clients.remove(key(adapter));
+
+        if (entry != null) {
+            entry.client.connectionPool().evictAll();
+        } // if
+
+    }
+
+    /**
+     * Удаление всех клиентов, например, после изменения
+     * хранилища доверенных сертификатов. В отличие от
+     * {@link #shutdown()} выполняемые запросы не отменяются.
+     *
+     */
+    public static synchronized void invalidateAll() {
+
+        for (Entry entry : clients.values()) {
+            entry.client.connectionPool().evictAll();
+        } // for
+
+        clients.clear();
+    }
+
+    /**
+     * Закрытие всех клиентов: отмена запросов и закрытие
+     * соединений пула.
+     *
+     */
+    public static synchronized void shutdown() {
+
+        for (Entry entry : clients.values()) {
+            entry.client.dispatcher().cancelAll();
+            entry.client.connectionPool().evictAll();
+        } // for
+
+        clients.clear();
+    }
+
+    /**
+     * Формирование ключа клиента по настройкам подключения.
+     *
+     * @param adapter Настройки примера.
+     * @return ключ.
+     */
+    private static String key(ContainerAdapter adapter) {
+
+        final RemoteConnectionInfo info = adapter.getConnectionInfo();
+
+        return info.getHostAddress() + ":" + info.getHostPort() + "|" +
+            adapter.getTrustStoreType() + "|" + adapter.getTrustStoreProvider();
+    }
+
+    /**
+     * Создание клиентов.
+     *
+     * @param adapter Настройки примера.
+     * @param timeout Таймаут подключения и чтения (мс).
+     * @param callback Логгер.
+     * @return клиенты.
+     * @throws Exception
+     */
+    private static Entry create(ContainerAdapter adapter, long timeout,
+        LogCallback callback) throws Exception {
+
+        callback.log("Load trusted stores.");
+
+        /**
+         * Для чтения(!) доверенного хранилища доступна
+         * реализация CertStore из Java CSP. В ее случае
+         * можно не использовать пароль.
+         */
+
+        KeyStore ts = KeyStore.getInstance(adapter.getTrustStoreType(),
+            adapter.getTrustStoreProvider());
+
+        ts.load(adapter.getTrustStoreStream(), adapter.getTrustStorePassword());
+
+        final TrustManagerFactory tmf = TrustManagerFactory.getInstance(
+            Provider.KEYMANGER_ALG, Provider.PROVIDER_NAME);
+        tmf.init(ts);
+
+        callback.log("Create socket factory.");
+
+        // Контекст без аутентификации клиента общий с
+        // другими примерами, что позволяет возобновлять
+        // сессии с тем же сервером.
+
+        String contextKey = SSLContextRegistry.key(adapter.getTrustStoreType(),
+            adapter.getTrustStoreProvider(), null, null, false);
+
+        SSLContext sslCtx = SSLContextRegistry.get(contextKey,
+            new SSLContextRegistry.ContextFactory() {
+
+                @Override
+                public SSLContext create() throws Exception {
+
+                    SSLContext context = SSLContext.getInstance(
+                        Provider.ALGORITHM, Provider.PROVIDER_NAME);
+
+                    context.init(null, tmf.getTrustManagers(), null);
+                    return context;
+                }
+
+            });
+
+        X509TrustManager tm = (X509TrustManager) tmf.getTrustManagers()[0];
+
+        ConnectionSpec spec = new ConnectionSpec.Builder(ConnectionSpec.COMPATIBLE_TLS)
+                .tlsVersions(Provider.ALGORITHM)
+                .cipherSuites(Provider.KEYMANGER_ALG)
+                .allEnabledTlsVersions()
+                .supportsTlsExtensions(false)
+                .allEnabledCipherSuites()
+                .build();
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        callback.log("Create http client.");
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        builder.sslSocketFactory(sslCtx.getSocketFactory(), tm);
+        builder.hostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        builder.connectTimeout(timeout, TimeUnit.MILLISECONDS);
+        builder.readTimeout(timeout, TimeUnit.MILLISECONDS);
+        builder.connectionSpecs(Collections.singletonList(spec));
+        builder.dispatcher(dispatcher);
+        builder.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS,
+            KEEP_ALIVE_DURATION, TimeUnit.MILLISECONDS));
+
+        OkHttpClient okHttpClient = builder.build();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(BASE_URL)
+                .callFactory(okHttpClient)
+                .build();
+
+        return new Entry(okHttpClient, retrofit.create(CryptoApi.class));
+    }
+
+    /**
+     * Класс Entry описывает клиенты для одних настроек
+     * подключения.
+     *
+     */
+    private static final class Entry {
+
+        /**
+         * Клиент OkHttp.
+         */
+        private final OkHttpClient client;
+
+        /**
+         * Интерфейс CryptoApi на основе клиента.
+         */
+        private final CryptoApi api;
+
+        /**
+         * Конструктор.
+         *
+         * @param okHttpClient Клиент OkHttp.
+         * @param cryptoApi Интерфейс CryptoApi.
+         */
+        private Entry(OkHttpClient okHttpClient, CryptoApi cryptoApi) {
+            client = okHttpClient;
+            api = cryptoApi;
+        }
+
+    }
+
+}
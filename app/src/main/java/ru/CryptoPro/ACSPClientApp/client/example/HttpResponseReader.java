@@ -0,0 +1,321 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Класс HttpResponseReader предназначен для чтения ответа
+ * HTTP из потока сокета. Данные читаются из сокета блоками
+ * во внутренний буфер, а заголовок и тело разбираются уже
+ * в памяти, поэтому количество обращений к уровню записей
+ * TLS не зависит от размера ответа. Поддерживаются тела с
+ * заголовком Content-Length, с кодированием chunked и
+ * тела, ограниченные закрытием соединения.
+ *
+ * 18/10/2026
+ *
+ */
+public class HttpResponseReader {
+
+    /**
+     * Размер буфера чтения по умолчанию (байт).
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Входной поток.
+     */
+    private final InputStream in;
+
+    /**
+     * Буфер чтения.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Позиция первого непрочитанного байта в буфере.
+     */
+    private int position = 0;
+
+    /**
+     * Количество байт в буфере.
+     */
+    private int limit = 0;
+
+    /**
+     * Конструктор.
+     *
+     * @param stream Входной поток.
+     */
+    public HttpResponseReader(InputStream stream) {
+        this(stream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param stream Входной поток.
+     * @param bufferSize Размер буфера чтения (байт).
+     */
+    public HttpResponseReader(InputStream stream, int bufferSize) {
+
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        } // if
+
+        in = stream;
+        buffer = new byte[bufferSize];
+
+    }
+
+    /**
+     * Чтение заголовка до разделителя включительно. Данные,
+     * прочитанные из сокета после разделителя, остаются в
+     * буфере и будут возвращены при чтении тела.
+     *
+     * @param end Разделитель (конец заголовка).
+     * @return заголовок.
+     * @throws IOException
+     */
+    public byte[] readHeader(byte[] end) throws IOException {
+
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int conformity = 0;
+
+        while (true) {
+
+            if (position == limit && fill() == -1) {
+                throw new IOException(" Client: Error reading HTTP header");
+            } // if
+
+            final int start = position;
+
+            while (position < limit) {
+
+                final byte next = buffer[position++];
+
+                if (next == end[conformity]) {
+                    conformity++;
+                } // if
+                else {
+                    conformity = (next == end[0]) ? 1 : 0;
+                } // else
+
+                if (conformity == end.length) {
+                    header.write(buffer, start, position - start);
+                    return header.toByteArray();
+                } // if
+
+            } // while
+
+            header.write(buffer, start, position - start);
+
+        } // while
+
+    }
+
+    /**
+     * Чтение тела в массив.
+     *
+     * @param contentLength Длина тела или -1, если длина
+     * неизвестна.
+     * @param chunked True, если тело передается в кодировке
+     * chunked.
+     * @return тело.
+     * @throws IOException
+     */
+    public byte[] readBody(long contentLength, boolean chunked)
+        throws IOException {
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(
+            contentLength > 0 && contentLength < Integer.MAX_VALUE
+                ? (int) contentLength : DEFAULT_BUFFER_SIZE);
+
+        readBody(body, contentLength, chunked);
+        return body.toByteArray();
+    }
+
+    /**
+     * Чтение тела с записью в выходной поток. Выходной поток
+     * не закрывается.
+     *
+     * @param out Выходной поток.
+     * @param contentLength Длина тела или -1, если длина
+     * неизвестна.
+     * @param chunked True, если тело передается в кодировке
+     * chunked.
+     * @return количество записанных байт.
+     * @throws IOException
+     */
+    public long readBody(OutputStream out, long contentLength,
+        boolean chunked) throws IOException {
+
+        if (chunked) {
+            return readChunked(out);
+        } // if
+
+        if (contentLength >= 0) {
+            copy(out, contentLength);
+            return contentLength;
+        } // if
+
+        // Если размера нет (такое бывает), то читаем, пока не
+        // получим конец файла.
+
+        long total = 0;
+
+        while (position < limit || fill() != -1) {
+            out.write(buffer, position, limit - position);
+            total += limit - position;
+            position = limit;
+        } // while
+
+        // Ничего не прочитали, сразу конец файла.
+        if (total == 0) {
+            throw new IOException(" Error reading HTTP body");
+        } // if
+
+        return total;
+    }
+
+    /**
+     * Чтение тела в кодировке chunked.
+     *
+     * @param out Выходной поток.
+     * @return количество записанных байт.
+     * @throws IOException
+     */
+    private long readChunked(OutputStream out) throws IOException {
+
+        long total = 0;
+
+        while (true) {
+
+            String sizeLine = readLine();
+
+            // Расширения блока (после ';') игнорируются.
+            final int extension = sizeLine.indexOf(';');
+            if (extension >= 0) {
+                sizeLine = sizeLine.substring(0, extension);
+            } // if
+
+            final long size;
+
+            try {
+                size = Long.parseLong(sizeLine.trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException(" Invalid chunk size: " + sizeLine);
+            }
+
+            if (size == 0) {
+                break;
+            } // if
+
+            copy(out, size);
+            total += size;
+
+            // CRLF после данных блока.
+            readLine();
+
+        } // while
+
+        // Завершающие заголовки (trailer) до пустой строки.
+        while (readLine().length() != 0) {
+            ;
+        } // while
+
+        return total;
+    }
+
+    /**
+     * Копирование заданного количества байт в выходной поток.
+     *
+     * @param out Выходной поток.
+     * @param length Количество байт.
+     * @throws IOException
+     */
+    private void copy(OutputStream out, long length) throws IOException {
+
+        long remaining = length;
+
+        while (remaining > 0) {
+
+            if (position == limit && fill() == -1) {
+                throw new IOException(" Error reading HTTP body");
+            } // if
+
+            final int count = (int) Math.min(remaining, limit - position);
+            out.write(buffer, position, count);
+
+            position += count;
+            remaining -= count;
+
+        } // while
+
+    }
+
+    /**
+     * Чтение строки, завершенной CRLF. Разделитель в
+     * результат не входит.
+     *
+     * @return строка.
+     * @throws IOException
+     */
+    private String readLine() throws IOException {
+
+        final StringBuilder line = new StringBuilder();
+
+        while (true) {
+
+            if (position == limit && fill() == -1) {
+                throw new IOException(" Error reading HTTP chunk");
+            } // if
+
+            final char next = (char) (buffer[position++] & 0xFF);
+
+            if (next == '\n') {
+
+                final int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                } // if
+
+                return line.toString();
+            } // if
+
+            line.append(next);
+
+        } // while
+
+    }
+
+    /**
+     * Чтение очередного блока из потока в буфер.
+     *
+     * @return количество прочитанных байт или -1 в конце
+     * потока.
+     * @throws IOException
+     */
+    private int fill() throws IOException {
+
+        final int read = in.read(buffer, 0, buffer.length);
+
+        position = 0;
+        limit = read > 0 ? read : 0;
+
+        return read;
+    }
+
+}
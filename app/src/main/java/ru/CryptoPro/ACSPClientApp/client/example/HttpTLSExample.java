@@ -13,31 +13,22 @@ package ru.CryptoPro.ACSPClientApp.client.example;
 import android.util.Log;
 
 import org.apache.http.client.HttpClient;
-import org.apache.http.conn.ssl.SSLSocketFactory;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
-import java.security.KeyStore;
-import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
-import javax.net.ssl.X509TrustManager;
-
-import okhttp3.ConnectionSpec;
-import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
-import retrofit2.Retrofit;
+import retrofit2.Call;
+import retrofit2.Callback;
 import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
-import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
-import ru.CryptoPro.JCSP.JCSP;
-import ru.CryptoPro.ssl.Provider;
 import rx.Subscriber;
 
 /**
@@ -48,6 +39,12 @@ import rx.Subscriber;
  *
  */
 public class HttpTLSExample extends TLSExample {
+
+    /**
+     * Количество одновременных запросов.
+     */
+    private int concurrentRequests = 1;
+
     /**
      * Конструктор.
      *
@@ -58,6 +55,22 @@ public class HttpTLSExample extends TLSExample {
         super(adapter);
     }
 
+    /**
+     * Задание количества одновременных запросов. Их число
+     * к одному хосту ограничивается диспетчером клиента
+     * (см. {@link HttpClientFactory#setMaxRequestsPerHost(int)}).
+     *
+     * @param count Количество запросов.
+     */
+    public void setConcurrentRequests(int count) {
+
+        if (count <= 0) {
+            throw new IllegalArgumentException("Invalid request count: " + count);
+        } // if
+
+        concurrentRequests = count;
+    }
+
     @Override
     public void getResult(LogCallback callback) throws Exception {
         getResult(callback, new HttpTLSThread());
@@ -89,77 +102,17 @@ public class HttpTLSExample extends TLSExample {
 
                 URI url = new URI(httpAddress);
 
-                // Хранилища для подключения.
-
-                callback.log("Load trusted stores.");
+                // Клиент создается однажды для настроек подключения
+                // и используется повторно вместе с пулом соединений.
 
-                /**
-                 * Для чтения(!) доверенного хранилища доступна
-                 * реализация CertStore из Java CSP. В ее случае
-                 * можно не использовать пароль.
-                 */
-
-                KeyStore ts = KeyStore.getInstance(
-                    containerAdapter.getTrustStoreType(),
-                    containerAdapter.getTrustStoreProvider());
-
-                ts.load(containerAdapter.getTrustStoreStream(),
-                    containerAdapter.getTrustStorePassword());
-
-                KeyStore ks = null;
-                if (containerAdapter.isUseClientAuth()) {
-
-                    // Тип контейнера по умолчанию.
-                    String keyStoreType = KeyStoreType.currentType();
-                    callback.log("Load key stores. Default container " +
-                        "type: " + keyStoreType);
-
-                    ks = KeyStore.getInstance(keyStoreType, JCSP.PROVIDER_NAME);
-                    ks.load(null, null);
+                CryptoApi cryptoApi = HttpClientFactory.getApi(
+                    containerAdapter, MAX_CLIENT_TIMEOUT, callback);
 
+                if (concurrentRequests > 1) {
+                    executeConcurrently(cryptoApi, callback);
+                    return;
                 } // if
 
-                String keyStorePasswordValue =
-                    containerAdapter.getClientPassword() == null
-                    ? null : String.valueOf(containerAdapter.getClientPassword());
-
-                callback.log("Create socket factory.");
-
-                SSLContext sslCtx = SSLContext.getInstance(Provider.ALGORITHM, Provider.PROVIDER_NAME);
-
-                TrustManagerFactory tmf = TrustManagerFactory.getInstance(Provider.KEYMANGER_ALG, Provider.PROVIDER_NAME);
-                tmf.init(ts);
-
-                sslCtx.init(null, tmf.getTrustManagers(), null);
-
-                javax.net.ssl.SSLSocketFactory sslFactory = sslCtx.getSocketFactory();
-
-                X509TrustManager tm = (X509TrustManager) tmf.getTrustManagers()[0];
-
-                ConnectionSpec spec = new ConnectionSpec.Builder(ConnectionSpec.COMPATIBLE_TLS)
-                        .tlsVersions(Provider.ALGORITHM)
-                        .cipherSuites(Provider.KEYMANGER_ALG)
-                        .allEnabledTlsVersions()
-                        .supportsTlsExtensions(false)
-                        .allEnabledCipherSuites()
-                        .build();
-
-                OkHttpClient.Builder builder;
-                builder = new OkHttpClient.Builder();
-                builder.sslSocketFactory(sslFactory, tm);
-                builder.hostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-                builder.connectTimeout(MAX_CLIENT_TIMEOUT, TimeUnit.MILLISECONDS);
-                builder.readTimeout(MAX_CLIENT_TIMEOUT, TimeUnit.MILLISECONDS);
-                builder.connectionSpecs(Collections.singletonList(spec));
-                OkHttpClient okHttpClient = builder.build();
-
-                Retrofit.Builder retrofitBuilder = new Retrofit.Builder()
-                        .baseUrl("https://cpca.cryptopro.ru:443")
-                        .callFactory(okHttpClient);
-
-                Retrofit retrofit = retrofitBuilder.build();
-
-                CryptoApi cryptoApi = retrofit.create(CryptoApi.class);
                 retrofitResponse = cryptoApi.getData().execute();
 
                 int status = retrofitResponse.raw().code();
@@ -211,5 +164,80 @@ public class HttpTLSExample extends TLSExample {
 
         }
 
+        /**
+         * Асинхронное выполнение нескольких одновременных
+         * запросов через диспетчер клиента.
+         *
+         * @param cryptoApi Интерфейс CryptoApi.
+         * @param callback Логгер.
+         * @throws Exception
+         */
+        private void executeConcurrently(CryptoApi cryptoApi,
+            final LogCallback callback) throws Exception {
+
+            final CountDownLatch done = new CountDownLatch(concurrentRequests);
+            final AtomicInteger succeeded = new AtomicInteger(0);
+
+            callback.log("Send " + concurrentRequests + " concurrent requests.");
+            final long start = System.currentTimeMillis();
+
+            for (int i = 0; i < concurrentRequests; i++) {
+
+                cryptoApi.getData().enqueue(new Callback<ResponseBody>() {
+
+                    @Override
+                    public void onResponse(Call<ResponseBody> call,
+                        retrofit2.Response<ResponseBody> response) {
+
+                        try {
+
+                            if (response.code() == 200) {
+                                succeeded.incrementAndGet();
+                            } // if
+                            else {
+                                callback.log("Bad http response status: " +
+                                    response.code());
+                            } // else
+
+                        } finally {
+
+                            // Тело закрывается, чтобы соединение
+                            // вернулось в пул.
+                            if (response.body() != null) {
+                                response.body().close();
+                            } // if
+
+                            done.countDown();
+                        }
+
+                    }
+
+                    @Override
+                    public void onFailure(Call<ResponseBody> call, Throwable t) {
+                        Log.e(Constants.APP_LOGGER_TAG, "Request failed", t);
+                        done.countDown();
+                    }
+
+                });
+
+            } // for
+
+            if (!done.await(MAX_CLIENT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                callback.log("Timeout waiting for responses.");
+            } // if
+
+            callback.log("Completed " + succeeded.get() + " of " +
+                concurrentRequests + " requests in " +
+                (System.currentTimeMillis() - start) + " ms.");
+
+            if (succeeded.get() == concurrentRequests) {
+                callback.setStatusOK();
+            } // if
+            else {
+                callback.setStatusFailed();
+            } // else
+
+        }
+
     }
 }
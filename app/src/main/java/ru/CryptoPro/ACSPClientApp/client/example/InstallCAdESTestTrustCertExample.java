@@ -33,6 +33,8 @@ import ru.CryptoPro.JCSP.support.BKSTrustStore;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ICAdESData;
+import ru.CryptoPro.ACSPClientApp.util.CertPathCache;
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
 
 /**
  * Класс InstallCAdESTestTrustCertExample реализует пример
@@ -236,6 +238,13 @@ public class InstallCAdESTestTrustCertExample implements ICAdESData {
             FileOutputStream updatedTrustStore = new FileOutputStream(trustStoreFile);
             keyStore.store(updatedTrustStore, DEFAULT_TRUST_STORE_PASSWORD);
 
+            // Хранилище изменилось: загруженные ранее корневые
+            // сертификаты, проверенные цепочки, SSL контексты и
+            // HTTP клиенты устарели.
+            CertPathCache.invalidateAll();
+            SSLContextRegistry.invalidateAll();
+            HttpClientFactory.invalidateAll();
+
             callback.log("The trusted certificate was added successfully.");
 
         } // if
@@ -0,0 +1,1035 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import ru.CryptoPro.ACSPClientApp.util.ByteBufferPool;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс NioTLSClient реализует неблокирующий клиент TLS
+ * на основе SSLEngine. Все соединения обслуживаются одним
+ * потоком с селектором, а ресурсоемкие задачи рукопожатия
+ * (выработка ключей) выполняются небольшим пулом потоков,
+ * поэтому количество одновременных соединений не связано
+ * с количеством потоков.
+ *
+ * Для каждого соединения задается срок, по истечении
+ * которого оно закрывается с ошибкой. Буферы SSLEngine
+ * берутся из общего пула и возвращаются в него после
+ * закрытия соединения.
+ *
+ * Обработчики результатов вызываются в потоке селектора
+ * и не должны выполнять длительных операций.
+ *
+ * 18/10/2026
+ *
+ */
+public class NioTLSClient {
+
+    /**
+     * Срок выполнения запроса по умолчанию (мс).
+     */
+    public static final long DEFAULT_TIMEOUT = 30 * 1000;
+
+    /**
+     * Номер очередного клиента (для имен потоков).
+     */
+    private static final AtomicInteger clientNumber = new AtomicInteger(0);
+
+    /**
+     * Контекст для подключения.
+     */
+    private final SSLContext sslContext;
+
+    /**
+     * Пул буферов.
+     */
+    private final ByteBufferPool bufferPool;
+
+    /**
+     * Селектор.
+     */
+    private final Selector selector;
+
+    /**
+     * Пул потоков для задач рукопожатия.
+     */
+    private final ExecutorService taskExecutor;
+
+    /**
+     * Поток селектора.
+     */
+    private final Thread selectorThread;
+
+    /**
+     * Новые соединения, ожидающие регистрации в селекторе.
+     */
+    private final ConcurrentLinkedQueue<Connection> pending =
+        new ConcurrentLinkedQueue<Connection>();
+
+    /**
+     * Соединения, задачи рукопожатия которых выполнены.
+     */
+    private final ConcurrentLinkedQueue<Connection> ready =
+        new ConcurrentLinkedQueue<Connection>();
+
+    /**
+     * Открытые соединения. Используется только в потоке
+     * селектора.
+     */
+    private final Set<Connection> active = new HashSet<Connection>();
+
+    /**
+     * Признак работы клиента.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Количество успешных запросов.
+     */
+    private final AtomicLong completedCount = new AtomicLong(0);
+
+    /**
+     * Количество запросов, завершенных с ошибкой.
+     */
+    private final AtomicLong failedCount = new AtomicLong(0);
+
+    /**
+     * Количество запросов, не выполненных в срок.
+     */
+    private final AtomicLong timedOutCount = new AtomicLong(0);
+
+    /**
+     * Конструктор. Размер пула потоков для задач
+     * рукопожатия равен количеству доступных процессоров.
+     *
+     * @param context Контекст для подключения.
+     * @throws IOException
+     */
+    public NioTLSClient(SSLContext context) throws IOException {
+        this(context, new ByteBufferPool(),
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param context Контекст для подключения.
+     * @param pool Пул буферов.
+     * @param taskThreads Количество потоков для задач
+     * рукопожатия.
+     * @throws IOException
+     */
+    public NioTLSClient(SSLContext context, ByteBufferPool pool,
+        int taskThreads) throws IOException {
+
+        if (taskThreads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + taskThreads);
+        } // if
+
+        sslContext = context;
+        bufferPool = pool;
+        selector = Selector.open();
+
+        final int number = clientNumber.incrementAndGet();
+
+        taskExecutor = Executors.newFixedThreadPool(taskThreads, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "nio-tls-" + number + "-task-" +
+                    threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+
+        selectorThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                loop();
+            }
+
+        }, "nio-tls-" + number + "-selector");
+
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+
+    }
+
+    /**
+     * Асинхронный запрос файла. Результат передается
+     * обработчику.
+     *
+     * @param host Адрес сервера.
+     * @param port Порт сервера.
+     * @param fileName Имя файла.
+     * @param timeout Срок выполнения запроса (мс), включая
+     * подключение и рукопожатие.
+     * @param listener Обработчик результата.
+     */
+    public void get(String host, int port, String fileName, long timeout,
+        ResponseListener listener) {
+
+        if (!running) {
+            throw new IllegalStateException("Client is closed");
+        } // if
+
+        pending.add(new Connection(host, port, fileName,
+            System.currentTimeMillis() + timeout, listener));
+
+        selector.wakeup();
+    }
+
+    /**
+     * Закрытие клиента. Незавершенные запросы завершаются
+     * с ошибкой. При вызове из обработчика результата, т.е.
+     * из потока селектора, окончание его работы не ожидается:
+     * поток завершится после возврата из обработчика.
+     *
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+
+        running = false;
+        selector.wakeup();
+
+        if (Thread.currentThread() != selectorThread) {
+            selectorThread.join();
+        } // if
+
+        taskExecutor.shutdownNow();
+
+    }
+
+    /**
+     * Получение количества успешных запросов.
+     *
+     * @return количество запросов.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Получение количества запросов, завершенных с ошибкой
+     * (включая просроченные).
+     *
+     * @return количество запросов.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Получение количества запросов, не выполненных в срок.
+     *
+     * @return количество запросов.
+     */
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /**
+     * Цикл потока селектора.
+     *
+     */
+    private void loop() {
+
+        try {
+
+            while (running) {
+
+                registerPending();
+                driveReady();
+
+                final long wait = expire();
+                selector.select(wait);
+
+                final Iterator<SelectionKey> keys =
+                    selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    final Connection connection = (Connection) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    } // if
+
+                    try {
+
+                        if (key.isConnectable()) {
+
+                            if (connection.channel.finishConnect()) {
+                                onConnected(connection);
+                            } // if
+
+                        } // if
+                        else {
+                            drive(connection);
+                        } // else
+
+                    } catch (Exception e) {
+                        fail(connection, e);
+                    }
+
+                } // while
+
+            } // while
+
+        } catch (IOException e) {
+            running = false;
+        } finally {
+
+            final IOException closed = new IOException("Client is closed");
+
+            for (Connection connection : new ArrayList<Connection>(active)) {
+                fail(connection, closed);
+            } // for
+
+            Connection connection;
+            while ((connection = pending.poll()) != null) {
+                fail(connection, closed);
+            } // while
+
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // ignore
+            }
+
+        }
+
+    }
+
+    /**
+     * Открытие каналов для новых соединений.
+     *
+     */
+    private void registerPending() {
+
+        Connection connection;
+
+        while ((connection = pending.poll()) != null) {
+
+            try {
+
+                connection.channel = SocketChannel.open();
+                connection.channel.configureBlocking(false);
+
+                final SSLEngine engine = sslContext.createSSLEngine(
+                    connection.host, connection.port);
+                engine.setUseClientMode(true);
+
+                final SSLSession session = engine.getSession();
+
+                connection.engine = engine;
+                connection.netIn = bufferPool.acquire(session.getPacketBufferSize());
+                connection.netOut = bufferPool.acquire(session.getPacketBufferSize());
+                connection.appIn = bufferPool.acquire(session.getApplicationBufferSize());
+
+                // Исходящий буфер хранится в режиме чтения.
+                connection.netOut.flip();
+
+                active.add(connection);
+
+                connection.key = connection.channel.register(
+                    selector, SelectionKey.OP_CONNECT, connection);
+
+                if (connection.channel.connect(new InetSocketAddress(
+                    connection.host, connection.port))) {
+                    onConnected(connection);
+                } // if
+
+            } catch (Exception e) {
+                fail(connection, e);
+            }
+
+        } // while
+
+    }
+
+    /**
+     * Продолжение обработки соединений после выполнения
+     * задач рукопожатия.
+     *
+     */
+    private void driveReady() {
+
+        Connection connection;
+
+        while ((connection = ready.poll()) != null) {
+
+            if (connection.closed) {
+                continue;
+            } // if
+
+            if (connection.taskError != null) {
+                fail(connection, connection.taskError);
+                continue;
+            } // if
+
+            try {
+                drive(connection);
+            } catch (Exception e) {
+                fail(connection, e);
+            }
+
+        } // while
+
+    }
+
+    /**
+     * Закрытие просроченных соединений.
+     *
+     * @return время до ближайшего срока (мс) или 0, если
+     * открытых соединений нет.
+     */
+    private long expire() {
+
+        final long now = System.currentTimeMillis();
+        long nearest = Long.MAX_VALUE;
+
+        List<Connection> expired = null;
+
+        for (Connection connection : active) {
+
+            if (connection.deadline <= now) {
+
+                if (expired == null) {
+                    expired = new ArrayList<Connection>();
+                } // if
+
+                expired.add(connection);
+
+            } // if
+            else {
+                nearest = Math.min(nearest, connection.deadline);
+            } // else
+
+        } // for
+
+        if (expired != null) {
+
+            for (Connection connection : expired) {
+                timedOutCount.incrementAndGet();
+                fail(connection, new SocketTimeoutException("Deadline exceeded: " +
+                    connection.host + ":" + connection.port));
+            } // for
+
+        } // if
+
+        return nearest == Long.MAX_VALUE ? 0 : Math.max(1, nearest - now);
+    }
+
+    /**
+     * Начало рукопожатия после подключения.
+     *
+     * @param connection Соединение.
+     * @throws IOException
+     */
+    private void onConnected(Connection connection) throws IOException {
+
+        connection.request = ByteBuffer.wrap(
+            ("GET /" + connection.fileName + " HTTP/1.0\r\n\r\n").getBytes());
+
+        connection.engine.beginHandshake();
+        drive(connection);
+
+    }
+
+    /**
+     * Обработка соединения: рукопожатие, отправка запроса и
+     * чтение ответа, пока это возможно без ожидания.
+     *
+     * @param connection Соединение.
+     * @throws IOException
+     */
+    private void drive(final Connection connection) throws IOException {
+
+        final SSLEngine engine = connection.engine;
+
+        while (true) {
+
+            // Сначала отправляем ранее сформированные записи.
+            if (!flush(connection)) {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            } // if
+
+            final SSLEngineResult.HandshakeStatus status =
+                engine.getHandshakeStatus();
+
+            if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks(connection);
+                return;
+            } // if
+
+            if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP ||
+                (status == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING &&
+                connection.request.hasRemaining())) {
+
+                connection.netOut.clear();
+                final SSLEngineResult result =
+                    engine.wrap(connection.request, connection.netOut);
+                connection.netOut.flip();
+
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    flush(connection);
+                    complete(connection);
+                    return;
+                } // if
+
+                continue;
+
+            } // if
+
+            connection.netIn.flip();
+            final SSLEngineResult result =
+                engine.unwrap(connection.netIn, connection.appIn);
+            connection.netIn.compact();
+
+            switch (result.getStatus()) {
+
+                case OK: {
+                    drainApplicationData(connection);
+                }
+                break;
+
+                case BUFFER_OVERFLOW: {
+
+                    drainApplicationData(connection);
+
+                    final int required = engine.getSession().getApplicationBufferSize();
+                    if (connection.appIn.capacity() < required) {
+                        bufferPool.release(connection.appIn);
+                        connection.appIn = bufferPool.acquire(required);
+                    } // if
+
+                }
+                break;
+
+                case BUFFER_UNDERFLOW: {
+
+                    final int required = engine.getSession().getPacketBufferSize();
+                    if (connection.netIn.capacity() < required) {
+
+                        final ByteBuffer larger = bufferPool.acquire(required);
+
+                        connection.netIn.flip();
+                        larger.put(connection.netIn);
+
+                        bufferPool.release(connection.netIn);
+                        connection.netIn = larger;
+
+                    } // if
+
+                    final int read = connection.channel.read(connection.netIn);
+
+                    if (read == -1) {
+                        onEndOfStream(connection);
+                        return;
+                    } // if
+
+                    if (read == 0) {
+                        connection.key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    } // if
+
+                }
+                break;
+
+                case CLOSED: {
+                    drainApplicationData(connection);
+                    complete(connection);
+                }
+                return;
+
+            } // switch
+
+        } // while
+
+    }
+
+    /**
+     * Выполнение задач рукопожатия в пуле потоков. После их
+     * выполнения соединение возвращается в поток селектора.
+     * Ошибка задачи сохраняется в соединении, и поток
+     * селектора завершает запрос с этой ошибкой.
+     *
+     * @param connection Соединение.
+     */
+    private void runDelegatedTasks(final Connection connection) {
+
+        connection.key.interestOps(0);
+
+        taskExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    Runnable task;
+                    while ((task = connection.engine.getDelegatedTask()) != null) {
+                        task.run();
+                    } // while
+
+                } catch (RuntimeException e) {
+                    connection.taskError = new SSLException(
+                        "Handshake task failed", e);
+                }
+
+                ready.add(connection);
+                selector.wakeup();
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Отправка сформированных записей.
+     *
+     * @param connection Соединение.
+     * @return true, если все записи отправлены.
+     * @throws IOException
+     */
+    private boolean flush(Connection connection) throws IOException {
+
+        while (connection.netOut.hasRemaining()) {
+
+            if (connection.channel.write(connection.netOut) == 0) {
+                return false;
+            } // if
+
+        } // while
+
+        return true;
+    }
+
+    /**
+     * Перенос расшифрованных данных в ответ.
+     *
+     * @param connection Соединение.
+     */
+    private void drainApplicationData(Connection connection) {
+
+        final ByteBuffer appIn = connection.appIn;
+        appIn.flip();
+
+        connection.response.write(appIn.array(),
+            appIn.arrayOffset() + appIn.position(), appIn.remaining());
+
+        appIn.clear();
+
+    }
+
+    /**
+     * Обработка закрытия соединения сервером. Сервер может
+     * закрыть соединение без close_notify, поэтому ответ
+     * считается полученным, если рукопожатие завершено и
+     * данные пришли.
+     *
+     * @param connection Соединение.
+     * @throws IOException
+     */
+    private void onEndOfStream(Connection connection) throws IOException {
+
+        try {
+            connection.engine.closeInbound();
+        } catch (SSLException e) {
+            // ignore
+        }
+
+        if (connection.response.size() == 0) {
+            throw new IOException("Connection closed by peer: " +
+                connection.host + ":" + connection.port);
+        } // if
+
+        complete(connection);
+
+    }
+
+    /**
+     * Разбор ответа и передача его обработчику.
+     *
+     * @param connection Соединение.
+     * @throws IOException
+     */
+    private void complete(Connection connection) throws IOException {
+
+        final byte[] data = connection.response.toByteArray();
+        final HttpResponseReader reader =
+            new HttpResponseReader(new ByteArrayInputStream(data));
+
+        final byte[] headerBytes =
+            reader.readHeader(Client.http_header_separator.getBytes());
+        final String header = new String(headerBytes);
+
+        final int status = parseStatus(header);
+        byte[] body = new byte[0];
+
+        if (data.length > headerBytes.length) {
+            body = reader.readBody(status == 200 ? Client.parseAnswer(header) : -1,
+                Client.isChunked(header));
+        } // if
+
+        close(connection);
+        completedCount.incrementAndGet();
+
+        try {
+            connection.listener.onResponse(new Response(connection.host,
+                connection.port, status, body,
+                System.currentTimeMillis() - connection.started));
+        } catch (RuntimeException e) {
+            // ignore
+        }
+
+    }
+
+    /**
+     * Завершение запроса с ошибкой.
+     *
+     * @param connection Соединение.
+     * @param error Ошибка.
+     */
+    private void fail(Connection connection, Exception error) {
+
+        if (connection.closed) {
+            return;
+        } // if
+
+        close(connection);
+        failedCount.incrementAndGet();
+
+        try {
+            connection.listener.onFailure(connection.host, connection.port, error);
+        } catch (RuntimeException e) {
+            // ignore
+        }
+
+    }
+
+    /**
+     * Закрытие соединения и возврат буферов в пул.
+     *
+     * @param connection Соединение.
+     */
+    private void close(Connection connection) {
+
+        connection.closed = true;
+        active.remove(connection);
+
+        if (connection.key != null) {
+            connection.key.cancel();
+        } // if
+
+        if (connection.channel != null) {
+
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+
+        } // if
+
+        bufferPool.release(connection.netIn);
+        bufferPool.release(connection.netOut);
+        bufferPool.release(connection.appIn);
+
+        connection.netIn = null;
+        connection.netOut = null;
+        connection.appIn = null;
+
+    }
+
+    /**
+     * Получение кода ответа из строки статуса.
+     *
+     * @param header Заголовок ответа.
+     * @return код ответа.
+     * @throws IOException
+     */
+    private static int parseStatus(String header) throws IOException {
+
+        final String[] status = header.split("\r\n")[0].split(" ");
+
+        try {
+            return Integer.parseInt(status[1]);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid status line: " + status[0]);
+        }
+
+    }
+
+    /**
+     * Обработчик результатов запросов.
+     *
+     */
+    public interface ResponseListener {
+
+        /**
+         * Получение ответа.
+         *
+         * @param response Ответ.
+         */
+        void onResponse(Response response);
+
+        /**
+         * Ошибка запроса.
+         *
+         * @param host Адрес сервера.
+         * @param port Порт сервера.
+         * @param error Ошибка.
+         */
+        void onFailure(String host, int port, Exception error);
+
+    }
+
+    /**
+     * Класс Response описывает ответ сервера.
+     *
+     */
+    public static final class Response {
+
+        /**
+         * Адрес сервера.
+         */
+        private final String host;
+
+        /**
+         * Порт сервера.
+         */
+        private final int port;
+
+        /**
+         * Код ответа.
+         */
+        private final int status;
+
+        /**
+         * Тело ответа.
+         */
+        private final byte[] body;
+
+        /**
+         * Время выполнения запроса (мс).
+         */
+        private final long elapsed;
+
+        /**
+         * Конструктор.
+         *
+         * @param h Адрес сервера.
+         * @param p Порт сервера.
+         * @param code Код ответа.
+         * @param data Тело ответа.
+         * @param time Время выполнения запроса (мс).
+         */
+        private Response(String h, int p, int code, byte[] data, long time) {
+            host = h;
+            port = p;
+            status = code;
+            body = data;
+            elapsed = time;
+        }
+
+        /**
+         * Получение адреса сервера.
+         *
+         * @return адрес сервера.
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * Получение порта сервера.
+         *
+         * @return порт сервера.
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Получение кода ответа.
+         *
+         * @return код ответа.
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Получение тела ответа.
+         *
+         * @return тело ответа.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Получение времени выполнения запроса.
+         *
+         * @return время (мс).
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+    }
+
+    /**
+     * Класс Connection описывает состояние одного
+     * соединения.
+     *
+     */
+    private static final class Connection {
+
+        /**
+         * Адрес сервера.
+         */
+        private final String host;
+
+        /**
+         * Порт сервера.
+         */
+        private final int port;
+
+        /**
+         * Имя файла.
+         */
+        private final String fileName;
+
+        /**
+         * Срок выполнения запроса.
+         */
+        private final long deadline;
+
+        /**
+         * Время начала запроса.
+         */
+        private final long started = System.currentTimeMillis();
+
+        /**
+         * Обработчик результата.
+         */
+        private final ResponseListener listener;
+
+        /**
+         * Полученные данные ответа.
+         */
+        private final ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        /**
+         * Канал.
+         */
+        private SocketChannel channel = null;
+
+        /**
+         * Ключ селектора.
+         */
+        private SelectionKey key = null;
+
+        /**
+         * Движок TLS.
+         */
+        private SSLEngine engine = null;
+
+        /**
+         * Входящие записи TLS.
+         */
+        private ByteBuffer netIn = null;
+
+        /**
+         * Исходящие записи TLS (в режиме чтения).
+         */
+        private ByteBuffer netOut = null;
+
+        /**
+         * Расшифрованные данные.
+         */
+        private ByteBuffer appIn = null;
+
+        /**
+         * Запрос.
+         */
+        private ByteBuffer request = null;
+
+        /**
+         * Признак закрытия соединения.
+         */
+        private volatile boolean closed = false;
+
+        /**
+         * Ошибка задачи рукопожатия.
+         */
+        private volatile Exception taskError = null;
+
+        /**
+         * Конструктор.
+         *
+         * @param h Адрес сервера.
+         * @param p Порт сервера.
+         * @param file Имя файла.
+         * @param time Срок выполнения запроса.
+         * @param l Обработчик результата.
+         */
+        private Connection(String h, int p, String file, long time,
+            ResponseListener l) {
+            host = h;
+            port = p;
+            fileName = file;
+            deadline = time;
+            listener = l;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ITLSData;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.ByteBufferPool;
+
+import javax.net.ssl.SSLContext;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс NioTLSExample реализует пример одновременной
+ * отправки многих запросов по TLS с помощью
+ * неблокирующего клиента {@link NioTLSClient}. Все
+ * запросы обслуживаются одним потоком селектора и
+ * небольшим пулом потоков для задач рукопожатия. Запрос,
+ * не выполненный в срок, закрывается клиентом.
+ *
+ * 18/10/2026
+ *
+ */
+public class NioTLSExample extends ITLSData {
+
+    /**
+     * Количество одновременных запросов.
+     */
+    private static final int REQUEST_COUNT = 32;
+
+    /**
+     * Количество потоков для задач рукопожатия.
+     */
+    private static final int TASK_THREADS = 2;
+
+    /**
+     * Срок выполнения запроса (мс).
+     */
+    private static final long REQUEST_TIMEOUT = NioTLSClient.DEFAULT_TIMEOUT;
+
+    /**
+     * Конструктор.
+     *
+     * @param adapter Настройки примера.
+     */
+    public NioTLSExample(ContainerAdapter adapter) {
+        super(adapter);
+    }
+
+    @Override
+    public void getResult(LogCallback callback) throws Exception {
+        getResult(callback, new NioTLSThread());
+    }
+
+    /**
+     * Класс NioTLSThread реализует отправку запросов в
+     * отдельном потоке.
+     *
+     */
+    private class NioTLSThread implements IThreadExecuted {
+
+        @Override
+        public void execute(final LogCallback callback) {
+
+            NioTLSClient client = null;
+
+            try {
+
+                final SSLContext sslContext = createSSLContext(callback);
+                final ByteBufferPool buffers = new ByteBufferPool();
+
+                client = new NioTLSClient(sslContext, buffers, TASK_THREADS);
+
+                final CountDownLatch done = new CountDownLatch(REQUEST_COUNT);
+                final AtomicInteger badStatusCount = new AtomicInteger(0);
+
+                final NioTLSClient.ResponseListener listener =
+                    new NioTLSClient.ResponseListener() {
+
+                    @Override
+                    public void onResponse(NioTLSClient.Response response) {
+
+                        if (response.getStatus() != 200) {
+                            badStatusCount.incrementAndGet();
+                        } // if
+
+                        callback.log(LogCallback.Level.DEBUG, "Response " +
+                            response.getStatus() + ", " + response.getBody().length +
+                            " byte(s) in " + response.getElapsed() + " ms.");
+
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(String host, int port, Exception error) {
+                        callback.log(LogCallback.Level.DEBUG, "Request to " + host +
+                            ":" + port + " failed: " + error);
+                        done.countDown();
+                    }
+
+                };
+
+                callback.log("Send " + REQUEST_COUNT + " concurrent request(s), " +
+                    "deadline: " + REQUEST_TIMEOUT + " ms.");
+
+                for (int i = 0; i < REQUEST_COUNT; i++) {
+                    client.get(containerAdapter.getConnectionInfo().getHostAddress(),
+                        containerAdapter.getConnectionInfo().getHostPort(),
+                        containerAdapter.getConnectionInfo().getHostPage(),
+                        REQUEST_TIMEOUT, listener);
+                } // for
+
+                // Просроченные запросы закрывает сам клиент, поэтому
+                // все обработчики вызываются не позже срока.
+
+                if (!done.await(REQUEST_TIMEOUT * 2, TimeUnit.MILLISECONDS)) {
+                    callback.log(LogCallback.Level.ERROR, "Not all requests finished.");
+                } // if
+
+                final long timedOut = client.getTimedOutCount();
+
+                callback.log("Completed: " + client.getCompletedCount() +
+                    ", failed: " + (client.getFailedCount() - timedOut) +
+                    ", timed out: " + timedOut + ", bad status: " +
+                    badStatusCount.get());
+
+                callback.log("Buffers allocated: " + buffers.getAllocatedCount() +
+                    ", reused: " + buffers.getReusedCount());
+
+                if (client.getCompletedCount() == REQUEST_COUNT &&
+                    badStatusCount.get() == 0) {
+                    callback.setStatusOK();
+                } // if
+                else {
+                    callback.setStatusFailed();
+                } // else
+
+            } catch (Exception e) {
+                callback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Operation exception", e);
+            } finally {
+
+                if (client != null) {
+
+                    try {
+                        client.close();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                } // if
+
+            }
+
+        }
+
+    }
+
+}
@@ -13,6 +13,10 @@ package ru.CryptoPro.ACSPClientApp.client.example;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IEncryptDecryptData;
+import ru.CryptoPro.ACSPClientApp.util.AgreementKeyCache;
+import ru.CryptoPro.ACSPClientApp.util.ContainerCatalog;
+import ru.CryptoPro.ACSPClientApp.util.ContainerInstaller;
+import ru.CryptoPro.ACSPClientApp.util.ContainerKeyCache;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.JCSP.JCSP;
 
@@ -98,6 +102,10 @@ public class RemoveContainersExample extends IEncryptDecryptData {
                 if (alias.equals(alias4del)) {
                     callback.log("Deleting container: " + alias);
                     keyStore.deleteEntry(alias);
+                    ContainerKeyCache.invalidate(keyStoreType, alias);
+                    ContainerCatalog.remove(keyStoreType, alias);
+                    AgreementKeyCache.invalidate(keyStoreType, alias);
+                    ContainerInstaller.invalidate(alias);
                 } // if
                 else {
                     callback.log("Continue...");
@@ -115,6 +123,9 @@ public class RemoveContainersExample extends IEncryptDecryptData {
                 } // if
 
                 keyStore.deleteEntry(alias);
+                ContainerKeyCache.invalidate(keyStoreType, alias);
+                ContainerCatalog.remove(keyStoreType, alias);
+                AgreementKeyCache.invalidate(keyStoreType, alias);
 
             } // else
 
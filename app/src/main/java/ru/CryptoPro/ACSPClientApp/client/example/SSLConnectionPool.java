@@ -0,0 +1,615 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс SSLConnectionPool реализует пул TLS соединений для
+ * HTTP/1.1 keep-alive. Для каждого хоста хранится список
+ * свободных соединений, поэтому повторный запрос к тому же
+ * хосту выполняется без нового рукопожатия TLS. Количество
+ * одновременно используемых соединений с одним хостом
+ * ограничено; свободные соединения закрываются по истечении
+ * времени простоя, а перед выдачей проверяются на то, что
+ * сервер их не закрыл.
+ *
+ * 18/10/2026
+ *
+ */
+public class SSLConnectionPool {
+
+    /**
+     * Максимальное количество соединений с одним хостом по
+     * умолчанию.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    /**
+     * Время простоя свободного соединения по умолчанию (мсек).
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
+
+    /**
+     * Таймаут чтения при проверке соединения (мсек).
+     */
+    private static final int HEALTH_CHECK_TIMEOUT = 1;
+
+    /**
+     * Фабрика сокетов.
+     */
+    private final SSLSocketFactory socketFactory;
+
+    /**
+     * Максимальное количество соединений с одним хостом.
+     */
+    private final int maxConnectionsPerHost;
+
+    /**
+     * Время простоя свободного соединения (мсек).
+     */
+    private final long idleTimeout;
+
+    /**
+     * Пулы хостов.
+     */
+    private final Map<String, HostPool> hostPools =
+        new HashMap<String, HostPool>();
+
+    /**
+     * Количество созданных соединений (полных рукопожатий).
+     */
+    private final AtomicLong createdCount = new AtomicLong(0);
+
+    /**
+     * Количество повторно использованных соединений.
+     */
+    private final AtomicLong reusedCount = new AtomicLong(0);
+
+    /**
+     * Количество соединений, закрытых по простою или по
+     * результату проверки.
+     */
+    private final AtomicLong discardedCount = new AtomicLong(0);
+
+    /**
+     * Суммарное время ожидания свободного места в пуле (нсек).
+     */
+    private final AtomicLong waitNanos = new AtomicLong(0);
+
+    /**
+     * Количество запросов соединения.
+     */
+    private final AtomicLong acquireCount = new AtomicLong(0);
+
+    /**
+     * Конструктор.
+     *
+     * @param sslContext Контекст для подключения.
+     */
+    public SSLConnectionPool(SSLContext sslContext) {
+        this(sslContext, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param sslContext Контекст для подключения.
+     * @param maxPerHost Максимальное количество соединений с
+     * одним хостом.
+     * @param idleTimeoutMillis Время простоя свободного
+     * соединения (мсек).
+     */
+    public SSLConnectionPool(SSLContext sslContext, int maxPerHost,
+        long idleTimeoutMillis) {
+
+        if (maxPerHost <= 0) {
+            throw new IllegalArgumentException("Invalid pool size: " + maxPerHost);
+        } // if
+
+        socketFactory = sslContext.getSocketFactory();
+        maxConnectionsPerHost = maxPerHost;
+        idleTimeout = idleTimeoutMillis;
+
+    }
+
+    /**
+     * Получение соединения с хостом. Если есть исправное
+     * свободное соединение, то оно используется повторно,
+     * иначе создается новое. Если все соединения с хостом
+     * заняты, то вызов ожидает освобождения одного из них.
+     * Полученное соединение необходимо вернуть с помощью
+     * {@link #release(Connection, boolean)}.
+     *
+     * @param host Хост.
+     * @param port Порт.
+     * @param soTimeout Таймаут чтения (мсек).
+     * @return соединение.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Connection acquire(String host, int port, int soTimeout)
+        throws IOException, InterruptedException {
+        return acquire(host, port, soTimeout, false);
+    }
+
+    /**
+     * Получение соединения с хостом. Если fresh равен true,
+     * то свободные соединения не используются и всегда
+     * создается новое, например, при повторе запроса после
+     * закрытия сервером соединения из пула.
+     *
+     * @param host Хост.
+     * @param port Порт.
+     * @param soTimeout Таймаут чтения (мсек).
+     * @param fresh True, если нужно новое соединение.
+     * @return соединение.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Connection acquire(String host, int port, int soTimeout,
+        boolean fresh) throws IOException, InterruptedException {
+
+        final HostPool pool = hostPool(host, port);
+
+        final long start = System.nanoTime();
+        pool.permits.acquire();
+        waitNanos.addAndGet(System.nanoTime() - start);
+        acquireCount.incrementAndGet();
+
+        try {
+
+            Connection connection;
+
+            while (!fresh && (connection = pool.poll()) != null) {
+
+                if (isExpired(connection) || !isHealthy(connection)) {
+                    discardedCount.incrementAndGet();
+                    connection.close();
+                    continue;
+                } // if
+
+                connection.socket.setSoTimeout(soTimeout);
+                connection.reused = true;
+                reusedCount.incrementAndGet();
+
+                return connection;
+
+            } // while
+
+            final SSLSocket socket = (SSLSocket)
+                socketFactory.createSocket(host, port);
+
+            try {
+                socket.setSoTimeout(soTimeout);
+                SSLContextRegistry.watch(socket);
+                socket.startHandshake();
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+
+            createdCount.incrementAndGet();
+            return new Connection(pool, socket);
+
+        } catch (IOException e) {
+            pool.permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Возврат соединения в пул.
+     *
+     * @param connection Соединение.
+     * @param reusable True, если ответ прочитан полностью и
+     * соединение может быть использовано повторно.
+     */
+    public void release(Connection connection, boolean reusable) {
+
+        final HostPool pool = connection.pool;
+
+        if (reusable && !connection.socket.isClosed()) {
+            connection.lastUsed = System.currentTimeMillis();
+            pool.offer(connection);
+        } // if
+        else {
+            connection.close();
+        } // else
+
+        pool.permits.release();
+    }
+
+    /**
+     * Закрытие свободных соединений, простаивающих дольше
+     * заданного времени.
+     *
+     */
+    public void evictIdle() {
+
+        for (HostPool pool : hostPools()) {
+            for (Connection connection : pool.removeExpired(idleTimeout)) {
+                discardedCount.incrementAndGet();
+                connection.close();
+            } // for
+        } // for
+
+    }
+
+    /**
+     * Закрытие всех свободных соединений.
+     *
+     */
+    public void close() {
+
+        for (HostPool pool : hostPools()) {
+
+            Connection connection;
+            while ((connection = pool.poll()) != null) {
+                connection.close();
+            } // while
+
+        } // for
+
+    }
+
+    /**
+     * Получение количества созданных соединений, т.е.
+     * выполненных полных рукопожатий.
+     *
+     * @return количество соединений.
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * Получение количества повторно использованных
+     * соединений, т.е. рукопожатий, которых удалось избежать.
+     *
+     * @return количество соединений.
+     */
+    public long getHandshakesAvoided() {
+        return reusedCount.get();
+    }
+
+    /**
+     * Получение количества соединений, закрытых по простою
+     * или по результату проверки.
+     *
+     * @return количество соединений.
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * Получение доли запросов, обслуженных повторно
+     * использованным соединением.
+     *
+     * @return доля от 0 до 1.
+     */
+    public double getReuseRatio() {
+
+        final long total = createdCount.get() + reusedCount.get();
+        if (total == 0) {
+            return 0;
+        } // if
+
+        return (double) reusedCount.get() / total;
+    }
+
+    /**
+     * Получение суммарного времени ожидания соединения.
+     *
+     * @return время (мсек).
+     */
+    public long getTotalWaitMillis() {
+        return waitNanos.get() / 1000000L;
+    }
+
+    /**
+     * Получение среднего времени ожидания соединения.
+     *
+     * @return время (мсек).
+     */
+    public double getAverageWaitMillis() {
+
+        final long count = acquireCount.get();
+        if (count == 0) {
+            return 0;
+        } // if
+
+        return waitNanos.get() / 1000000.0 / count;
+    }
+
+    /**
+     * Формирование строки с метриками пула.
+     *
+     * @return метрики.
+     */
+    public String getStatistics() {
+        return "created: " + getCreatedCount() + ", reused: " +
+            getHandshakesAvoided() + ", discarded: " + getDiscardedCount() +
+            ", reuse ratio: " + String.format("%.2f", getReuseRatio()) +
+            ", average wait: " + String.format("%.2f", getAverageWaitMillis()) +
+            " ms";
+    }
+
+    /**
+     * Получение пула хоста.
+     *
+     * @param host Хост.
+     * @param port Порт.
+     * @return пул хоста.
+     */
+    private HostPool hostPool(String host, int port) {
+
+        final String key = host + ":" + port;
+
+        synchronized (hostPools) {
+
+            HostPool pool = hostPools.get(key);
+
+            if (pool == null) {
+                pool = new HostPool(maxConnectionsPerHost);
+                hostPools.put(key, pool);
+            } // if
+
+            return pool;
+        }
+
+    }
+
+    /**
+     * Получение копии списка пулов хостов.
+     *
+     * @return пулы хостов.
+     */
+    private List<HostPool> hostPools() {
+        synchronized (hostPools) {
+            return new ArrayList<HostPool>(hostPools.values());
+        }
+    }
+
+    /**
+     * Проверка времени простоя соединения.
+     *
+     * @param connection Соединение.
+     * @return true, если соединение простаивает слишком долго.
+     */
+    private boolean isExpired(Connection connection) {
+        return System.currentTimeMillis() - connection.lastUsed > idleTimeout;
+    }
+
+    /**
+     * Проверка свободного соединения. Соединение исправно,
+     * если оно не закрыто и попытка чтения с коротким
+     * таймаутом не вернула ни данных, ни конца потока.
+     *
+     * @param connection Соединение.
+     * @return true, если соединение исправно.
+     */
+    private static boolean isHealthy(Connection connection) {
+
+        final SSLSocket socket = connection.socket;
+
+        if (socket.isClosed() || socket.isInputShutdown() ||
+            socket.isOutputShutdown()) {
+            return false;
+        } // if
+
+        try {
+
+            socket.setSoTimeout(HEALTH_CHECK_TIMEOUT);
+
+            // Ни конца потока, ни лишних данных от сервера
+            // быть не должно.
+            connection.input.read();
+            return false;
+
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+
+    }
+
+    /**
+     * Класс HostPool описывает свободные соединения и
+     * ограничение количества соединений одного хоста.
+     *
+     */
+    private static class HostPool {
+
+        /**
+         * Разрешения на использование соединений.
+         */
+        private final Semaphore permits;
+
+        /**
+         * Свободные соединения, последнее использованное -
+         * первое.
+         */
+        private final LinkedList<Connection> idle = new LinkedList<Connection>();
+
+        /**
+         * Конструктор.
+         *
+         * @param maxConnections Максимальное количество
+         * соединений.
+         */
+        private HostPool(int maxConnections) {
+            permits = new Semaphore(maxConnections, true);
+        }
+
+        /**
+         * Извлечение последнего использованного свободного
+         * соединения.
+         *
+         * @return соединение или null.
+         */
+        private synchronized Connection poll() {
+            return idle.pollFirst();
+        }
+
+        /**
+         * Добавление свободного соединения.
+         *
+         * @param connection Соединение.
+         */
+        private synchronized void offer(Connection connection) {
+            idle.addFirst(connection);
+        }
+
+        /**
+         * Извлечение соединений с истекшим временем простоя.
+         *
+         * @param idleTimeout Время простоя (мсек).
+         * @return соединения.
+         */
+        private synchronized List<Connection> removeExpired(long idleTimeout) {
+
+            final long now = System.currentTimeMillis();
+            final List<Connection> expired = new ArrayList<Connection>();
+            final Iterator<Connection> iterator = idle.iterator();
+
+            while (iterator.hasNext()) {
+
+                final Connection connection = iterator.next();
+
+                if (now - connection.lastUsed > idleTimeout) {
+                    iterator.remove();
+                    expired.add(connection);
+                } // if
+
+            } // while
+
+            return expired;
+        }
+
+    }
+
+    /**
+     * Класс Connection описывает соединение пула.
+     *
+     */
+    public static class Connection {
+
+        /**
+         * Пул хоста.
+         */
+        private final HostPool pool;
+
+        /**
+         * Сокет.
+         */
+        private final SSLSocket socket;
+
+        /**
+         * Входной поток сокета.
+         */
+        private final InputStream input;
+
+        /**
+         * Объект чтения ответов. Сохраняется между запросами
+         * вместе с соединением.
+         */
+        private final HttpResponseReader reader;
+
+        /**
+         * Время последнего использования.
+         */
+        private long lastUsed = System.currentTimeMillis();
+
+        /**
+         * True, если соединение получено из пула повторно.
+         */
+        private boolean reused = false;
+
+        /**
+         * Конструктор.
+         *
+         * @param hostPool Пул хоста.
+         * @param sslSocket Сокет.
+         * @throws IOException
+         */
+        private Connection(HostPool hostPool, SSLSocket sslSocket)
+            throws IOException {
+            pool = hostPool;
+            socket = sslSocket;
+            input = sslSocket.getInputStream();
+            reader = new HttpResponseReader(input);
+        }
+
+        /**
+         * Получение сокета.
+         *
+         * @return сокет.
+         */
+        public SSLSocket getSocket() {
+            return socket;
+        }
+
+        /**
+         * Получение объекта чтения ответов.
+         *
+         * @return объект чтения.
+         */
+        public HttpResponseReader getReader() {
+            return reader;
+        }
+
+        /**
+         * Проверка, получено ли соединение из пула повторно.
+         *
+         * @return true, если рукопожатие не выполнялось.
+         */
+        public boolean isReused() {
+            return reused;
+        }
+
+        /**
+         * Закрытие соединения.
+         *
+         */
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Игнорируем.
+            }
+        }
+
+    }
+
+}
@@ -14,6 +14,8 @@ import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IEncryptDecryptData;
+import ru.CryptoPro.ACSPClientApp.util.AgreementKeyCache;
+import ru.CryptoPro.ACSPClientApp.util.CryptoPrimitivePool;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.JCP.JCP;
 import ru.CryptoPro.JCP.params.CryptParamsSpec;
@@ -25,6 +27,7 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import java.security.KeyFactory;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.spec.X509EncodedKeySpec;
@@ -93,57 +96,15 @@ public class SessionEncryptDecryptExample extends IEncryptDecryptData {
         callback.log("Server certificate: " + server.getCertificate().getSubjectDN() +
             ", public key: " + server.getCertificate().getPublicKey());
 
-        byte[] clientPublic = client.getCertificate().getPublicKey().getEncoded();
-        byte[] serverPublic = server.getCertificate().getPublicKey().getEncoded();
-
-        // Генерация начальной синхропосылки для выработки
-        // ключа согласования.
-
-        callback.log("Generate IV.");
+        PublicKey clientPublicKey = client.getCertificate().getPublicKey();
+        PublicKey serverPublicKey = server.getCertificate().getPublicKey();
 
         byte[] data = Constants.MESSAGE.getBytes();
-        byte[] sv = new byte[8];
         final String MODE = "/CNT/NoPadding";
 
         callback.log("Message: " + new String(data));
         callback.log("Set MODE: GOST28147" + MODE);
 
-        SecureRandom random =
-            SecureRandom.getInstance(JCP.CP_RANDOM, JCSP.PROVIDER_NAME);
-        random.nextBytes(sv);
-
-        IvParameterSpec ivSpec = new IvParameterSpec(sv);
-        callback.log("Syncro for KeyAgreement was generated.");
-
-        // Получение открытых ключей сторонами.
-
-        KeyFactory clientKf = KeyFactory.getInstance(client.getCertificate()
-            .getPublicKey().getAlgorithm(), JCSP.PROVIDER_NAME);
-
-        X509EncodedKeySpec serverPubKeySpec = new X509EncodedKeySpec(serverPublic);
-        PublicKey serverPublicKey = clientKf.generatePublic(serverPubKeySpec);
-
-        callback.log("Client has received server's public key.");
-
-        KeyFactory serverKf = KeyFactory.getInstance(server.getCertificate()
-            .getPublicKey().getAlgorithm(), JCSP.PROVIDER_NAME);
-
-        X509EncodedKeySpec clientPubKeySpec = new X509EncodedKeySpec(clientPublic);
-        PublicKey clientPublicKey = serverKf.generatePublic(clientPubKeySpec);
-
-        callback.log("Server has received client's public key.");
-
-        String agreeAlgName = client.getPrivateKey().getAlgorithm();
-
-        KeyAgreement clientKeyAgree = KeyAgreement.getInstance(
-            agreeAlgName, JCSP.PROVIDER_NAME);
-
-        clientKeyAgree.init(client.getPrivateKey(), ivSpec, null);
-        clientKeyAgree.doPhase(serverPublicKey, true);
-
-        SecretKey clientAgree = clientKeyAgree.generateSecret(JCSP.GOST_CIPHER_NAME);
-        callback.log("Client's key agreement was performed.");
-
         // Генерация симметричного ключа алисой с параметрами
         // шифрования.
 
@@ -166,8 +127,8 @@ public class SessionEncryptDecryptExample extends IEncryptDecryptData {
 
         // Зашифрование текста на сииметричном ключе клиента.
 
-        Cipher cipher = Cipher.getInstance(JCSP.GOST_CIPHER_NAME + MODE,
-            JCSP.PROVIDER_NAME);
+        Cipher cipher = CryptoPrimitivePool.getCipher(
+            JCSP.GOST_CIPHER_NAME + MODE, JCSP.PROVIDER_NAME);
         cipher.init(Cipher.ENCRYPT_MODE, clientSymKey);
 
         // Передача вектора инициализации серверу.
@@ -178,36 +139,75 @@ public class SessionEncryptDecryptExample extends IEncryptDecryptData {
         callback.log("Client's encrypting was performed.");
         callback.log(encryptedText, true);
 
-        // Зашифрование симметричного ключа на ключе согласования клиента.
-        cipher.init(Cipher.WRAP_MODE, clientAgree);
-        byte[] wrappedKey = cipher.wrap(clientSymKey);
-        callback.log("Client's session key wrapping was performed.");
+        // Выработка ключа согласования клиента. Ключ и
+        // синхропосылка (UKM) хранятся в кеше для пары
+        // клиент-сервер, поэтому при повторных сообщениях
+        // серверу согласование не выполняется. Запись кеша
+        // освобождается сразу после использования ключа.
+
+        SecureRandom random =
+            SecureRandom.getInstance(JCP.CP_RANDOM, JCSP.PROVIDER_NAME);
+
+        long hits = AgreementKeyCache.getHitCount();
+
+        AgreementKeyCache.Entry clientEntry = AgreementKeyCache.getForPeer(
+            keyStoreType, containerAdapter.getClientAlias(), serverPublicKey,
+            random, agreement(client.getPrivateKey(), serverPublicKey));
+
+        byte[] sv;
+        byte[] wrappedKey;
+
+        try {
+
+            callback.log(AgreementKeyCache.getHitCount() > hits
+                ? "Client's agreement key was taken from cache."
+                : "Client's key agreement was performed.");
+
+            sv = clientEntry.getUkm();
+
+            // Зашифрование симметричного ключа на ключе согласования клиента.
+            cipher.init(Cipher.WRAP_MODE, clientEntry.getKey());
+            wrappedKey = cipher.wrap(clientSymKey);
+            callback.log("Client's session key wrapping was performed.");
+
+        } finally {
+            clientEntry.release();
+        }
 
         // Выработка ключа согласования сервера с тем же SV.
 
-        KeyAgreement serverKeyAgree = KeyAgreement.getInstance(
-            agreeAlgName, JCSP.PROVIDER_NAME);
+        hits = AgreementKeyCache.getHitCount();
+
+        AgreementKeyCache.Entry serverEntry = AgreementKeyCache.get(keyStoreType,
+            containerAdapter.getServerAlias(), clientPublicKey, sv,
+            agreement(server.getPrivateKey(), clientPublicKey));
 
-        serverKeyAgree.init(server.getPrivateKey(), ivSpec, null);
-        serverKeyAgree.doPhase(clientPublicKey, true);
+        SecretKey serverSymKey;
 
-        SecretKey serverAgree = serverKeyAgree
-            .generateSecret(JCSP.GOST_CIPHER_NAME);
-        callback.log("Server's key agreement was performed.");
+        try {
 
-        // Расшифрование сервером симметричного ключа.
+            callback.log(AgreementKeyCache.getHitCount() > hits
+                ? "Server's agreement key was taken from cache."
+                : "Server's key agreement was performed.");
+
+            // Расшифрование сервером симметричного ключа.
+
+            cipher.init(Cipher.UNWRAP_MODE, serverEntry.getKey());
+            serverSymKey = (SecretKey) cipher
+                .unwrap(wrappedKey, null, Cipher.SECRET_KEY);
+
+        } finally {
+            serverEntry.release();
+        }
 
-        cipher.init(Cipher.UNWRAP_MODE, serverAgree);
-        SecretKey serverSymKey = (SecretKey) cipher
-            .unwrap(wrappedKey, null, Cipher.SECRET_KEY);
         callback.log("Server's session key unwrapping was performed: " +
             serverSymKey.getAlgorithm());
 
         // Расшифрование текста на расшифрованном симметричном ключе.
         // IV передан от клиента.
 
-        cipher = Cipher.getInstance(JCSP.GOST_CIPHER_NAME + MODE,
-            JCSP.PROVIDER_NAME);
+        cipher = CryptoPrimitivePool.getCipher(
+            JCSP.GOST_CIPHER_NAME + MODE, JCSP.PROVIDER_NAME);
 
         cipher.init(Cipher.DECRYPT_MODE, serverSymKey,
             new IvParameterSpec(iv), null);
@@ -221,14 +221,16 @@ public class SessionEncryptDecryptExample extends IEncryptDecryptData {
         // Проверка результата.
 
         if (decryptedText.length != data.length) {
-            callback.log("Error in encrypting/decrypting. Invalid length.");
+            callback.log(LogCallback.Level.ERROR,
+                "Error in encrypting/decrypting. Invalid length.");
             callback.setStatusFailed();
             return;
         } // if
 
         for (int i = 0; i < decryptedText.length; i++) {
             if (data[i] != decryptedText[i]) {
-                callback.log("Error in encrypting/decrypting. Invalid data.");
+                callback.log(LogCallback.Level.ERROR,
+                    "Error in encrypting/decrypting. Invalid data.");
                 callback.setStatusFailed();
                 return;
             } // if
@@ -237,4 +239,40 @@ public class SessionEncryptDecryptExample extends IEncryptDecryptData {
         callback.setStatusOK();
 
     }
+
+    /**
+     * Согласование ключа: получение открытого ключа другой
+     * стороны и выработка ключа согласования по UKM.
+     *
+     * @param privateKey Свой закрытый ключ.
+     * @param peerKey Открытый ключ другой стороны из
+     * сертификата.
+     * @return согласование.
+     */
+    static AgreementKeyCache.Agreement agreement(
+        final PrivateKey privateKey, final PublicKey peerKey) {
+
+        return new AgreementKeyCache.Agreement() {
+
+            @Override
+            public SecretKey agree(byte[] ukm) throws Exception {
+
+                KeyFactory keyFactory = KeyFactory.getInstance(
+                    peerKey.getAlgorithm(), JCSP.PROVIDER_NAME);
+
+                PublicKey publicKey = keyFactory.generatePublic(
+                    new X509EncodedKeySpec(peerKey.getEncoded()));
+
+                KeyAgreement keyAgree = KeyAgreement.getInstance(
+                    privateKey.getAlgorithm(), JCSP.PROVIDER_NAME);
+
+                keyAgree.init(privateKey, new IvParameterSpec(ukm), null);
+                keyAgree.doPhase(publicKey, true);
+
+                return keyAgree.generateSecret(JCSP.GOST_CIPHER_NAME);
+            }
+
+        };
+
+    }
 }
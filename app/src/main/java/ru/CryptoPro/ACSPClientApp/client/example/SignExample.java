@@ -14,10 +14,13 @@ import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ISignData;
+import ru.CryptoPro.ACSPClientApp.util.BatchSigner;
+import ru.CryptoPro.ACSPClientApp.util.CryptoPrimitivePool;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
 import ru.CryptoPro.JCSP.JCSP;
 
 import java.security.Signature;
+import java.util.Iterator;
 
 /**
  * Класс SignExample реализует пример подписи
@@ -72,7 +75,7 @@ public class SignExample extends ISignData {
 
         // Инициализация подписи.
 
-        Signature sn = Signature.getInstance(
+        Signature sn = CryptoPrimitivePool.getSignature(
             algorithmSelector.getSignatureAlgorithmName(),
             JCSP.PROVIDER_NAME);
 
@@ -93,4 +96,78 @@ public class SignExample extends ISignData {
 
         return sign;
     }
+
+    /**
+     * Формирование подписей для потока сообщений. Ключ
+     * загружается однажды, ошибки отдельных сообщений
+     * передаются обработчику и не прерывают подпись
+     * остальных.
+     *
+     * @param callback Логгер.
+     * @param payloads Сообщения.
+     * @param mode Режим выполнения.
+     * @param listener Обработчик результатов.
+     * @return количество обработанных сообщений.
+     * @throws Exception
+     */
+    public long signBatch(LogCallback callback, Iterator<byte[]> payloads,
+        BatchSigner.Mode mode, final BatchSigner.ResultListener listener)
+        throws Exception {
+
+        callback.log("Load key container to sign batch.");
+
+        load(askPinInDialog, KeyStoreType.currentType(),
+            containerAdapter.getClientAlias(),
+            containerAdapter.getClientPassword(), callback);
+
+        if (getPrivateKey() == null) {
+            callback.log("Private key is null.");
+            return 0;
+        } // if
+
+        callback.log("Init batch signer: " +
+            algorithmSelector.getSignatureAlgorithmName() + ", mode: " + mode);
+
+        BatchSigner signer = new BatchSigner(getPrivateKey(),
+            algorithmSelector.getSignatureAlgorithmName(),
+            JCSP.PROVIDER_NAME, mode);
+
+        final long[] failed = {0};
+        long start = System.currentTimeMillis();
+        long count;
+
+        try {
+
+            count = signer.sign(payloads, new BatchSigner.ResultListener() {
+
+                @Override
+                public void onResult(BatchSigner.Result result) {
+
+                    if (!result.isSuccess()) {
+                        failed[0]++;
+                    } // if
+
+                    listener.onResult(result);
+                }
+
+            });
+
+        } finally {
+            signer.shutdown();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+
+        callback.log("Signed messages: " + (count - failed[0]) +
+            ", failed: " + failed[0] + ", time: " + elapsed + " ms");
+
+        if (failed[0] == 0) {
+            callback.setStatusOK();
+        } // if
+        else {
+            callback.setStatusFailed();
+        } // else
+
+        return count;
+    }
 }
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import com.objsys.asn1j.runtime.Asn1BerDecodeBuffer;
+import com.objsys.asn1j.runtime.Asn1BerEncodeBuffer;
+import com.objsys.asn1j.runtime.Asn1OctetString;
+
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.IssuerAndSerialNumber;
+import ru.CryptoPro.JCP.ASN.CryptographicMessageSyntax.SignerIdentifier;
+import ru.CryptoPro.JCP.ASN.CertificateExtensions.SubjectKeyIdentifier;
+import ru.CryptoPro.JCP.tools.Array;
+
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Класс SignerCertificateIndex предназначен для поиска
+ * сертификата подписанта по идентификатору SignerInfo.sid
+ * (издатель и серийный номер или идентификатор ключа
+ * субъекта) до проверки подписей, чтобы каждый подписант
+ * проверялся только на своем сертификате.
+ *
+ * 18/10/2026
+ *
+ */
+class SignerCertificateIndex {
+
+    /**
+     * OID расширения SubjectKeyIdentifier.
+     */
+    private static final String SUBJECT_KEY_IDENTIFIER_OID = "2.5.29.14";
+
+    /**
+     * Номера сертификатов по издателю и серийному номеру.
+     */
+    private final Map<String, Integer> byIssuerSerial =
+        new HashMap<String, Integer>();
+
+    /**
+     * Номера сертификатов по идентификатору ключа субъекта.
+     */
+    private final Map<String, Integer> bySubjectKeyId =
+        new HashMap<String, Integer>();
+
+    /**
+     * Конструктор.
+     *
+     * @param certificates Сертификаты для проверки подписей.
+     * @throws Exception
+     */
+    SignerCertificateIndex(X509Certificate[] certificates)
+        throws Exception {
+
+        for (int i = 0; i < certificates.length; i++) {
+
+            final X509Certificate cert = certificates[i];
+
+            byIssuerSerial.put(issuerSerialKey(
+                cert.getIssuerX500Principal().getEncoded(),
+                cert.getSerialNumber().toString(16)), i);
+
+            final byte[] ski = subjectKeyIdentifier(cert);
+            if (ski != null) {
+                bySubjectKeyId.put(Array.toHexString(ski), i);
+            } // if
+
+        } // for
+
+    }
+
+    /**
+     * Поиск сертификата подписанта.
+     *
+     * @param sid Идентификатор подписанта.
+     * @return номер сертификата или -1, если сертификат
+     * не найден.
+     * @throws Exception
+     */
+    int find(SignerIdentifier sid) throws Exception {
+
+        Integer index = null;
+
+        if (sid.getChoiceID() == SignerIdentifier._ISSUERANDSERIALNUMBER) {
+
+            final IssuerAndSerialNumber issuerAndSerial =
+                (IssuerAndSerialNumber) sid.getElement();
+
+            final Asn1BerEncodeBuffer encBuf = new Asn1BerEncodeBuffer();
+            issuerAndSerial.issuer.encode(encBuf);
+
+            index = byIssuerSerial.get(issuerSerialKey(encBuf.getMsgCopy(),
+                issuerAndSerial.serialNumber.value.toString(16)));
+
+        } // if
+        else if (sid.getChoiceID() == SignerIdentifier._SUBJECTKEYIDENTIFIER) {
+
+            final SubjectKeyIdentifier ski =
+                (SubjectKeyIdentifier) sid.getElement();
+
+            index = bySubjectKeyId.get(Array.toHexString(ski.value));
+
+        } // else
+
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Формирование ключа поиска по издателю и серийному
+     * номеру.
+     *
+     * @param encodedIssuer Закодированное имя издателя.
+     * @param serialNumber Серийный номер (hex).
+     * @return ключ поиска.
+     */
+    private static String issuerSerialKey(byte[] encodedIssuer,
+        String serialNumber) {
+        return Array.toHexString(encodedIssuer) + "/" + serialNumber;
+    }
+
+    /**
+     * Получение идентификатора ключа субъекта из расширения
+     * сертификата.
+     *
+     * @param cert Сертификат.
+     * @return идентификатор или null, если расширения нет.
+     * @throws Exception
+     */
+    private static byte[] subjectKeyIdentifier(X509Certificate cert)
+        throws Exception {
+
+        final byte[] extension = cert.getExtensionValue(SUBJECT_KEY_IDENTIFIER_OID);
+        if (extension == null) {
+            return null;
+        } // if
+
+        // Значение расширения - OCTET STRING, содержащая
+        // закодированный KeyIdentifier (также OCTET STRING).
+
+        final Asn1OctetString wrapper = new Asn1OctetString();
+        wrapper.decode(new Asn1BerDecodeBuffer(extension));
+
+        final Asn1OctetString keyIdentifier = new Asn1OctetString();
+        keyIdentifier.decode(new Asn1BerDecodeBuffer(wrapper.value));
+
+        return keyIdentifier.value;
+    }
+
+}
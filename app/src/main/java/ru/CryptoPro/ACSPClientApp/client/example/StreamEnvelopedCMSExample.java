@@ -0,0 +1,209 @@
+/**
+ * Copyright 2004-2015 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.EnvelopedOutputStream;
+import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
+
+import ru.CryptoPro.CAdES.EnvelopedSignature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+/**
+ * Класс StreamEnvelopedCMSExample реализует пример
+ * потокового формирования и расшифрования Enveloped CMS
+ * подписи файла с key_transport. Пример выполняется в
+ * пуле задач.
+ *
+ * 18/10/2026
+ *
+ */
+public class StreamEnvelopedCMSExample extends EnvelopedCMSExample {
+
+    /**
+     * Конструктор.
+     *
+     * @param adapter Настройки примера.
+     */
+    public StreamEnvelopedCMSExample(ContainerAdapter adapter) {
+        super(adapter, true);
+    }
+
+    @Override
+    public void getResult(LogCallback callback) throws Exception {
+        getResult(callback, new StreamEnvelopedCMSThread());
+    }
+
+    /**
+     * Класс StreamEnvelopedCMSThread реализует формирование
+     * и расшифрование Enveloped CMS в отдельном потоке.
+     *
+     */
+    private class StreamEnvelopedCMSThread implements IThreadExecuted {
+
+        @Override
+        public void execute(LogCallback callback) {
+
+            try {
+                encryptDecryptFile(callback);
+                callback.setStatusOK();
+            } catch (Exception e) {
+                callback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Operation exception", e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Потоковое формирование и расшифрование Enveloped CMS
+     * для файла. Совмещенная CMS подпись формируется по
+     * мере чтения файла и сразу передается в Enveloped CMS
+     * через {@link EnvelopedOutputStream}, а расшифрованная
+     * CMS подпись записывается в файл, поэтому ни данные, ни
+     * подпись целиком в памяти не хранятся. Совпадение
+     * расшифрованной подписи со сформированной проверяется
+     * по хешу.
+     *
+     * @param callback Логгер.
+     * @throws Exception
+     */
+    private void encryptDecryptFile(LogCallback callback) throws Exception {
+
+        callback.log("Load key container to encrypt CMS.");
+
+        // Тип контейнера по умолчанию.
+        String keyStoreType = KeyStoreType.currentType();
+        callback.log("Default container type: " + keyStoreType);
+
+        // Загрузка ключа и сертификата получателя.
+        load(askPinInDialog, keyStoreType, containerAdapter.getServerAlias(),
+            containerAdapter.getServerPassword(), callback);
+
+        callback.log("Recipient certificate: " + getCertificate().getSubjectDN() +
+            ", public key: " + getCertificate().getPublicKey());
+
+        // Формирование CMS подписи.
+        CMSSignExample cmsSign = new CMSSignExample(false, containerAdapter);
+
+        callback.log("Load key container to sign CMS.");
+
+        // Загрузка параметров подписанта CMS.
+        cmsSign.load(askPinInDialog, keyStoreType, containerAdapter.getClientAlias(),
+            containerAdapter.getClientPassword(), callback);
+
+        PrivateKey signerPrivateKey = cmsSign.getPrivateKey();
+        X509Certificate signerCertificate = cmsSign.getCertificate();
+
+        callback.log("Prepare file: " + ExampleFiles.DEFAULT_SIZE + " bytes.");
+
+        final File source = ExampleFiles.createRandom("plain", ExampleFiles.DEFAULT_SIZE);
+        final File enveloped = File.createTempFile("enveloped", ".p7m");
+        final File decrypted = File.createTempFile("decrypted", ".p7s");
+
+        try {
+
+            callback.log("Prepare streaming enveloped signature.");
+
+            EnvelopedSignature envelopedSignature = new EnvelopedSignature();
+            addRecipient(callback, envelopedSignature);
+
+            final MessageDigest signedDigest = MessageDigest.getInstance("SHA-256");
+            final long started = System.currentTimeMillis();
+
+            InputStream in = new FileInputStream(source);
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(enveloped));
+
+            final long signed;
+            final EnvelopedOutputStream envelopedOut;
+
+            try {
+
+                envelopedOut = new EnvelopedOutputStream(envelopedSignature, out);
+
+                // Подпись записывается в Enveloped CMS и
+                // одновременно хешируется.
+
+                signed = cmsSign.createStream(callback, in,
+                    new DigestOutputStream(envelopedOut, signedDigest),
+                    new PrivateKey[]{signerPrivateKey},
+                    new Certificate[]{signerCertificate},
+                    false, false);
+
+                envelopedOut.close();
+
+            } finally {
+                in.close();
+                out.close();
+            }
+
+            callback.log("Streaming Enveloped CMS produced in " +
+                (System.currentTimeMillis() - started) + " ms: signed " +
+                signed + " byte(s), encrypted " + envelopedOut.getLength() +
+                " byte(s) of CMS, enveloped " + enveloped.length() + " byte(s).");
+
+            callback.log("Decrypt streaming Enveloped CMS to file.");
+
+            final MessageDigest decryptedDigest = MessageDigest.getInstance("SHA-256");
+
+            in = new BufferedInputStream(new FileInputStream(enveloped));
+
+            try {
+
+                EnvelopedSignature decryptedSignature = new EnvelopedSignature(in);
+                out = new DigestOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(decrypted)), decryptedDigest);
+
+                try {
+                    decryptedSignature.decrypt(getCertificate(), getPrivateKey(), out);
+                } finally {
+                    out.close();
+                }
+
+            } finally {
+                in.close();
+            }
+
+            callback.log("Decrypted CMS: " + decrypted.length() + " byte(s).");
+
+            if (!MessageDigest.isEqual(signedDigest.digest(), decryptedDigest.digest())) {
+                throw new Exception("Invalid decrypted content");
+            } // if
+
+            callback.log("Decrypted CMS matches the produced one.");
+
+        } finally {
+            source.delete();
+            enveloped.delete();
+            decrypted.delete();
+        }
+
+    }
+
+}
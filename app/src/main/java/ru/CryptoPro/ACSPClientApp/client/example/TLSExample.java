@@ -16,18 +16,28 @@ import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ContainerAdapter;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.ITLSData;
 import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
+
+import javax.net.ssl.SSLContext;
 
 import java.io.IOException;
 
 /**
  * Класс TLSExample реализует пример обмена
- * по TLS 1.0.
+ * по TLS 1.0. После одиночного запроса выполняется
+ * серия запросов по HTTP/1.1 keep-alive через общий
+ * пул соединений.
  *
  * 27/05/2013
  *
  */
 public class TLSExample extends ITLSData {
 
+    /**
+     * Количество запросов через пул соединений.
+     */
+    private static final int POOLED_REQUEST_COUNT = 5;
+
     /**
      * Конструктор.
      *
@@ -62,13 +72,17 @@ public class TLSExample extends ITLSData {
 
             try {
 
-                if (client.get(createSSLContext(callback),
-                    containerAdapter.getConnectionInfo().getHostPage()) == 0) {
-                    callback.setStatusOK();
-                } // if
-                else {
+                final SSLContext sslContext = createSSLContext(callback);
+
+                if (client.get(sslContext,
+                    containerAdapter.getConnectionInfo().getHostPage()) != 0) {
                     throw new IOException("Couldn't get data.");
-                } // else
+                } // if
+
+                callback.log("Handshakes: " + SSLContextRegistry.getStatistics());
+
+                getPooled(callback, sslContext);
+                callback.setStatusOK();
 
             } catch (Exception e) {
                 callback.setStatusFailed();
@@ -78,4 +92,44 @@ public class TLSExample extends ITLSData {
         }
     }
 
+    /**
+     * Выполнение серии запросов по одному пулу соединений.
+     * Соединение, оставленное сервером открытым, повторно
+     * используется следующим запросом без рукопожатия.
+     *
+     * @param callback Логгер.
+     * @param sslContext Контекст для подключения.
+     * @throws Exception
+     */
+    private void getPooled(LogCallback callback, SSLContext sslContext)
+        throws Exception {
+
+        callback.log("*** Send " + POOLED_REQUEST_COUNT +
+            " keep-alive request(s) through a connection pool ***");
+
+        final SSLConnectionPool pool = new SSLConnectionPool(sslContext);
+
+        final Client client = new Client(
+            containerAdapter.getConnectionInfo().getHostAddress(),
+            containerAdapter.getConnectionInfo().getHostPort(),
+            callback, pool);
+
+        client.setTimeout(MAX_CLIENT_TIMEOUT);
+
+        try {
+
+            for (int i = 0; i < POOLED_REQUEST_COUNT; i++) {
+                if (client.get(sslContext,
+                    containerAdapter.getConnectionInfo().getHostPage()) != 0) {
+                    throw new IOException("Couldn't get data.");
+                } // if
+            } // for
+
+        } finally {
+            callback.log("Connection pool: " + pool.getStatistics());
+            pool.close();
+        }
+
+    }
+
 }
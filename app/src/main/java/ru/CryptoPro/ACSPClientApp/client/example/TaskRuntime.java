@@ -0,0 +1,414 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import android.os.Looper;
+import android.util.Log;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.ACSPClientApp.client.LogCallback;
+import ru.CryptoPro.ACSPClientApp.client.example.interfaces.IThreadExecuted;
+import ru.CryptoPro.ACSPClientApp.util.CryptoPrimitivePool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Служебный класс TaskRuntime выполняет задачи примеров
+ * в ограниченном пуле потоков. Очередь задач ограничена:
+ * если она заполнена, новая задача отклоняется с
+ * RejectedExecutionException. Для каждой задачи задается
+ * таймаут, по истечении которого она прерывается.
+ *
+ * Задача, запущенная из другой задачи (в потоке пула),
+ * выполняется сразу в том же потоке, чтобы вложенные
+ * примеры сохраняли порядок выполнения и не занимали
+ * дополнительные потоки.
+ *
+ * По завершении каждой задачи из потока удаляются объекты
+ * {@link CryptoPrimitivePool}, чтобы простаивающий поток
+ * не удерживал ключи последней задачи.
+ *
+ * 18/10/2026
+ *
+ */
+public class TaskRuntime {
+
+    /**
+     * Размер очереди задач по умолчанию.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * Общий экземпляр.
+     */
+    private static TaskRuntime instance = null;
+
+    /**
+     * Номер очередного пула (для имен потоков).
+     */
+    private static final AtomicInteger poolNumber = new AtomicInteger(0);
+
+    /**
+     * Пул потоков.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Планировщик таймаутов.
+     */
+    private final ScheduledExecutorService timeouts;
+
+    /**
+     * Количество задач, прерванных по таймауту.
+     */
+    private final AtomicInteger timedOutCount = new AtomicInteger(0);
+
+    /**
+     * Количество отклоненных задач.
+     */
+    private final AtomicInteger rejectedCount = new AtomicInteger(0);
+
+    /**
+     * Конструктор.
+     *
+     * @param threads Количество потоков пула.
+     * @param queueCapacity Размер очереди задач.
+     */
+    public TaskRuntime(int threads, int queueCapacity) {
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads);
+        } // if
+
+        final int pool = poolNumber.incrementAndGet();
+
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new WorkerThread(TaskRuntime.this, r, "task-" + pool +
+                        "-" + threadNumber.incrementAndGet());
+                }
+
+            }, new ThreadPoolExecutor.AbortPolicy()) {
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                super.afterExecute(r, t);
+                CryptoPrimitivePool.clearCurrentThread();
+            }
+
+        };
+
+        // Простаивающие потоки завершаются.
+        executor.allowCoreThreadTimeOut(true);
+
+        final ScheduledThreadPoolExecutor scheduler =
+            new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "task-" + pool + "-timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+
+        scheduler.setRemoveOnCancelPolicy(true);
+        timeouts = scheduler;
+
+    }
+
+    /**
+     * Получение общего экземпляра. Количество потоков равно
+     * количеству доступных процессоров, но не меньше 2.
+     *
+     * @return экземпляр.
+     */
+    public static synchronized TaskRuntime getInstance() {
+
+        if (instance == null) {
+            instance = new TaskRuntime(Math.max(2,
+                Runtime.getRuntime().availableProcessors()),
+                DEFAULT_QUEUE_CAPACITY);
+        } // if
+
+        return instance;
+    }
+
+    /**
+     * Запуск задачи.
+     *
+     * @param callback Логгер.
+     * @param task Выполняемая задача.
+     * @param timeout Таймаут выполнения (мс).
+     * @return результат для ожидания или отмены задачи.
+     * @throws RejectedExecutionException если очередь задач
+     * заполнена.
+     */
+    public Future<?> submit(LogCallback callback, IThreadExecuted task,
+        long timeout) {
+        return submit(callback, task, timeout, null);
+    }
+
+    /**
+     * Запуск задачи.
+     *
+     * @param callback Логгер.
+     * @param task Выполняемая задача.
+     * @param timeout Таймаут выполнения (мс).
+     * @param listener Обработчик завершения задачи (может
+     * быть null). Вызывается в потоке задачи.
+     * @return результат для ожидания или отмены задачи.
+     * @throws RejectedExecutionException если очередь задач
+     * заполнена.
+     */
+    public Future<?> submit(final LogCallback callback,
+        final IThreadExecuted task, long timeout,
+        final TaskListener listener) {
+
+        final Task future = new Task(callback, task, listener);
+
+        // Вложенная задача выполняется в текущем потоке.
+        if (isWorkerThread()) {
+            future.run();
+            return future;
+        } // if
+
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+
+        future.timeout = timeouts.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+
+                if (future.cancel(true)) {
+                    timedOutCount.incrementAndGet();
+                    callback.log("Task timed out.");
+                    callback.setStatusFailed();
+                } // if
+
+            }
+
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        // Задача могла завершиться до назначения таймаута.
+        if (future.isDone()) {
+            future.timeout.cancel(false);
+        } // if
+
+        return future;
+    }
+
+    /**
+     * Проверка, выполняется ли текущий поток в пуле.
+     *
+     * @return true, если поток принадлежит пулу.
+     */
+    public boolean isWorkerThread() {
+        final Thread current = Thread.currentThread();
+        return current instanceof WorkerThread &&
+            ((WorkerThread) current).runtime == this;
+    }
+
+    /**
+     * Получение количества выполняемых задач.
+     *
+     * @return количество задач.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Получение количества задач в очереди.
+     *
+     * @return количество задач.
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Получение количества задач, прерванных по таймауту.
+     *
+     * @return количество задач.
+     */
+    public int getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /**
+     * Получение количества отклоненных задач.
+     *
+     * @return количество задач.
+     */
+    public int getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Обработчик завершения задачи.
+     *
+     */
+    public interface TaskListener {
+
+        /**
+         * Завершение задачи.
+         *
+         * @param cancelled True, если задача отменена или
+         * прервана по таймауту.
+         * @param error Необработанная ошибка задачи или null.
+         */
+        void onFinished(boolean cancelled, Throwable error);
+
+    }
+
+    /**
+     * Класс Task описывает задачу в пуле.
+     *
+     */
+    private static final class Task extends FutureTask<Object> {
+
+        /**
+         * Логгер.
+         */
+        private final LogCallback logCallback;
+
+        /**
+         * Обработчик завершения задачи.
+         */
+        private final TaskListener listener;
+
+        /**
+         * Таймаут задачи.
+         */
+        private volatile ScheduledFuture<?> timeout = null;
+
+        /**
+         * Конструктор.
+         *
+         * @param callback Логгер.
+         * @param task Выполняемая задача.
+         * @param taskListener Обработчик завершения задачи.
+         */
+        private Task(final LogCallback callback, final IThreadExecuted task,
+            TaskListener taskListener) {
+
+            super(new Runnable() {
+
+                @Override
+                public void run() {
+                    task.execute(callback);
+                }
+
+            }, null);
+
+            logCallback = callback;
+            listener = taskListener;
+
+        }
+
+        @Override
+        protected void done() {
+
+            final ScheduledFuture<?> scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            } // if
+
+            boolean cancelled = false;
+            Throwable error = null;
+
+            try {
+                get();
+            } catch (CancellationException e) {
+                cancelled = true;
+            } catch (ExecutionException e) {
+
+                error = e.getCause();
+
+                logCallback.setStatusFailed();
+                Log.e(Constants.APP_LOGGER_TAG, "Task failed", error);
+
+            } catch (InterruptedException e) {
+                cancelled = true;
+            }
+
+            if (listener != null) {
+                listener.onFinished(cancelled, error);
+            } // if
+
+        }
+
+    }
+
+    /**
+     * Класс WorkerThread описывает поток пула. Перед
+     * выполнением задач в потоке подготавливается Looper,
+     * т.к. может потребоваться ввод пин-кода в окне.
+     *
+     */
+    private static final class WorkerThread extends Thread {
+
+        /**
+         * Пул, которому принадлежит поток.
+         */
+        private final TaskRuntime runtime;
+
+        /**
+         * Конструктор.
+         *
+         * @param owner Пул.
+         * @param target Выполняемая функция.
+         * @param name Имя потока.
+         */
+        private WorkerThread(TaskRuntime owner, Runnable target, String name) {
+            super(target, name);
+            runtime = owner;
+            setPriority(Thread.NORM_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+
+            if (Looper.myLooper() == null) {
+                Looper.prepare();
+            } // if
+
+            super.run();
+
+        }
+
+    }
+
+}
@@ -10,12 +10,10 @@
  */
 package ru.CryptoPro.ACSPClientApp.client.example.interfaces;
 
-import android.util.Log;
-
-import ru.CryptoPro.ACSPClientApp.Constants;
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
-import ru.CryptoPro.ACSPClientApp.client.example.ClientThread;
+import ru.CryptoPro.ACSPClientApp.client.example.TaskRuntime;
 import ru.CryptoPro.ACSPClientApp.util.AlgorithmSelector;
+import ru.CryptoPro.ACSPClientApp.util.ContainerKeyCache;
 import ru.CryptoPro.ACSPClientApp.util.IContainers;
 import ru.CryptoPro.JCP.JCP;
 import ru.CryptoPro.JCP.KeyStore.JCPPrivateKeyEntry;
@@ -27,6 +25,8 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Служебный класс ISignData предназначен для
@@ -134,6 +134,10 @@ public abstract class ISignData implements IHashData, IContainers {
      * непосредственной работе с ключом. Если же параметр равен
      * false, то этот пароль будет задан однажды и, если он
      * правильный, больше не понадобится вводить его в окне CSP.
+     * Если пароль задан (askPinInWindow равен false), загруженные
+     * ключ и сертификат сохраняются в {@link ContainerKeyCache} и
+     * при повторной загрузке того же алиаса с тем же паролем
+     * контейнер не открывается.
      *
      * @param askPinInWindow True, если будем вводить пин-код в
      * окне.
@@ -143,13 +147,37 @@ public abstract class ISignData implements IHashData, IContainers {
      * @param callback Объект для вывода в лог.
      */
     public void load(boolean askPinInWindow, String storeType,
-        String alias, char[] password, LogCallback callback)
+        final String alias, char[] password, LogCallback callback)
         throws Exception {
 
         if (privateKey != null && certificate != null) {
             return;
         } // if
 
+        // Поиск ранее загруженного ключа.
+
+        ContainerKeyCache.Entry cached = askPinInWindow ? null
+            : ContainerKeyCache.get(storeType, alias, password);
+
+        if (cached != null) {
+
+            privateKey = cached.getPrivateKey();
+            certificate = cached.getCertificate();
+
+            callback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+                @Override
+                public String build() {
+                    return "Read private key from cache: " + alias +
+                        " (hits: " + ContainerKeyCache.getHitCount() +
+                        ", misses: " + ContainerKeyCache.getMissCount() + ")";
+                }
+
+            });
+
+            return;
+        } // if
+
         // Загрузка контейнеров.
 
         KeyStore keyStore =
@@ -181,41 +209,63 @@ public abstract class ISignData implements IHashData, IContainers {
         if (privateKey == null || certificate == null) {
             throw new Exception("Private key or/and certificate is null.");
         } // if
-        else {
-            Log.i(Constants.APP_LOGGER_TAG, "Certificate: " +
-                certificate.getSubjectDN());
-        } // else
 
-        callback.log("Read private key:" + privateKey);
-        callback.log("Read certificate:" + certificate.getSubjectDN() +
-            ", public key: " + certificate.getPublicKey());
+        // Описания ключа и сертификата формируются только
+        // при выводе отладочных сообщений.
+
+        callback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+            @Override
+            public String build() {
+                return "Read private key:" + privateKey;
+            }
+
+        });
+
+        callback.log(LogCallback.Level.DEBUG, new LogCallback.LazyMessage() {
+
+            @Override
+            public String build() {
+                return "Read certificate:" + certificate.getSubjectDN() +
+                    ", public key: " + certificate.getPublicKey();
+            }
+
+        });
+
+        // Ключ, пароль которого вводится в окне CSP, не кешируется:
+        // иначе он выдавался бы без запроса пин-кода.
+
+        if (!askPinInWindow) {
+            ContainerKeyCache.put(storeType, alias, password, privateKey, certificate);
+        } // if
 
     }
 
     /**
-     * Работа примера в потоке. Запускается выполнение
-     * задачи в отдельном потоке (обычно при подключении
-     * к интернету).
+     * Работа примера в потоке. Задача передается в пул
+     * {@link TaskRuntime} (обычно при подключении к
+     * интернету), вызывающий поток не блокируется. Если
+     * метод вызван из другой задачи, задача выполняется
+     * сразу в текущем потоке.
      *
      * @param callback Логгер.
      * @param task Выполняемая задача.
+     * @return результат для ожидания или отмены задачи.
      * @throws Exception
      */
-    public void getResult(LogCallback callback, IThreadExecuted task)
+    public Future<?> getResult(LogCallback callback, IThreadExecuted task)
         throws Exception {
 
-        callback.log("Prepare client thread.");
-
-        ClientThread clientThread =
-            new ClientThread(callback, task);
-        clientThread.setPriority(Thread.NORM_PRIORITY);
+        callback.log("Submit client task.");
 
-        callback.log("Start client thread.");
-
-        clientThread.start();
-        clientThread.join(MAX_THREAD_TIMEOUT);
+        try {
+            return TaskRuntime.getInstance().submit(
+                callback, task, MAX_THREAD_TIMEOUT);
+        } catch (RejectedExecutionException e) {
+            callback.log("Task queue is full, try again later.");
+            throw e;
+        }
 
-        callback.log("Client thread finished job.");
     }
 
     /**
@@ -12,6 +12,7 @@ package ru.CryptoPro.ACSPClientApp.client.example.interfaces;
 
 import ru.CryptoPro.ACSPClientApp.client.LogCallback;
 import ru.CryptoPro.ACSPClientApp.util.KeyStoreType;
+import ru.CryptoPro.ACSPClientApp.util.SSLContextRegistry;
 import ru.CryptoPro.JCP.KeyStore.StoreInputStream;
 import ru.CryptoPro.JCSP.JCSP;
 import ru.CryptoPro.ssl.Provider;
@@ -40,17 +41,53 @@ public abstract class ITLSData extends IEncryptDecryptData {
     }
 
     /*
-    * Создание SSL контекста.
+    * Получение SSL контекста. Контекст создается однажды для
+    * текущих настроек хранилищ и берется из реестра при
+    * повторных подключениях, чтобы сохранялся кеш сессий.
     *
     * @param callback Логгер.
     * @return готовый SSL контекст.
     * @throws Exception.
     */
-    protected SSLContext createSSLContext(LogCallback callback)
+    protected SSLContext createSSLContext(final LogCallback callback)
         throws Exception {
 
         containerAdapter.printConnectionInfo(callback);
 
+        final String key = SSLContextRegistry.key(
+            containerAdapter.getTrustStoreType(),
+            containerAdapter.getTrustStoreProvider(),
+            KeyStoreType.currentType(),
+            containerAdapter.getClientAlias(),
+            containerAdapter.isUseClientAuth());
+
+        final SSLContextRegistry.Lookup lookup = SSLContextRegistry.lookup(key,
+            new SSLContextRegistry.ContextFactory() {
+
+                @Override
+                public SSLContext create() throws Exception {
+                    return buildSSLContext(callback);
+                }
+
+            });
+
+        if (lookup.isReused()) {
+            callback.log("SSL context reused: " + SSLContextRegistry.getStatistics());
+        } // if
+
+        return lookup.getContext();
+    }
+
+    /*
+    * Создание SSL контекста.
+    *
+    * @param callback Логгер.
+    * @return готовый SSL контекст.
+    * @throws Exception.
+    */
+    private SSLContext buildSSLContext(LogCallback callback)
+        throws Exception {
+
         callback.log("Init trusted store.");
 
         /**
@@ -0,0 +1,594 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import javax.crypto.SecretKey;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Служебный класс AgreementKeyCache предназначен для
+ * хранения ключей согласования, чтобы при обмене
+ * сообщениями с одним и тем же получателем не выполнять
+ * согласование (KeyFactory.generatePublic, KeyAgreement)
+ * для каждого сообщения. Запись хранится по ключу "тип
+ * хранилища + алиас своего ключа + отпечаток (SHA-256)
+ * открытого ключа другой стороны + UKM".
+ *
+ * UKM задается двумя способами: явно (получатель берет
+ * UKM из сообщения) или один на пару сторон - UKM
+ * генерируется при первом согласовании и используется,
+ * пока запись не устареет, поэтому все сессионные ключи
+ * для одного получателя зашифровываются на одном ключе
+ * согласования.
+ *
+ * Количество записей ограничено, при переполнении
+ * удаляются давно не использованные. Запись, полученная
+ * из кеша, должна быть освобождена ({@link Entry#release()})
+ * после завершения операции. Ключ удаленной записи
+ * уничтожается (Destroyable) только после освобождения
+ * записи всеми, кто ее получил, поэтому удаление записи
+ * не мешает операциям, выполняемым в других потоках.
+ *
+ * Устаревшие записи удаляются при каждом запросе ключа,
+ * поэтому ключ уничтожается по истечении срока жизни, даже
+ * если к той же записи больше не обращаются. Согласование
+ * выполняется вне блокировки кеша и не задерживает запросы
+ * для других пар сторон.
+ *
+ * 18/10/2026
+ *
+ */
+public final class AgreementKeyCache {
+
+    /**
+     * Срок жизни записи по умолчанию (мсек).
+     */
+    public static final long DEFAULT_TTL = 10 * 60 * 1000;
+
+    /**
+     * Максимальное количество записей по умолчанию.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    /**
+     * Длина генерируемой UKM.
+     */
+    private static final int UKM_LENGTH = 8;
+
+    /**
+     * Обозначение UKM, общей для пары сторон, в ключе
+     * записи.
+     */
+    private static final String PEER_UKM = "peer";
+
+    /**
+     * Записи кеша в порядке последнего обращения.
+     */
+    private static final LinkedHashMap<String, Entry> entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AgreementKeyCache.Entry> eldest) {
+
+                if (size() > maxEntries) {
+                    evict(eldest.getValue());
+                    evictionCount.incrementAndGet();
+                    return true;
+                } // if
+
+                return false;
+            }
+
+        };
+
+    /**
+     * Количество запросов, обслуженных из кеша.
+     */
+    private static final AtomicLong hitCount = new AtomicLong(0);
+
+    /**
+     * Количество запросов, не найденных в кеше.
+     */
+    private static final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * Количество записей, удаленных по сроку жизни или
+     * при переполнении.
+     */
+    private static final AtomicLong evictionCount = new AtomicLong(0);
+
+    /**
+     * Срок жизни записи (мсек).
+     */
+    private static long ttl = DEFAULT_TTL;
+
+    /**
+     * Максимальное количество записей.
+     */
+    private static int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /**
+     * Номер поколения кеша. Увеличивается при удалении
+     * записей, чтобы ключ, согласованный до удаления, не
+     * попал в кеш.
+     */
+    private static long generation = 0;
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private AgreementKeyCache() {
+        ;
+    }
+
+    /**
+     * Задание срока жизни записи.
+     *
+     * @param timeout Срок жизни (мсек).
+     */
+    public static synchronized void setTtl(long timeout) {
+        ttl = timeout;
+    }
+
+    /**
+     * Задание максимального количества записей. Лишние
+     * давно не использованные записи удаляются.
+     *
+     * @param count Количество записей.
+     */
+    public static synchronized void setMaxEntries(int count) {
+
+        maxEntries = count;
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            evict(iterator.next());
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        } // while
+
+    }
+
+    /**
+     * Получение ключа согласования с явно заданной UKM.
+     * Если записи нет, выполняется согласование. Запись
+     * нужно освободить после использования.
+     *
+     * @param storeType Тип хранилища своего ключа.
+     * @param alias Алиас своего ключа.
+     * @param peerKey Открытый ключ другой стороны.
+     * @param ukm UKM.
+     * @param agreement Согласование.
+     * @return запись.
+     * @throws Exception
+     */
+    public static Entry get(String storeType, String alias,
+        PublicKey peerKey, byte[] ukm, Agreement agreement) throws Exception {
+        return get(key(storeType, alias, peerKey, toHex(ukm)), ukm, null, agreement);
+    }
+
+    /**
+     * Получение ключа согласования с UKM, общей для пары
+     * сторон. При первом обращении UKM генерируется и
+     * выполняется согласование. Запись нужно освободить
+     * после использования.
+     *
+     * @param storeType Тип хранилища своего ключа.
+     * @param alias Алиас своего ключа.
+     * @param peerKey Открытый ключ другой стороны.
+     * @param random ДСЧ для генерации UKM.
+     * @param agreement Согласование.
+     * @return запись, UKM которой нужно передать другой
+     * стороне.
+     * @throws Exception
+     */
+    public static Entry getForPeer(String storeType, String alias,
+        PublicKey peerKey, SecureRandom random, Agreement agreement)
+        throws Exception {
+
+        return get(key(storeType, alias, peerKey, PEER_UKM), null, random, agreement);
+    }
+
+    /**
+     * Удаление записей своего ключа. Вызывается при
+     * удалении контейнера.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас ключа.
+     */
+    public static synchronized void invalidate(String storeType, String alias) {
+
+        generation++;
+
+        final String prefix = storeType + "/" + alias + "/";
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            final Entry entry = iterator.next();
+
+            if (entry.key.startsWith(prefix)) {
+                evict(entry);
+                iterator.remove();
+            } // if
+
+        } // while
+
+    }
+
+    /**
+     * Удаление всех записей.
+     *
+     */
+    public static synchronized void invalidateAll() {
+
+        generation++;
+
+        for (Entry entry : entries.values()) {
+            evict(entry);
+        } // for
+
+        entries.clear();
+    }
+
+    /**
+     * Удаление устаревших записей.
+     *
+     */
+    public static synchronized void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Удаление записей, устаревших к заданному времени.
+     * Вызывается под блокировкой класса.
+     *
+     * @param now Текущее время.
+     */
+    private static void evictExpired(long now) {
+
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            final Entry entry = iterator.next();
+
+            if (entry.isExpired(now)) {
+                evict(entry);
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            } // if
+
+        } // while
+
+    }
+
+    /**
+     * Получение количества записей.
+     *
+     * @return количество записей.
+     */
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Получение количества запросов, обслуженных из кеша.
+     *
+     * @return количество запросов.
+     */
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Получение количества запросов, не найденных в кеше.
+     *
+     * @return количество запросов.
+     */
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Получение количества записей, удаленных по сроку
+     * жизни или при переполнении.
+     *
+     * @return количество записей.
+     */
+    public static long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Получение записи или согласование, если записи нет.
+     * Перед поиском удаляются все устаревшие записи.
+     * Согласование выполняется вне блокировки кеша. Если
+     * за это время запись с тем же ключом уже добавлена
+     * другим потоком, возвращается она, а новый ключ
+     * уничтожается. Если же за это время записи были
+     * удалены, новая запись возвращается без сохранения в
+     * кеше и уничтожается при освобождении.
+     *
+     * @param key Ключ записи.
+     * @param ukm UKM для согласования или null, если UKM
+     * генерируется.
+     * @param random ДСЧ для генерации UKM (если ukm равна
+     * null).
+     * @param agreement Согласование.
+     * @return запись.
+     * @throws Exception
+     */
+    private static Entry get(String key, byte[] ukm, SecureRandom random,
+        Agreement agreement) throws Exception {
+
+        final long created;
+
+        synchronized (AgreementKeyCache.class) {
+
+            evictExpired(System.currentTimeMillis());
+
+            final Entry entry = entries.get(key);
+
+            if (entry != null) {
+                hitCount.incrementAndGet();
+                entry.references++;
+                return entry;
+            } // if
+
+            missCount.incrementAndGet();
+            created = generation;
+        }
+
+        if (ukm == null) {
+            ukm = new byte[UKM_LENGTH];
+            random.nextBytes(ukm);
+        } // if
+
+        final Entry entry = new Entry(key, agreement.agree(ukm.clone()), ukm.clone());
+
+        synchronized (AgreementKeyCache.class) {
+
+            final Entry existing = entries.get(key);
+
+            if (existing != null) {
+                destroy(entry);
+                existing.references++;
+                return existing;
+            } // if
+
+            entry.references++;
+
+            if (created == generation) {
+                entries.put(key, entry);
+            } // if
+            else {
+                entry.evicted = true;
+            } // else
+
+            return entry;
+        }
+
+    }
+
+    /**
+     * Пометка удаленной записи. Ключ уничтожается сразу,
+     * если запись никем не используется, иначе - при ее
+     * последнем освобождении.
+     *
+     * @param entry Запись.
+     */
+    private static void evict(Entry entry) {
+
+        entry.evicted = true;
+
+        if (entry.references == 0) {
+            destroy(entry);
+        } // if
+
+    }
+
+    /**
+     * Уничтожение ключа и UKM записи.
+     *
+     * @param entry Запись.
+     */
+    private static void destroy(Entry entry) {
+
+        Arrays.fill(entry.ukm, (byte) 0);
+
+        if (entry.agreeKey instanceof Destroyable) {
+
+            final Destroyable key = (Destroyable) entry.agreeKey;
+
+            try {
+                if (!key.isDestroyed()) {
+                    key.destroy();
+                } // if
+            } catch (DestroyFailedException e) {
+                // Провайдер не поддерживает уничтожение ключа.
+            }
+
+        } // if
+
+    }
+
+    /**
+     * Формирование ключа записи.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас своего ключа.
+     * @param peerKey Открытый ключ другой стороны.
+     * @param ukm UKM в hex или обозначение UKM пары сторон.
+     * @return ключ записи.
+     */
+    private static String key(String storeType, String alias,
+        PublicKey peerKey, String ukm) {
+
+        final byte[] hash;
+
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(peerKey.getEncoded());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return storeType + "/" + alias + "/" + toHex(hash) + "/" + ukm;
+    }
+
+    /**
+     * Преобразование в hex.
+     *
+     * @param data Данные.
+     * @return строка hex.
+     */
+    private static String toHex(byte[] data) {
+
+        final StringBuilder hex = new StringBuilder(data.length * 2);
+
+        for (byte b : data) {
+            hex.append(String.format("%02x", b & 0xff));
+        } // for
+
+        return hex.toString();
+    }
+
+    /**
+     * Согласование ключа.
+     *
+     */
+    public interface Agreement {
+
+        /**
+         * Выработка ключа согласования.
+         *
+         * @param ukm UKM.
+         * @return ключ согласования.
+         * @throws Exception
+         */
+        SecretKey agree(byte[] ukm) throws Exception;
+
+    }
+
+    /**
+     * Класс Entry описывает запись кеша.
+     *
+     */
+    public static final class Entry {
+
+        /**
+         * Ключ записи.
+         */
+        private final String key;
+
+        /**
+         * Ключ согласования.
+         */
+        private final SecretKey agreeKey;
+
+        /**
+         * UKM.
+         */
+        private final byte[] ukm;
+
+        /**
+         * Время создания записи.
+         */
+        private final long creationTime;
+
+        /**
+         * Количество неосвобожденных получений записи.
+         */
+        private int references = 0;
+
+        /**
+         * Флаг удаления записи из кеша.
+         */
+        private boolean evicted = false;
+
+        /**
+         * Конструктор.
+         *
+         * @param entryKey Ключ записи.
+         * @param secretKey Ключ согласования.
+         * @param entryUkm UKM.
+         */
+        private Entry(String entryKey, SecretKey secretKey, byte[] entryUkm) {
+            key = entryKey;
+            agreeKey = secretKey;
+            ukm = entryUkm;
+            creationTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Получение ключа согласования.
+         *
+         * @return ключ согласования.
+         */
+        public SecretKey getKey() {
+            return agreeKey;
+        }
+
+        /**
+         * Получение UKM.
+         *
+         * @return копия UKM.
+         */
+        public byte[] getUkm() {
+            return ukm.clone();
+        }
+
+        /**
+         * Освобождение записи после завершения операции.
+         * Если запись уже удалена из кеша и больше никем не
+         * используется, ее ключ уничтожается.
+         *
+         */
+        public void release() {
+
+            synchronized (AgreementKeyCache.class) {
+
+                if (references == 0) {
+                    throw new IllegalStateException("Entry is not acquired.");
+                } // if
+
+                if (--references == 0 && evicted) {
+                    destroy(this);
+                } // if
+
+            }
+
+        }
+
+        /**
+         * Проверка срока жизни записи.
+         *
+         * @param now Текущее время.
+         * @return true, если запись устарела.
+         */
+        private boolean isExpired(long now) {
+            return now - creationTime > ttl;
+        }
+
+    }
+
+}
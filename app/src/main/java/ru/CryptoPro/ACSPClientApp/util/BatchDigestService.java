@@ -0,0 +1,289 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import ru.CryptoPro.JCSP.JCSP;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Служебный класс BatchDigestService предназначен для
+ * хеширования большого количества небольших документов.
+ * Документы распределяются по ограниченному пулу потоков,
+ * каждый поток берет собственный объект хеширования из
+ * {@link CryptoPrimitivePool}, результаты возвращаются в
+ * порядке входных данных.
+ *
+ * 18/10/2026
+ *
+ */
+public class BatchDigestService {
+
+    /**
+     * Количество задач на один поток пула. Небольшой запас
+     * выравнивает нагрузку при разной длине документов.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Номер очередного пула (для имен потоков).
+     */
+    private static final AtomicInteger poolNumber = new AtomicInteger(0);
+
+    /**
+     * Алгоритм хеширования.
+     */
+    private final String digestAlgorithm;
+
+    /**
+     * Провайдер.
+     */
+    private final String digestProvider;
+
+    /**
+     * Количество потоков пула.
+     */
+    private final int threadCount;
+
+    /**
+     * Пул потоков.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Объекты хеширования файлов, по одному на поток.
+     */
+    private final ThreadLocal<StreamDigestService> threadFileDigest =
+        new ThreadLocal<StreamDigestService>() {
+
+            @Override
+            protected StreamDigestService initialValue() {
+                try {
+                    return new StreamDigestService(digestAlgorithm,
+                        digestProvider, StreamDigestService.DEFAULT_BUFFER_SIZE);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+        };
+
+    /**
+     * Конструктор. Количество потоков равно количеству
+     * доступных процессоров.
+     *
+     * @param algorithm Алгоритм хеширования.
+     */
+    public BatchDigestService(String algorithm) {
+        this(algorithm, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param algorithm Алгоритм хеширования.
+     * @param threads Количество потоков пула.
+     */
+    public BatchDigestService(String algorithm, int threads) {
+        this(algorithm, JCSP.PROVIDER_NAME, threads);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param algorithm Алгоритм хеширования.
+     * @param provider Провайдер.
+     * @param threads Количество потоков пула.
+     */
+    public BatchDigestService(String algorithm, String provider, int threads) {
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads);
+        } // if
+
+        digestAlgorithm = algorithm;
+        digestProvider = provider;
+        threadCount = threads;
+
+        final int pool = poolNumber.incrementAndGet();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "digest-" + pool + "-" +
+                    threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+
+    }
+
+    /**
+     * Получение алгоритма хеширования.
+     *
+     * @return алгоритм хеширования.
+     */
+    public String getAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * Хеширование списка документов.
+     *
+     * @param documents Документы.
+     * @return хеши документов в порядке входных данных.
+     * @throws Exception
+     */
+    public List<byte[]> digest(Collection<byte[]> documents)
+        throws Exception {
+
+        return process(new ArrayList<byte[]>(documents), new ItemDigest<byte[]>() {
+
+            @Override
+            public byte[] digest(byte[] item) throws Exception {
+                return CryptoPrimitivePool.getMessageDigest(digestAlgorithm,
+                    digestProvider).digest(item);
+            }
+
+        });
+
+    }
+
+    /**
+     * Хеширование списка файлов.
+     *
+     * @param files Файлы.
+     * @return хеши файлов в порядке входных данных.
+     * @throws Exception
+     */
+    public List<byte[]> digestFiles(Collection<File> files)
+        throws Exception {
+
+        return process(new ArrayList<File>(files), new ItemDigest<File>() {
+
+            @Override
+            public byte[] digest(File item) throws Exception {
+                return threadFileDigest.get().digest(item);
+            }
+
+        });
+
+    }
+
+    /**
+     * Завершение работы пула потоков.
+     *
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Распределение документов по пулу потоков. Список
+     * делится на непрерывные участки, каждый участок
+     * обрабатывается одной задачей.
+     *
+     * @param items Документы.
+     * @param itemDigest Функция хеширования документа.
+     * @return хеши документов в порядке входных данных.
+     * @throws Exception
+     */
+    private <T> List<byte[]> process(final List<T> items,
+        final ItemDigest<T> itemDigest) throws Exception {
+
+        final int size = items.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        } // if
+
+        final byte[][] result = new byte[size][];
+
+        final int taskCount = Math.min(size, threadCount * TASKS_PER_THREAD);
+        final int step = (size + taskCount - 1) / taskCount;
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(taskCount);
+
+        for (int from = 0; from < size; from += step) {
+
+            final int first = from;
+            final int last = Math.min(from + step, size);
+
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+
+                    for (int i = first; i < last; i++) {
+                        result[i] = itemDigest.digest(items.get(i));
+                    } // for
+
+                    return null;
+                }
+
+            });
+
+        } // for
+
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+
+        for (Future<Void> future : futures) {
+
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                } // if
+
+                throw e;
+            }
+
+        } // for
+
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Функция хеширования одного документа.
+     *
+     */
+    private interface ItemDigest<T> {
+
+        /**
+         * Хеширование документа.
+         *
+         * @param item Документ.
+         * @return хеш.
+         * @throws Exception
+         */
+        byte[] digest(T item) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Служебный класс BatchSigner предназначен для подписи
+ * большого количества сообщений одним ключом. Ключ
+ * передается однажды, каждый поток создает собственный
+ * объект подписи и инициализирует его один раз, после
+ * чего использует его для всех своих сообщений.
+ *
+ * Ошибка подписи одного сообщения не прерывает обработку
+ * остальных: она возвращается в результате этого
+ * сообщения.
+ *
+ * 18/10/2026
+ *
+ */
+public class BatchSigner {
+
+    /**
+     * Режим выполнения.
+     */
+    public static enum Mode {SEQUENTIAL, PARALLEL}
+
+    /**
+     * Количество одновременно обрабатываемых сообщений на
+     * один поток пула в параллельном режиме.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Номер очередного пула (для имен потоков).
+     */
+    private static final AtomicInteger poolNumber = new AtomicInteger(0);
+
+    /**
+     * Закрытый ключ.
+     */
+    private final PrivateKey privateKey;
+
+    /**
+     * Алгоритм подписи.
+     */
+    private final String signatureAlgorithm;
+
+    /**
+     * Имя провайдера.
+     */
+    private final String providerName;
+
+    /**
+     * Режим выполнения.
+     */
+    private final Mode mode;
+
+    /**
+     * Количество потоков пула.
+     */
+    private final int threadCount;
+
+    /**
+     * Пул потоков. Создается только в параллельном режиме.
+     */
+    private ExecutorService executor = null;
+
+    /**
+     * Инициализированные объекты подписи, по одному на
+     * поток.
+     */
+    private final ThreadLocal<Signature> threadSignature =
+        new ThreadLocal<Signature>() {
+
+            @Override
+            protected Signature initialValue() {
+                try {
+
+                    Signature signature = Signature.getInstance(
+                        signatureAlgorithm, providerName);
+
+                    signature.initSign(privateKey);
+                    return signature;
+
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+        };
+
+    /**
+     * Конструктор. В параллельном режиме количество потоков
+     * равно количеству доступных процессоров.
+     *
+     * @param key Закрытый ключ.
+     * @param algorithm Алгоритм подписи.
+     * @param provider Имя провайдера.
+     * @param executionMode Режим выполнения.
+     */
+    public BatchSigner(PrivateKey key, String algorithm,
+        String provider, Mode executionMode) {
+        this(key, algorithm, provider, executionMode,
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param key Закрытый ключ.
+     * @param algorithm Алгоритм подписи.
+     * @param provider Имя провайдера.
+     * @param executionMode Режим выполнения.
+     * @param threads Количество потоков пула в параллельном
+     * режиме.
+     */
+    public BatchSigner(PrivateKey key, String algorithm,
+        String provider, Mode executionMode, int threads) {
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads);
+        } // if
+
+        privateKey = key;
+        signatureAlgorithm = algorithm;
+        providerName = provider;
+        mode = executionMode;
+        threadCount = threads;
+
+        if (mode == Mode.PARALLEL) {
+
+            final int pool = poolNumber.incrementAndGet();
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "sign-" + pool + "-" +
+                        threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+
+        } // if
+
+    }
+
+    /**
+     * Получение режима выполнения.
+     *
+     * @return режим выполнения.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Подпись списка сообщений.
+     *
+     * @param payloads Сообщения.
+     * @return результаты в порядке входных данных.
+     * @throws Exception
+     */
+    public List<Result> sign(Collection<byte[]> payloads) throws Exception {
+
+        final Result[] results = new Result[payloads.size()];
+
+        sign(payloads.iterator(), new ResultListener() {
+
+            @Override
+            public void onResult(Result result) {
+                results[(int) result.getIndex()] = result;
+            }
+
+        });
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Подпись потока сообщений. Сообщения запрашиваются у
+     * итератора по мере обработки, поэтому в памяти
+     * одновременно находится не более нескольких сообщений
+     * на поток. Обработчик вызывается в вызывающем потоке;
+     * в параллельном режиме порядок вызовов может не
+     * совпадать с порядком сообщений.
+     *
+     * @param payloads Сообщения.
+     * @param listener Обработчик результатов.
+     * @return количество обработанных сообщений.
+     * @throws Exception
+     */
+    public long sign(Iterator<byte[]> payloads, ResultListener listener)
+        throws Exception {
+
+        if (mode == Mode.SEQUENTIAL) {
+
+            long index = 0;
+
+            while (payloads.hasNext()) {
+                listener.onResult(signOne(index++, payloads.next()));
+            } // while
+
+            return index;
+
+        } // if
+
+        CompletionService<Result> completion =
+            new ExecutorCompletionService<Result>(executor);
+
+        final int maxInFlight = threadCount * TASKS_PER_THREAD;
+
+        long index = 0;
+        int inFlight = 0;
+
+        while (payloads.hasNext()) {
+
+            // Ждем освобождения места, чтобы не читать
+            // поток сообщений быстрее, чем они подписываются.
+
+            if (inFlight == maxInFlight) {
+                listener.onResult(take(completion));
+                inFlight--;
+            } // if
+
+            final long itemIndex = index++;
+            final byte[] payload = payloads.next();
+
+            completion.submit(new Callable<Result>() {
+
+                @Override
+                public Result call() {
+                    return signOne(itemIndex, payload);
+                }
+
+            });
+
+            inFlight++;
+
+        } // while
+
+        while (inFlight > 0) {
+            listener.onResult(take(completion));
+            inFlight--;
+        } // while
+
+        return index;
+    }
+
+    /**
+     * Завершение работы пула потоков.
+     *
+     */
+    public void shutdown() {
+
+        if (executor != null) {
+            executor.shutdown();
+        } // if
+
+    }
+
+    /**
+     * Подпись одного сообщения объектом подписи текущего
+     * потока.
+     *
+     * @param index Номер сообщения.
+     * @param payload Сообщение.
+     * @return результат.
+     */
+    private Result signOne(long index, byte[] payload) {
+
+        try {
+
+            Signature signature = threadSignature.get();
+
+            signature.update(payload);
+            return new Result(index, signature.sign(), null);
+
+        } catch (Exception e) {
+
+            // После ошибки состояние объекта подписи не
+            // определено, поэтому он будет создан заново.
+            threadSignature.remove();
+
+            return new Result(index, null, e);
+        }
+
+    }
+
+    /**
+     * Получение очередного готового результата.
+     *
+     * @param completion Очередь результатов.
+     * @return результат.
+     * @throws Exception
+     */
+    private static Result take(CompletionService<Result> completion)
+        throws Exception {
+
+        try {
+            return completion.take().get();
+        } catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } // if
+
+            throw e;
+        }
+
+    }
+
+    /**
+     * Обработчик результатов подписи.
+     *
+     */
+    public interface ResultListener {
+
+        /**
+         * Получение результата подписи одного сообщения.
+         *
+         * @param result Результат.
+         */
+        void onResult(Result result);
+
+    }
+
+    /**
+     * Класс Result описывает результат подписи одного
+     * сообщения.
+     *
+     */
+    public static final class Result {
+
+        /**
+         * Номер сообщения во входных данных.
+         */
+        private final long index;
+
+        /**
+         * Подпись или null в случае ошибки.
+         */
+        private final byte[] signature;
+
+        /**
+         * Ошибка или null в случае успеха.
+         */
+        private final Exception error;
+
+        /**
+         * Конструктор.
+         *
+         * @param itemIndex Номер сообщения.
+         * @param sign Подпись.
+         * @param e Ошибка.
+         */
+        private Result(long itemIndex, byte[] sign, Exception e) {
+            index = itemIndex;
+            signature = sign;
+            error = e;
+        }
+
+        /**
+         * Получение номера сообщения во входных данных.
+         *
+         * @return номер сообщения.
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Получение подписи.
+         *
+         * @return подпись или null в случае ошибки.
+         */
+        public byte[] getSignature() {
+            return signature;
+        }
+
+        /**
+         * Получение ошибки.
+         *
+         * @return ошибка или null в случае успеха.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Проверка успешности подписи.
+         *
+         * @return true, если подпись сформирована.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Служебный класс ByteBufferPool предназначен для
+ * повторного использования буферов ByteBuffer. Буферы
+ * хранятся отдельно для каждого размера, количество
+ * свободных буферов одного размера ограничено.
+ *
+ * 18/10/2026
+ *
+ */
+public class ByteBufferPool {
+
+    /**
+     * Количество свободных буферов одного размера по
+     * умолчанию.
+     */
+    public static final int DEFAULT_MAX_FREE_BUFFERS = 64;
+
+    /**
+     * Свободные буферы по размеру.
+     */
+    private final Map<Integer, ArrayDeque<ByteBuffer>> free =
+        new HashMap<Integer, ArrayDeque<ByteBuffer>>();
+
+    /**
+     * Количество свободных буферов одного размера.
+     */
+    private final int maxFreeBuffers;
+
+    /**
+     * Количество созданных буферов.
+     */
+    private final AtomicLong allocatedCount = new AtomicLong(0);
+
+    /**
+     * Количество повторно выданных буферов.
+     */
+    private final AtomicLong reusedCount = new AtomicLong(0);
+
+    /**
+     * Конструктор.
+     *
+     */
+    public ByteBufferPool() {
+        this(DEFAULT_MAX_FREE_BUFFERS);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param maxFree Количество свободных буферов одного
+     * размера.
+     */
+    public ByteBufferPool(int maxFree) {
+
+        if (maxFree < 0) {
+            throw new IllegalArgumentException("Invalid buffer count: " + maxFree);
+        } // if
+
+        maxFreeBuffers = maxFree;
+    }
+
+    /**
+     * Получение очищенного буфера заданного размера.
+     *
+     * @param capacity Размер буфера.
+     * @return буфер.
+     */
+    public ByteBuffer acquire(int capacity) {
+
+        synchronized (free) {
+
+            final ArrayDeque<ByteBuffer> buffers = free.get(capacity);
+
+            if (buffers != null && !buffers.isEmpty()) {
+                reusedCount.incrementAndGet();
+                return buffers.pollLast();
+            } // if
+
+        }
+
+        allocatedCount.incrementAndGet();
+        return ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Возврат буфера в пул. Буфер очищается и после
+     * возврата не должен использоваться.
+     *
+     * @param buffer Буфер (может быть null).
+     */
+    public void release(ByteBuffer buffer) {
+
+        if (buffer == null) {
+            return;
+        } // if
+
+        buffer.clear();
+
+        synchronized (free) {
+
+            ArrayDeque<ByteBuffer> buffers = free.get(buffer.capacity());
+
+            if (buffers == null) {
+                buffers = new ArrayDeque<ByteBuffer>();
+                free.put(buffer.capacity(), buffers);
+            } // if
+
+            if (buffers.size() < maxFreeBuffers) {
+                buffers.addLast(buffer);
+            } // if
+
+        }
+
+    }
+
+    /**
+     * Получение количества созданных буферов.
+     *
+     * @return количество буферов.
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    /**
+     * Получение количества повторно выданных буферов.
+     *
+     * @return количество буферов.
+     */
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+}
@@ -0,0 +1,430 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPath;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Служебный класс CertPathCache предназначен для хранения
+ * доверенных сертификатов и проверенных цепочек, чтобы
+ * повторная проверка статуса тех же сертификатов не
+ * требовала построения и проверки цепочки.
+ *
+ * Доверенные сертификаты хранилища загружаются один раз и
+ * используются всеми примерами. Проверенная цепочка
+ * хранится по отпечатку (SHA-256) сертификата пользователя
+ * до наступления самого раннего из сроков: окончания
+ * действия сертификатов цепочки и срока жизни записи.
+ * Неудачные проверки не запоминаются.
+ *
+ * CRL и ответы OCSP валидатор получает сам и наружу не
+ * передает, поэтому срок жизни записи - единственная
+ * граница, после которой статус отзыва проверяется
+ * заново.
+ *
+ * 18/10/2026
+ *
+ */
+public final class CertPathCache {
+
+    /**
+     * Срок жизни записи по умолчанию (мсек).
+     */
+    public static final long DEFAULT_TTL = 10 * 60 * 1000;
+
+    /**
+     * Максимальное количество цепочек по умолчанию.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * Доверенные сертификаты по ключу хранилища.
+     */
+    private static final Map<String, TrustAnchors> anchors =
+        new HashMap<String, TrustAnchors>();
+
+    /**
+     * Проверенные цепочки в порядке последнего обращения.
+     */
+    private static final LinkedHashMap<String, Entry> paths =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CertPathCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+
+        };
+
+    /**
+     * Количество запросов, обслуженных из кеша.
+     */
+    private static final AtomicLong hitCount = new AtomicLong(0);
+
+    /**
+     * Количество запросов, не найденных в кеше.
+     */
+    private static final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * Срок жизни записи (мсек).
+     */
+    private static long ttl = DEFAULT_TTL;
+
+    /**
+     * Максимальное количество цепочек.
+     */
+    private static int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private CertPathCache() {
+        ;
+    }
+
+    /**
+     * Задание срока жизни записи.
+     *
+     * @param timeout Срок жизни (мсек).
+     */
+    public static synchronized void setTtl(long timeout) {
+        ttl = timeout;
+    }
+
+    /**
+     * Задание максимального количества цепочек.
+     *
+     * @param count Количество цепочек.
+     */
+    public static synchronized void setMaxEntries(int count) {
+        maxEntries = count;
+    }
+
+    /**
+     * Получение доверенных сертификатов хранилища. При
+     * первом обращении сертификаты загружаются с помощью
+     * loader.
+     *
+     * @param storeKey Ключ хранилища.
+     * @param loader Загрузчик сертификатов.
+     * @return доверенные сертификаты.
+     * @throws Exception
+     */
+    public static synchronized TrustAnchors getTrustAnchors(String storeKey,
+        TrustLoader loader) throws Exception {
+
+        TrustAnchors trust = anchors.get(storeKey);
+
+        if (trust == null) {
+            trust = new TrustAnchors(loader.load());
+            anchors.put(storeKey, trust);
+        } // if
+
+        return trust;
+    }
+
+    /**
+     * Поиск проверенной цепочки сертификата.
+     *
+     * @param storeKey Ключ хранилища доверенных сертификатов.
+     * @param certificate Сертификат пользователя.
+     * @return запись или null, если цепочка не проверялась
+     * или запись устарела.
+     * @throws CertificateEncodingException
+     */
+    public static synchronized Entry get(String storeKey,
+        X509Certificate certificate) throws CertificateEncodingException {
+
+        final String key = key(storeKey, certificate);
+        Entry entry = paths.get(key);
+
+        if (entry != null && entry.expiryTime <= System.currentTimeMillis()) {
+            paths.remove(key);
+            entry = null;
+        } // if
+
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        } // if
+
+        hitCount.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Сохранение проверенной цепочки.
+     *
+     * @param storeKey Ключ хранилища доверенных сертификатов.
+     * @param path Цепочка, первый сертификат - сертификат
+     * пользователя.
+     * @param anchor Доверенный сертификат цепочки (может
+     * быть null).
+     * @return запись.
+     * @throws CertificateEncodingException
+     */
+    public static synchronized Entry put(String storeKey, CertPath path,
+        TrustAnchor anchor) throws CertificateEncodingException {
+
+        final List<? extends Certificate> certificates = path.getCertificates();
+        long expiry = System.currentTimeMillis() + ttl;
+
+        for (Certificate certificate : certificates) {
+            expiry = Math.min(expiry,
+                ((X509Certificate) certificate).getNotAfter().getTime());
+        } // for
+
+        if (anchor != null && anchor.getTrustedCert() != null) {
+            expiry = Math.min(expiry, anchor.getTrustedCert().getNotAfter().getTime());
+        } // if
+
+        final Entry entry = new Entry(path, expiry);
+        paths.put(key(storeKey, (X509Certificate) certificates.get(0)), entry);
+
+        return entry;
+    }
+
+    /**
+     * Удаление доверенных сертификатов и проверенных по ним
+     * цепочек. Вызывается при изменении хранилища.
+     *
+     * @param storeKey Ключ хранилища.
+     */
+    public static synchronized void invalidate(String storeKey) {
+
+        anchors.remove(storeKey);
+
+        final String prefix = storeKey + "/";
+        Iterator<String> iterator = paths.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            } // if
+        } // while
+
+    }
+
+    /**
+     * Удаление всех записей.
+     *
+     */
+    public static synchronized void invalidateAll() {
+        anchors.clear();
+        paths.clear();
+    }
+
+    /**
+     * Получение количества запросов, обслуженных из кеша.
+     *
+     * @return количество запросов.
+     */
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Получение количества запросов, не найденных в кеше.
+     *
+     * @return количество запросов.
+     */
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Формирование ключа хранилища доверенных сертификатов.
+     *
+     * @param storeType Тип хранилища.
+     * @param storeProvider Провайдер хранилища.
+     * @return ключ хранилища.
+     */
+    public static String storeKey(String storeType, String storeProvider) {
+        return storeType + "|" + storeProvider;
+    }
+
+    /**
+     * Формирование ключа цепочки.
+     *
+     * @param storeKey Ключ хранилища.
+     * @param certificate Сертификат пользователя.
+     * @return ключ цепочки.
+     * @throws CertificateEncodingException
+     */
+    private static String key(String storeKey, X509Certificate certificate)
+        throws CertificateEncodingException {
+        return storeKey + "/" + fingerprint(certificate);
+    }
+
+    /**
+     * Вычисление отпечатка сертификата.
+     *
+     * @param certificate Сертификат.
+     * @return отпечаток SHA-256 в hex.
+     * @throws CertificateEncodingException
+     */
+    public static String fingerprint(X509Certificate certificate)
+        throws CertificateEncodingException {
+
+        final byte[] hash;
+
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final StringBuilder hex = new StringBuilder(hash.length * 2);
+
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b & 0xff));
+        } // for
+
+        return hex.toString();
+    }
+
+    /**
+     * Загрузчик доверенных сертификатов.
+     *
+     */
+    public interface TrustLoader {
+
+        /**
+         * Загрузка доверенных сертификатов.
+         *
+         * @return сертификаты.
+         * @throws Exception
+         */
+        List<X509Certificate> load() throws Exception;
+
+    }
+
+    /**
+     * Класс TrustAnchors описывает доверенные сертификаты
+     * одного хранилища.
+     *
+     */
+    public static final class TrustAnchors {
+
+        /**
+         * Доверенные сертификаты.
+         */
+        private final List<X509Certificate> certificates;
+
+        /**
+         * Доверенные сертификаты для построения цепочки.
+         */
+        private final Set<TrustAnchor> trustAnchors;
+
+        /**
+         * Конструктор.
+         *
+         * @param certs Доверенные сертификаты.
+         */
+        private TrustAnchors(List<X509Certificate> certs) {
+
+            certificates = Collections.unmodifiableList(certs);
+
+            final Set<TrustAnchor> trust = new HashSet<TrustAnchor>(certs.size());
+            for (X509Certificate root : certs) {
+                trust.add(new TrustAnchor(root, null));
+            } // for
+
+            trustAnchors = Collections.unmodifiableSet(trust);
+
+        }
+
+        /**
+         * Получение доверенных сертификатов.
+         *
+         * @return сертификаты.
+         */
+        public List<X509Certificate> getCertificates() {
+            return certificates;
+        }
+
+        /**
+         * Получение доверенных сертификатов для построения
+         * цепочки.
+         *
+         * @return сертификаты.
+         */
+        public Set<TrustAnchor> getTrustAnchors() {
+            return trustAnchors;
+        }
+
+    }
+
+    /**
+     * Класс Entry описывает проверенную цепочку.
+     *
+     */
+    public static final class Entry {
+
+        /**
+         * Цепочка.
+         */
+        private final CertPath certPath;
+
+        /**
+         * Время, до которого результат проверки действителен.
+         */
+        private final long expiryTime;
+
+        /**
+         * Конструктор.
+         *
+         * @param path Цепочка.
+         * @param expiry Время окончания действия записи.
+         */
+        private Entry(CertPath path, long expiry) {
+            certPath = path;
+            expiryTime = expiry;
+        }
+
+        /**
+         * Получение цепочки.
+         *
+         * @return цепочка.
+         */
+        public CertPath getCertPath() {
+            return certPath;
+        }
+
+        /**
+         * Получение времени окончания действия записи.
+         *
+         * @return время (мсек).
+         */
+        public long getExpiryTime() {
+            return expiryTime;
+        }
+
+    }
+
+}
@@ -0,0 +1,755 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Служебный класс ChunkedEnvelope предназначен для
+ * зашифрования файла блоками фиксированного размера.
+ * Каждый блок зашифровывается на своем IV и защищается
+ * имитовставкой, а индекс блоков в начале файла позволяет
+ * найти любой блок, не читая предыдущие. Поэтому любой
+ * диапазон данных можно расшифровать и проверить отдельно,
+ * в том числе в нескольких потоках.
+ *
+ * Формат файла:
+ * - заголовок: magic "GCE1", UKM (длина, 1 байт),
+ * зашифрованные ключ шифрования и ключ имитовставки
+ * (длина, 2 байта), размер блока (4 байта), длина данных
+ * (8 байтов), количество блоков (4 байта);
+ * - индекс: смещение (8 байтов) и длина (4 байта) записи
+ * каждого блока;
+ * - записи блоков: IV (длина, 1 байт), имитовставка
+ * (длина, 1 байт), зашифрованные данные.
+ *
+ * Имитовставка вычисляется на отдельном ключе от номера
+ * блока, размера блока, общей длины данных, длины данных
+ * блока, IV и зашифрованных данных. Количество блоков
+ * однозначно определяется размером блока и общей длиной,
+ * поэтому подмена и перестановка блоков, а также усечение
+ * файла с исправлением заголовка и индекса обнаруживаются
+ * до расшифрования любого блока.
+ *
+ * 18/10/2026
+ *
+ */
+public class ChunkedEnvelope {
+
+    /**
+     * Размер блока по умолчанию.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Признак формата файла.
+     */
+    private static final byte[] MAGIC = {'G', 'C', 'E', '1'};
+
+    /**
+     * Размер записи индекса.
+     */
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    /**
+     * Номер очередного пула (для имен потоков).
+     */
+    private static final AtomicInteger poolNumber = new AtomicInteger(0);
+
+    /**
+     * Алгоритм шифрования.
+     */
+    private final String transformation;
+
+    /**
+     * Алгоритм имитовставки.
+     */
+    private final String macAlgorithm;
+
+    /**
+     * Имя провайдера.
+     */
+    private final String provider;
+
+    /**
+     * Размер блока.
+     */
+    private final int chunkSize;
+
+    /**
+     * Конструктор.
+     *
+     * @param cipherTransformation Алгоритм шифрования без
+     * дополнения.
+     * @param macAlgorithmName Алгоритм имитовставки.
+     * @param providerName Имя провайдера.
+     */
+    public ChunkedEnvelope(String cipherTransformation,
+        String macAlgorithmName, String providerName) {
+        this(cipherTransformation, macAlgorithmName, providerName,
+            DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param cipherTransformation Алгоритм шифрования без
+     * дополнения.
+     * @param macAlgorithmName Алгоритм имитовставки.
+     * @param providerName Имя провайдера.
+     * @param size Размер блока, кратный 8.
+     */
+    public ChunkedEnvelope(String cipherTransformation,
+        String macAlgorithmName, String providerName, int size) {
+
+        if (size <= 0 || size % 8 != 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + size);
+        } // if
+
+        transformation = cipherTransformation;
+        macAlgorithm = macAlgorithmName;
+        provider = providerName;
+        chunkSize = size;
+
+    }
+
+    /**
+     * Зашифрование файла. Блоки зашифровываются в
+     * нескольких потоках.
+     *
+     * @param source Исходный файл.
+     * @param destination Зашифрованный файл.
+     * @param encryptionKey Ключ шифрования.
+     * @param macKey Ключ имитовставки.
+     * @param agreeKey Ключ согласования, на котором
+     * зашифровываются ключи шифрования и имитовставки.
+     * @param ukm Синхропосылка ключа согласования.
+     * @param threads Количество потоков.
+     * @return результат.
+     * @throws Exception
+     */
+    public FileCipher.Result encrypt(File source, File destination,
+        final SecretKey encryptionKey, final SecretKey macKey,
+        SecretKey agreeKey, byte[] ukm, int threads) throws Exception {
+
+        final long started = System.nanoTime();
+        final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+
+        // Зашифрование ключей шифрования и имитовставки.
+
+        cipher.init(Cipher.WRAP_MODE, agreeKey);
+        final byte[] wrappedEncryptionKey = cipher.wrap(encryptionKey);
+
+        cipher.init(Cipher.WRAP_MODE, agreeKey);
+        final byte[] wrappedMacKey = cipher.wrap(macKey);
+
+        // Длины IV и имитовставки, чтобы вычислить смещения
+        // записей до зашифрования блоков.
+
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
+        final int ivLength = cipher.getIV().length;
+
+        final Mac mac = CryptoPrimitivePool.getMac(macAlgorithm, provider);
+        mac.init(macKey);
+        final int macLength = mac.getMacLength();
+
+        final FileInputStream in = new FileInputStream(source);
+
+        try {
+
+            final FileOutputStream out = new FileOutputStream(destination);
+
+            try {
+
+                final FileChannel inChannel = in.getChannel();
+                final FileChannel outChannel = out.getChannel();
+
+                final long length = inChannel.size();
+                final long chunks = (length + chunkSize - 1) / chunkSize;
+
+                if (chunks > Integer.MAX_VALUE / INDEX_ENTRY_SIZE) {
+                    throw new IOException("File is too large: " + length);
+                } // if
+
+                final int chunkCount = (int) chunks;
+
+                final ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 +
+                    ukm.length + 2 + wrappedEncryptionKey.length + 2 +
+                    wrappedMacKey.length + 4 + 8 + 4 + chunkCount * INDEX_ENTRY_SIZE);
+
+                header.put(MAGIC);
+                header.put((byte) ukm.length).put(ukm);
+                header.putShort((short) wrappedEncryptionKey.length).put(wrappedEncryptionKey);
+                header.putShort((short) wrappedMacKey.length).put(wrappedMacKey);
+                header.putInt(chunkSize).putLong(length).putInt(chunkCount);
+
+                // Индекс: записи блоков следуют друг за другом.
+
+                final long[] offsets = new long[chunkCount];
+                long offset = header.capacity();
+
+                for (int i = 0; i < chunkCount; i++) {
+
+                    final int recordLength = 2 + ivLength + macLength +
+                        chunkLength(i, length);
+
+                    offsets[i] = offset;
+                    header.putLong(offset).putInt(recordLength);
+
+                    offset += recordLength;
+
+                } // for
+
+                header.flip();
+                FileCipher.writeFully(outChannel, header, 0);
+
+                run(0, chunkCount, threads, new ChunkTask() {
+
+                    @Override
+                    public void run(int index) throws Exception {
+                        encryptChunk(index, inChannel, outChannel, offsets[index],
+                            length, ivLength, encryptionKey, macKey);
+                    }
+
+                });
+
+                return new FileCipher.Result(length, System.nanoTime() - started);
+
+            } finally {
+                out.close();
+            }
+
+        } finally {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Открытие зашифрованного файла для чтения.
+     *
+     * @param source Зашифрованный файл.
+     * @param resolver Получение ключей шифрования и
+     * имитовставки по данным заголовка.
+     * @return объект чтения. Должен быть закрыт.
+     * @throws Exception
+     */
+    public Reader open(File source, FileCipher.KeyResolver resolver)
+        throws Exception {
+
+        final RandomAccessFile file = new RandomAccessFile(source, "r");
+
+        try {
+            return new Reader(file, resolver);
+        } catch (Exception e) {
+            file.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Зашифрование одного блока.
+     *
+     * @param index Номер блока.
+     * @param in Входной канал.
+     * @param out Выходной канал.
+     * @param offset Смещение записи блока.
+     * @param length Длина данных.
+     * @param ivLength Длина IV.
+     * @param encryptionKey Ключ шифрования.
+     * @param macKey Ключ имитовставки.
+     * @throws Exception
+     */
+    private void encryptChunk(int index, FileChannel in, FileChannel out,
+        long offset, long length, int ivLength, SecretKey encryptionKey,
+        SecretKey macKey) throws Exception {
+
+        final byte[] data = new byte[chunkLength(index, length)];
+
+        if (FileCipher.readFully(in, ByteBuffer.wrap(data),
+            (long) index * chunkSize) != data.length) {
+            throw new EOFException("Unexpected end of file.");
+        } // if
+
+        final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
+
+        final byte[] iv = cipher.getIV();
+        if (iv.length != ivLength) {
+            throw new IOException("Unexpected IV length: " + iv.length);
+        } // if
+
+        final byte[] encrypted = cipher.doFinal(data);
+        if (encrypted.length != data.length) {
+            throw new IOException("Cipher must not change data length.");
+        } // if
+
+        final byte[] tag = mac(macKey, index, chunkSize, length, iv, encrypted);
+
+        final ByteBuffer record = ByteBuffer.allocate(2 + iv.length +
+            tag.length + encrypted.length);
+
+        record.put((byte) iv.length).put(iv);
+        record.put((byte) tag.length).put(tag);
+        record.put(encrypted);
+        record.flip();
+
+        FileCipher.writeFully(out, record, offset);
+
+    }
+
+    /**
+     * Вычисление имитовставки блока. Объект вычисления
+     * берется из {@link CryptoPrimitivePool} текущего потока.
+     *
+     * @param macKey Ключ имитовставки.
+     * @param index Номер блока.
+     * @param size Размер блока.
+     * @param length Общая длина данных.
+     * @param iv IV блока.
+     * @param encrypted Зашифрованные данные блока.
+     * @return имитовставка.
+     * @throws Exception
+     */
+    private byte[] mac(SecretKey macKey, int index, int size, long length,
+        byte[] iv, byte[] encrypted) throws Exception {
+
+        final Mac mac = CryptoPrimitivePool.getMac(macAlgorithm, provider);
+        mac.init(macKey);
+
+        mac.update(ByteBuffer.allocate(20).putInt(index).putInt(size)
+            .putLong(length).putInt(encrypted.length).array());
+        mac.update(iv);
+
+        return mac.doFinal(encrypted);
+    }
+
+    /**
+     * Получение длины данных блока.
+     *
+     * @param index Номер блока.
+     * @param length Длина данных.
+     * @return длина данных блока.
+     */
+    private int chunkLength(int index, long length) {
+        return (int) Math.min(chunkSize, length - (long) index * chunkSize);
+    }
+
+    /**
+     * Обработка блоков с номерами от first (включительно)
+     * до last (не включительно).
+     *
+     * @param first Номер первого блока.
+     * @param last Номер блока, следующего за последним.
+     * @param threads Количество потоков.
+     * @param task Обработка блока.
+     * @throws Exception
+     */
+    private static void run(int first, int last, int threads,
+        final ChunkTask task) throws Exception {
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads);
+        } // if
+
+        final int count = last - first;
+
+        if (threads == 1 || count <= 1) {
+
+            for (int i = first; i < last; i++) {
+                task.run(i);
+            } // for
+
+            return;
+
+        } // if
+
+        final int pool = poolNumber.incrementAndGet();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(threads, count), new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "envelope-" + pool + "-" +
+                        threadNumber.incrementAndGet());
+                }
+
+            });
+
+        try {
+
+            final List<Future<Void>> results = new ArrayList<Future<Void>>(count);
+
+            for (int i = first; i < last; i++) {
+
+                final int index = i;
+
+                results.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        task.run(index);
+                        return null;
+                    }
+
+                }));
+
+            } // for
+
+            for (Future<Void> result : results) {
+
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+
+                    executor.shutdownNow();
+
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    } // if
+
+                    throw e;
+
+                }
+
+            } // for
+
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    /**
+     * Обработка одного блока.
+     *
+     */
+    private interface ChunkTask {
+
+        /**
+         * Обработка блока.
+         *
+         * @param index Номер блока.
+         * @throws Exception
+         */
+        void run(int index) throws Exception;
+
+    }
+
+    /**
+     * Класс Reader предназначен для расшифрования отдельных
+     * диапазонов и всего зашифрованного файла. Перед
+     * расшифрованием каждого блока проверяется его
+     * имитовставка. Объект можно использовать в нескольких
+     * потоках.
+     *
+     */
+    public final class Reader implements Closeable {
+
+        /**
+         * Зашифрованный файл.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * Канал зашифрованного файла.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Ключ шифрования.
+         */
+        private final SecretKey encryptionKey;
+
+        /**
+         * Ключ имитовставки.
+         */
+        private final SecretKey macKey;
+
+        /**
+         * Размер блока.
+         */
+        private final int size;
+
+        /**
+         * Длина данных.
+         */
+        private final long length;
+
+        /**
+         * Смещения записей блоков.
+         */
+        private final long[] offsets;
+
+        /**
+         * Длины записей блоков.
+         */
+        private final int[] recordLengths;
+
+        /**
+         * Конструктор. Читает заголовок и индекс.
+         *
+         * @param source Зашифрованный файл.
+         * @param resolver Получение ключей по данным
+         * заголовка.
+         * @throws Exception
+         */
+        private Reader(RandomAccessFile source, FileCipher.KeyResolver resolver)
+            throws Exception {
+
+            file = source;
+            channel = file.getChannel();
+
+            final byte[] magic = FileCipher.readBytes(channel, MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Invalid file format.");
+            } // if
+
+            final byte[] ukm = FileCipher.readBytes(channel,
+                FileCipher.readBytes(channel, 1)[0] & 0xff);
+
+            final byte[] wrappedEncryptionKey = FileCipher.readBytes(channel,
+                ByteBuffer.wrap(FileCipher.readBytes(channel, 2)).getShort() & 0xffff);
+
+            final byte[] wrappedMacKey = FileCipher.readBytes(channel,
+                ByteBuffer.wrap(FileCipher.readBytes(channel, 2)).getShort() & 0xffff);
+
+            final ByteBuffer parameters = ByteBuffer.wrap(
+                FileCipher.readBytes(channel, 4 + 8 + 4));
+
+            size = parameters.getInt();
+            length = parameters.getLong();
+
+            final int chunkCount = parameters.getInt();
+            final long fileLength = channel.size();
+
+            if (size <= 0 || length < 0 || chunkCount < 0 ||
+                chunkCount != (length + size - 1) / size ||
+                (long) chunkCount * INDEX_ENTRY_SIZE > fileLength) {
+                throw new IOException("Invalid file header.");
+            } // if
+
+            // Индекс блоков.
+
+            final ByteBuffer index = ByteBuffer.wrap(FileCipher.readBytes(
+                channel, chunkCount * INDEX_ENTRY_SIZE));
+
+            offsets = new long[chunkCount];
+            recordLengths = new int[chunkCount];
+
+            for (int i = 0; i < chunkCount; i++) {
+
+                offsets[i] = index.getLong();
+                recordLengths[i] = index.getInt();
+
+                if (offsets[i] < channel.position() || recordLengths[i] <= 0 ||
+                    offsets[i] + recordLengths[i] > fileLength) {
+                    throw new IOException("Invalid index entry: " + i);
+                } // if
+
+            } // for
+
+            encryptionKey = resolver.resolve(ukm, wrappedEncryptionKey);
+            macKey = resolver.resolve(ukm, wrappedMacKey);
+
+        }
+
+        /**
+         * Получение длины данных.
+         *
+         * @return длина данных.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Получение количества блоков.
+         *
+         * @return количество блоков.
+         */
+        public int getChunkCount() {
+            return offsets.length;
+        }
+
+        /**
+         * Расшифрование диапазона данных. Расшифровываются и
+         * проверяются только блоки, содержащие диапазон.
+         *
+         * @param offset Смещение в исходных данных.
+         * @param count Длина диапазона.
+         * @param threads Количество потоков.
+         * @return расшифрованные данные.
+         * @throws Exception
+         */
+        public byte[] read(final long offset, int count, int threads)
+            throws Exception {
+
+            if (offset < 0 || count < 0 || offset + count > length) {
+                throw new IllegalArgumentException("Invalid range: " +
+                    offset + ", " + count);
+            } // if
+
+            final byte[] result = new byte[count];
+
+            if (count == 0) {
+                return result;
+            } // if
+
+            final long end = offset + count;
+
+            run((int) (offset / size), (int) ((end - 1) / size) + 1, threads,
+                new ChunkTask() {
+
+                    @Override
+                    public void run(int index) throws Exception {
+
+                        final byte[] data = decryptChunk(index);
+                        final long start = (long) index * size;
+
+                        final long from = Math.max(offset, start);
+                        final long to = Math.min(end, start + data.length);
+
+                        System.arraycopy(data, (int) (from - start), result,
+                            (int) (from - offset), (int) (to - from));
+
+                    }
+
+                });
+
+            return result;
+        }
+
+        /**
+         * Расшифрование всего файла.
+         *
+         * @param destination Расшифрованный файл.
+         * @param threads Количество потоков.
+         * @return результат.
+         * @throws Exception
+         */
+        public FileCipher.Result decrypt(File destination, int threads)
+            throws Exception {
+
+            final long started = System.nanoTime();
+            final FileOutputStream out = new FileOutputStream(destination);
+
+            try {
+
+                final FileChannel outChannel = out.getChannel();
+
+                run(0, offsets.length, threads, new ChunkTask() {
+
+                    @Override
+                    public void run(int index) throws Exception {
+                        FileCipher.writeFully(outChannel,
+                            ByteBuffer.wrap(decryptChunk(index)),
+                            (long) index * size);
+                    }
+
+                });
+
+                return new FileCipher.Result(length, System.nanoTime() - started);
+
+            } finally {
+                out.close();
+            }
+
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+        /**
+         * Проверка имитовставки и расшифрование блока.
+         *
+         * @param index Номер блока.
+         * @return расшифрованные данные блока.
+         * @throws Exception
+         */
+        private byte[] decryptChunk(int index) throws Exception {
+
+            final byte[] record = new byte[recordLengths[index]];
+
+            if (FileCipher.readFully(channel, ByteBuffer.wrap(record),
+                offsets[index]) != record.length) {
+                throw new EOFException("Unexpected end of file.");
+            } // if
+
+            final byte[] iv;
+            final byte[] tag;
+            final byte[] encrypted;
+
+            try {
+
+                final ByteBuffer buffer = ByteBuffer.wrap(record);
+
+                iv = new byte[buffer.get() & 0xff];
+                buffer.get(iv);
+
+                tag = new byte[buffer.get() & 0xff];
+                buffer.get(tag);
+
+                encrypted = new byte[buffer.remaining()];
+                buffer.get(encrypted);
+
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Invalid record of chunk " + index);
+            }
+
+            if (encrypted.length != Math.min(size, length - (long) index * size)) {
+                throw new IOException("Invalid length of chunk " + index);
+            } // if
+
+            if (!MessageDigest.isEqual(tag,
+                mac(macKey, index, size, length, iv, encrypted))) {
+                throw new SignatureException("Invalid MAC of chunk " + index);
+            } // if
+
+            final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new IvParameterSpec(iv), null);
+
+            return cipher.doFinal(encrypted);
+        }
+
+    }
+
+}
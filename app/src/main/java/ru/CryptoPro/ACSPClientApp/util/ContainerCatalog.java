@@ -0,0 +1,319 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import android.util.Log;
+
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.CryptoPro.JCP.JCP;
+import ru.CryptoPro.JCSP.JCSP;
+
+/**
+ * Служебный класс ContainerCatalog предназначен для
+ * хранения списка контейнеров хранилища с алгоритмами их
+ * ключей. Алиасы индексируются по типу провайдера, поэтому
+ * список контейнеров для выбранного алгоритма выдается из
+ * памяти, без загрузки ключей.
+ *
+ * Хранилище загружается при первом обращении. Созданные и
+ * удаленные контейнеры добавляются в каталог и удаляются
+ * из него явно. После копирования контейнеров каталог
+ * помечается устаревшим: при следующем обращении ключи
+ * загружаются только для новых алиасов.
+ *
+ * 18/10/2026
+ *
+ */
+public final class ContainerCatalog {
+
+    /**
+     * Каталоги хранилищ по типу хранилища.
+     */
+    private static final Map<String, Store> stores =
+        new HashMap<String, Store>();
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private ContainerCatalog() {
+        ;
+    }
+
+    /**
+     * Получение алиасов контейнеров хранилища, ключи
+     * которых соответствуют типу провайдера.
+     *
+     * @param storeType Тип хранилища.
+     * @param providerType Тип провайдера.
+     * @return отсортированный список алиасов.
+     */
+    public static synchronized List<String> aliases(String storeType,
+        AlgorithmSelector.DefaultProviderType providerType) {
+
+        final Store store = store(storeType);
+
+        final Set<String> aliases = store.aliases.get(providerType);
+        return aliases == null ? new ArrayList<String>() : new ArrayList<String>(aliases);
+    }
+
+    /**
+     * Получение алгоритма ключа контейнера.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас контейнера.
+     * @return алгоритм ключа или null, если контейнер
+     * отсутствует.
+     */
+    public static synchronized String getAlgorithm(String storeType, String alias) {
+        return store(storeType).algorithms.get(alias);
+    }
+
+    /**
+     * Добавление созданного контейнера. Если хранилище еще
+     * не загружено, контейнер будет найден при загрузке.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас контейнера.
+     * @param algorithm Алгоритм ключа.
+     */
+    public static synchronized void put(String storeType, String alias,
+        String algorithm) {
+
+        final Store store = stores.get(storeType);
+
+        if (store != null) {
+            store.put(alias, algorithm);
+        } // if
+
+    }
+
+    /**
+     * Удаление контейнера из каталога.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас контейнера.
+     */
+    public static synchronized void remove(String storeType, String alias) {
+
+        final Store store = stores.get(storeType);
+
+        if (store != null) {
+            store.remove(alias);
+        } // if
+
+    }
+
+    /**
+     * Пометка каталогов всех хранилищ устаревшими, например,
+     * после копирования контейнеров в папку приложения.
+     *
+     */
+    public static synchronized void invalidate() {
+
+        for (Store store : stores.values()) {
+            store.stale = true;
+        } // for
+
+    }
+
+    /**
+     * Определение типа провайдера по алгоритму ключа.
+     *
+     * @param algorithm Алгоритм ключа.
+     * @return тип провайдера.
+     */
+    public static AlgorithmSelector.DefaultProviderType providerType(String algorithm) {
+
+        if (algorithm.equalsIgnoreCase(JCP.GOST_EL_DEGREE_NAME) ||
+            algorithm.equalsIgnoreCase(JCP.GOST_EL_DH_NAME)) {
+            return AlgorithmSelector.DefaultProviderType.pt2001;
+        } // if
+        else if (algorithm.equalsIgnoreCase(JCP.GOST_EL_2012_256_NAME) ||
+            algorithm.equalsIgnoreCase(JCP.GOST_DH_2012_256_NAME)) {
+            return AlgorithmSelector.DefaultProviderType.pt2012Short;
+        } // else
+        else if (algorithm.equalsIgnoreCase(JCP.GOST_EL_2012_512_NAME) ||
+            algorithm.equalsIgnoreCase(JCP.GOST_DH_2012_512_NAME)) {
+            return AlgorithmSelector.DefaultProviderType.pt2012Long;
+        } // else
+
+        return AlgorithmSelector.DefaultProviderType.ptUnknown;
+    }
+
+    /**
+     * Получение каталога хранилища. Каталог загружается при
+     * первом обращении и обновляется, если он устарел.
+     *
+     * @param storeType Тип хранилища.
+     * @return каталог.
+     */
+    private static Store store(String storeType) {
+
+        Store store = stores.get(storeType);
+
+        if (store == null) {
+            store = new Store();
+            stores.put(storeType, store);
+        } // if
+
+        if (store.stale) {
+            store.refresh(storeType);
+        } // if
+
+        return store;
+    }
+
+    /**
+     * Класс Store описывает каталог одного хранилища.
+     *
+     */
+    private static final class Store {
+
+        /**
+         * Алгоритмы ключей по алиасу.
+         */
+        private final Map<String, String> algorithms =
+            new HashMap<String, String>();
+
+        /**
+         * Алиасы по типу провайдера.
+         */
+        private final Map<AlgorithmSelector.DefaultProviderType, TreeSet<String>> aliases =
+            new EnumMap<AlgorithmSelector.DefaultProviderType, TreeSet<String>>(
+                AlgorithmSelector.DefaultProviderType.class);
+
+        /**
+         * Флаг, означающий, что каталог нужно сверить с
+         * хранилищем.
+         */
+        private boolean stale = true;
+
+        /**
+         * Сверка каталога с хранилищем: удаляются отсутствующие
+         * в хранилище алиасы, для новых алиасов загружаются
+         * ключи.
+         *
+         * @param storeType Тип хранилища.
+         */
+        private void refresh(String storeType) {
+
+            try {
+
+                KeyStore keyStore = KeyStore.getInstance(storeType, JCSP.PROVIDER_NAME);
+                keyStore.load(null, null);
+
+                final Set<String> present = new HashSet<String>();
+                Enumeration<String> storeAliases = keyStore.aliases();
+
+                int loaded = 0;
+                while (storeAliases.hasMoreElements()) {
+
+                    String alias = storeAliases.nextElement();
+                    present.add(alias);
+
+                    if (algorithms.containsKey(alias)) {
+                        continue;
+                    } // if
+
+                    Key key = keyStore.getKey(alias, null);
+                    if (key != null) {
+                        put(alias, key.getAlgorithm());
+                        loaded++;
+                    } // if
+
+                } // while
+
+                int removed = 0;
+                Iterator<String> iterator = new ArrayList<String>(algorithms.keySet()).iterator();
+
+                while (iterator.hasNext()) {
+
+                    String alias = iterator.next();
+
+                    if (!present.contains(alias)) {
+                        remove(alias);
+                        removed++;
+                    } // if
+
+                } // while
+
+                stale = false;
+
+                Log.i(Constants.APP_LOGGER_TAG, "Container catalog " + storeType +
+                    ": " + algorithms.size() + " containers (loaded: " + loaded +
+                    ", removed: " + removed + ")");
+
+            } catch (Exception e) {
+                Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
+            }
+
+        }
+
+        /**
+         * Добавление алиаса в каталог.
+         *
+         * @param alias Алиас контейнера.
+         * @param algorithm Алгоритм ключа.
+         */
+        private void put(String alias, String algorithm) {
+
+            remove(alias);
+            algorithms.put(alias, algorithm);
+
+            final AlgorithmSelector.DefaultProviderType type = providerType(algorithm);
+            TreeSet<String> typeAliases = aliases.get(type);
+
+            if (typeAliases == null) {
+                typeAliases = new TreeSet<String>();
+                aliases.put(type, typeAliases);
+            } // if
+
+            typeAliases.add(alias);
+
+        }
+
+        /**
+         * Удаление алиаса из каталога.
+         *
+         * @param alias Алиас контейнера.
+         */
+        private void remove(String alias) {
+
+            final String algorithm = algorithms.remove(alias);
+
+            if (algorithm != null) {
+
+                final TreeSet<String> typeAliases = aliases.get(providerType(algorithm));
+                if (typeAliases != null) {
+                    typeAliases.remove(alias);
+                } // if
+
+            } // if
+
+        }
+
+    }
+
+}
@@ -0,0 +1,447 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+import ru.cprocsp.ACSP.tools.common.CSPTool;
+import ru.cprocsp.ACSP.tools.common.RawResource;
+
+/**
+ * Служебный класс ContainerInstaller предназначен для
+ * копирования тестовых контейнеров из ресурсов приложения
+ * в папку keys. Контейнеры копируются параллельно.
+ *
+ * Для каждого скопированного контейнера в манифест
+ * записывается контрольная сумма (SHA-256) его ресурсов.
+ * Контейнер не копируется повторно, если сумма ресурсов
+ * совпадает с манифестом, а все файлы контейнера есть в
+ * папке и имеют тот же размер.
+ *
+ * 18/10/2026
+ *
+ */
+public class ContainerInstaller {
+
+    /**
+     * Имя файла манифеста в папке files приложения.
+     */
+    public static final String MANIFEST_FILE = "containers.manifest";
+
+    /**
+     * Размер буфера для чтения ресурсов.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Объект для синхронизации доступа к манифесту.
+     */
+    private static final Object manifestLock = new Object();
+
+    /**
+     * Файл манифеста. Задается при создании установщика.
+     */
+    private static volatile File manifestFile = null;
+
+    /**
+     * Контекст приложения.
+     */
+    private final Context context;
+
+    /**
+     * Папка контейнеров пользователя относительно
+     * папки keys.
+     */
+    private final String userDirectory;
+
+    /**
+     * Папка контейнеров пользователя.
+     */
+    private final File containerDirectory;
+
+    /**
+     * Количество скопированных контейнеров.
+     */
+    private final AtomicInteger copiedCount = new AtomicInteger(0);
+
+    /**
+     * Количество пропущенных контейнеров.
+     */
+    private final AtomicInteger skippedCount = new AtomicInteger(0);
+
+    /**
+     * Конструктор.
+     *
+     * @param appContext Контекст приложения.
+     * @param userDir Папка контейнеров пользователя
+     * относительно папки keys.
+     */
+    public ContainerInstaller(Context appContext, String userDir) {
+
+        context = appContext;
+        userDirectory = userDir;
+
+        CSPTool cspTool = new CSPTool(context);
+        containerDirectory = new File(cspTool.getAppInfrastructure()
+            .getKeysDirectory(), userDirectory);
+
+        manifestFile = new File(context.getFilesDir(), MANIFEST_FILE);
+
+    }
+
+    /**
+     * Копирование контейнеров. Каждый контейнер копируется
+     * в отдельном потоке, уже установленные контейнеры
+     * пропускаются.
+     *
+     * @param containers Список контейнеров: алиас и ссылки
+     * на ресурсы с именами файлов контейнера.
+     * @param threads Количество потоков.
+     * @throws Exception
+     */
+    public void install(Map<String, Map<Integer, String>> containers,
+        int threads) throws Exception {
+
+        final Properties manifest;
+        synchronized (manifestLock) {
+            manifest = loadManifest();
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(threads, containers.size())), new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "install-" + threadNumber.incrementAndGet());
+                }
+
+            });
+
+        final Map<String, Future<String>> results =
+            new LinkedHashMap<String, Future<String>>();
+
+        try {
+
+            for (Map.Entry<String, Map<Integer, String>> container : containers.entrySet()) {
+
+                final String alias = container.getKey();
+                final Map<Integer, String> files = container.getValue();
+                final String installed = manifest.getProperty(alias);
+
+                results.put(alias, executor.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        return installContainer(alias, files, installed);
+                    }
+
+                }));
+
+            } // for
+
+            // Ожидаем все контейнеры, чтобы записать в манифест
+            // успешно скопированные, даже если были ошибки.
+
+            Exception error = null;
+            final Map<String, String> checksums = new HashMap<String, String>();
+
+            for (Map.Entry<String, Future<String>> result : results.entrySet()) {
+
+                try {
+                    checksums.put(result.getKey(), result.getValue().get());
+                } catch (ExecutionException e) {
+
+                    Log.e(Constants.APP_LOGGER_TAG, "Couldn't install container: " +
+                        result.getKey(), e.getCause());
+
+                    if (error == null) {
+                        error = e.getCause() instanceof Exception
+                            ? (Exception) e.getCause() : e;
+                    } // if
+
+                }
+
+            } // for
+
+            synchronized (manifestLock) {
+
+                final Properties current = loadManifest();
+                boolean changed = false;
+
+                for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+                    if (!checksum.getValue().equals(current.getProperty(checksum.getKey()))) {
+                        current.setProperty(checksum.getKey(), checksum.getValue());
+                        changed = true;
+                    } // if
+                } // for
+
+                if (changed) {
+                    saveManifest(current);
+                } // if
+
+            }
+
+            if (error != null) {
+                throw error;
+            } // if
+
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    /**
+     * Получение количества скопированных контейнеров.
+     *
+     * @return количество контейнеров.
+     */
+    public int getCopiedCount() {
+        return copiedCount.get();
+    }
+
+    /**
+     * Получение количества пропущенных (уже установленных)
+     * контейнеров.
+     *
+     * @return количество контейнеров.
+     */
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Удаление контейнера из манифеста, например, после
+     * удаления контейнера. При следующем запуске контейнер
+     * будет скопирован заново.
+     *
+     * @param alias Алиас контейнера.
+     */
+    public static void invalidate(String alias) {
+
+        synchronized (manifestLock) {
+
+            if (manifestFile == null) {
+                return;
+            } // if
+
+            try {
+
+                final Properties manifest = loadManifest();
+                if (manifest.remove(alias) != null) {
+                    saveManifest(manifest);
+                } // if
+
+            } catch (IOException e) {
+                Log.e(Constants.APP_LOGGER_TAG, e.getMessage(), e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Копирование одного контейнера, если он не установлен.
+     *
+     * @param alias Алиас контейнера.
+     * @param files Ссылки на ресурсы и имена файлов контейнера.
+     * @param installed Контрольная сумма из манифеста или null.
+     * @return контрольная сумма ресурсов контейнера.
+     * @throws Exception
+     */
+    private String installContainer(String alias, Map<Integer, String> files,
+        String installed) throws Exception {
+
+        // Файлы упорядочиваются по имени, чтобы сумма не
+        // зависела от порядка в списке.
+
+        final TreeMap<String, Integer> sorted = new TreeMap<String, Integer>();
+        for (Map.Entry<Integer, String> file : files.entrySet()) {
+            sorted.put(file.getValue(), file.getKey());
+        } // for
+
+        final Map<String, Long> lengths = new HashMap<String, Long>();
+        final String checksum = checksum(sorted, lengths);
+
+        if (checksum.equals(installed) && isInstalled(alias, lengths)) {
+
+            Log.i(Constants.APP_LOGGER_TAG, "Container " + alias +
+                " is already installed.");
+
+            skippedCount.incrementAndGet();
+            return checksum;
+
+        } // if
+
+        final String resourceDirectory = userDirectory + File.separator + alias;
+        Log.i(Constants.APP_LOGGER_TAG, "Install container: " +
+            alias + " to resource directory: " + resourceDirectory);
+
+        CSPTool cspTool = new CSPTool(context);
+
+        // Копируем ресурсы в папку keys.
+        RawResource resource = cspTool.createRawResource(
+            ru.cprocsp.ACSP.tools.common.Constants.CSP_SOURCE_TYPE_CONTAINER,
+            resourceDirectory);
+
+        for (Map.Entry<String, Integer> file : sorted.entrySet()) {
+            if (!resource.copy(file.getValue(), file.getKey())) {
+                throw new Exception("Couldn't copy " + file.getKey());
+            } // if
+        } // for
+
+        copiedCount.incrementAndGet();
+        return checksum;
+    }
+
+    /**
+     * Проверка наличия файлов контейнера в папке.
+     *
+     * @param alias Алиас контейнера.
+     * @param lengths Имена и размеры файлов контейнера.
+     * @return true, если все файлы есть и размеры совпадают.
+     */
+    private boolean isInstalled(String alias, Map<String, Long> lengths) {
+
+        final File directory = new File(containerDirectory, alias);
+
+        for (Map.Entry<String, Long> length : lengths.entrySet()) {
+
+            final File file = new File(directory, length.getKey());
+            if (!file.isFile() || file.length() != length.getValue()) {
+                return false;
+            } // if
+
+        } // for
+
+        return true;
+    }
+
+    /**
+     * Вычисление контрольной суммы ресурсов контейнера.
+     *
+     * @param files Имена файлов и ссылки на ресурсы.
+     * @param lengths Имена и размеры файлов (заполняется).
+     * @return контрольная сумма в hex.
+     * @throws Exception
+     */
+    private String checksum(TreeMap<String, Integer> files,
+        Map<String, Long> lengths) throws Exception {
+
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        for (Map.Entry<String, Integer> file : files.entrySet()) {
+
+            digest.update(file.getKey().getBytes("UTF-8"));
+            long length = 0;
+
+            InputStream in = context.getResources().openRawResource(file.getValue());
+
+            try {
+
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    length += read;
+                } // while
+
+            } finally {
+                in.close();
+            }
+
+            lengths.put(file.getKey(), length);
+
+        } // for
+
+        final byte[] hash = digest.digest();
+        final StringBuilder hex = new StringBuilder(hash.length * 2);
+
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b & 0xff));
+        } // for
+
+        return hex.toString();
+    }
+
+    /**
+     * Загрузка манифеста. Вызывается под manifestLock.
+     *
+     * @return манифест (пустой, если файла нет).
+     * @throws IOException
+     */
+    private static Properties loadManifest() throws IOException {
+
+        final Properties manifest = new Properties();
+        if (!manifestFile.isFile()) {
+            return manifest;
+        } // if
+
+        InputStream in = new FileInputStream(manifestFile);
+
+        try {
+            manifest.load(in);
+        } finally {
+            in.close();
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Запись манифеста через временный файл. Вызывается
+     * под manifestLock.
+     *
+     * @param manifest Манифест.
+     * @throws IOException
+     */
+    private static void saveManifest(Properties manifest) throws IOException {
+
+        final File temp = new File(manifestFile.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+
+        try {
+            manifest.store(out, "Installed containers");
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(manifestFile)) {
+            throw new IOException("Couldn't write " + manifestFile);
+        } // if
+
+    }
+
+}
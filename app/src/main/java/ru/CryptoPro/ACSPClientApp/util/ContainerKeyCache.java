@@ -0,0 +1,411 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Служебный класс ContainerKeyCache предназначен для
+ * хранения загруженных из контейнеров закрытых ключей и
+ * сертификатов, чтобы не открывать контейнер при каждой
+ * операции. Записи хранятся по ключу "тип хранилища +
+ * алиас" и удаляются по истечении срока жизни, при
+ * длительном простое или явно - при удалении контейнера
+ * или смене пароля. Устаревшие записи удаляются при
+ * каждом обращении к кешу, поэтому кеш не удерживает
+ * ключи дольше срока жизни до следующего обращения.
+ *
+ * Вместе с записью хранится хеш (SHA-256 с солью)
+ * пароля, с которым был загружен ключ. Запись выдается
+ * только при совпадении пароля запроса, иначе запрос
+ * считается промахом и контейнер открывается заново,
+ * т.е. пароль проверяется самим контейнером. Ключи,
+ * пароль которых вводится в окне CSP, в кеш не
+ * помещаются.
+ *
+ * 18/10/2026
+ *
+ */
+public final class ContainerKeyCache {
+
+    /**
+     * Срок жизни записи по умолчанию (мсек).
+     */
+    public static final long DEFAULT_TTL = 10 * 60 * 1000;
+
+    /**
+     * Максимальное время простоя записи по умолчанию (мсек).
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 2 * 60 * 1000;
+
+    /**
+     * Длина соли хеша пароля.
+     */
+    private static final int SALT_LENGTH = 16;
+
+    /**
+     * ДСЧ для генерации соли.
+     */
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Записи кеша.
+     */
+    private static final Map<String, Entry> entries =
+        new HashMap<String, Entry>();
+
+    /**
+     * Количество запросов, обслуженных из кеша.
+     */
+    private static final AtomicLong hitCount = new AtomicLong(0);
+
+    /**
+     * Количество запросов, не найденных в кеше.
+     */
+    private static final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * Количество записей, удаленных по сроку жизни или
+     * простою.
+     */
+    private static final AtomicLong evictionCount = new AtomicLong(0);
+
+    /**
+     * Срок жизни записи (мсек).
+     */
+    private static long ttl = DEFAULT_TTL;
+
+    /**
+     * Максимальное время простоя записи (мсек).
+     */
+    private static long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private ContainerKeyCache() {
+        ;
+    }
+
+    /**
+     * Задание срока жизни записи.
+     *
+     * @param timeout Срок жизни (мсек).
+     */
+    public static synchronized void setTtl(long timeout) {
+        ttl = timeout;
+    }
+
+    /**
+     * Задание максимального времени простоя записи.
+     *
+     * @param timeout Время простоя (мсек).
+     */
+    public static synchronized void setIdleTimeout(long timeout) {
+        idleTimeout = timeout;
+    }
+
+    /**
+     * Поиск ключа и сертификата в кеше.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас ключа.
+     * @param password Пароль к ключу.
+     * @return запись или null, если запись отсутствует,
+     * устарела или пароль не совпадает.
+     */
+    public static synchronized Entry get(String storeType, String alias,
+        char[] password) {
+
+        final long now = System.currentTimeMillis();
+        evictExpired(now);
+
+        final Entry entry = entries.get(key(storeType, alias));
+
+        if (entry == null || !entry.matches(password)) {
+            missCount.incrementAndGet();
+            return null;
+        } // if
+
+        entry.lastAccessTime = now;
+        hitCount.incrementAndGet();
+
+        return entry;
+    }
+
+    /**
+     * Сохранение ключа и сертификата в кеше.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас ключа.
+     * @param password Пароль, с которым загружен ключ.
+     * @param privateKey Закрытый ключ.
+     * @param certificate Сертификат ключа.
+     */
+    public static synchronized void put(String storeType, String alias,
+        char[] password, PrivateKey privateKey, X509Certificate certificate) {
+
+        evictExpired(System.currentTimeMillis());
+
+        final byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+
+        entries.put(key(storeType, alias), new Entry(privateKey,
+            certificate, salt, digest(salt, password)));
+
+    }
+
+    /**
+     * Удаление записи о ключе. Вызывается при удалении
+     * контейнера или смене его пароля.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас ключа.
+     */
+    public static synchronized void invalidate(String storeType, String alias) {
+        entries.remove(key(storeType, alias));
+    }
+
+    /**
+     * Удаление всех записей.
+     *
+     */
+    public static synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Удаление устаревших записей.
+     *
+     */
+    public static synchronized void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Удаление записей, устаревших к заданному времени.
+     * Вызывается под блокировкой класса.
+     *
+     * @param now Текущее время.
+     */
+    private static void evictExpired(long now) {
+
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            } // if
+        } // while
+
+    }
+
+    /**
+     * Получение количества записей.
+     *
+     * @return количество записей.
+     */
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Получение количества запросов, обслуженных из кеша.
+     *
+     * @return количество запросов.
+     */
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Получение количества запросов, не найденных в кеше.
+     *
+     * @return количество запросов.
+     */
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Получение количества записей, удаленных по сроку
+     * жизни или простою.
+     *
+     * @return количество записей.
+     */
+    public static long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Формирование ключа записи.
+     *
+     * @param storeType Тип хранилища.
+     * @param alias Алиас ключа.
+     * @return ключ записи.
+     */
+    private static String key(String storeType, String alias) {
+        return storeType + "/" + alias;
+    }
+
+    /**
+     * Вычисление хеша пароля с солью.
+     *
+     * @param salt Соль.
+     * @param password Пароль (может быть null).
+     * @return хеш.
+     */
+    private static byte[] digest(byte[] salt, char[] password) {
+
+        final MessageDigest md;
+
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        md.update(salt);
+
+        if (password != null) {
+
+            final ByteBuffer encoded = Charset.forName("UTF-8")
+                .encode(CharBuffer.wrap(password));
+
+            final byte[] data = new byte[encoded.remaining()];
+            encoded.get(data);
+
+            md.update((byte) 1);
+            md.update(data);
+
+            Arrays.fill(data, (byte) 0);
+            if (encoded.hasArray()) {
+                Arrays.fill(encoded.array(), (byte) 0);
+            } // if
+
+        } // if
+        else {
+            md.update((byte) 0);
+        } // else
+
+        return md.digest();
+    }
+
+    /**
+     * Класс Entry описывает запись кеша.
+     *
+     */
+    public static final class Entry {
+
+        /**
+         * Закрытый ключ.
+         */
+        private final PrivateKey privateKey;
+
+        /**
+         * Сертификат ключа.
+         */
+        private final X509Certificate certificate;
+
+        /**
+         * Соль хеша пароля.
+         */
+        private final byte[] salt;
+
+        /**
+         * Хеш пароля, с которым загружен ключ.
+         */
+        private final byte[] passwordHash;
+
+        /**
+         * Время создания записи.
+         */
+        private final long creationTime;
+
+        /**
+         * Время последнего обращения к записи.
+         */
+        private long lastAccessTime;
+
+        /**
+         * Конструктор.
+         *
+         * @param key Закрытый ключ.
+         * @param cert Сертификат ключа.
+         * @param passwordSalt Соль хеша пароля.
+         * @param hash Хеш пароля.
+         */
+        private Entry(PrivateKey key, X509Certificate cert,
+            byte[] passwordSalt, byte[] hash) {
+            privateKey = key;
+            certificate = cert;
+            salt = passwordSalt;
+            passwordHash = hash;
+            creationTime = lastAccessTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Получение закрытого ключа.
+         *
+         * @return закрытый ключ.
+         */
+        public PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+
+        /**
+         * Получение сертификата ключа.
+         *
+         * @return сертификат ключа.
+         */
+        public X509Certificate getCertificate() {
+            return certificate;
+        }
+
+        /**
+         * Проверка пароля запроса.
+         *
+         * @param password Пароль.
+         * @return true, если пароль совпадает с тем, с
+         * которым загружен ключ.
+         */
+        private boolean matches(char[] password) {
+            return MessageDigest.isEqual(passwordHash, digest(salt, password));
+        }
+
+        /**
+         * Проверка срока жизни и простоя записи.
+         *
+         * @param now Текущее время.
+         * @return true, если запись устарела.
+         */
+        private boolean isExpired(long now) {
+            return (now - creationTime > ttl) ||
+                (now - lastAccessTime > idleTimeout);
+        }
+
+    }
+
+}
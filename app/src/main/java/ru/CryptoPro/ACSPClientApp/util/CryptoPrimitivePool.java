@@ -0,0 +1,298 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Служебный класс CryptoPrimitivePool предназначен для
+ * повторного использования объектов хеширования, подписи,
+ * шифрования и вычисления имитовставки без поиска
+ * реализации в провайдере при каждой операции. Объекты
+ * хранятся отдельно для каждого потока по ключу
+ * "алгоритм + провайдер".
+ *
+ * Полученный объект принадлежит текущему потоку до
+ * следующего запроса того же алгоритма в этом потоке,
+ * поэтому одновременно удерживать два объекта одного
+ * алгоритма в одном потоке нельзя.
+ *
+ * Сбрасывается перед возвратом только объект хеширования.
+ * Объекты подписи, шифрования и MAC возвращаются в том
+ * состоянии, в котором их оставил предыдущий вызывающий,
+ * и ссылаются на его ключ, поэтому каждый вызывающий
+ * обязан заново инициализировать объект своим ключом.
+ * Ссылки на ключи сохраняются в потоке до вызова
+ * {@link #clearCurrentThread()}; пул задач примеров
+ * вызывает его по завершении каждой задачи.
+ *
+ * 18/10/2026
+ *
+ */
+public final class CryptoPrimitivePool {
+
+    /**
+     * Объекты текущего потока.
+     */
+    private static final ThreadLocal<Map<String, Object>> threadPrimitives =
+        new ThreadLocal<Map<String, Object>>() {
+
+            @Override
+            protected Map<String, Object> initialValue() {
+                return new HashMap<String, Object>();
+            }
+
+        };
+
+    /**
+     * Количество запросов, обслуженных из пула.
+     */
+    private static final AtomicLong hitCount = new AtomicLong(0);
+
+    /**
+     * Количество запросов, потребовавших создания объекта.
+     */
+    private static final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private CryptoPrimitivePool() {
+        ;
+    }
+
+    /**
+     * Получение объекта хеширования. Объект сбрасывается
+     * перед возвратом.
+     *
+     * @param algorithm Алгоритм хеширования.
+     * @param provider Имя провайдера. Если null, то
+     * используется провайдер по умолчанию.
+     * @return объект хеширования.
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     */
+    public static MessageDigest getMessageDigest(String algorithm,
+        String provider) throws NoSuchAlgorithmException,
+        NoSuchProviderException {
+
+        final String key = key("MessageDigest", algorithm, provider);
+        MessageDigest digest = (MessageDigest) lookup(key);
+
+        if (digest == null) {
+
+            digest = provider == null
+                ? MessageDigest.getInstance(algorithm)
+                : MessageDigest.getInstance(algorithm, provider);
+
+            store(key, digest);
+
+        } // if
+        else {
+            digest.reset();
+        } // else
+
+        return digest;
+    }
+
+    /**
+     * Получение объекта подписи. Объект может быть
+     * инициализирован ключом предыдущего вызывающего,
+     * поэтому перед использованием он должен быть заново
+     * инициализирован с помощью initSign или initVerify.
+     *
+     * @param algorithm Алгоритм подписи.
+     * @param provider Имя провайдера. Если null, то
+     * используется провайдер по умолчанию.
+     * @return объект подписи.
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     */
+    public static Signature getSignature(String algorithm,
+        String provider) throws NoSuchAlgorithmException,
+        NoSuchProviderException {
+
+        final String key = key("Signature", algorithm, provider);
+        Signature signature = (Signature) lookup(key);
+
+        if (signature == null) {
+
+            signature = provider == null
+                ? Signature.getInstance(algorithm)
+                : Signature.getInstance(algorithm, provider);
+
+            store(key, signature);
+
+        } // if
+
+        return signature;
+    }
+
+    /**
+     * Получение объекта шифрования. Объект может быть
+     * инициализирован ключом предыдущего вызывающего,
+     * поэтому перед использованием он должен быть заново
+     * инициализирован с помощью init.
+     *
+     * @param transformation Алгоритм шифрования.
+     * @param provider Имя провайдера. Если null, то
+     * используется провайдер по умолчанию.
+     * @return объект шифрования.
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     * @throws NoSuchPaddingException
+     */
+    public static Cipher getCipher(String transformation,
+        String provider) throws NoSuchAlgorithmException,
+        NoSuchProviderException, NoSuchPaddingException {
+
+        final String key = key("Cipher", transformation, provider);
+        Cipher cipher = (Cipher) lookup(key);
+
+        if (cipher == null) {
+
+            cipher = provider == null
+                ? Cipher.getInstance(transformation)
+                : Cipher.getInstance(transformation, provider);
+
+            store(key, cipher);
+
+        } // if
+
+        return cipher;
+    }
+
+    /**
+     * Получение объекта вычисления имитовставки (MAC).
+     * Объект может быть инициализирован ключом предыдущего
+     * вызывающего, поэтому перед использованием он должен
+     * быть заново инициализирован с помощью init.
+     *
+     * @param algorithm Алгоритм MAC.
+     * @param provider Имя провайдера. Если null, то
+     * используется провайдер по умолчанию.
+     * @return объект вычисления MAC.
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     */
+    public static Mac getMac(String algorithm, String provider)
+        throws NoSuchAlgorithmException, NoSuchProviderException {
+
+        final String key = key("Mac", algorithm, provider);
+        Mac mac = (Mac) lookup(key);
+
+        if (mac == null) {
+
+            mac = provider == null
+                ? Mac.getInstance(algorithm)
+                : Mac.getInstance(algorithm, provider);
+
+            store(key, mac);
+
+        } // if
+
+        return mac;
+    }
+
+    /**
+     * Удаление всех объектов текущего потока вместе со
+     * ссылками на ключи, которыми они инициализированы.
+     * Следует вызывать по завершении работы с ключами в
+     * долгоживущем потоке.
+     *
+     */
+    public static void clearCurrentThread() {
+        threadPrimitives.remove();
+    }
+
+    /**
+     * Получение количества запросов, обслуженных из пула.
+     *
+     * @return количество запросов.
+     */
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Получение количества запросов, потребовавших
+     * создания объекта.
+     *
+     * @return количество запросов.
+     */
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Сброс счетчиков.
+     *
+     */
+    public static void resetCounters() {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * Формирование ключа объекта.
+     *
+     * @param type Тип объекта.
+     * @param algorithm Алгоритм.
+     * @param provider Имя провайдера.
+     * @return ключ.
+     */
+    private static String key(String type, String algorithm,
+        String provider) {
+        return type + "/" + algorithm + "/" + provider;
+    }
+
+    /**
+     * Поиск объекта текущего потока.
+     *
+     * @param key Ключ объекта.
+     * @return объект или null.
+     */
+    private static Object lookup(String key) {
+
+        Object primitive = threadPrimitives.get().get(key);
+
+        if (primitive != null) {
+            hitCount.incrementAndGet();
+        } // if
+        else {
+            missCount.incrementAndGet();
+        } // else
+
+        return primitive;
+    }
+
+    /**
+     * Сохранение объекта текущего потока.
+     *
+     * @param key Ключ объекта.
+     * @param primitive Объект.
+     */
+    private static void store(String key, Object primitive) {
+        threadPrimitives.get().put(key, primitive);
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import ru.CryptoPro.CAdES.EnvelopedSignature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Служебный класс EnvelopedOutputStream позволяет
+ * записывать данные в Enveloped CMS как в поток, например,
+ * передать его потоковому формированию CMS подписи.
+ * Записанные данные накапливаются в буфере и передаются в
+ * {@link EnvelopedSignature#update(byte[], int, int)} блоками
+ * фиксированного размера, поэтому расход памяти не зависит
+ * от размера данных.
+ *
+ * При закрытии потока передается последний неполный блок
+ * и формирование Enveloped CMS завершается. Поток, в
+ * который записывается Enveloped CMS, не закрывается.
+ *
+ * 18/10/2026
+ *
+ */
+public class EnvelopedOutputStream extends OutputStream {
+
+    /**
+     * Размер блока по умолчанию.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Формируемая Enveloped CMS.
+     */
+    private final EnvelopedSignature envelope;
+
+    /**
+     * Буфер блока.
+     */
+    private final byte[] chunk;
+
+    /**
+     * Количество байтов в буфере.
+     */
+    private int count = 0;
+
+    /**
+     * Количество записанных байтов.
+     */
+    private long length = 0;
+
+    /**
+     * Флаг закрытия потока.
+     */
+    private boolean closed = false;
+
+    /**
+     * Конструктор.
+     *
+     * @param signature Enveloped CMS с добавленными
+     * получателями.
+     * @param out Поток для записи Enveloped CMS.
+     * @throws IOException
+     */
+    public EnvelopedOutputStream(EnvelopedSignature signature,
+        OutputStream out) throws IOException {
+        this(signature, out, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param signature Enveloped CMS с добавленными
+     * получателями.
+     * @param out Поток для записи Enveloped CMS.
+     * @param chunkSize Размер блока.
+     * @throws IOException
+     */
+    public EnvelopedOutputStream(EnvelopedSignature signature,
+        OutputStream out, int chunkSize) throws IOException {
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        } // if
+
+        envelope = signature;
+        chunk = new byte[chunkSize];
+
+        try {
+            envelope.open(out);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+        ensureOpen();
+
+        chunk[count++] = (byte) b;
+        length++;
+
+        if (count == chunk.length) {
+            flushChunk();
+        } // if
+
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        ensureOpen();
+
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        } // if
+
+        length += len;
+
+        while (len > 0) {
+
+            // Полные блоки передаются без копирования.
+
+            if (count == 0 && len >= chunk.length) {
+                update(b, off, chunk.length);
+                off += chunk.length;
+                len -= chunk.length;
+                continue;
+            } // if
+
+            final int n = Math.min(len, chunk.length - count);
+            System.arraycopy(b, off, chunk, count, n);
+
+            count += n;
+            off += n;
+            len -= n;
+
+            if (count == chunk.length) {
+                flushChunk();
+            } // if
+
+        } // while
+
+    }
+
+    /**
+     * Завершение формирования Enveloped CMS.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        } // if
+
+        closed = true;
+        flushChunk();
+
+        try {
+            envelope.close();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+    }
+
+    /**
+     * Получение количества записанных байтов.
+     *
+     * @return количество байтов.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Передача накопленного блока.
+     *
+     * @throws IOException
+     */
+    private void flushChunk() throws IOException {
+
+        if (count > 0) {
+            update(chunk, 0, count);
+            count = 0;
+        } // if
+
+    }
+
+    /**
+     * Передача данных в Enveloped CMS.
+     *
+     * @param b Данные.
+     * @param off Смещение.
+     * @param len Длина.
+     * @throws IOException
+     */
+    private void update(byte[] b, int off, int len) throws IOException {
+
+        try {
+            envelope.update(b, off, len);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+    }
+
+    /**
+     * Проверка, что поток не закрыт.
+     *
+     * @throws IOException
+     */
+    private void ensureOpen() throws IOException {
+
+        if (closed) {
+            throw new IOException("Stream is closed.");
+        } // if
+
+    }
+
+}
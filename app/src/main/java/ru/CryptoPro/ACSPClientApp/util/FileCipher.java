@@ -0,0 +1,870 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Служебный класс FileCipher предназначен для зашифрования
+ * и расшифрования файлов любого размера потоком. Данные
+ * читаются из FileChannel блоками фиксированного размера,
+ * шифруются с помощью Cipher.update и записываются в
+ * выходной FileChannel. Буферы берутся из пула, поэтому
+ * расход памяти не зависит от размера файла.
+ *
+ * Зашифрованный файл начинается с заголовка:
+ *
+ * magic (4 байта) "GCF1",
+ * длина UKM (1 байт), UKM - синхропосылка, на которой
+ * выработан ключ согласования,
+ * длина IV (1 байт), IV,
+ * длина зашифрованного ключа (2 байта), сессионный ключ,
+ * зашифрованный на ключе согласования,
+ *
+ * за которым следуют зашифрованные данные. Шифрование
+ * выполняется в режиме без дополнения (например, CNT),
+ * поэтому длина данных не меняется.
+ *
+ * В сегментированном формате (magic "GCF2", после ключа
+ * - размер сегмента, 4 байта) данные делятся на сегменты
+ * фиксированного размера, каждый сегмент шифруется
+ * отдельно на IV, полученном прибавлением номера сегмента
+ * к IV заголовка. Сегменты независимы, поэтому их можно
+ * шифровать и расшифровывать в нескольких потоках, при
+ * этом результат не зависит от количества потоков.
+ *
+ * 18/10/2026
+ *
+ */
+public class FileCipher {
+
+    /**
+     * Размер блока данных по умолчанию.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Размер сегмента по умолчанию.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    /**
+     * Признак формата файла.
+     */
+    private static final byte[] MAGIC = {'G', 'C', 'F', '1'};
+
+    /**
+     * Признак сегментированного формата файла.
+     */
+    private static final byte[] SEGMENTED_MAGIC = {'G', 'C', 'F', '2'};
+
+    /**
+     * Номер очередного пула (для имен потоков).
+     */
+    private static final AtomicInteger poolNumber = new AtomicInteger(0);
+
+    /**
+     * Общий пул буферов.
+     */
+    private static final ByteBufferPool buffers = new ByteBufferPool(8);
+
+    /**
+     * Алгоритм шифрования.
+     */
+    private final String transformation;
+
+    /**
+     * Имя провайдера.
+     */
+    private final String provider;
+
+    /**
+     * Размер блока данных.
+     */
+    private final int bufferSize;
+
+    /**
+     * Конструктор.
+     *
+     * @param cipherTransformation Алгоритм шифрования без
+     * дополнения, например, GOST28147/CNT/NoPadding.
+     * @param providerName Имя провайдера.
+     */
+    public FileCipher(String cipherTransformation, String providerName) {
+        this(cipherTransformation, providerName, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param cipherTransformation Алгоритм шифрования без
+     * дополнения, например, GOST28147/CNT/NoPadding.
+     * @param providerName Имя провайдера.
+     * @param blockSize Размер блока данных, кратный 8.
+     */
+    public FileCipher(String cipherTransformation, String providerName,
+        int blockSize) {
+
+        if (blockSize <= 0 || blockSize % 8 != 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        } // if
+
+        transformation = cipherTransformation;
+        provider = providerName;
+        bufferSize = blockSize;
+
+    }
+
+    /**
+     * Зашифрование файла. Сессионный ключ зашифровывается на
+     * ключе согласования и записывается в заголовок вместе
+     * с UKM и IV.
+     *
+     * @param source Исходный файл.
+     * @param destination Зашифрованный файл.
+     * @param sessionKey Сессионный ключ.
+     * @param agreeKey Ключ согласования.
+     * @param ukm Синхропосылка ключа согласования.
+     * @return результат.
+     * @throws Exception
+     */
+    public Result encrypt(File source, File destination, SecretKey sessionKey,
+        SecretKey agreeKey, byte[] ukm) throws Exception {
+
+        final long started = System.nanoTime();
+        final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+
+        // Зашифрование сессионного ключа.
+        cipher.init(Cipher.WRAP_MODE, agreeKey);
+        final byte[] wrappedKey = cipher.wrap(sessionKey);
+
+        cipher.init(Cipher.ENCRYPT_MODE, sessionKey);
+        final byte[] iv = cipher.getIV();
+
+        final FileInputStream in = new FileInputStream(source);
+
+        try {
+
+            final FileOutputStream out = new FileOutputStream(destination);
+
+            try {
+
+                final FileChannel outChannel = out.getChannel();
+                writeHeader(outChannel, new Header(ukm, iv, wrappedKey, 0));
+
+                final long length = transform(cipher, in.getChannel(), outChannel);
+                return new Result(length, System.nanoTime() - started);
+
+            } finally {
+                out.close();
+            }
+
+        } finally {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Зашифрование файла в сегментированном формате.
+     * Сегменты шифруются в нескольких потоках.
+     *
+     * @param source Исходный файл.
+     * @param destination Зашифрованный файл.
+     * @param sessionKey Сессионный ключ.
+     * @param agreeKey Ключ согласования.
+     * @param ukm Синхропосылка ключа согласования.
+     * @param segmentSize Размер сегмента, кратный 8.
+     * @param threads Количество потоков.
+     * @return результат.
+     * @throws Exception
+     */
+    public Result encryptSegmented(File source, File destination,
+        SecretKey sessionKey, SecretKey agreeKey, byte[] ukm,
+        int segmentSize, int threads) throws Exception {
+
+        if (segmentSize <= 0 || segmentSize % 8 != 0) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        } // if
+
+        final long started = System.nanoTime();
+        final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+
+        // Зашифрование сессионного ключа.
+        cipher.init(Cipher.WRAP_MODE, agreeKey);
+        final byte[] wrappedKey = cipher.wrap(sessionKey);
+
+        // IV заголовка (IV первого сегмента).
+        cipher.init(Cipher.ENCRYPT_MODE, sessionKey);
+        final byte[] iv = cipher.getIV();
+
+        final FileInputStream in = new FileInputStream(source);
+
+        try {
+
+            final FileOutputStream out = new FileOutputStream(destination);
+
+            try {
+
+                final FileChannel inChannel = in.getChannel();
+                final FileChannel outChannel = out.getChannel();
+
+                writeHeader(outChannel, new Header(ukm, iv, wrappedKey, segmentSize));
+
+                final long length = inChannel.size();
+                transformSegments(Cipher.ENCRYPT_MODE, sessionKey, iv, inChannel, 0,
+                    outChannel, outChannel.position(), length, segmentSize, threads);
+
+                return new Result(length, System.nanoTime() - started);
+
+            } finally {
+                out.close();
+            }
+
+        } finally {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Расшифрование файла в одном потоке.
+     *
+     * @param source Зашифрованный файл.
+     * @param destination Расшифрованный файл.
+     * @param resolver Получение сессионного ключа по данным
+     * заголовка.
+     * @return результат.
+     * @throws Exception
+     */
+    public Result decrypt(File source, File destination, KeyResolver resolver)
+        throws Exception {
+        return decrypt(source, destination, resolver, 1);
+    }
+
+    /**
+     * Расшифрование файла. Файл в сегментированном формате
+     * расшифровывается в нескольких потоках.
+     *
+     * @param source Зашифрованный файл.
+     * @param destination Расшифрованный файл.
+     * @param resolver Получение сессионного ключа по данным
+     * заголовка.
+     * @param threads Количество потоков.
+     * @return результат.
+     * @throws Exception
+     */
+    public Result decrypt(File source, File destination, KeyResolver resolver,
+        int threads) throws Exception {
+
+        final long started = System.nanoTime();
+        final FileInputStream in = new FileInputStream(source);
+
+        try {
+
+            final FileChannel inChannel = in.getChannel();
+            final Header header = readHeader(inChannel);
+
+            final SecretKey sessionKey = resolver.resolve(header.ukm, header.wrappedKey);
+            final FileOutputStream out = new FileOutputStream(destination);
+
+            try {
+
+                if (header.segmentSize > 0) {
+
+                    final long offset = inChannel.position();
+                    final long length = inChannel.size() - offset;
+
+                    transformSegments(Cipher.DECRYPT_MODE, sessionKey, header.iv,
+                        inChannel, offset, out.getChannel(), 0, length,
+                        header.segmentSize, threads);
+
+                    return new Result(length, System.nanoTime() - started);
+
+                } // if
+
+                final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+                cipher.init(Cipher.DECRYPT_MODE, sessionKey,
+                    new IvParameterSpec(header.iv), null);
+
+                final long length = transform(cipher, inChannel, out.getChannel());
+                return new Result(length, System.nanoTime() - started);
+
+            } finally {
+                out.close();
+            }
+
+        } finally {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Шифрование данных канала блоками. Каждый блок, кроме
+     * последнего, имеет полный размер.
+     *
+     * @param cipher Инициализированный объект шифрования.
+     * @param in Входной канал.
+     * @param out Выходной канал.
+     * @return длина данных.
+     * @throws Exception
+     */
+    private long transform(Cipher cipher, FileChannel in, FileChannel out)
+        throws Exception {
+
+        final ByteBuffer input = buffers.acquire(bufferSize);
+        final ByteBuffer output = buffers.acquire(bufferSize);
+
+        long length = 0;
+
+        try {
+
+            int read;
+            while ((read = readFully(in, input)) > 0) {
+
+                input.flip();
+                output.clear();
+
+                cipher.update(input, output);
+                output.flip();
+                writeFully(out, output);
+
+                length += read;
+                input.clear();
+
+            } // while
+
+            output.clear();
+            cipher.doFinal(ByteBuffer.allocate(0), output);
+            output.flip();
+            writeFully(out, output);
+
+        } finally {
+            buffers.release(input);
+            buffers.release(output);
+        }
+
+        return length;
+    }
+
+    /**
+     * Шифрование сегментов. Каждый сегмент читается и
+     * записывается по своему смещению, поэтому сегменты
+     * можно обрабатывать в любом порядке.
+     *
+     * @param mode Режим шифрования.
+     * @param key Сессионный ключ.
+     * @param iv IV заголовка.
+     * @param in Входной канал.
+     * @param inOffset Смещение данных во входном канале.
+     * @param out Выходной канал.
+     * @param outOffset Смещение данных в выходном канале.
+     * @param length Длина данных.
+     * @param segmentSize Размер сегмента.
+     * @param threads Количество потоков.
+     * @throws Exception
+     */
+    private void transformSegments(final int mode, final SecretKey key,
+        final byte[] iv, final FileChannel in, final long inOffset,
+        final FileChannel out, final long outOffset, final long length,
+        final int segmentSize, int threads) throws Exception {
+
+        final long segments = (length + segmentSize - 1) / segmentSize;
+
+        if (threads <= 1 || segments <= 1) {
+
+            for (long i = 0; i < segments; i++) {
+                transformSegment(mode, key, iv, i, in, inOffset, out,
+                    outOffset, length, segmentSize);
+            } // for
+
+            return;
+
+        } // if
+
+        final int pool = poolNumber.incrementAndGet();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            (int) Math.min(threads, segments), new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "cipher-" + pool + "-" +
+                        threadNumber.incrementAndGet());
+                }
+
+            });
+
+        try {
+
+            final List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+            for (long i = 0; i < segments; i++) {
+
+                final long index = i;
+
+                results.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        transformSegment(mode, key, iv, index, in, inOffset,
+                            out, outOffset, length, segmentSize);
+                        return null;
+                    }
+
+                }));
+
+            } // for
+
+            for (Future<Void> result : results) {
+
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+
+                    executor.shutdownNow();
+
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    } // if
+
+                    throw e;
+
+                }
+
+            } // for
+
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    /**
+     * Шифрование одного сегмента. Объект шифрования берется
+     * из {@link CryptoPrimitivePool} текущего потока.
+     *
+     * @param mode Режим шифрования.
+     * @param key Сессионный ключ.
+     * @param iv IV заголовка.
+     * @param index Номер сегмента.
+     * @param in Входной канал.
+     * @param inOffset Смещение данных во входном канале.
+     * @param out Выходной канал.
+     * @param outOffset Смещение данных в выходном канале.
+     * @param length Длина данных.
+     * @param segmentSize Размер сегмента.
+     * @throws Exception
+     */
+    private void transformSegment(int mode, SecretKey key, byte[] iv,
+        long index, FileChannel in, long inOffset, FileChannel out,
+        long outOffset, long length, int segmentSize) throws Exception {
+
+        final long start = index * segmentSize;
+        final long end = Math.min(length, start + segmentSize);
+
+        final Cipher cipher = CryptoPrimitivePool.getCipher(transformation, provider);
+        cipher.init(mode, key, new IvParameterSpec(segmentIv(iv, index)), null);
+
+        final ByteBuffer input = buffers.acquire(bufferSize);
+        final ByteBuffer output = buffers.acquire(bufferSize);
+
+        try {
+
+            long position = start;
+            long written = start;
+
+            while (position < end) {
+
+                input.clear();
+                input.limit((int) Math.min(bufferSize, end - position));
+
+                final int expected = input.limit();
+                if (readFully(in, input, inOffset + position) != expected) {
+                    throw new EOFException("Unexpected end of file.");
+                } // if
+
+                input.flip();
+                output.clear();
+
+                cipher.update(input, output);
+                output.flip();
+                written += writeFully(out, output, outOffset + written);
+
+                position += expected;
+
+            } // while
+
+            output.clear();
+            cipher.doFinal(ByteBuffer.allocate(0), output);
+            output.flip();
+            writeFully(out, output, outOffset + written);
+
+        } finally {
+            buffers.release(input);
+            buffers.release(output);
+        }
+
+    }
+
+    /**
+     * Получение IV сегмента: номер сегмента прибавляется к
+     * IV заголовка как к целому числу (big-endian).
+     *
+     * @param iv IV заголовка.
+     * @param index Номер сегмента.
+     * @return IV сегмента.
+     */
+    private static byte[] segmentIv(byte[] iv, long index) {
+
+        final byte[] result = iv.clone();
+        long carry = index;
+
+        for (int i = result.length - 1; i >= 0 && carry != 0; i--) {
+            carry += result[i] & 0xff;
+            result[i] = (byte) carry;
+            carry >>>= 8;
+        } // for
+
+        return result;
+    }
+
+    /**
+     * Запись заголовка.
+     *
+     * @param out Выходной канал.
+     * @param header Заголовок.
+     * @throws IOException
+     */
+    private static void writeHeader(FileChannel out, Header header)
+        throws IOException {
+
+        final boolean segmented = header.segmentSize > 0;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length + 1 +
+            header.ukm.length + 1 + header.iv.length + 2 + header.wrappedKey.length +
+            (segmented ? 4 : 0));
+
+        buffer.put(segmented ? SEGMENTED_MAGIC : MAGIC);
+        buffer.put((byte) header.ukm.length).put(header.ukm);
+        buffer.put((byte) header.iv.length).put(header.iv);
+        buffer.putShort((short) header.wrappedKey.length).put(header.wrappedKey);
+
+        if (segmented) {
+            buffer.putInt(header.segmentSize);
+        } // if
+
+        buffer.flip();
+        writeFully(out, buffer);
+
+    }
+
+    /**
+     * Чтение заголовка.
+     *
+     * @param in Входной канал.
+     * @return заголовок.
+     * @throws IOException
+     */
+    private static Header readHeader(FileChannel in) throws IOException {
+
+        final byte[] magic = readBytes(in, MAGIC.length);
+        final boolean segmented = Arrays.equals(magic, SEGMENTED_MAGIC);
+
+        if (!segmented && !Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Invalid file format.");
+        } // if
+
+        final byte[] ukm = readBytes(in, readBytes(in, 1)[0] & 0xff);
+        final byte[] iv = readBytes(in, readBytes(in, 1)[0] & 0xff);
+
+        final byte[] keyLength = readBytes(in, 2);
+        final byte[] wrappedKey = readBytes(in,
+            ((keyLength[0] & 0xff) << 8) | (keyLength[1] & 0xff));
+
+        int segmentSize = 0;
+
+        if (segmented) {
+
+            segmentSize = ByteBuffer.wrap(readBytes(in, 4)).getInt();
+
+            if (segmentSize <= 0 || segmentSize % 8 != 0) {
+                throw new IOException("Invalid segment size: " + segmentSize);
+            } // if
+
+        } // if
+
+        return new Header(ukm, iv, wrappedKey, segmentSize);
+    }
+
+    /**
+     * Чтение заданного количества байтов.
+     *
+     * @param in Входной канал.
+     * @param count Количество байтов.
+     * @return данные.
+     * @throws IOException
+     */
+    static byte[] readBytes(FileChannel in, int count)
+        throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(count);
+
+        if (readFully(in, buffer) != count) {
+            throw new EOFException("Unexpected end of file.");
+        } // if
+
+        return buffer.array();
+    }
+
+    /**
+     * Чтение в буфер до его заполнения или до конца файла.
+     *
+     * @param in Входной канал.
+     * @param buffer Буфер.
+     * @return количество прочитанных байтов.
+     * @throws IOException
+     */
+    private static int readFully(FileChannel in, ByteBuffer buffer)
+        throws IOException {
+
+        int total = 0;
+
+        while (buffer.hasRemaining()) {
+
+            final int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            } // if
+
+            total += read;
+
+        } // while
+
+        return total;
+    }
+
+    /**
+     * Чтение в буфер с заданной позиции до заполнения
+     * буфера или до конца файла. Позиция канала не
+     * меняется.
+     *
+     * @param in Входной канал.
+     * @param buffer Буфер.
+     * @param position Позиция в файле.
+     * @return количество прочитанных байтов.
+     * @throws IOException
+     */
+    static int readFully(FileChannel in, ByteBuffer buffer,
+        long position) throws IOException {
+
+        int total = 0;
+
+        while (buffer.hasRemaining()) {
+
+            final int read = in.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            } // if
+
+            total += read;
+
+        } // while
+
+        return total;
+    }
+
+    /**
+     * Запись всего содержимого буфера.
+     *
+     * @param out Выходной канал.
+     * @param buffer Буфер.
+     * @throws IOException
+     */
+    private static void writeFully(FileChannel out, ByteBuffer buffer)
+        throws IOException {
+
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        } // while
+
+    }
+
+    /**
+     * Запись всего содержимого буфера с заданной позиции.
+     * Позиция канала не меняется.
+     *
+     * @param out Выходной канал.
+     * @param buffer Буфер.
+     * @param position Позиция в файле.
+     * @return количество записанных байтов.
+     * @throws IOException
+     */
+    static int writeFully(FileChannel out, ByteBuffer buffer,
+        long position) throws IOException {
+
+        int total = 0;
+
+        while (buffer.hasRemaining()) {
+            total += out.write(buffer, position + total);
+        } // while
+
+        return total;
+    }
+
+    /**
+     * Получение сессионного ключа при расшифровании.
+     *
+     */
+    public interface KeyResolver {
+
+        /**
+         * Расшифрование сессионного ключа.
+         *
+         * @param ukm Синхропосылка ключа согласования.
+         * @param wrappedKey Зашифрованный сессионный ключ.
+         * @return сессионный ключ.
+         * @throws Exception
+         */
+        SecretKey resolve(byte[] ukm, byte[] wrappedKey) throws Exception;
+
+    }
+
+    /**
+     * Класс Header описывает заголовок файла.
+     *
+     */
+    private static final class Header {
+
+        /**
+         * Синхропосылка ключа согласования.
+         */
+        private final byte[] ukm;
+
+        /**
+         * Вектор инициализации.
+         */
+        private final byte[] iv;
+
+        /**
+         * Зашифрованный сессионный ключ.
+         */
+        private final byte[] wrappedKey;
+
+        /**
+         * Размер сегмента или 0, если файл не сегментирован.
+         */
+        private final int segmentSize;
+
+        /**
+         * Конструктор.
+         *
+         * @param headerUkm Синхропосылка ключа согласования.
+         * @param headerIv Вектор инициализации.
+         * @param headerKey Зашифрованный сессионный ключ.
+         * @param headerSegmentSize Размер сегмента или 0.
+         */
+        private Header(byte[] headerUkm, byte[] headerIv, byte[] headerKey,
+            int headerSegmentSize) {
+            ukm = headerUkm;
+            iv = headerIv;
+            wrappedKey = headerKey;
+            segmentSize = headerSegmentSize;
+        }
+
+    }
+
+    /**
+     * Класс Result описывает результат зашифрования или
+     * расшифрования.
+     *
+     */
+    public static final class Result {
+
+        /**
+         * Длина данных.
+         */
+        private final long length;
+
+        /**
+         * Время выполнения (нсек).
+         */
+        private final long time;
+
+        /**
+         * Конструктор.
+         *
+         * @param dataLength Длина данных.
+         * @param elapsed Время выполнения (нсек).
+         */
+        Result(long dataLength, long elapsed) {
+            length = dataLength;
+            time = elapsed;
+        }
+
+        /**
+         * Получение длины данных.
+         *
+         * @return длина данных.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Получение времени выполнения.
+         *
+         * @return время (мсек).
+         */
+        public long getTime() {
+            return time / 1000000;
+        }
+
+        /**
+         * Получение скорости обработки.
+         *
+         * @return скорость (Мбайт/сек).
+         */
+        public double getThroughput() {
+            return time == 0 ? 0 : (length / (1024.0 * 1024.0)) / (time / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d bytes in %d ms (%.2f MB/s)",
+                length, getTime(), getThroughput());
+        }
+
+    }
+
+}
@@ -124,7 +124,7 @@ public class ProcessorWideLoader extends
         try {
 
             Log.i(Constants.APP_LOGGER_TAG, "Init digest.");
-            MessageDigest md = MessageDigest.getInstance(
+            MessageDigest md = CryptoPrimitivePool.getMessageDigest(
                 JCP.GOST_DIGEST_NAME, JCSP.PROVIDER_NAME);
 
             Log.i(Constants.APP_LOGGER_TAG, "Compute digest.");
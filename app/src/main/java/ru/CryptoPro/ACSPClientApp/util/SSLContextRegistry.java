@@ -0,0 +1,481 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import ru.CryptoPro.JCP.tools.Array;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Служебный класс SSLContextRegistry предназначен для
+ * хранения SSL контекстов, общих для всех примеров. Контекст
+ * создается однажды для каждого сочетания хранилища
+ * доверенных сертификатов, ключевого хранилища и алиаса, а
+ * его кеш клиентских сессий позволяет возобновлять сессии
+ * при повторных подключениях к тому же серверу без полного
+ * рукопожатия.
+ *
+ * Для подсчета возобновленных и полных рукопожатий к
+ * сокету следует подключить слушатель с помощью
+ * {@link #watch(SSLSocket)}.
+ *
+ * 18/10/2026
+ *
+ */
+public final class SSLContextRegistry {
+
+    /**
+     * Размер кеша клиентских сессий по умолчанию.
+     */
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 64;
+
+    /**
+     * Время жизни сессии в кеше по умолчанию (сек).
+     */
+    public static final int DEFAULT_SESSION_TIMEOUT = 60 * 60;
+
+    /**
+     * Количество запоминаемых идентификаторов сессий.
+     */
+    private static final int MAX_SEEN_SESSIONS = 256;
+
+    /**
+     * Контексты.
+     */
+    private static final Map<String, SSLContext> contexts =
+        new HashMap<String, SSLContext>();
+
+    /**
+     * Идентификаторы сессий, уже встречавшихся в
+     * рукопожатиях.
+     */
+    private static final Map<String, Boolean> seenSessions =
+        new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_SEEN_SESSIONS;
+            }
+
+        };
+
+    /**
+     * Количество полных рукопожатий.
+     */
+    private static final AtomicLong fullHandshakeCount = new AtomicLong(0);
+
+    /**
+     * Количество возобновленных сессий.
+     */
+    private static final AtomicLong resumedHandshakeCount = new AtomicLong(0);
+
+    /**
+     * Количество контекстов, полученных из реестра.
+     */
+    private static final AtomicLong contextHitCount = new AtomicLong(0);
+
+    /**
+     * Номер поколения реестра. Увеличивается при удалении
+     * контекстов, чтобы контекст, созданный до удаления, не
+     * попал в реестр.
+     */
+    private static long generation = 0;
+
+    /**
+     * Размер кеша клиентских сессий.
+     */
+    private static int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+
+    /**
+     * Время жизни сессии в кеше (сек).
+     */
+    private static int sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+
+    /**
+     * Слушатель завершения рукопожатия.
+     */
+    private static final HandshakeCompletedListener handshakeListener =
+        new HandshakeCompletedListener() {
+
+            @Override
+            public void handshakeCompleted(HandshakeCompletedEvent event) {
+                onHandshake(event.getSession().getId());
+            }
+
+        };
+
+    /**
+     * Конструктор-заглушка.
+     *
+     */
+    private SSLContextRegistry() {
+        ;
+    }
+
+    /**
+     * Фабрика контекста, вызываемая при его отсутствии в
+     * реестре.
+     *
+     */
+    public interface ContextFactory {
+
+        /**
+         * Создание и инициализация контекста.
+         *
+         * @return контекст.
+         * @throws Exception
+         */
+        SSLContext create() throws Exception;
+
+    }
+
+    /**
+     * Формирование ключа контекста.
+     *
+     * @param trustStoreType Тип хранилища доверенных
+     * сертификатов.
+     * @param trustStoreProvider Провайдер хранилища доверенных
+     * сертификатов.
+     * @param keyStoreType Тип ключевого хранилища.
+     * @param alias Алиас ключа клиента.
+     * @param clientAuth True, если используется аутентификация
+     * клиента.
+     * @return ключ.
+     */
+    public static String key(String trustStoreType, String trustStoreProvider,
+        String keyStoreType, String alias, boolean clientAuth) {
+
+        // Без аутентификации клиента ключевое хранилище не
+        // используется, и контекст может быть общим.
+        if (!clientAuth) {
+            keyStoreType = null;
+            alias = null;
+        } // if
+
+        return trustStoreType + "|" + trustStoreProvider + "|" +
+            keyStoreType + "|" + alias + "|" + clientAuth;
+    }
+
+    /**
+     * Получение контекста из реестра или его создание.
+     *
+     * @param key Ключ контекста.
+     * @param factory Фабрика контекста.
+     * @return контекст.
+     * @throws Exception
+     * @see #lookup(String, ContextFactory)
+     */
+    public static SSLContext get(String key, ContextFactory factory)
+        throws Exception {
+        return lookup(key, factory).getContext();
+    }
+
+    /**
+     * Получение контекста из реестра или его создание с
+     * признаком того, был ли контекст взят из реестра именно
+     * этим вызовом. Контекст создается вне блокировки
+     * реестра, поэтому загрузка хранилищ не задерживает
+     * другие примеры. Если за это время контекст с тем же
+     * ключом уже добавлен другим потоком, возвращается он.
+     * Если же за это время реестр был очищен, созданный
+     * контекст возвращается без сохранения.
+     *
+     * @param key Ключ контекста.
+     * @param factory Фабрика контекста.
+     * @return результат поиска.
+     * @throws Exception
+     */
+    public static Lookup lookup(String key, ContextFactory factory)
+        throws Exception {
+
+        final long created;
+
+        synchronized (SSLContextRegistry.class) {
+
+            SSLContext context = contexts.get(key);
+
+            if (context != null) {
+                contextHitCount.incrementAndGet();
+                return new Lookup(context, true);
+            } // if
+
+            created = generation;
+        }
+
+        SSLContext context = factory.create();
+
+        synchronized (SSLContextRegistry.class) {
+
+            SSLContext existing = contexts.get(key);
+
+            if (existing != null) {
+                contextHitCount.incrementAndGet();
+                return new Lookup(existing, true);
+            } // if
+
+            configure(context);
+
+            if (created == generation) {
+                contexts.put(key, context);
+            } // if
+
+            return new Lookup(context, false);
+        }
+
+    }
+
+    /**
+     * Удаление контекста из реестра, например, при смене
+     * ключа или пароля.
+     *
+     * @param key Ключ контекста.
+     */
+    public static synchronized void invalidate(String key) {
+        generation++;
+        contexts.remove(key);
+    }
+
+    /**
+     * Удаление контекстов с аутентификацией клиента по
+     * ключу из указанного контейнера, например, после смены
+     * его пароля.
+     *
+     * @param keyStoreType Тип ключевого хранилища.
+     * @param alias Алиас ключа клиента.
+     */
+    public static synchronized void invalidate(String keyStoreType,
+        String alias) {
+
+        generation++;
+
+        final String suffix = "|" + keyStoreType + "|" + alias + "|" + true;
+        final Iterator<String> iterator = contexts.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().endsWith(suffix)) {
+                iterator.remove();
+            } // if
+        } // while
+
+    }
+
+    /**
+     * Удаление всех контекстов, например, после изменения
+     * хранилища доверенных сертификатов.
+     *
+     */
+    public static synchronized void invalidateAll() {
+        generation++;
+        contexts.clear();
+    }
+
+    /**
+     * Задание размера кеша клиентских сессий. Применяется и
+     * к уже созданным контекстам.
+     *
+     * @param size Размер кеша (0 - без ограничения).
+     */
+    public static synchronized void setSessionCacheSize(int size) {
+        sessionCacheSize = size;
+        configureAll();
+    }
+
+    /**
+     * Задание времени жизни сессии в кеше. Применяется и к
+     * уже созданным контекстам.
+     *
+     * @param seconds Время жизни (сек, 0 - без ограничения).
+     */
+    public static synchronized void setSessionTimeout(int seconds) {
+        sessionTimeout = seconds;
+        configureAll();
+    }
+
+    /**
+     * Подключение слушателя рукопожатий к сокету.
+     *
+     * @param socket Сокет.
+     */
+    public static void watch(SSLSocket socket) {
+        socket.addHandshakeCompletedListener(handshakeListener);
+    }
+
+    /**
+     * Получение количества полных рукопожатий.
+     *
+     * @return количество рукопожатий.
+     */
+    public static long getFullHandshakeCount() {
+        return fullHandshakeCount.get();
+    }
+
+    /**
+     * Получение количества возобновленных сессий.
+     *
+     * @return количество сессий.
+     */
+    public static long getResumedHandshakeCount() {
+        return resumedHandshakeCount.get();
+    }
+
+    /**
+     * Получение доли возобновленных сессий среди всех
+     * рукопожатий.
+     *
+     * @return доля от 0 до 1.
+     */
+    public static double getResumedRatio() {
+
+        final long total = fullHandshakeCount.get() + resumedHandshakeCount.get();
+        if (total == 0) {
+            return 0;
+        } // if
+
+        return (double) resumedHandshakeCount.get() / total;
+    }
+
+    /**
+     * Получение количества контекстов, полученных из реестра.
+     *
+     * @return количество контекстов.
+     */
+    public static long getContextHitCount() {
+        return contextHitCount.get();
+    }
+
+    /**
+     * Формирование строки со статистикой рукопожатий.
+     *
+     * @return статистика.
+     */
+    public static String getStatistics() {
+        return "full handshakes: " + getFullHandshakeCount() +
+            ", resumed: " + getResumedHandshakeCount() +
+            ", resumed ratio: " + String.format("%.2f", getResumedRatio()) +
+            ", contexts reused: " + getContextHitCount();
+    }
+
+    /**
+     * Учет завершенного рукопожатия. Если идентификатор
+     * сессии уже встречался, то сессия была возобновлена.
+     *
+     * @param sessionId Идентификатор сессии.
+     */
+    private static void onHandshake(byte[] sessionId) {
+
+        if (sessionId == null || sessionId.length == 0) {
+            fullHandshakeCount.incrementAndGet();
+            return;
+        } // if
+
+        final String id = Array.toHexString(sessionId);
+        final boolean resumed;
+
+        synchronized (seenSessions) {
+            resumed = seenSessions.put(id, Boolean.TRUE) != null;
+        }
+
+        if (resumed) {
+            resumedHandshakeCount.incrementAndGet();
+        } // if
+        else {
+            fullHandshakeCount.incrementAndGet();
+        } // else
+
+    }
+
+    /**
+     * Настройка кеша клиентских сессий всех контекстов.
+     *
+     */
+    private static void configureAll() {
+        for (SSLContext context : contexts.values()) {
+            configure(context);
+        } // for
+    }
+
+    /**
+     * Настройка кеша клиентских сессий контекста.
+     *
+     * @param context Контекст.
+     */
+    private static void configure(SSLContext context) {
+
+        final SSLSessionContext sessionContext =
+            context.getClientSessionContext();
+
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+            sessionContext.setSessionTimeout(sessionTimeout);
+        } // if
+
+    }
+
+    /**
+     * Класс Lookup описывает результат поиска контекста.
+     *
+     */
+    public static final class Lookup {
+
+        /**
+         * Контекст.
+         */
+        private final SSLContext context;
+
+        /**
+         * True, если контекст взят из реестра.
+         */
+        private final boolean reused;
+
+        /**
+         * Конструктор.
+         *
+         * @param sslContext Контекст.
+         * @param fromRegistry True, если контекст взят из
+         * реестра.
+         */
+        private Lookup(SSLContext sslContext, boolean fromRegistry) {
+            context = sslContext;
+            reused = fromRegistry;
+        }
+
+        /**
+         * Получение контекста.
+         *
+         * @return контекст.
+         */
+        public SSLContext getContext() {
+            return context;
+        }
+
+        /**
+         * Проверка, был ли контекст взят из реестра, а не
+         * создан этим вызовом.
+         *
+         * @return true, если контекст взят из реестра.
+         */
+        public boolean isReused() {
+            return reused;
+        }
+
+    }
+
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.CryptoPro.ACSPClientApp.Constants;
+
+/**
+ * Служебный класс StartupPipeline выполняет этапы запуска
+ * приложения последовательно в фоновом потоке, чтобы не
+ * задерживать отображение интерфейса. Для каждого этапа
+ * запоминается время выполнения. При ошибке оставшиеся
+ * этапы не выполняются.
+ *
+ * Обработчик вызывается в главном потоке. Его можно
+ * заменить в любой момент (например, при пересоздании
+ * activity): если запуск уже завершен, новый обработчик
+ * получит результат сразу.
+ *
+ * 18/10/2026
+ *
+ */
+public class StartupPipeline {
+
+    /**
+     * Имена этапов.
+     */
+    private final List<String> names = new ArrayList<String>();
+
+    /**
+     * Этапы.
+     */
+    private final List<Stage> stages = new ArrayList<Stage>();
+
+    /**
+     * Время выполнения этапов (мс).
+     */
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+    /**
+     * Обработчик для вызовов в главном потоке.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Обработчик результата.
+     */
+    private Listener listener = null;
+
+    /**
+     * Обработчик, уже получивший результат.
+     */
+    private Listener notified = null;
+
+    /**
+     * Поток запуска.
+     */
+    private Thread thread = null;
+
+    /**
+     * Флаг завершения запуска.
+     */
+    private volatile boolean finished = false;
+
+    /**
+     * Ошибка запуска или null.
+     */
+    private volatile Throwable error = null;
+
+    /**
+     * Добавление этапа. Этапы выполняются в порядке
+     * добавления.
+     *
+     * @param name Имя этапа.
+     * @param stage Этап.
+     * @return этот объект.
+     */
+    public synchronized StartupPipeline addStage(String name, Stage stage) {
+
+        if (thread != null) {
+            throw new IllegalStateException("Startup is already running.");
+        } // if
+
+        names.add(name);
+        stages.add(stage);
+
+        return this;
+    }
+
+    /**
+     * Запуск этапов в фоновом потоке.
+     *
+     */
+    public synchronized void start() {
+
+        if (thread != null) {
+            return;
+        } // if
+
+        thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                runStages();
+            }
+
+        }, "startup");
+
+        thread.start();
+    }
+
+    /**
+     * Задание обработчика результата. Вызывается в главном
+     * потоке.
+     *
+     * @param startupListener Обработчик (может быть null).
+     */
+    public void setListener(Listener startupListener) {
+
+        listener = startupListener;
+
+        if (finished) {
+            handler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    notifyFinished();
+                }
+
+            });
+        } // if
+
+    }
+
+    /**
+     * Проверка завершения запуска.
+     *
+     * @return true, если все этапы выполнены или произошла
+     * ошибка.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Проверка успешного завершения запуска.
+     *
+     * @return true, если все этапы выполнены без ошибок.
+     */
+    public boolean isSucceeded() {
+        return finished && error == null;
+    }
+
+    /**
+     * Получение времени выполнения завершенных этапов.
+     *
+     * @return имена этапов и время (мс).
+     */
+    public Map<String, Long> getTimings() {
+
+        synchronized (timings) {
+            return Collections.unmodifiableMap(
+                new LinkedHashMap<String, Long>(timings));
+        }
+
+    }
+
+    /**
+     * Выполнение этапов в потоке запуска.
+     *
+     */
+    private void runStages() {
+
+        final long started = SystemClock.elapsedRealtime();
+
+        for (int i = 0; i < stages.size(); i++) {
+
+            final String name = names.get(i);
+            final long stageStarted = SystemClock.elapsedRealtime();
+
+            try {
+                stages.get(i).run();
+            } catch (Throwable e) {
+                Log.e(Constants.APP_LOGGER_TAG, "Startup stage '" + name + "' failed.", e);
+                error = e;
+            }
+
+            final long elapsed = SystemClock.elapsedRealtime() - stageStarted;
+
+            synchronized (timings) {
+                timings.put(name, elapsed);
+            }
+
+            Log.i(Constants.APP_LOGGER_TAG, "Startup stage '" + name +
+                "': " + elapsed + " ms");
+
+            if (error != null) {
+                break;
+            } // if
+
+        } // for
+
+        Log.i(Constants.APP_LOGGER_TAG, "Startup finished in " +
+            (SystemClock.elapsedRealtime() - started) + " ms");
+
+        finished = true;
+
+        handler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                notifyFinished();
+            }
+
+        });
+
+    }
+
+    /**
+     * Передача результата обработчику. Вызывается в главном
+     * потоке, каждый обработчик получает результат один раз.
+     *
+     */
+    private void notifyFinished() {
+
+        final Listener current = listener;
+
+        if (current != null && current != notified) {
+            notified = current;
+            current.onFinished(getTimings(), error);
+        } // if
+
+    }
+
+    /**
+     * Этап запуска.
+     *
+     */
+    public interface Stage {
+
+        /**
+         * Выполнение этапа в потоке запуска.
+         *
+         * @throws Exception
+         */
+        void run() throws Exception;
+
+    }
+
+    /**
+     * Обработчик завершения запуска.
+     *
+     */
+    public interface Listener {
+
+        /**
+         * Завершение запуска. Вызывается в главном потоке.
+         *
+         * @param timings Имена выполненных этапов и время
+         * их выполнения (мс).
+         * @param error Ошибка или null.
+         */
+        void onFinished(Map<String, Long> timings, Throwable error);
+
+    }
+
+}
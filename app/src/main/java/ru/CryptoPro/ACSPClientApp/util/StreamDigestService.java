@@ -0,0 +1,357 @@
+/**
+ * Copyright 2004-2013 Crypto-Pro. All rights reserved.
+ * Программный код, содержащийся в этом файле, предназначен
+ * для целей обучения. Может быть скопирован или модифицирован
+ * при условии сохранения абзацев с указанием авторства и прав.
+ *
+ * Данный код не может быть непосредственно использован
+ * для защиты информации. Компания Крипто-Про не несет никакой
+ * ответственности за функционирование этого кода.
+ */
+package ru.CryptoPro.ACSPClientApp.util;
+
+import ru.CryptoPro.JCSP.JCSP;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+
+/**
+ * Служебный класс StreamDigestService предназначен для
+ * потокового хеширования файлов и потоков произвольного
+ * размера. Данные читаются крупными блоками в один и тот
+ * же буфер, поэтому расход памяти не зависит от размера
+ * входных данных.
+ *
+ * Объект не является потокобезопасным: для работы из
+ * нескольких потоков следует создать по объекту на поток.
+ *
+ * 18/10/2026
+ *
+ */
+public class StreamDigestService {
+
+    /**
+     * Размер буфера чтения по умолчанию (байт).
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Размер отображаемого в память участка файла по
+     * умолчанию (байт).
+     */
+    public static final long DEFAULT_MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Количество байт в мегабайте.
+     */
+    private static final double BYTES_IN_MB = 1024.0 * 1024.0;
+
+    /**
+     * Объект хеширования.
+     */
+    private final MessageDigest messageDigest;
+
+    /**
+     * Буфер для чтения из файлового канала.
+     */
+    private final ByteBuffer directBuffer;
+
+    /**
+     * Буфер для чтения из произвольного потока. Создается
+     * при первом обращении.
+     */
+    private byte[] streamBuffer = null;
+
+    /**
+     * Размер отображаемого в память участка файла.
+     */
+    private long mappedRegionSize = DEFAULT_MAPPED_REGION_SIZE;
+
+    /**
+     * Количество байт, обработанных последней операцией.
+     */
+    private long lastProcessedBytes = 0;
+
+    /**
+     * Время выполнения последней операции (нсек).
+     */
+    private long lastElapsedNanos = 0;
+
+    /**
+     * Конструктор.
+     *
+     * @param digestAlgorithm Алгоритм хеширования.
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     */
+    public StreamDigestService(String digestAlgorithm)
+        throws NoSuchAlgorithmException, NoSuchProviderException {
+        this(digestAlgorithm, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param digestAlgorithm Алгоритм хеширования.
+     * @param bufferSize Размер буфера чтения (байт).
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     */
+    public StreamDigestService(String digestAlgorithm, int bufferSize)
+        throws NoSuchAlgorithmException, NoSuchProviderException {
+        this(digestAlgorithm, JCSP.PROVIDER_NAME, bufferSize);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param digestAlgorithm Алгоритм хеширования.
+     * @param provider Провайдер.
+     * @param bufferSize Размер буфера чтения (байт).
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchProviderException
+     */
+    public StreamDigestService(String digestAlgorithm, String provider,
+        int bufferSize) throws NoSuchAlgorithmException, NoSuchProviderException {
+
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        } // if
+
+        messageDigest = MessageDigest.getInstance(digestAlgorithm, provider);
+
+        directBuffer = ByteBuffer.allocateDirect(bufferSize);
+
+    }
+
+    /**
+     * Задание размера отображаемого в память участка
+     * файла для {@link #digestMapped(File)}.
+     *
+     * @param size Размер участка (байт).
+     */
+    public void setMappedRegionSize(long size) {
+
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid region size: " + size);
+        } // if
+
+        mappedRegionSize = size;
+    }
+
+    /**
+     * Получение алгоритма хеширования.
+     *
+     * @return алгоритм хеширования.
+     */
+    public String getAlgorithm() {
+        return messageDigest.getAlgorithm();
+    }
+
+    /**
+     * Хеширование файла чтением через файловый канал.
+     *
+     * @param file Хешируемый файл.
+     * @return хеш файла.
+     * @throws IOException
+     */
+    public byte[] digest(File file) throws IOException {
+
+        FileInputStream stream = new FileInputStream(file);
+
+        try {
+            return digest(stream.getChannel());
+        } finally {
+            stream.close();
+        }
+
+    }
+
+    /**
+     * Хеширование содержимого файлового канала с текущей
+     * позиции до конца.
+     *
+     * @param channel Файловый канал.
+     * @return хеш данных.
+     * @throws IOException
+     */
+    public byte[] digest(FileChannel channel) throws IOException {
+
+        long start = System.nanoTime();
+        long processed = 0;
+
+        messageDigest.reset();
+
+        try {
+
+            while (true) {
+
+                directBuffer.clear();
+                int read = channel.read(directBuffer);
+
+                if (read < 0) {
+                    break;
+                } // if
+
+                directBuffer.flip();
+                messageDigest.update(directBuffer);
+
+                processed += read;
+
+            } // while
+
+            return messageDigest.digest();
+
+        } finally {
+            complete(processed, start);
+        }
+
+    }
+
+    /**
+     * Хеширование файла путем отображения его в память
+     * участками размера {@link #setMappedRegionSize(long)}.
+     *
+     * @param file Хешируемый файл.
+     * @return хеш файла.
+     * @throws IOException
+     */
+    public byte[] digestMapped(File file) throws IOException {
+
+        long start = System.nanoTime();
+        long processed = 0;
+
+        messageDigest.reset();
+
+        FileInputStream stream = new FileInputStream(file);
+
+        try {
+
+            FileChannel channel = stream.getChannel();
+            long size = channel.size();
+
+            while (processed < size) {
+
+                long regionSize = Math.min(mappedRegionSize, size - processed);
+
+                MappedByteBuffer region = channel.map(
+                    FileChannel.MapMode.READ_ONLY, processed, regionSize);
+
+                messageDigest.update(region);
+                processed += regionSize;
+
+            } // while
+
+            return messageDigest.digest();
+
+        } finally {
+            stream.close();
+            complete(processed, start);
+        }
+
+    }
+
+    /**
+     * Хеширование потока до его конца. Поток не закрывается.
+     * Если передан файловый поток, то чтение выполняется
+     * через его канал.
+     *
+     * @param in Хешируемый поток.
+     * @return хеш данных.
+     * @throws IOException
+     */
+    public byte[] digest(InputStream in) throws IOException {
+
+        if (in instanceof FileInputStream) {
+            return digest(((FileInputStream) in).getChannel());
+        } // if
+
+        if (streamBuffer == null) {
+            streamBuffer = new byte[directBuffer.capacity()];
+        } // if
+
+        long start = System.nanoTime();
+        long processed = 0;
+
+        messageDigest.reset();
+
+        try {
+
+            int read;
+            while ((read = in.read(streamBuffer)) != -1) {
+                messageDigest.update(streamBuffer, 0, read);
+                processed += read;
+            } // while
+
+            return messageDigest.digest();
+
+        } finally {
+            complete(processed, start);
+        }
+
+    }
+
+    /**
+     * Получение количества байт, обработанных последней
+     * операцией.
+     *
+     * @return количество байт.
+     */
+    public long getLastProcessedBytes() {
+        return lastProcessedBytes;
+    }
+
+    /**
+     * Получение времени выполнения последней операции.
+     *
+     * @return время (мсек).
+     */
+    public long getLastElapsedMillis() {
+        return lastElapsedNanos / 1000000L;
+    }
+
+    /**
+     * Получение скорости хеширования последней операции.
+     *
+     * @return скорость (МБ/с).
+     */
+    public double getLastThroughput() {
+        return throughput(lastProcessedBytes, lastElapsedNanos);
+    }
+
+    /**
+     * Вычисление скорости обработки.
+     *
+     * @param bytes Количество обработанных байт.
+     * @param elapsedNanos Время обработки (нсек).
+     * @return скорость (МБ/с).
+     */
+    public static double throughput(long bytes, long elapsedNanos) {
+
+        if (elapsedNanos <= 0) {
+            return 0;
+        } // if
+
+        return (bytes / BYTES_IN_MB) / (elapsedNanos / 1000000000.0);
+    }
+
+    /**
+     * Сохранение статистики завершенной операции.
+     *
+     * @param processed Количество обработанных байт.
+     * @param start Время начала операции (нсек).
+     */
+    private void complete(long processed, long start) {
+        lastProcessedBytes = processed;
+        lastElapsedNanos = System.nanoTime() - start;
+    }
+
+}
@@ -0,0 +1,74 @@
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import com.objsys.asn1j.runtime.Asn1BerDecodeBuffer;
+import com.objsys.asn1j.runtime.Asn1OctetString;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка кодирования содержимого при потоковом
+ * формировании CMS подписи.
+ *
+ */
+public class CMSSignExampleTest {
+
+    @Test
+    public void writeLength_shortForm() throws Exception {
+        assertArrayEquals(new byte[] {0x00}, length(0));
+        assertArrayEquals(new byte[] {0x7F}, length(0x7F));
+    }
+
+    @Test
+    public void writeLength_longForm() throws Exception {
+        assertArrayEquals(new byte[] {(byte) 0x81, (byte) 0x80}, length(0x80));
+        assertArrayEquals(new byte[] {(byte) 0x81, (byte) 0xFF}, length(0xFF));
+        assertArrayEquals(new byte[] {(byte) 0x82, 0x01, 0x00}, length(0x100));
+        assertArrayEquals(new byte[] {(byte) 0x83, 0x01, 0x00, 0x00}, length(0x10000));
+        assertArrayEquals(new byte[] {(byte) 0x84, 0x7F, (byte) 0xFF,
+            (byte) 0xFF, (byte) 0xFF}, length(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void indefiniteOctetString_decodesToContent() throws Exception {
+
+        final byte[] content = new byte[150000];
+        new Random(1).nextBytes(content);
+
+        final int[] chunks = {0x7F, 0x80, 0x10000, 1};
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        out.write(CMSSignExample.BER_OCTET_STRING_INDEFINITE);
+
+        int offset = 0;
+        for (int chunk : chunks) {
+            final byte[] data = new byte[chunk];
+            System.arraycopy(content, offset, data, 0, chunk);
+            CMSSignExample.writeOctetString(out, data, chunk);
+            offset += chunk;
+        } // for
+
+        final int rest = content.length - offset;
+        final byte[] data = new byte[rest];
+        System.arraycopy(content, offset, data, 0, rest);
+        CMSSignExample.writeOctetString(out, data, rest);
+
+        out.write(CMSSignExample.BER_END_OF_CONTENTS);
+
+        final Asn1OctetString decoded = new Asn1OctetString();
+        decoded.decode(new Asn1BerDecodeBuffer(out.toByteArray()));
+
+        assertArrayEquals(content, decoded.value);
+    }
+
+    private static byte[] length(int length) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CMSSignExample.writeLength(out, length);
+        return out.toByteArray();
+    }
+
+}
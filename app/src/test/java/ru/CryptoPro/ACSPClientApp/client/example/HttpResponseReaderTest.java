@@ -0,0 +1,99 @@
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка разбора ответов HTTP/1.1, в том числе
+ * нескольких ответов подряд в одном соединении.
+ *
+ */
+public class HttpResponseReaderTest {
+
+    private static final byte[] SEPARATOR = "\r\n\r\n".getBytes();
+
+    private static final String CHUNKED_RESPONSE =
+        "HTTP/1.1 200 OK\r\n" +
+        "Transfer-Encoding: chunked\r\n\r\n" +
+        "5\r\nHello\r\n" +
+        "7;name=value\r\n, world\r\n" +
+        "A\r\n0123456789\r\n" +
+        "0\r\n" +
+        "Trailer: value\r\n" +
+        "\r\n";
+
+    @Test
+    public void readBody_chunked() throws Exception {
+
+        for (int bufferSize : new int[] {1, 2, 3, 7, HttpResponseReader.DEFAULT_BUFFER_SIZE}) {
+
+            final HttpResponseReader reader = reader(CHUNKED_RESPONSE, bufferSize);
+
+            final String header = new String(reader.readHeader(SEPARATOR));
+            assertTrue(header.endsWith("chunked\r\n\r\n"));
+
+            assertEquals("Hello, world0123456789",
+                new String(reader.readBody(-1, true)));
+
+        } // for
+
+    }
+
+    @Test
+    public void readBody_keepAliveResponses() throws Exception {
+
+        final HttpResponseReader reader = reader(CHUNKED_RESPONSE +
+            "HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\nnext" +
+            CHUNKED_RESPONSE, 5);
+
+        reader.readHeader(SEPARATOR);
+        assertEquals("Hello, world0123456789", new String(reader.readBody(-1, true)));
+
+        reader.readHeader(SEPARATOR);
+        assertEquals("next", new String(reader.readBody(4, false)));
+
+        reader.readHeader(SEPARATOR);
+        assertEquals("Hello, world0123456789", new String(reader.readBody(-1, true)));
+
+    }
+
+    @Test
+    public void readBody_emptyChunked() throws Exception {
+
+        final HttpResponseReader reader = reader("HTTP/1.1 200 OK\r\n\r\n0\r\n\r\n", 4);
+
+        reader.readHeader(SEPARATOR);
+        assertEquals(0, reader.readBody(-1, true).length);
+
+    }
+
+    @Test(expected = IOException.class)
+    public void readBody_invalidChunkSize() throws Exception {
+
+        final HttpResponseReader reader = reader("HTTP/1.1 200 OK\r\n\r\nxyz\r\nabc\r\n0\r\n\r\n", 4);
+
+        reader.readHeader(SEPARATOR);
+        reader.readBody(-1, true);
+
+    }
+
+    @Test(expected = IOException.class)
+    public void readBody_truncatedChunk() throws Exception {
+
+        final HttpResponseReader reader = reader("HTTP/1.1 200 OK\r\n\r\n10\r\nshort", 4);
+
+        reader.readHeader(SEPARATOR);
+        reader.readBody(-1, true);
+
+    }
+
+    private static HttpResponseReader reader(String response, int bufferSize) {
+        return new HttpResponseReader(
+            new ByteArrayInputStream(response.getBytes()), bufferSize);
+    }
+
+}
@@ -0,0 +1,350 @@
+package ru.CryptoPro.ACSPClientApp.client.example;
+
+import org.junit.Test;
+
+import ru.CryptoPro.ACSPClientApp.util.ByteBufferPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка цикла селектора неблокирующего клиента на
+ * сервере JSSE в том же процессе. Вместо ГОСТ TLS
+ * используется провайдер SunJSSE.
+ *
+ */
+public class NioTLSClientTest {
+
+    private static final String HOST = "localhost";
+
+    private static final char[] PASSWORD = "password".toCharArray();
+
+    private static final int REQUEST_COUNT = 16;
+
+    private static final int BODY_SIZE = 64 * 1024 + 5;
+
+    private static final long TIMEOUT = 20 * 1000;
+
+    private static final long SHORT_TIMEOUT = 300;
+
+    @Test
+    public void get_concurrentRequests() throws Exception {
+
+        final byte[] body = body(BODY_SIZE);
+        final TLSServer server = new TLSServer(context(), body);
+        final NioTLSClient client = new NioTLSClient(context(), new ByteBufferPool(), 2);
+
+        try {
+
+            final Results results = new Results(REQUEST_COUNT);
+
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                client.get(HOST, server.getPort(), "index.html", TIMEOUT, results);
+            } // for
+
+            results.await();
+
+            assertTrue("failures: " + results.failures, results.failures.isEmpty());
+            assertEquals(REQUEST_COUNT, results.responses.size());
+
+            for (NioTLSClient.Response response : results.responses) {
+                assertEquals(200, response.getStatus());
+                assertArrayEquals(body, response.getBody());
+            } // for
+
+            assertEquals(REQUEST_COUNT, client.getCompletedCount());
+            assertEquals(0, client.getFailedCount());
+
+        } finally {
+            client.close();
+            server.close();
+        }
+
+    }
+
+    @Test
+    public void get_growsUndersizedBuffers() throws Exception {
+
+        final byte[] body = body(BODY_SIZE);
+        final TLSServer server = new TLSServer(context(), body);
+
+        // Первый буфер сетевых данных и первый буфер данных
+        // приложения меньше требуемых: первый вызывает
+        // BUFFER_UNDERFLOW, второй - BUFFER_OVERFLOW.
+        final UndersizedBufferPool pool = new UndersizedBufferPool(0, 2);
+        final NioTLSClient client = new NioTLSClient(context(), pool, 1);
+
+        try {
+
+            final Results results = new Results(1);
+            client.get(HOST, server.getPort(), "index.html", TIMEOUT, results);
+            results.await();
+
+            assertTrue("failures: " + results.failures, results.failures.isEmpty());
+            assertArrayEquals(body, results.responses.get(0).getBody());
+
+            // Три буфера соединения и по одному на замену
+            // каждого уменьшенного. Размер данных приложения
+            // после рукопожатия может измениться, поэтому
+            // проверяется только, что новые буферы больше.
+            final List<Integer> acquired = pool.getAcquired();
+            assertEquals(5, acquired.size());
+            assertTrue(acquired.get(3) > UndersizedBufferPool.UNDERSIZED_CAPACITY);
+            assertTrue(acquired.get(4) > UndersizedBufferPool.UNDERSIZED_CAPACITY);
+
+        } finally {
+            client.close();
+            server.close();
+        }
+
+    }
+
+    @Test
+    public void get_deadlineExpires() throws Exception {
+
+        // Сервер принимает соединение, но не отвечает.
+        final ServerSocket server = new ServerSocket(0);
+        final NioTLSClient client = new NioTLSClient(context(), new ByteBufferPool(), 1);
+
+        try {
+
+            final Results results = new Results(1);
+            final long start = System.currentTimeMillis();
+
+            client.get(HOST, server.getLocalPort(), "index.html", SHORT_TIMEOUT, results);
+            results.await();
+
+            assertTrue(System.currentTimeMillis() - start >= SHORT_TIMEOUT);
+            assertTrue(results.responses.isEmpty());
+            assertEquals(1, results.failures.size());
+            assertTrue(String.valueOf(results.failures.get(0)),
+                results.failures.get(0) instanceof SocketTimeoutException);
+
+            assertEquals(0, client.getCompletedCount());
+            assertEquals(1, client.getFailedCount());
+            assertEquals(1, client.getTimedOutCount());
+
+        } finally {
+            client.close();
+            server.close();
+        }
+
+    }
+
+    private static byte[] body(int size) {
+        final byte[] body = new byte[size];
+        new Random(size).nextBytes(body);
+        return body;
+    }
+
+    /**
+     * Контекст с самоподписанным сертификатом localhost в
+     * качестве ключа и доверенного сертификата.
+     */
+    private static SSLContext context() throws Exception {
+
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        final InputStream in = NioTLSClientTest.class.getResourceAsStream("nio-tls-test.jks");
+
+        try {
+            keyStore.load(in, PASSWORD);
+        } finally {
+            in.close();
+        }
+
+        final KeyManagerFactory kmf = KeyManagerFactory.getInstance(
+            KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, PASSWORD);
+
+        final TrustManagerFactory tmf = TrustManagerFactory.getInstance(
+            TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(keyStore);
+
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+
+        return context;
+    }
+
+    /**
+     * Сбор результатов запросов.
+     */
+    private static class Results implements NioTLSClient.ResponseListener {
+
+        private final List<NioTLSClient.Response> responses =
+            Collections.synchronizedList(new ArrayList<NioTLSClient.Response>());
+
+        private final List<Exception> failures =
+            Collections.synchronizedList(new ArrayList<Exception>());
+
+        private final CountDownLatch done;
+
+        private Results(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(NioTLSClient.Response response) {
+            responses.add(response);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String host, int port, Exception error) {
+            failures.add(error);
+            done.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            assertTrue("not all requests finished",
+                done.await(2 * TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+    }
+
+    /**
+     * Пул, возвращающий уменьшенные буферы на вызовы с
+     * заданными номерами.
+     */
+    private static class UndersizedBufferPool extends ByteBufferPool {
+
+        private static final int UNDERSIZED_CAPACITY = 512;
+
+        private final List<Integer> acquired = new ArrayList<Integer>();
+
+        private final List<Integer> undersized = new ArrayList<Integer>();
+
+        private UndersizedBufferPool(Integer... undersized) {
+            Collections.addAll(this.undersized, undersized);
+        }
+
+        @Override
+        public synchronized ByteBuffer acquire(int capacity) {
+
+            final int index = acquired.size();
+            acquired.add(capacity);
+
+            if (undersized.contains(index)) {
+                return ByteBuffer.allocate(UNDERSIZED_CAPACITY);
+            } // if
+
+            return super.acquire(capacity);
+        }
+
+        private synchronized List<Integer> getAcquired() {
+            return new ArrayList<Integer>(acquired);
+        }
+
+    }
+
+    /**
+     * Сервер, отвечающий на каждый запрос одним и тем же
+     * содержимым и закрывающий соединение.
+     */
+    private static class TLSServer implements Runnable {
+
+        private final ServerSocket socket;
+
+        private final byte[] body;
+
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        private TLSServer(SSLContext context, byte[] body) throws IOException {
+            this.socket = context.getServerSocketFactory().createServerSocket(0);
+            this.body = body;
+            executor.execute(this);
+        }
+
+        private int getPort() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                while (true) {
+
+                    final Socket accepted = socket.accept();
+
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            respond(accepted);
+                        }
+
+                    });
+
+                } // while
+
+            } catch (IOException e) {
+                // Сервер закрыт.
+            }
+
+        }
+
+        private void respond(Socket accepted) {
+
+            try {
+
+                final InputStream in = accepted.getInputStream();
+                final ByteArrayOutputStream request = new ByteArrayOutputStream();
+
+                int read;
+                while (!request.toString("US-ASCII").endsWith("\r\n\r\n") &&
+                    (read = in.read()) != -1) {
+                    request.write(read);
+                } // while
+
+                final OutputStream out = accepted.getOutputStream();
+
+                out.write(("HTTP/1.0 200 OK\r\nContent-Length: " + body.length +
+                    "\r\n\r\n").getBytes("US-ASCII"));
+                out.write(body);
+                out.flush();
+
+            } catch (IOException e) {
+                // Ошибка проверяется на стороне клиента.
+            } finally {
+
+                try {
+                    accepted.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+
+            }
+
+        }
+
+        private void close() throws IOException {
+            socket.close();
+            executor.shutdownNow();
+        }
+
+    }
+
+}
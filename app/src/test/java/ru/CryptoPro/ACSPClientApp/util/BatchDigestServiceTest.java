@@ -0,0 +1,159 @@
+package ru.CryptoPro.ACSPClientApp.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка порядка результатов пакетного хеширования.
+ * Вместо Java CSP используется провайдер SUN.
+ *
+ */
+public class BatchDigestServiceTest {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final String PROVIDER = "SUN";
+
+    @Test
+    public void digest_keepsInputOrder() throws Exception {
+
+        final Random random = new Random(1);
+        final List<byte[]> documents = new ArrayList<byte[]>();
+
+        // Документы разной длины, чтобы задачи завершались
+        // не в порядке запуска.
+        for (int i = 0; i < 1000; i++) {
+            final byte[] document = new byte[random.nextInt(i % 10 == 0 ? 65536 : 64)];
+            random.nextBytes(document);
+            documents.add(document);
+        } // for
+
+        for (int threads : new int[] {1, 3, 8}) {
+
+            final BatchDigestService service =
+                new BatchDigestService(ALGORITHM, PROVIDER, threads);
+
+            try {
+
+                final List<byte[]> digests = service.digest(documents);
+                assertEquals(documents.size(), digests.size());
+
+                for (int i = 0; i < documents.size(); i++) {
+                    assertArrayEquals("document " + i, expected(documents.get(i)),
+                        digests.get(i));
+                } // for
+
+            } finally {
+                service.shutdown();
+            }
+
+        } // for
+
+    }
+
+    @Test
+    public void digest_fewerDocumentsThanTasks() throws Exception {
+
+        final BatchDigestService service =
+            new BatchDigestService(ALGORITHM, PROVIDER, 8);
+
+        try {
+
+            final List<byte[]> documents = new ArrayList<byte[]>();
+            documents.add("first".getBytes());
+            documents.add("second".getBytes());
+
+            final List<byte[]> digests = service.digest(documents);
+
+            assertEquals(2, digests.size());
+            assertArrayEquals(expected(documents.get(0)), digests.get(0));
+            assertArrayEquals(expected(documents.get(1)), digests.get(1));
+
+            assertTrue(service.digest(Collections.<byte[]>emptyList()).isEmpty());
+
+        } finally {
+            service.shutdown();
+        }
+
+    }
+
+    @Test
+    public void digestFiles_keepsInputOrder() throws Exception {
+
+        final Random random = new Random(2);
+        final List<File> files = new ArrayList<File>();
+        final List<byte[]> contents = new ArrayList<byte[]>();
+
+        final BatchDigestService service =
+            new BatchDigestService(ALGORITHM, PROVIDER, 4);
+
+        try {
+
+            for (int i = 0; i < 20; i++) {
+
+                final byte[] content = new byte[random.nextInt(200000)];
+                random.nextBytes(content);
+
+                final File file = File.createTempFile("digest", ".bin");
+                final OutputStream out = new FileOutputStream(file);
+
+                try {
+                    out.write(content);
+                } finally {
+                    out.close();
+                }
+
+                files.add(file);
+                contents.add(content);
+
+            } // for
+
+            final List<byte[]> digests = service.digestFiles(files);
+
+            for (int i = 0; i < files.size(); i++) {
+                assertArrayEquals("file " + i, expected(contents.get(i)),
+                    digests.get(i));
+            } // for
+
+        } finally {
+
+            service.shutdown();
+
+            for (File file : files) {
+                file.delete();
+            } // for
+
+        }
+
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void digest_propagatesErrors() throws Exception {
+
+        final BatchDigestService service =
+            new BatchDigestService("NO-SUCH-DIGEST", PROVIDER, 2);
+
+        try {
+            service.digest(Collections.singletonList(new byte[1]));
+        } finally {
+            service.shutdown();
+        }
+
+    }
+
+    private static byte[] expected(byte[] document) throws Exception {
+        return MessageDigest.getInstance(ALGORITHM).digest(document);
+    }
+
+}
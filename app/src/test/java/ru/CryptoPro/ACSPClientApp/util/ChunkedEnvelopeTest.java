@@ -0,0 +1,181 @@
+package ru.CryptoPro.ACSPClientApp.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.security.SignatureException;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+import static ru.CryptoPro.ACSPClientApp.util.TestFiles.*;
+
+/**
+ * Проверка зашифрования файла блоками с имитовставкой.
+ * Вместо ГОСТ 28147-89 используются AES/CTR и HmacSHA256
+ * провайдера SunJCE.
+ *
+ */
+public class ChunkedEnvelopeTest {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final byte[] UKM = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private final SecretKey encryptionKey = key(1, "AES");
+
+    private final SecretKey macKey = key(2, "HmacSHA256");
+
+    private final SecretKey agreeKey = key(3, "AES");
+
+    private final ChunkedEnvelope envelope = new ChunkedEnvelope(
+        "AES/CTR/NoPadding", "HmacSHA256", "SunJCE", CHUNK_SIZE);
+
+    @Test
+    public void decrypt_roundTrip() throws Exception {
+
+        for (int size : new int[] {0, 1, CHUNK_SIZE, CHUNK_SIZE + 1, 10 * CHUNK_SIZE + 7}) {
+
+            final byte[] content = content(size);
+            final File source = write(content);
+            final File encrypted = File.createTempFile("encrypted", ".bin");
+            final File decrypted = File.createTempFile("decrypted", ".bin");
+
+            try {
+
+                envelope.encrypt(source, encrypted, encryptionKey, macKey,
+                    agreeKey, UKM, 4);
+
+                final ChunkedEnvelope.Reader reader = envelope.open(encrypted, resolver());
+
+                try {
+
+                    assertEquals(size, reader.getLength());
+                    assertEquals((size + CHUNK_SIZE - 1) / CHUNK_SIZE,
+                        reader.getChunkCount());
+
+                    reader.decrypt(decrypted, 3);
+                    assertArrayEquals("size " + size, content, read(decrypted));
+
+                } finally {
+                    reader.close();
+                }
+
+            } finally {
+                source.delete();
+                encrypted.delete();
+                decrypted.delete();
+            }
+
+        } // for
+
+    }
+
+    @Test
+    public void read_rangeAcrossChunks() throws Exception {
+
+        final byte[] content = content(10 * CHUNK_SIZE + 7);
+        final File source = write(content);
+        final File encrypted = File.createTempFile("encrypted", ".bin");
+
+        try {
+
+            envelope.encrypt(source, encrypted, encryptionKey, macKey,
+                agreeKey, UKM, 1);
+
+            final ChunkedEnvelope.Reader reader = envelope.open(encrypted, resolver());
+
+            try {
+
+                final int[][] ranges = {{0, 1}, {CHUNK_SIZE - 1, 2},
+                    {CHUNK_SIZE + 5, 3 * CHUNK_SIZE}, {content.length - 3, 3}};
+
+                for (int[] range : ranges) {
+                    assertArrayEquals("offset " + range[0],
+                        Arrays.copyOfRange(content, range[0], range[0] + range[1]),
+                        reader.read(range[0], range[1], 4));
+                } // for
+
+            } finally {
+                reader.close();
+            }
+
+        } finally {
+            source.delete();
+            encrypted.delete();
+        }
+
+    }
+
+    @Test
+    public void read_detectsModifiedChunk() throws Exception {
+
+        final byte[] content = content(4 * CHUNK_SIZE);
+        final File source = write(content);
+        final File encrypted = File.createTempFile("encrypted", ".bin");
+
+        try {
+
+            envelope.encrypt(source, encrypted, encryptionKey, macKey,
+                agreeKey, UKM, 2);
+
+            // Изменение последнего байта последнего блока.
+
+            final RandomAccessFile file = new RandomAccessFile(encrypted, "rw");
+
+            try {
+                file.seek(file.length() - 1);
+                final int last = file.read();
+                file.seek(file.length() - 1);
+                file.write(last ^ 0x01);
+            } finally {
+                file.close();
+            }
+
+            final ChunkedEnvelope.Reader reader = envelope.open(encrypted, resolver());
+
+            try {
+
+                // Остальные блоки читаются.
+                assertArrayEquals(Arrays.copyOf(content, 3 * CHUNK_SIZE),
+                    reader.read(0, 3 * CHUNK_SIZE, 2));
+
+                try {
+                    reader.read(content.length - 1, 1, 1);
+                    fail("Modified chunk was not detected");
+                } catch (SignatureException e) {
+                    // ok
+                }
+
+            } finally {
+                reader.close();
+            }
+
+        } finally {
+            source.delete();
+            encrypted.delete();
+        }
+
+    }
+
+    private FileCipher.KeyResolver resolver() {
+
+        // Ключи запрашиваются по порядку: ключ шифрования,
+        // затем ключ имитовставки.
+        return new FileCipher.KeyResolver() {
+
+            private int count = 0;
+
+            @Override
+            public SecretKey resolve(byte[] ukm, byte[] wrappedKey) {
+                assertArrayEquals(UKM, ukm);
+                return count++ == 0 ? encryptionKey : macKey;
+            }
+
+        };
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package ru.CryptoPro.ACSPClientApp.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+import static ru.CryptoPro.ACSPClientApp.util.TestFiles.*;
+
+/**
+ * Проверка зашифрования и расшифрования файлов. Вместо
+ * ГОСТ 28147-89 в режиме CNT используется AES/CTR
+ * провайдера SunJCE.
+ *
+ */
+public class FileCipherTest {
+
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+
+    private static final String PROVIDER = "SunJCE";
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private static final int[] SIZES = {0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE,
+        SEGMENT_SIZE + 1, FileCipher.DEFAULT_BUFFER_SIZE * 3 + 5};
+
+    private static final byte[] UKM = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private final SecretKey sessionKey = key(1, "AES");
+
+    private final SecretKey agreeKey = key(2, "AES");
+
+    private final FileCipher fileCipher = new FileCipher(TRANSFORMATION, PROVIDER);
+
+    @Test
+    public void encrypt_roundTrip() throws Exception {
+
+        for (int size : SIZES) {
+
+            final byte[] content = content(size);
+            final File source = write(content);
+            final File encrypted = File.createTempFile("encrypted", ".bin");
+            final File decrypted = File.createTempFile("decrypted", ".bin");
+
+            try {
+
+                fileCipher.encrypt(source, encrypted, sessionKey, agreeKey, UKM);
+
+                if (size > 0) {
+                    assertFalse("size " + size, Arrays.equals(content,
+                        tail(read(encrypted), size)));
+                } // if
+
+                fileCipher.decrypt(encrypted, decrypted, resolver());
+                assertArrayEquals("size " + size, content, read(decrypted));
+
+            } finally {
+                source.delete();
+                encrypted.delete();
+                decrypted.delete();
+            }
+
+        } // for
+
+    }
+
+    @Test
+    public void encryptSegmented_roundTripInAnyThreadCount() throws Exception {
+
+        for (int size : SIZES) {
+
+            final byte[] content = content(size);
+            final File source = write(content);
+            final File sequential = File.createTempFile("sequential", ".bin");
+            final File parallel = File.createTempFile("parallel", ".bin");
+            final File decrypted = File.createTempFile("decrypted", ".bin");
+
+            try {
+
+                fileCipher.encryptSegmented(source, sequential, sessionKey,
+                    agreeKey, UKM, SEGMENT_SIZE, 1);
+                fileCipher.encryptSegmented(source, parallel, sessionKey,
+                    agreeKey, UKM, SEGMENT_SIZE, 4);
+
+                // Файл, зашифрованный в одном потоке, расшифровывается
+                // в нескольких, и наоборот.
+
+                fileCipher.decrypt(sequential, decrypted, resolver(), 8);
+                assertArrayEquals("size " + size, content, read(decrypted));
+
+                fileCipher.decrypt(parallel, decrypted, resolver(), 1);
+                assertArrayEquals("size " + size, content, read(decrypted));
+
+            } finally {
+                source.delete();
+                sequential.delete();
+                parallel.delete();
+                decrypted.delete();
+            }
+
+        } // for
+
+    }
+
+    private FileCipher.KeyResolver resolver() {
+
+        return new FileCipher.KeyResolver() {
+
+            @Override
+            public SecretKey resolve(byte[] ukm, byte[] wrappedKey) {
+                assertArrayEquals(UKM, ukm);
+                return sessionKey;
+            }
+
+        };
+
+    }
+
+    private static byte[] tail(byte[] data, int length) {
+        return Arrays.copyOfRange(data, data.length - length, data.length);
+    }
+
+}
@@ -0,0 +1,73 @@
+package ru.CryptoPro.ACSPClientApp.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка потокового хеширования файлов небольшим
+ * буфером и небольшими отображаемыми участками. Вместо
+ * Java CSP используется провайдер SUN.
+ *
+ */
+public class StreamDigestServiceTest {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final int[] SIZES = {0, 1, BUFFER_SIZE - 1, BUFFER_SIZE,
+        BUFFER_SIZE + 1, 10 * BUFFER_SIZE + 3};
+
+    @Test
+    public void digest_matchesMessageDigest() throws Exception {
+
+        final StreamDigestService service =
+            new StreamDigestService(ALGORITHM, "SUN", BUFFER_SIZE);
+
+        // Несколько участков на файл.
+        service.setMappedRegionSize(3 * BUFFER_SIZE);
+
+        for (int size : SIZES) {
+
+            final byte[] content = new byte[size];
+            new Random(size).nextBytes(content);
+
+            final byte[] expected = MessageDigest.getInstance(ALGORITHM).digest(content);
+            final File file = File.createTempFile("digest", ".bin");
+
+            try {
+
+                final OutputStream out = new FileOutputStream(file);
+
+                try {
+                    out.write(content);
+                } finally {
+                    out.close();
+                }
+
+                assertArrayEquals("file, size " + size, expected, service.digest(file));
+                assertEquals(size, service.getLastProcessedBytes());
+
+                assertArrayEquals("mapped, size " + size, expected,
+                    service.digestMapped(file));
+
+                assertArrayEquals("stream, size " + size, expected,
+                    service.digest(new ByteArrayInputStream(content)));
+
+            } finally {
+                file.delete();
+            }
+
+        } // for
+
+    }
+
+}
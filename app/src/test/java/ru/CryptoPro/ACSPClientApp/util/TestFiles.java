@@ -0,0 +1,79 @@
+package ru.CryptoPro.ACSPClientApp.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Общие данные тестов шифрования файлов: ключи,
+ * содержимое и временные файлы.
+ *
+ */
+final class TestFiles {
+
+    private TestFiles() {
+        ;
+    }
+
+    /**
+     * Ключ длиной 128 бит, одинаковый для одного seed.
+     */
+    static SecretKey key(int seed, String algorithm) {
+        final byte[] value = new byte[16];
+        new Random(seed).nextBytes(value);
+        return new SecretKeySpec(value, algorithm);
+    }
+
+    /**
+     * Случайные данные, одинаковые для одного размера.
+     */
+    static byte[] content(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Запись данных во временный файл, который должен быть
+     * удален вызывающим.
+     */
+    static File write(byte[] content) throws Exception {
+
+        final File file = File.createTempFile("plain", ".bin");
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+
+    static byte[] read(File file) throws Exception {
+
+        final byte[] data = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+
+        try {
+
+            int offset = 0;
+            while (offset < data.length) {
+                offset += in.read(data, offset, data.length - offset);
+            } // while
+
+        } finally {
+            in.close();
+        }
+
+        return data;
+    }
+
+}